@@ -0,0 +1,81 @@
+package com.pocnetty.domain;
+
+import com.pocnetty.domain.dto.LimitOrder;
+import com.pocnetty.domain.enums.OrderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Market order matching against books of increasing depth.
+ * <p>
+ * Each side holds {@code depth} price levels with one resting order each. Every invocation sweeps
+ * the best {@code sweep} ask levels with a single BUY market order and then rests the consumed
+ * orders again, so the book keeps the same shape and every invocation pays for removing and
+ * re-creating the swept levels. {@code sweepAndReplenish} reads the engine's reusable result and
+ * should show no allocation under the GC profiler; {@code sweepAndReplenishWithReport} adds the
+ * {@link ExecutionReport} copy handed to the I/O threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MatchingEngineBenchmark {
+
+    private static final int LEVEL_QUANTITY = 10;
+    private static final double MID_PRICE = 1_000_000.0;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int depth;
+
+    @Param({"1", "10"})
+    private int sweep;
+
+    private MatchingEngine engine;
+    private LimitOrder[] replenish;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new MatchingEngine("BENCH");
+        for (int i = 1; i <= depth; i++) {
+            engine.addLimitOrder(new LimitOrder(OrderType.BUY, LEVEL_QUANTITY, MID_PRICE - i, "B" + i, "BENCH"));
+            engine.addLimitOrder(new LimitOrder(OrderType.SELL, LEVEL_QUANTITY, MID_PRICE + i, "S" + i, "BENCH"));
+        }
+        //the engine copies an order's fields into its own storage, so the same instances can rest again
+        replenish = new LimitOrder[sweep];
+        for (int i = 0; i < sweep; i++) {
+            replenish[i] = new LimitOrder(OrderType.SELL, LEVEL_QUANTITY, MID_PRICE + i + 1, "S" + (i + 1), "BENCH");
+        }
+    }
+
+    @Benchmark
+    public int sweepAndReplenish() {
+        int executed = engine.executeMarketOrder(OrderType.BUY, sweep * LEVEL_QUANTITY, "bench", 0).getExecutedQuantity();
+        for (LimitOrder order : replenish) {
+            engine.addLimitOrder(order);
+        }
+        return executed;
+    }
+
+    @Benchmark
+    public ExecutionReport sweepAndReplenishWithReport() {
+        ExecutionReport report = engine.processMarketOrder(OrderType.BUY, sweep * LEVEL_QUANTITY, "bench");
+        for (LimitOrder order : replenish) {
+            engine.addLimitOrder(order);
+        }
+        return report;
+    }
+}
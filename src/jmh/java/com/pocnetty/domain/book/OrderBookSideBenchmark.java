@@ -0,0 +1,80 @@
+package com.pocnetty.domain.book;
+
+import com.pocnetty.domain.enums.OrderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closing and reopening price levels anywhere in books of increasing depth.
+ * <p>
+ * The side holds {@code depth} levels with one resting order each. Every invocation removes the
+ * only order of a level picked at random, which closes the level, and rests it again, which reopens
+ * it, so the book keeps its shape and every invocation pays for one level leaving and one joining
+ * the middle of the book. {@code churnTop} does the same within the best ten levels, where most
+ * orders arrive, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class OrderBookSideBenchmark {
+
+    private static final long BEST_PRICE = 1_000_000_000L;
+    private static final int TOP_LEVELS = 10;
+
+    @Param({"100", "10000", "1000000"})
+    private int depth;
+
+    private OrderBookSide side;
+    //the handle of the order resting at BEST_PRICE + offset
+    private int[] orders;
+    private long nextOrderId;
+    private int seed = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        side = new OrderBookSide(OrderType.SELL);
+        orders = new int[depth];
+        for (int offset = 0; offset < depth; offset++) {
+            orders[offset] = side.add(++nextOrderId, BEST_PRICE + offset, 1, "A");
+        }
+    }
+
+    @Benchmark
+    public int churnAnywhere() {
+        return churn(nextRandom() % depth);
+    }
+
+    @Benchmark
+    public int churnTop() {
+        return churn(nextRandom() % Math.min(TOP_LEVELS, depth));
+    }
+
+    private int churn(int offset) {
+        side.remove(orders[offset]);
+        orders[offset] = side.add(++nextOrderId, BEST_PRICE + offset, 1, "A");
+        return orders[offset];
+    }
+
+    private int nextRandom() {
+        //xorshift, cheaper than Random and good enough to spread the levels
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,147 @@
+package com.pocnetty.infrastructure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.transport.TransportType;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders over loopback to a {@link MatchingEngineServer} running in the benchmark JVM: either one
+ * order in flight, the client writing a market order and waiting for its execution report, or
+ * {@value #PIPELINE_DEPTH} orders written with one flush before waiting for all their reports.
+ * <p>
+ * The demo book drains after the first few orders, so the measurement is dominated by the codec,
+ * the event loops and the hand-off to the matching thread; {@link com.pocnetty.domain.MatchingEngineBenchmark}
+ * covers the cost of matching itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    private static final int PIPELINE_DEPTH = 64;
+
+    @Param({"JSON", "BINARY"})
+    private WireProtocol protocol;
+
+    @Param({"NIO", "EPOLL"})
+    private TransportType transport;
+
+    private MatchingEngineServer server;
+    private NioEventLoopGroup clientGroup;
+    private Channel channel;
+    private Object order;
+    private final BlockingQueue<Object> reports = new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        AppProperties.Listener listener = new AppProperties.Listener();
+        listener.setPort(0);
+        listener.setProtocol(protocol);
+        AppProperties.Server serverProperties = new AppProperties.Server();
+        serverProperties.setListeners(List.of(listener));
+        serverProperties.setTransport(transport);
+        AppProperties.Engine engine = new AppProperties.Engine();
+        engine.setDemoBook(true);
+        server = new MatchingEngineServer(serverProperties, engine, new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+
+        MarketOrder marketOrder = new MarketOrder(OrderType.BUY, 1, "1233");
+        order = protocol == WireProtocol.BINARY ? marketOrder : new ObjectMapper().writeValueAsString(marketOrder) + "\n";
+        clientGroup = new NioEventLoopGroup(1);
+        channel = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        if (protocol == WireProtocol.BINARY) {
+                            pipeline.addLast(new BinaryReportDecoder());
+                            pipeline.addLast(new BinaryOrderEncoder());
+                        } else {
+                            pipeline.addLast(new DelimiterBasedFrameDecoder(8192, Unpooled.wrappedBuffer("\n".getBytes())));
+                            pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
+                            pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+                        }
+                        pipeline.addLast(new SimpleChannelInboundHandler<Object>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, Object report) {
+                                reports.add(report);
+                            }
+                        });
+                    }
+                })
+                .connect("localhost", server.boundPorts().get(0))
+                .sync()
+                .channel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channel.close().sync();
+        clientGroup.shutdownGracefully().sync();
+        server.stop();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws InterruptedException {
+        channel.writeAndFlush(order);
+        return reports.take();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public Object pipelined() throws InterruptedException {
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            channel.write(order);
+        }
+        channel.flush();
+        Object report = null;
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            report = reports.take();
+        }
+        return report;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a {@link MarketOrder} and encoding an {@link ExecutionReport} through the same channel
+ * handlers the server installs, for the JSON codec and, as a baseline, the binary one.
+ * <p>
+ * The handlers run in an {@link EmbeddedChannel}, so the cost includes pipeline traversal but no I/O.
+ * The {@code jsonViaString} benchmarks keep the JSON pipeline as it was before the codec bound
+ * bytes directly: a {@link String} per line both ways, decoded and encoded by Netty's string
+ * codecs, and the root type resolved on every call. Run with {@code -prof gc} to compare the
+ * bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    private EmbeddedChannel jsonDecoder;
+    private EmbeddedChannel jsonEncoder;
+    private EmbeddedChannel jsonViaStringDecoder;
+    private EmbeddedChannel jsonViaStringEncoder;
+    private EmbeddedChannel binaryDecoder;
+    private EmbeddedChannel binaryEncoder;
+    private ByteBuf jsonOrder;
+    private ByteBuf binaryOrder;
+    private ExecutionReport report;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MarketOrder order = new MarketOrder(OrderType.BUY, 15, "1233", "AAPL", 42);
+        report = new ExecutionReport(15, 105.6667, 15, 0, "1233", "AAPL", "FILLED",
+                new double[]{105.0, 107.0}, new int[]{10, 5}, 42);
+
+        //framed as the server frames it, delimiter stripped, from a direct buffer
+        byte[] line = new ObjectMapper().writeValueAsBytes(order);
+        jsonOrder = Unpooled.unreleasableBuffer(Unpooled.directBuffer(line.length).writeBytes(line));
+        jsonDecoder = new EmbeddedChannel(new JsonOrderDecoder());
+        jsonEncoder = new EmbeddedChannel(new JsonReportEncoder());
+        jsonViaStringDecoder = new EmbeddedChannel(new StringDecoder(CharsetUtil.UTF_8), new StringOrderDecoder());
+        jsonViaStringEncoder = new EmbeddedChannel(new StringEncoder(CharsetUtil.UTF_8), new StringReportEncoder());
+
+        EmbeddedChannel orderEncoder = new EmbeddedChannel(new BinaryOrderEncoder());
+        orderEncoder.writeOutbound(order);
+        ByteBuf encoded = orderEncoder.readOutbound();
+        binaryOrder = Unpooled.unreleasableBuffer(Unpooled.directBuffer(encoded.readableBytes()).writeBytes(encoded));
+        encoded.release();
+        orderEncoder.finishAndReleaseAll();
+        binaryDecoder = new EmbeddedChannel(new BinaryOrderDecoder());
+        binaryEncoder = new EmbeddedChannel(new BinaryReportEncoder());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jsonDecoder.finishAndReleaseAll();
+        jsonEncoder.finishAndReleaseAll();
+        jsonViaStringDecoder.finishAndReleaseAll();
+        jsonViaStringEncoder.finishAndReleaseAll();
+        binaryDecoder.finishAndReleaseAll();
+        binaryEncoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public Object jsonDecodeMarketOrder() {
+        jsonDecoder.writeInbound(jsonOrder.duplicate());
+        return jsonDecoder.readInbound();
+    }
+
+    @Benchmark
+    public int jsonEncodeExecutionReport() {
+        jsonEncoder.writeOutbound(report);
+        return release(jsonEncoder.readOutbound());
+    }
+
+    @Benchmark
+    public Object jsonViaStringDecodeMarketOrder() {
+        jsonViaStringDecoder.writeInbound(jsonOrder.duplicate());
+        return jsonViaStringDecoder.readInbound();
+    }
+
+    @Benchmark
+    public int jsonViaStringEncodeExecutionReport() {
+        jsonViaStringEncoder.writeOutbound(report);
+        return release(jsonViaStringEncoder.readOutbound());
+    }
+
+    @Benchmark
+    public Object binaryDecodeMarketOrder() {
+        binaryDecoder.writeInbound(binaryOrder.duplicate());
+        return binaryDecoder.readInbound();
+    }
+
+    @Benchmark
+    public int binaryEncodeExecutionReport() {
+        binaryEncoder.writeOutbound(report);
+        return release(binaryEncoder.readOutbound());
+    }
+
+    private static int release(ByteBuf buffer) {
+        int length = buffer.readableBytes();
+        buffer.release();
+        return length;
+    }
+
+    private static final class StringOrderDecoder extends MessageToMessageDecoder<String> {
+        private static final ObjectMapper mapper = new ObjectMapper();
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, String json, List<Object> out) throws Exception {
+            out.add(mapper.readValue(json, OrderRequest.class));
+        }
+    }
+
+    private static final class StringReportEncoder extends MessageToMessageEncoder<ExecutionReport> {
+        private static final ObjectMapper mapper = new ObjectMapper();
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ExecutionReport report, List<Object> out) throws Exception {
+            out.add(mapper.writeValueAsString(report) + "\n");
+        }
+    }
+}
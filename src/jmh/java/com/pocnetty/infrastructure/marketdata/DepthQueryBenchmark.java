@@ -0,0 +1,129 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MarketDataListener;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.domain.enums.OrderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency of the matching thread while depth queries read the same book from another thread.
+ * <p>
+ * {@code match} plays the matching thread: every invocation rests a limit order one level behind
+ * the best bid, crosses the spread with a small market order and cancels the rested order, then
+ * ends the batch, as {@code MatchingCore} does. Each event changes a cached level, so every batch
+ * recopies the book: the worst case for the cache. {@code query} plays an event loop answering one
+ * depth query per call.
+ * <p>
+ * {@code mode} is {@code none} for a book without a depth cache and no reader, {@code cached} for
+ * the cache kept up to date but never read, {@code polled10k} for the cache read 10,000 times a
+ * second and {@code polledFlat} for the cache read as fast as the query thread can. The difference
+ * between {@code none} and {@code cached} is what the cache costs the matching thread, and the
+ * difference between {@code cached} and the polled modes is what readers do to it.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class DepthQueryBenchmark {
+
+    private static final String SYMBOL = "BENCH";
+    private static final int EVENTS = 3;
+    private static final int LEVELS = 100;
+    private static final int DEPTH_LEVELS = 10;
+    private static final double MID_PRICE = 1_000.0;
+
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 10_000;
+
+    @Param({"none", "cached", "polled10k", "polledFlat"})
+    private String mode;
+
+    private MatchingEngine engine;
+    private DepthCache cache;
+    private long restPrice;
+    private long sequence;
+    private boolean polled;
+    private long intervalNanos;
+    private long nextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new MatchingEngine(SYMBOL);
+        for (int i = 1; i <= LEVELS; i++) {
+            engine.executeLimitOrder(OrderType.BUY, 1_000_000, Prices.toTicks(MID_PRICE - i), "1", 0);
+            engine.executeLimitOrder(OrderType.SELL, 1_000_000, Prices.toTicks(MID_PRICE + i), "2", 0);
+        }
+        cache = new DepthCache(List.of(engine), DEPTH_LEVELS);
+        cache.publishAll(0);
+        engine.setMarketDataListener(mode.equals("none") ? MarketDataListener.NONE : cache);
+        restPrice = Prices.toTicks(MID_PRICE - 2);
+        polled = mode.startsWith("polled");
+        intervalNanos = mode.equals("polled10k") ? POLL_INTERVAL_NANOS : 0;
+    }
+
+    @Benchmark
+    @Group("depth")
+    @GroupThreads(1)
+    @OperationsPerInvocation(EVENTS)
+    public long match() {
+        long orderId = engine.executeLimitOrder(OrderType.BUY, 10, restPrice, "3", 0).getOrderId();
+        engine.executeMarketOrder(OrderType.BUY, 1, "3", 0);
+        long leaves = engine.executeCancel(orderId, "3", 0).getLeavesQuantity();
+        sequence += EVENTS;
+        if (!mode.equals("none")) {
+            cache.flush(sequence);
+        }
+        return leaves + orderId;
+    }
+
+    @Benchmark
+    @Group("depth")
+    @GroupThreads(1)
+    public long query() {
+        if (!polled) {
+            //keeps the second thread of the group parked, so both modes run on the same number of threads
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            return 0;
+        }
+        if (intervalNanos > 0) {
+            long now = System.nanoTime();
+            nextQuery = Math.max(nextQuery + intervalNanos, now - intervalNanos);
+            if (nextQuery > now) {
+                LockSupport.parkNanos(nextQuery - now);
+            }
+        }
+        //what the query handler does before the encoder walks the levels
+        BookDepth depth = cache.get(SYMBOL);
+        DepthReport report = new DepthReport(0, depth, DEPTH_LEVELS);
+        long quantity = 0;
+        for (int i = 0; i < report.bidCount(); i++) {
+            quantity += depth.getBids().getQuantities()[i];
+        }
+        for (int i = 0; i < report.askCount(); i++) {
+            quantity += depth.getAsks().getQuantities()[i];
+        }
+        return quantity + depth.getSequence();
+    }
+}
@@ -0,0 +1,145 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.LENGTH_FIELD_SIZE;
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.LEVEL_UPDATE_LENGTH;
+
+/**
+ * One batch of level updates published from the benchmark thread, standing in for a matching
+ * thread, until every subscriber has received it.
+ * <p>
+ * Subscribers are in-JVM {@link LocalChannel}s, so the measurement is the publisher's encoding and
+ * the fan-out over the event loops, without the kernel's share of a real socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketDataFanOutBenchmark {
+
+    private static final int EVENT_LOOPS = 4;
+
+    @Param({"1", "100", "1000"})
+    private int subscribers;
+
+    @Param({"16"})
+    private int updatesPerBatch;
+
+    private final LongAdder receivedBytes = new LongAdder();
+    private final List<Channel> clients = new ArrayList<>();
+    private MarketDataFeed feed;
+    private MarketDataPublisher publisher;
+    private DefaultEventLoopGroup serverGroup;
+    private DefaultEventLoopGroup clientGroup;
+    private Channel server;
+    private long expectedBytes;
+    private long price;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        feed = new MarketDataFeed(PooledByteBufAllocator.DEFAULT);
+        publisher = new MarketDataPublisher(feed, List.of(new MatchingEngine()));
+        serverGroup = new DefaultEventLoopGroup(EVENT_LOOPS);
+        clientGroup = new DefaultEventLoopGroup(EVENT_LOOPS);
+        LocalAddress address = new LocalAddress("market-data-fan-out");
+        server = new ServerBootstrap()
+                .group(serverGroup)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new MarketDataSubscriber(feed));
+                    }
+                })
+                .bind(address)
+                .sync()
+                .channel();
+        ChannelHandler counter = new ByteCounter();
+        for (int i = 0; i < subscribers; i++) {
+            clients.add(new Bootstrap().group(clientGroup).channel(LocalChannel.class).handler(counter).connect(address).sync().channel());
+        }
+        while (feed.subscriberCount() < subscribers) {
+            Thread.sleep(1);
+        }
+        //let the refresh sent to the new subscribers arrive before counting
+        publisher.flush();
+        long received;
+        do {
+            received = receivedBytes.sum();
+            Thread.sleep(100);
+        } while (receivedBytes.sum() != received);
+        expectedBytes = received;
+        price = Prices.toTicks(100.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (Channel client : clients) {
+            client.close().sync();
+        }
+        server.close().sync();
+        clientGroup.shutdownGracefully().sync();
+        serverGroup.shutdownGracefully().sync();
+        publisher.close();
+    }
+
+    @Benchmark
+    public long publishBatch() {
+        for (int i = 0; i < updatesPerBatch; i++) {
+            publisher.onLevelUpdate(MatchingEngine.DEFAULT_SYMBOL, OrderType.BUY, price + i, 100, 1);
+        }
+        publisher.flush();
+        expectedBytes += (long) updatesPerBatch * (LENGTH_FIELD_SIZE + LEVEL_UPDATE_LENGTH) * subscribers;
+        long received;
+        while ((received = receivedBytes.sum()) < expectedBytes) {
+            Thread.onSpinWait();
+        }
+        return received;
+    }
+
+    @ChannelHandler.Sharable
+    private final class ByteCounter extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf frames = (ByteBuf) msg;
+            receivedBytes.add(frames.readableBytes());
+            frames.release();
+        }
+    }
+}
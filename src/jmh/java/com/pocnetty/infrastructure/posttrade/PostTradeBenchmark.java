@@ -0,0 +1,112 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a thread that produces execution reports, such as a matching thread or an event loop,
+ * spends per report on a slow post-trade consumer.
+ * <p>
+ * Each report costs the producer {@code workMicros} of spinning first, standing in for the matching
+ * that produced it, so reports arrive at a fixed rate the dispatcher's lanes keep up with instead of
+ * the producer outrunning them and timing the drop path. {@code none} has no consumer, so its score
+ * is the work alone; {@code inline} runs the consumer on the producing thread, as a side effect
+ * written in a channel handler would, and {@code dispatched} hands the report to a
+ * {@link PostTradeDispatcher}. The difference from {@code none} is what the consumer costs the
+ * producer. Reports the lanes had to drop are reported as the {@code dropped} counter, which should
+ * stay at zero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class PostTradeBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    @Param({"none", "inline", "dispatched"})
+    private String mode;
+
+    @Param({"50"})
+    private long delayMicros;
+
+    @Param({"10"})
+    private long workMicros;
+
+    private PostTradeConsumer consumer;
+    private PostTradeDispatcher dispatcher;
+    private ExecutionReport[] reports;
+    private int next;
+    private long workNanos;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Drops {
+
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            dropped = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        consumer = new SyntheticDelayConsumer(delayMicros);
+        workNanos = TimeUnit.MICROSECONDS.toNanos(workMicros);
+        if (mode.equals("dispatched")) {
+            dispatcher = new PostTradeDispatcher(List.of(consumer), 16, 65536);
+        }
+        reports = new ExecutionReport[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            reports[i] = ExecutionReport.rejected(1, String.valueOf(i), "DEFAULT", i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    @Benchmark
+    public Object produce(Drops drops) throws Exception {
+        long workDone = System.nanoTime() + workNanos;
+        while (System.nanoTime() < workDone) {
+            Thread.onSpinWait();
+        }
+        ExecutionReport report = reports[next];
+        next = next + 1 == ACCOUNTS ? 0 : next + 1;
+        switch (mode) {
+            case "inline" -> consumer.accept(report);
+            case "dispatched" -> {
+                if (!dispatcher.dispatch(report)) {
+                    drops.dropped++;
+                }
+            }
+            default -> {
+            }
+        }
+        return report;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pocnetty.infrastructure.risk;
+
+import com.pocnetty.domain.MatchResult;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import com.pocnetty.infrastructure.config.AppProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency the pre-trade risk check adds to the matching thread.
+ * <p>
+ * Every invocation enters a limit order for the next of {@code accounts} accounts, one level
+ * behind the best bid so it rests, crosses the spread with a small market order from the same
+ * account and cancels the rested order, so each of the three events touches the book, a fill and
+ * the account's state. {@code match} applies them directly, {@code checkAndMatch} runs each through
+ * {@link PreTradeRisk#check} first and applies its result afterwards, as the matching thread does
+ * with every limit enabled; the difference per operation is the cost of the check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class PreTradeRiskBenchmark {
+
+    private static final int EVENTS = 3;
+    private static final int LEVELS = 100;
+    private static final double MID_PRICE = 1_000.0;
+
+    @Param({"100", "100000"})
+    private int accounts;
+
+    private MatchingEngine engine;
+    private PreTradeRisk risk;
+    private String[] accountIds;
+    private long restPrice;
+    private long now;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new MatchingEngine("BENCH");
+        for (int i = 1; i <= LEVELS; i++) {
+            engine.executeLimitOrder(OrderType.BUY, 1_000_000, Prices.toTicks(MID_PRICE - i), "1", 0);
+            engine.executeLimitOrder(OrderType.SELL, 1_000_000, Prices.toTicks(MID_PRICE + i), "2", 0);
+        }
+        AppProperties.Risk limits = new AppProperties.Risk();
+        limits.setMaxOrderQuantity(1_000_000);
+        limits.setMaxOrderNotional(1e12);
+        limits.setPriceBandBps(1_000);
+        limits.setMaxOrdersPerSecond(Integer.MAX_VALUE);
+        limits.setMaxPosition(Long.MAX_VALUE / 2);
+        limits.setMaxOpenNotional(1e15);
+        limits.setMaxAccounts(accounts);
+        risk = new PreTradeRisk(limits, List.of(engine));
+        risk.track(List.of(engine));
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = String.valueOf(1_000 + i);
+            //gives every account its slot up front, so the measurement does not include the first order of each
+            risk.check(engine, OrderAction.NEW_LIMIT, OrderType.BUY, 1, Prices.toTicks(MID_PRICE - 2), accountIds[i], 0, 0);
+        }
+        restPrice = Prices.toTicks(MID_PRICE - 2);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long match() {
+        String account = nextAccount();
+        long orderId = engine.executeLimitOrder(OrderType.BUY, 10, restPrice, account, 0).getOrderId();
+        engine.executeMarketOrder(OrderType.BUY, 1, account, 0);
+        return engine.executeCancel(orderId, account, 0).getLeavesQuantity() + orderId;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long checkAndMatch() {
+        String account = nextAccount();
+        now += 1_000;
+        long orderId = 0;
+        if (risk.check(engine, OrderAction.NEW_LIMIT, OrderType.BUY, 10, restPrice, account, 0, now) == null) {
+            MatchResult result = engine.executeLimitOrder(OrderType.BUY, 10, restPrice, account, 0);
+            orderId = result.getOrderId();
+            risk.onResult(OrderAction.NEW_LIMIT, OrderType.BUY, 10, restPrice, result);
+        }
+        if (risk.check(engine, OrderAction.MARKET, OrderType.BUY, 1, 0, account, 0, now) == null) {
+            risk.onResult(OrderAction.MARKET, OrderType.BUY, 1, 0, engine.executeMarketOrder(OrderType.BUY, 1, account, 0));
+        }
+        RejectReason reason = risk.check(engine, OrderAction.CANCEL, null, 0, 0, account, orderId, now);
+        if (reason == null) {
+            MatchResult result = engine.executeCancel(orderId, account, 0);
+            risk.onResult(OrderAction.CANCEL, null, 0, 0, result);
+            return result.getLeavesQuantity() + orderId;
+        }
+        return reason.ordinal();
+    }
+
+    private String nextAccount() {
+        String account = accountIds[next];
+        next = next + 1 == accounts ? 0 : next + 1;
+        return account;
+    }
+}
@@ -2,31 +2,55 @@ package com.pocnetty;
 
 import com.pocnetty.infrastructure.MatchingEngineClient;
 import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.loadgen.LoadGenerator;
+import com.pocnetty.infrastructure.replication.ReplicationRole;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
 @Slf4j
 @ConditionalOnProperty(name = "app.runServer", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AppProperties.class)
 public class PocNettyApplication implements CommandLineRunner {
+    private final AppProperties properties;
+
+    public PocNettyApplication(AppProperties properties) {
+        this.properties = properties;
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(PocNettyApplication.class, args);
     }
 
     @Override
     public void run(String... args) throws Exception {
-        int port = 8081;
+        AppProperties.Listener listener = properties.getServer().getListeners().get(0);
         new Thread(() -> {
             try {
-                new MatchingEngineServer(port).run();
+                new MatchingEngineServer(properties.getServer(), properties.getEngine(),
+                        properties.getJournal(), properties.getSnapshot()).run();
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
         }).start();
         Thread.sleep(1000);
-        new MatchingEngineClient("localhost", port).run();
+        if (properties.getServer().getReplication().getRole() == ReplicationRole.STANDBY) {
+            //nothing listens for orders until the standby takes over
+            return;
+        }
+        AppProperties.LoadGenerator load = properties.getLoadGenerator();
+        if (load.isEnabled()) {
+            new LoadGenerator(load.getHost(),
+                    load.getPort() == null ? listener.getPort() : load.getPort(),
+                    load.getProtocol() == null ? listener.getProtocol() : load.getProtocol(),
+                    load).run();
+        } else {
+            new MatchingEngineClient("localhost", listener.getPort(), listener.getProtocol()).run();
+        }
     }
 }
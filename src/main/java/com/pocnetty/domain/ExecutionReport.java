@@ -1,19 +1,105 @@
 package com.pocnetty.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pocnetty.domain.enums.RejectReason;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.ToString;
 
 @Getter
+@ToString
 @AllArgsConstructor
 public class ExecutionReport {
 
     private static final String REPORT_TYPE = "exe_report";
+    private static final double[] NO_FILL_PRICES = new double[0];
+    private static final int[] NO_FILL_QUANTITIES = new int[0];
+
     private int initialQuantity;
-    private Double executedPrice;
-    private Integer executedQuantity;
+    /**
+     * Volume weighted average price across all fills, or {@code 0} when nothing executed.
+     */
+    private double executedPrice;
+    private int executedQuantity;
+    private int leavesQuantity;
     private String accountId;
+    private String symbol;
     private String status;
+    /**
+     * Price of each fill, one entry per price level swept, best price first.
+     */
+    private double[] fillPrices;
+    /**
+     * Quantity of each fill, aligned with {@link #fillPrices}.
+     */
+    private int[] fillQuantities;
+    /**
+     * Echo of the client order id of the order this report answers, {@code 0} when it carried none.
+     */
+    private long clientOrderId;
+    /**
+     * Engine-assigned id of the limit order this report is about, {@code 0} for market orders.
+     */
+    private long orderId;
+    /**
+     * Why the pre-trade risk check refused the order, {@code null} on every other report.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private RejectReason rejectReason;
+
+    public ExecutionReport(int initialQuantity, double executedPrice, int executedQuantity, int leavesQuantity, String accountId,
+                           String symbol, String status, double[] fillPrices, int[] fillQuantities, long clientOrderId, long orderId) {
+        this(initialQuantity, executedPrice, executedQuantity, leavesQuantity, accountId, symbol, status,
+                fillPrices, fillQuantities, clientOrderId, orderId, null);
+    }
+
+    public ExecutionReport(int initialQuantity, double executedPrice, int executedQuantity, String accountId, String status) {
+        this(initialQuantity, executedPrice, executedQuantity, accountId, null, status);
+    }
+
+    public ExecutionReport(int initialQuantity, double executedPrice, int executedQuantity, String accountId, String symbol, String status) {
+        this(initialQuantity, executedPrice, executedQuantity, initialQuantity - executedQuantity,
+                accountId, symbol, status, NO_FILL_PRICES, NO_FILL_QUANTITIES, 0, 0);
+    }
+
+    public ExecutionReport(int initialQuantity, double executedPrice, int executedQuantity, int leavesQuantity, String accountId,
+                           String symbol, String status, double[] fillPrices, int[] fillQuantities, long clientOrderId) {
+        this(initialQuantity, executedPrice, executedQuantity, leavesQuantity, accountId, symbol, status,
+                fillPrices, fillQuantities, clientOrderId, 0);
+    }
+
+    /**
+     * @return a report for an order of which nothing was executed
+     */
+    public static ExecutionReport rejected(int quantity, String accountId, String symbol, long clientOrderId) {
+        return rejected(quantity, accountId, symbol, clientOrderId, 0);
+    }
+
+    /**
+     * @return a report for a request on a resting order that could not be applied
+     */
+    public static ExecutionReport rejected(int quantity, String accountId, String symbol, long clientOrderId, long orderId) {
+        return new ExecutionReport(quantity, 0, 0, quantity, accountId, symbol, "REJECTED",
+                NO_FILL_PRICES, NO_FILL_QUANTITIES, clientOrderId, orderId);
+    }
+
+    /**
+     * @return a report for an order refused by the pre-trade risk check
+     */
+    public static ExecutionReport rejected(int quantity, String accountId, String symbol, long clientOrderId, long orderId,
+                                           RejectReason reason) {
+        return new ExecutionReport(quantity, 0, 0, quantity, accountId, symbol, "REJECTED",
+                NO_FILL_PRICES, NO_FILL_QUANTITIES, clientOrderId, orderId, reason);
+    }
+
+    /**
+     * @return a report for an order refused because its connection has too many orders in flight
+     */
+    public static ExecutionReport throttled(int quantity, String accountId, String symbol, long clientOrderId, long orderId) {
+        return new ExecutionReport(quantity, 0, 0, quantity, accountId, symbol, "THROTTLED",
+                NO_FILL_PRICES, NO_FILL_QUANTITIES, clientOrderId, orderId);
+    }
 
     @JsonProperty("type")
     public String getType() {
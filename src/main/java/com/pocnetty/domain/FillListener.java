@@ -0,0 +1,24 @@
+package com.pocnetty.domain;
+
+import com.pocnetty.domain.enums.OrderType;
+
+/**
+ * Receives every execution of a resting order of a {@link MatchingEngine}, which is how the owners
+ * of resting orders learn about fills that the report of the incoming order does not cover.
+ * <p>
+ * Callbacks run on the thread that owns the engine, in the middle of matching, so implementations
+ * must not block; prices are {@link Prices ticks}.
+ */
+public interface FillListener {
+
+    FillListener NONE = (symbol, accountId, side, price, quantity) -> {
+    };
+
+    /**
+     * A resting order executed against an incoming order.
+     *
+     * @param accountId the account owning the resting order
+     * @param side      the side of the resting order
+     */
+    void onFill(String symbol, String accountId, OrderType side, long price, int quantity);
+}
@@ -0,0 +1,58 @@
+package com.pocnetty.domain;
+
+import com.pocnetty.domain.enums.OrderType;
+
+/**
+ * Receives the book changes and trades of a {@link MatchingEngine} as they happen.
+ * <p>
+ * Callbacks run on the thread that owns the engine, in the middle of matching, so implementations
+ * must not block and must copy whatever they keep: the symbol is the engine's own instance and
+ * prices are {@link Prices ticks}.
+ */
+public interface MarketDataListener {
+
+    MarketDataListener NONE = new MarketDataListener() {
+        @Override
+        public void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount) {
+        }
+
+        @Override
+        public void onTrade(String symbol, OrderType aggressorSide, long price, int quantity) {
+        }
+    };
+
+    /**
+     * A price level changed; carries the level's new state rather than the difference.
+     *
+     * @param quantity   the total quantity now resting at the price, {@code 0} once the level is gone
+     * @param orderCount the number of orders now resting at the price
+     */
+    void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount);
+
+    /**
+     * An incoming order executed against one price level; one call per level swept.
+     *
+     * @param aggressorSide the side of the incoming order
+     */
+    void onTrade(String symbol, OrderType aggressorSide, long price, int quantity);
+
+    /**
+     * @return a listener passing every callback to this listener, then to {@code next}
+     */
+    default MarketDataListener andThen(MarketDataListener next) {
+        MarketDataListener first = this;
+        return new MarketDataListener() {
+            @Override
+            public void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount) {
+                first.onLevelUpdate(symbol, side, price, quantity, orderCount);
+                next.onLevelUpdate(symbol, side, price, quantity, orderCount);
+            }
+
+            @Override
+            public void onTrade(String symbol, OrderType aggressorSide, long price, int quantity) {
+                first.onTrade(symbol, aggressorSide, price, quantity);
+                next.onTrade(symbol, aggressorSide, price, quantity);
+            }
+        };
+    }
+}
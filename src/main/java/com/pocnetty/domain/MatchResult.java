@@ -0,0 +1,143 @@
+package com.pocnetty.domain;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of the last request applied to a {@link MatchingEngine}.
+ * <p>
+ * The engine owns a single instance and overwrites it on every request, so matching fills it with
+ * primitives only and allocates nothing. Read it before the next request, or call
+ * {@link #toReport()} to copy it into an {@link ExecutionReport} that can be handed to another thread.
+ */
+public final class MatchResult {
+
+    private final String symbol;
+    private String status;
+    private int initialQuantity;
+    private int leavesQuantity;
+    private String accountId;
+    private long clientOrderId;
+    private long orderId;
+    private long[] fillPrices = new long[16];
+    private int[] fillQuantities = new int[16];
+    private int fillCount;
+    private int executionCount;
+    private int executedQuantity;
+    private double notional;
+
+    MatchResult(String symbol) {
+        this.symbol = symbol;
+    }
+
+    void reset(int initialQuantity, String accountId, long clientOrderId, long orderId) {
+        this.initialQuantity = initialQuantity;
+        this.accountId = accountId;
+        this.clientOrderId = clientOrderId;
+        this.orderId = orderId;
+        this.fillCount = 0;
+        this.executionCount = 0;
+        this.executedQuantity = 0;
+        this.notional = 0;
+    }
+
+    void addFill(long price, int quantity) {
+        if (fillCount == fillPrices.length) {
+            fillPrices = Arrays.copyOf(fillPrices, fillCount << 1);
+            fillQuantities = Arrays.copyOf(fillQuantities, fillCount << 1);
+        }
+        fillPrices[fillCount] = price;
+        fillQuantities[fillCount] = quantity;
+        fillCount++;
+        executedQuantity += quantity;
+        notional += (double) price * quantity;
+    }
+
+    void countExecution() {
+        executionCount++;
+    }
+
+    MatchResult complete(String status, int leavesQuantity) {
+        this.status = status;
+        this.leavesQuantity = leavesQuantity;
+        return this;
+    }
+
+    MatchResult reject(int initialQuantity, String accountId, long clientOrderId, long orderId) {
+        reset(initialQuantity, accountId, clientOrderId, orderId);
+        return complete("REJECTED", initialQuantity);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getInitialQuantity() {
+        return initialQuantity;
+    }
+
+    public int getExecutedQuantity() {
+        return executedQuantity;
+    }
+
+    /**
+     * @return the volume weighted average price of the fills, or {@code 0} when nothing executed
+     */
+    public double getExecutedPrice() {
+        return executedQuantity == 0 ? 0 : notional / executedQuantity / Prices.SCALE;
+    }
+
+    public int getLeavesQuantity() {
+        return leavesQuantity;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getClientOrderId() {
+        return clientOrderId;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public int getFillCount() {
+        return fillCount;
+    }
+
+    /**
+     * @return the number of resting orders the order executed against, which can exceed the fills
+     * as a level may hold several of them
+     */
+    public int getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return the price in ticks of the fill at {@code index}, one fill per price level swept, best first
+     */
+    public long getFillPrice(int index) {
+        return fillPrices[index];
+    }
+
+    public int getFillQuantity(int index) {
+        return fillQuantities[index];
+    }
+
+    /**
+     * @return a copy of this result as an immutable report
+     */
+    public ExecutionReport toReport() {
+        double[] prices = new double[fillCount];
+        for (int i = 0; i < fillCount; i++) {
+            prices[i] = Prices.toPrice(fillPrices[i]);
+        }
+        return new ExecutionReport(initialQuantity, getExecutedPrice(), executedQuantity, leavesQuantity, accountId, symbol,
+                status, prices, Arrays.copyOf(fillQuantities, fillCount), clientOrderId, orderId);
+    }
+}
@@ -1,39 +1,220 @@
 package com.pocnetty.domain;
 
+import com.pocnetty.domain.book.BookCapture;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.book.LongIntHashMap;
+import com.pocnetty.domain.book.OrderBookSide;
+import com.pocnetty.domain.book.OrderStore;
 import com.pocnetty.domain.dto.LimitOrder;
 import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderAction;
 import com.pocnetty.domain.enums.OrderType;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Objects;
 
+import static com.pocnetty.domain.book.OrderStore.NONE;
+
+/**
+ * Order book and matching rules for one instrument.
+ * <p>
+ * The engine is not thread-safe: it is owned by a single matching thread (see
+ * {@code MatchingCore}), which is what keeps the book consistent without locks.
+ * <p>
+ * Every limit order that rests on the book gets an engine-assigned order id, numbered in arrival
+ * order so replaying the same input assigns the same ids. Resting orders are indexed by id in a
+ * primitive long-keyed map, so cancels and replaces find their order in O(1) without boxing.
+ * <p>
+ * Prices are {@link Prices ticks} and resting orders live in a shared {@link OrderStore}, so the
+ * {@code execute*} methods allocate nothing once the book has reached its working size: each
+ * overwrites the engine's {@link MatchResult}. The {@code process*} methods wrap them and return an
+ * {@link ExecutionReport} copy instead.
+ * <p>
+ * Every change to a price level and every execution is also reported, as it happens, to the
+ * engine's {@link MarketDataListener}, and every execution of a resting order to its {@link FillListener}.
+ */
 public class MatchingEngine {
 
-    private final PriorityBlockingQueue<LimitOrder> buyOrders = new PriorityBlockingQueue<>(
-            11,
-            Comparator.comparingDouble(LimitOrder::getPrice).reversed()
-                    .thenComparingLong(LimitOrder::getTimestamp)
-    );
+    public static final String DEFAULT_SYMBOL = "DEFAULT";
+    /**
+     * Most price levels one order may execute against, which bounds the fills of one report; what
+     * is left of an order once it reaches the limit is cancelled.
+     */
+    public static final int MAX_SWEEP_LEVELS = 500;
 
+    private final String symbol;
+    private final OrderStore orders = new OrderStore();
+    private final OrderBookSide buyOrders = new OrderBookSide(OrderType.BUY, orders);
+    private final OrderBookSide sellOrders = new OrderBookSide(OrderType.SELL, orders);
+    private final LongIntHashMap ordersById = new LongIntHashMap(1024, NONE);
+    private final MatchResult result;
+    private MarketDataListener marketData = MarketDataListener.NONE;
+    private FillListener fills = FillListener.NONE;
+    private long nextOrderId = 1;
 
-    private final PriorityBlockingQueue<LimitOrder> sellOrders = new PriorityBlockingQueue<>(
-            11,
-            Comparator.comparingDouble(LimitOrder::getPrice)
-                    .thenComparingLong(LimitOrder::getTimestamp)
-    );
+    public MatchingEngine() {
+        this(DEFAULT_SYMBOL);
+    }
 
-    //enable fine tuning in locking for specific buys and sells
-    private final Object buyLock = new Object();
-    private final Object sellLock = new Object();
+    public MatchingEngine(String symbol) {
+        this.symbol = symbol;
+        this.result = new MatchResult(symbol);
+    }
 
-    public MatchingEngine() {
-        buyOrders.offer(new LimitOrder(OrderType.BUY, 10, 105.0, "B1001"));
-        buyOrders.offer(new LimitOrder(OrderType.BUY, 5, 104.0, "B1002"));
-        sellOrders.offer(new LimitOrder(OrderType.SELL, 10, 106.0, "S1001"));
-        sellOrders.offer(new LimitOrder(OrderType.SELL, 5, 107.0, "S1002"));
+    /**
+     * Creates an engine whose book starts with a small fixed set of resting orders, for demos and tests.
+     * <p>
+     * The seed is deterministic, so replaying a journal on top of it rebuilds the same book.
+     *
+     * @param symbol the instrument traded by the engine
+     * @return an engine with two BUY levels (105.0 x 10, 104.0 x 5) and two SELL levels (106.0 x 10, 107.0 x 5)
+     */
+    public static MatchingEngine withDemoBook(String symbol) {
+        MatchingEngine engine = new MatchingEngine(symbol);
+        engine.addLimitOrder(new LimitOrder(OrderType.BUY, 10, 105.0, "B1001", symbol));
+        engine.addLimitOrder(new LimitOrder(OrderType.BUY, 5, 104.0, "B1002", symbol));
+        engine.addLimitOrder(new LimitOrder(OrderType.SELL, 10, 106.0, "S1001", symbol));
+        engine.addLimitOrder(new LimitOrder(OrderType.SELL, 5, 107.0, "S1002", symbol));
+        return engine;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Rests a limit order on its side of the book without matching it.
+     *
+     * @param limitOrder the order to add
+     * @return the order id assigned to the resting order
+     */
+    public long addLimitOrder(LimitOrder limitOrder) {
+        long orderId = nextOrderId++;
+        rest(limitOrder.getType(), orderId, Prices.toTicks(limitOrder.getPrice()), limitOrder.getQuantity(), limitOrder.getAccountId());
+        return orderId;
+    }
+
+    /**
+     * @return the handle of the resting order with the given id in {@link #orders()}, or
+     * {@link OrderStore#NONE} when it is filled, cancelled or unknown
+     */
+    public int findOrder(long orderId) {
+        return ordersById.get(orderId);
+    }
+
+    /**
+     * @return the resting orders of both sides, addressed by the handles of {@link #findOrder(long)}
+     */
+    public OrderStore orders() {
+        return orders;
+    }
+
+    /**
+     * @param marketData receives every book change and trade from now on; {@link MarketDataListener#NONE} to stop
+     */
+    public void setMarketDataListener(MarketDataListener marketData) {
+        this.marketData = marketData;
+    }
+
+    /**
+     * @param fills receives every execution of a resting order from now on; {@link FillListener#NONE} to stop
+     */
+    public void setFillListener(FillListener fills) {
+        this.fills = fills;
+    }
+
+    public OrderBookSide getBuyOrders() {
+        return buyOrders;
+    }
+
+    public OrderBookSide getSellOrders() {
+        return sellOrders;
+    }
+
+    private void rest(OrderType type, long orderId, long price, int quantity, String accountId) {
+        OrderBookSide bookSide = sideOf(type);
+        ordersById.put(orderId, bookSide.add(orderId, price, quantity, accountId));
+        publishLevel(bookSide, price);
+    }
+
+    private void publishLevel(OrderBookSide bookSide, long price) {
+        if (marketData == MarketDataListener.NONE) {
+            return;
+        }
+        int level = bookSide.findLevel(price);
+        if (level == NONE) {
+            marketData.onLevelUpdate(symbol, bookSide.getSide(), price, 0, 0);
+        } else {
+            marketData.onLevelUpdate(symbol, bookSide.getSide(), price, bookSide.levelQuantity(level), bookSide.levelOrderCount(level));
+        }
+    }
+
+    private OrderBookSide sideOf(OrderType type) {
+        return type == OrderType.BUY ? buyOrders : sellOrders;
+    }
+
+    private OrderBookSide opposite(OrderType type) {
+        return type == OrderType.BUY ? sellOrders : buyOrders;
+    }
+
+    /**
+     * Copies both sides of the book. Must be called on the thread that owns the engine; the copy is
+     * a flat walk of the resting orders, so the caller can serialize it elsewhere without holding up matching.
+     *
+     * @return a consistent point-in-time copy of the book
+     */
+    public BookSnapshot snapshot() {
+        return new BookSnapshot(symbol, buyOrders.snapshot(), sellOrders.snapshot(), nextOrderId);
+    }
+
+    /**
+     * Starts copying the book as it is now without copying it all at once: {@link #captureSlice(int)}
+     * copies it a bounded slice at a time, and the book copies any level it changes before that
+     * first. Must be called on the thread that owns the engine, like the slices.
+     *
+     * @return the capture, complete once {@link #isCapturing()} turns {@code false}
+     * @throws IllegalStateException when the previous capture is not complete yet
+     */
+    public BookCapture beginCapture() {
+        BookCapture capture = new BookCapture(symbol, nextOrderId);
+        buyOrders.beginCapture(capture);
+        sellOrders.beginCapture(capture);
+        return capture;
+    }
+
+    /**
+     * Copies the next slice of the capture in progress, if any.
+     *
+     * @param budget how many level slots and orders to visit at most, give or take the orders of the last level
+     * @return the budget left, {@code 0} when it ran out before the capture completed
+     */
+    public int captureSlice(int budget) {
+        return sellOrders.captureSlice(buyOrders.captureSlice(budget));
+    }
+
+    public boolean isCapturing() {
+        return buyOrders.isCapturing() || sellOrders.isCapturing();
+    }
+
+    /**
+     * Replaces the whole book with the content of a snapshot.
+     *
+     * @param snapshot a snapshot previously taken from an engine trading the same symbol
+     */
+    public void restore(BookSnapshot snapshot) {
+        buyOrders.clear();
+        sellOrders.clear();
+        ordersById.clear();
+        nextOrderId = Math.max(1, snapshot.getNextOrderId());
+        restoreSide(snapshot.getBids(), OrderType.BUY);
+        restoreSide(snapshot.getAsks(), OrderType.SELL);
+    }
+
+    private void restoreSide(BookSnapshot.Side side, OrderType type) {
+        for (int i = 0; i < side.size(); i++) {
+            //snapshots taken before order ids existed carry 0, those orders get fresh ids
+            long orderId = side.getOrderIds()[i] != 0 ? side.getOrderIds()[i] : nextOrderId++;
+            rest(type, orderId, side.getPrices()[i], side.getQuantities()[i], side.getAccountIds()[i]);
+        }
     }
 
     /**
@@ -43,55 +224,254 @@ public class MatchingEngine {
      * For a SELL market order, attempts to match it against the buy order book.
      *
      * @param marketOrder the market order received from the client
-     * @return an execution report indicating whether the order was filled or rejected
+     * @return an execution report indicating whether the order was filled, partially filled or rejected
      */
     public ExecutionReport processMarketOrder(MarketOrder marketOrder) {
-        return switch (marketOrder.getType()) {
-            case BUY -> {
-                synchronized (sellLock) {
-                    yield matchOrder(marketOrder, sellOrders);
-                }
-            }
-            case SELL -> {
-                synchronized (buyLock) {
-                    yield matchOrder(marketOrder, buyOrders);
-                }
-            }
+        return processMarketOrder(marketOrder.getType(), marketOrder.getQuantity(), marketOrder.getAccountId(),
+                marketOrder.getClientOrderId());
+    }
+
+    /**
+     * Process an incoming MARKET order given as its individual fields, as copied out of a ring buffer slot.
+     *
+     * @param type      the side of the market order
+     * @param quantity  the quantity to execute
+     * @param accountId the account placing the order
+     * @return an execution report indicating whether the order was filled, partially filled or rejected
+     */
+    public ExecutionReport processMarketOrder(OrderType type, int quantity, String accountId) {
+        return processMarketOrder(type, quantity, accountId, 0);
+    }
+
+    /**
+     * Process an incoming MARKET order given as its individual fields, echoing the client order id in the report.
+     *
+     * @see #executeMarketOrder(OrderType, int, String, long)
+     */
+    public ExecutionReport processMarketOrder(OrderType type, int quantity, String accountId, long clientOrderId) {
+        return executeMarketOrder(type, quantity, accountId, clientOrderId).toReport();
+    }
+
+    /**
+     * Process an incoming LIMIT order.
+     *
+     * @see #executeLimitOrder(OrderType, int, long, String, long)
+     */
+    public ExecutionReport processLimitOrder(OrderType type, int quantity, double price, String accountId, long clientOrderId) {
+        return executeLimitOrder(type, quantity, Prices.toTicks(price), accountId, clientOrderId).toReport();
+    }
+
+    /**
+     * Cancels a resting limit order.
+     *
+     * @see #executeCancel(long, String, long)
+     */
+    public ExecutionReport cancelOrder(long orderId, String accountId, long clientOrderId) {
+        return executeCancel(orderId, accountId, clientOrderId).toReport();
+    }
+
+    /**
+     * Replaces the quantity and price of a resting limit order.
+     *
+     * @see #executeReplace(long, int, long, String, long)
+     */
+    public ExecutionReport replaceOrder(long orderId, int quantity, double price, String accountId, long clientOrderId) {
+        return executeReplace(orderId, quantity, Prices.toTicks(price), accountId, clientOrderId).toReport();
+    }
+
+    /**
+     * Executes a MARKET order.
+     * <p>
+     * Whatever the opposite side cannot fill is cancelled, never rested: the order is PARTIALLY_FILLED
+     * when the side runs out or {@link #MAX_SWEEP_LEVELS} levels were swept, and REJECTED when the side
+     * was empty to begin with.
+     *
+     * @param type          the side of the market order
+     * @param quantity      the quantity to execute
+     * @param accountId     the account placing the order
+     * @param clientOrderId the client's id for the order, copied into the result
+     * @return the engine's result, valid until the next request
+     */
+    public MatchResult executeMarketOrder(OrderType type, int quantity, String accountId, long clientOrderId) {
+        if (type == null || quantity <= 0) {
+            return result.reject(quantity, accountId, clientOrderId, 0);
+        }
+        result.reset(quantity, accountId, clientOrderId, 0);
+        //a market order is a limit order priced through the whole opposite side
+        int remaining = sweep(quantity, type == OrderType.BUY ? Long.MAX_VALUE : Long.MIN_VALUE, opposite(type));
+        if (remaining == quantity) {
+            return result.complete("REJECTED", quantity);
+        }
+        return result.complete(remaining == 0 ? "FILLED" : "PARTIALLY_FILLED", remaining);
+    }
+
+    /**
+     * Executes a LIMIT order.
+     * <p>
+     * The order first matches against the opposite side at its limit price or better, exactly like
+     * a market order that stops at the limit; whatever is left rests on the book at the limit price
+     * under a newly assigned order id, which is returned in the result. The result is FILLED,
+     * PARTIALLY_FILLED with the resting quantity as leaves, or NEW when nothing executed. An order
+     * that sweeps {@link #MAX_SWEEP_LEVELS} levels and still crosses the book cannot rest without
+     * crossing it, so its remainder is cancelled instead and the result is CANCELED with the fills.
+     *
+     * @param type          the side of the limit order
+     * @param quantity      the quantity to buy or sell
+     * @param price         the worst price in ticks the order may execute at
+     * @param accountId     the account placing the order
+     * @param clientOrderId the client's id for the order, copied into the result
+     * @return the engine's result, carrying the order id of the resting remainder
+     */
+    public MatchResult executeLimitOrder(OrderType type, int quantity, long price, String accountId, long clientOrderId) {
+        if (type == null || quantity <= 0 || price <= 0) {
+            return result.reject(quantity, accountId, clientOrderId, 0);
+        }
+        return enterLimitOrder(type, quantity, price, accountId, clientOrderId, nextOrderId++, "NEW");
+    }
+
+    /**
+     * Cancels a resting limit order.
+     *
+     * @param orderId       the id assigned to the order when it was entered
+     * @param accountId     the account cancelling the order, which must be the account that owns it
+     * @param clientOrderId the client's id for the cancel request, copied into the result
+     * @return CANCELED with the cancelled remaining quantity as initial quantity, or REJECTED when the
+     * order is not resting or belongs to another account
+     */
+    public MatchResult executeCancel(long orderId, String accountId, long clientOrderId) {
+        int order = ordersById.get(orderId);
+        if (order == NONE || !Objects.equals(orders.accountId(order), accountId)) {
+            return result.reject(0, accountId, clientOrderId, orderId);
+        }
+        result.reset(orders.quantity(order), accountId, clientOrderId, orderId);
+        OrderBookSide bookSide = sideOf(orders.side(order));
+        long price = orders.price(order);
+        ordersById.remove(orderId);
+        bookSide.remove(order);
+        publishLevel(bookSide, price);
+        return result.complete("CANCELED", 0);
+    }
+
+    /**
+     * Executes any order entry action, passing on the fields the action uses.
+     *
+     * @param price the limit price in ticks, for NEW_LIMIT and CANCEL_REPLACE
+     * @return the engine's result, valid until the next request
+     */
+    public MatchResult execute(OrderAction action, OrderType type, int quantity, long price, long orderId,
+                               String accountId, long clientOrderId) {
+        return switch (action) {
+            case MARKET -> executeMarketOrder(type, quantity, accountId, clientOrderId);
+            case NEW_LIMIT -> executeLimitOrder(type, quantity, price, accountId, clientOrderId);
+            case CANCEL -> executeCancel(orderId, accountId, clientOrderId);
+            case CANCEL_REPLACE -> executeReplace(orderId, quantity, price, accountId, clientOrderId);
         };
     }
 
     /**
-     * Attempts to match a market order against the provided limit order queue.
+     * Replaces the quantity and price of a resting limit order, keeping its order id.
+     * <p>
+     * Reducing the quantity at an unchanged price is done in place and keeps the order's time
+     * priority. Any other change loses priority: the order is taken off the book and entered again
+     * as a new limit order, so a price moved through the opposite side executes immediately.
+     *
+     * @param orderId       the id assigned to the order when it was entered
+     * @param quantity      the new remaining quantity
+     * @param price         the new limit price in ticks
+     * @param accountId     the account replacing the order, which must be the account that owns it
+     * @param clientOrderId the client's id for the replace request, copied into the result
+     * @return REPLACED, FILLED or PARTIALLY_FILLED when the new price crossed, or REJECTED when the
+     * order is not resting, belongs to another account or the new terms are invalid
+     */
+    public MatchResult executeReplace(long orderId, int quantity, long price, String accountId, long clientOrderId) {
+        int order = ordersById.get(orderId);
+        if (order == NONE || !Objects.equals(orders.accountId(order), accountId) || quantity <= 0 || price <= 0) {
+            return result.reject(quantity, accountId, clientOrderId, orderId);
+        }
+        OrderType type = orders.side(order);
+        OrderBookSide bookSide = sideOf(type);
+        int resting = orders.quantity(order);
+        long restingPrice = orders.price(order);
+        if (price == restingPrice && quantity <= resting) {
+            bookSide.fill(order, resting - quantity);
+            publishLevel(bookSide, price);
+            result.reset(quantity, accountId, clientOrderId, orderId);
+            return result.complete("REPLACED", quantity);
+        }
+        ordersById.remove(orderId);
+        bookSide.remove(order);
+        publishLevel(bookSide, restingPrice);
+        return enterLimitOrder(type, quantity, price, accountId, clientOrderId, orderId, "REPLACED");
+    }
+
+    private MatchResult enterLimitOrder(OrderType type, int quantity, long price, String accountId,
+                                        long clientOrderId, long orderId, String restingStatus) {
+        result.reset(quantity, accountId, clientOrderId, orderId);
+        OrderBookSide opposite = opposite(type);
+        int remaining = sweep(quantity, price, opposite);
+        if (remaining > 0 && crosses(opposite, price)) {
+            //stopped by the sweep limit
+            return result.complete("CANCELED", 0);
+        }
+        if (remaining > 0) {
+            rest(type, orderId, price, remaining, accountId);
+        }
+        return result.complete(remaining == quantity ? restingStatus : remaining == 0 ? "FILLED" : "PARTIALLY_FILLED", remaining);
+    }
+
+    /**
+     * Sweeps an incoming order through the provided side of the book, up to its limit price.
      * <p>
-     * The method iterates through the orders in best-to-worst priority (using poll)
-     * and skips orders whose quantity does not exactly match the market order.
-     * If a matching order is found, it is removed from the queue and a FILLED report is returned.
-     * If no match is found, the market order is rejected.
-     *
-     * @param marketOrder the incoming market order
-     * @param orderQueue  the corresponding limit order book (either buy or sell)
-     * @return an ExecutionReport indicating FILLED or REJECTED status
-     */
-    private ExecutionReport matchOrder(MarketOrder marketOrder, PriorityBlockingQueue<LimitOrder> orderQueue) {
-        for (Iterator<LimitOrder> iterator = orderQueue.iterator(); iterator.hasNext();) {
-            LimitOrder currentOrder = iterator.next();
-            if (currentOrder.getQuantity() == marketOrder.getQuantity()) {
-                iterator.remove();
-                return new ExecutionReport(
-                        marketOrder.getQuantity(),
-                        currentOrder.getPrice(),
-                        marketOrder.getQuantity(),
-                        marketOrder.getAccountId(),
-                        "FILLED"
-                );
+     * Price levels are consumed best-to-worst and, within a level, resting orders in time priority;
+     * a resting order larger than what is left of the incoming order is partially executed and keeps
+     * its place in the queue, and fully executed ones leave the order id index. Fills are aggregated
+     * per price level into the result and reported as one trade per level, followed by the level's
+     * new state. The sweep stops when the incoming order is complete, the
+     * side is exhausted, the best level no longer crosses the limit price, or after
+     * {@link #MAX_SWEEP_LEVELS} levels.
+     *
+     * @param quantity   the quantity of the incoming order
+     * @param limitPrice the worst price in ticks the incoming order may execute at
+     * @param bookSide   the corresponding side of the order book (either buy or sell)
+     * @return the quantity left unexecuted
+     */
+    private int sweep(int quantity, long limitPrice, OrderBookSide bookSide) {
+        int remaining = quantity;
+        boolean buying = bookSide.getSide() == OrderType.SELL;
+        int level;
+        while (remaining > 0 && result.getFillCount() < MAX_SWEEP_LEVELS && (level = bookSide.bestLevel()) != NONE) {
+            long price = bookSide.levelPrice(level);
+            if (buying ? price > limitPrice : price < limitPrice) {
+                break;
             }
+            int levelFilled = 0;
+            int order = bookSide.levelHead(level);
+            while (remaining > 0 && order != NONE) {
+                int next = orders.next(order);
+                int executed = Math.min(remaining, orders.quantity(order));
+                if (executed == orders.quantity(order)) {
+                    ordersById.remove(orders.orderId(order));
+                }
+                fills.onFill(symbol, orders.accountId(order), bookSide.getSide(), price, executed);
+                result.countExecution();
+                bookSide.fill(order, executed);
+                remaining -= executed;
+                levelFilled += executed;
+                order = next;
+            }
+            result.addFill(price, levelFilled);
+            marketData.onTrade(symbol, buying ? OrderType.BUY : OrderType.SELL, price, levelFilled);
+            publishLevel(bookSide, price);
+        }
+        return remaining;
+    }
+
+    private static boolean crosses(OrderBookSide bookSide, long limitPrice) {
+        int level = bookSide.bestLevel();
+        if (level == NONE) {
+            return false;
         }
-        return new ExecutionReport(
-                marketOrder.getQuantity(),
-                null,
-                null,
-                marketOrder.getAccountId(),
-                "REJECTED"
-        );
+        long price = bookSide.levelPrice(level);
+        return bookSide.getSide() == OrderType.SELL ? price <= limitPrice : price >= limitPrice;
     }
 }
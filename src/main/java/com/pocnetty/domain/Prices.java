@@ -0,0 +1,27 @@
+package com.pocnetty.domain;
+
+/**
+ * Fixed-point price representation used inside the engine.
+ * <p>
+ * Prices are held as {@code long} ticks of {@code 1 / SCALE} so that comparing, keying and
+ * storing them never involves floating point or boxing; {@code double} prices only appear at the
+ * edges, in DTOs and execution reports.
+ */
+public final class Prices {
+
+    /**
+     * Ticks per unit of price, i.e. four decimal places.
+     */
+    public static final long SCALE = 10_000;
+
+    private Prices() {
+    }
+
+    public static long toTicks(double price) {
+        return Math.round(price * SCALE);
+    }
+
+    public static double toPrice(long ticks) {
+        return (double) ticks / SCALE;
+    }
+}
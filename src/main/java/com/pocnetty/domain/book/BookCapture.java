@@ -0,0 +1,107 @@
+package com.pocnetty.domain.book;
+
+import com.pocnetty.domain.enums.OrderType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copy of one instrument's book as of one point in the event stream, taken a slice at a time.
+ * <p>
+ * The matching thread fills it level by level through {@link OrderBookSide#captureSlice(int)} and
+ * right before it first changes a level that was not copied yet, so the levels arrive in no
+ * particular order. {@link #toSnapshot()} puts them back in priority order, and is meant to run on
+ * the thread that writes the snapshot once the capture is complete.
+ */
+public class BookCapture {
+
+    private final String symbol;
+    private final long nextOrderId;
+    final Side bids;
+    final Side asks;
+
+    public BookCapture(String symbol, long nextOrderId) {
+        this.symbol = symbol;
+        this.nextOrderId = nextOrderId;
+        this.bids = new Side(OrderType.BUY);
+        this.asks = new Side(OrderType.SELL);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Sorts the copied levels and flattens them. Call once the capture is complete, from any thread.
+     */
+    public BookSnapshot toSnapshot() {
+        return new BookSnapshot(symbol, bids.toSnapshot(), asks.toSnapshot(), nextOrderId);
+    }
+
+    /**
+     * The levels copied from one side, each with its orders in time priority.
+     */
+    static final class Side {
+
+        private final OrderType side;
+        //one entry per copied level, its arrays sized to the level, so memory is only taken as levels are copied
+        private final List<Level> levels = new ArrayList<>();
+        private Level last;
+        private int orderCount;
+
+        private Side(OrderType side) {
+            this.side = side;
+        }
+
+        void startLevel(long price, int orders) {
+            last = new Level(price, orders);
+            levels.add(last);
+        }
+
+        void addOrder(int quantity, String accountId, long orderId) {
+            int i = last.count++;
+            last.quantities[i] = quantity;
+            last.accountIds[i] = accountId;
+            last.orderIds[i] = orderId;
+            orderCount++;
+        }
+
+        private BookSnapshot.Side toSnapshot() {
+            //the captured levels were all open at the same time, so their prices are distinct
+            levels.sort(side == OrderType.BUY
+                    ? Comparator.comparingLong((Level level) -> level.price).reversed()
+                    : Comparator.comparingLong((Level level) -> level.price));
+            long[] prices = new long[orderCount];
+            int[] quantities = new int[orderCount];
+            String[] accountIds = new String[orderCount];
+            long[] orderIds = new long[orderCount];
+            int next = 0;
+            for (Level level : levels) {
+                Arrays.fill(prices, next, next + level.count, level.price);
+                System.arraycopy(level.quantities, 0, quantities, next, level.count);
+                System.arraycopy(level.accountIds, 0, accountIds, next, level.count);
+                System.arraycopy(level.orderIds, 0, orderIds, next, level.count);
+                next += level.count;
+            }
+            return new BookSnapshot.Side(prices, quantities, accountIds, orderIds);
+        }
+    }
+
+    private static final class Level {
+
+        private final long price;
+        private final int[] quantities;
+        private final String[] accountIds;
+        private final long[] orderIds;
+        private int count;
+
+        private Level(long price, int orders) {
+            this.price = price;
+            this.quantities = new int[orders];
+            this.accountIds = new String[orders];
+            this.orderIds = new long[orders];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pocnetty.domain.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Aggregated top levels of both sides of one instrument's book: price, total quantity and order
+ * count per level, best price first.
+ * <p>
+ * Immutable once built, so the thread that owns the book can publish it once and any number of
+ * readers can share it without copying.
+ */
+@Getter
+@AllArgsConstructor
+public class BookDepth {
+
+    private final String symbol;
+    /**
+     * Matching sequence of the last event applied to the book when the levels were copied; the
+     * levels stay current until a copy with a later sequence replaces them.
+     */
+    private final long sequence;
+    private final Side bids;
+    private final Side asks;
+
+    /**
+     * Copies the best {@code maxLevels} levels of each side. Must be called on the thread that owns the book.
+     */
+    public static BookDepth copyOf(String symbol, long sequence, OrderBookSide bids, OrderBookSide asks, int maxLevels) {
+        return new BookDepth(symbol, sequence, Side.copyOf(bids, maxLevels), Side.copyOf(asks, maxLevels));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Side {
+        /**
+         * Level prices in ticks.
+         */
+        private final long[] prices;
+        private final long[] quantities;
+        private final int[] orderCounts;
+
+        /**
+         * Copies the best {@code maxLevels} levels of one side. Must be called on the thread that owns the book.
+         */
+        public static Side copyOf(OrderBookSide side, int maxLevels) {
+            int size = Math.min(side.levelCount(), maxLevels);
+            long[] prices = new long[size];
+            long[] quantities = new long[size];
+            int[] orderCounts = new int[size];
+            int level = side.bestLevel();
+            for (int rank = 0; rank < size; rank++, level = side.nextLevel(level)) {
+                prices[rank] = side.levelPrice(level);
+                quantities[rank] = side.levelQuantity(level);
+                orderCounts[rank] = side.levelOrderCount(level);
+            }
+            return new Side(prices, quantities, orderCounts);
+        }
+
+        public int size() {
+            return prices.length;
+        }
+    }
+}
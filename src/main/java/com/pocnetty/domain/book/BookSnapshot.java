@@ -0,0 +1,37 @@
+package com.pocnetty.domain.book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Point-in-time copy of both sides of one instrument's book.
+ * <p>
+ * Each side lists its resting orders flattened in priority order (best price first, then time),
+ * with their prices in ticks, remaining quantities and order ids, so restoring them in array order recreates the same
+ * queues.
+ */
+@Getter
+@AllArgsConstructor
+public class BookSnapshot {
+
+    private final String symbol;
+    private final Side bids;
+    private final Side asks;
+    /**
+     * Id the engine will assign to its next limit order, so ids stay unique after a restore.
+     */
+    private final long nextOrderId;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Side {
+        private final long[] prices;
+        private final int[] quantities;
+        private final String[] accountIds;
+        private final long[] orderIds;
+
+        public int size() {
+            return prices.length;
+        }
+    }
+}
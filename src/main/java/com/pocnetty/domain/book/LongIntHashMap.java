@@ -0,0 +1,147 @@
+package com.pocnetty.domain.book;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from {@code long} keys to {@code int} values, without boxing either.
+ * <p>
+ * Keys are spread with a multiplicative hash and probed linearly; removal shifts the following
+ * entries of the probe run back instead of leaving tombstones, so lookups stay short under heavy
+ * insert/remove churn. The tables only grow, so a map that has reached its peak size allocates
+ * nothing. Key {@code 0} is reserved to mark free slots. Not thread-safe.
+ */
+public final class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap(int initialCapacity, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (initialCapacity / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value mapped to {@code key}, or the missing value given at construction
+     */
+    public int get(long key) {
+        int index = index(key);
+        long candidate;
+        while ((candidate = keys[index]) != 0) {
+            if (candidate == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return the previous value mapped to {@code key}, or the missing value
+     */
+    public int put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        int index = index(key);
+        long candidate;
+        while ((candidate = keys[index]) != 0) {
+            if (candidate == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return the value that was mapped to {@code key}, or the missing value
+     */
+    public int remove(long key) {
+        int index = index(key);
+        long candidate;
+        while ((candidate = keys[index]) != 0) {
+            if (candidate == key) {
+                int previous = values[index];
+                shiftBack(index);
+                size--;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    /**
+     * Refills the hole at {@code free} with a later entry of the same probe run whose home slot
+     * does not lie between the hole and the entry, until the run ends.
+     */
+    private void shiftBack(int free) {
+        int index = free;
+        while (true) {
+            index = (index + 1) & mask;
+            long key = keys[index];
+            if (key == 0) {
+                break;
+            }
+            int home = index(key);
+            if (((index - home) & mask) >= ((index - free) & mask)) {
+                keys[free] = key;
+                values[free] = values[index];
+                free = index;
+            }
+        }
+        keys[free] = 0;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = index(key);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
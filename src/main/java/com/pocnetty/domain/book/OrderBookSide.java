@@ -0,0 +1,640 @@
+package com.pocnetty.domain.book;
+
+import com.pocnetty.domain.enums.OrderType;
+
+import java.util.Arrays;
+
+import static com.pocnetty.domain.book.OrderStore.NONE;
+
+/**
+ * One side of the order book: price levels sorted best-to-worst, each holding a FIFO queue.
+ * <p>
+ * Levels are slots in parallel primitive arrays, addressed by {@code int} handles like the orders
+ * in the {@link OrderStore}, and linked from best to worst price, so the book is walked level by
+ * level from the top. Most orders arrive at or near the top of the book, so up to
+ * {@value #WINDOW_LEVELS} of the best levels are kept sorted in a small array: reading the best
+ * level, removing it once swept and opening a new one above it are O(1), and any other level in the
+ * window is found by binary search and opened or closed by shifting at most that many handles. The
+ * levels behind the window are indexed by a treap over the same handles, a binary search tree by
+ * price that is also a heap by a random priority per level and so stays balanced with high
+ * probability, which makes finding, opening or closing a level anywhere deeper in the book
+ * O(log n) in the number of levels. The window hands its worst level to the treap when it is full,
+ * and takes the best half of it back once it has been swept empty. Prices are compared as
+ * {@code long} ticks, so nothing is boxed and, once the arrays have grown, nothing is allocated.
+ * <p>
+ * A side can also be copied without stopping it: once a {@link BookCapture} begins, every level
+ * open at that point is copied exactly once, either by {@link #captureSlice(int)}, which walks the
+ * level slots a bounded number at a time, or right before its first change, whichever comes first.
+ * Levels opened after the capture began are not copied, so the capture holds the side exactly as it
+ * was when it began however many events are matched in between.
+ */
+public class OrderBookSide {
+
+    private static final int WINDOW_LEVELS = 64;
+
+    private final OrderType side;
+    private final OrderStore orders;
+
+    //level slots
+    private long[] levelPrices;
+    //the prices as ranks that always sort ascending, see rank(long)
+    private long[] levelRanks;
+    private long[] levelQuantities;
+    private int[] levelOrderCounts;
+    private int[] levelHeads;
+    private int[] levelTails;
+    private int levelsUsed;
+    private int freeLevel = NONE;
+
+    //open levels linked from best to worst
+    private int[] levelBetter;
+    private int[] levelWorse;
+    private int bestLevel = NONE;
+    private int levelCount;
+
+    //the best levels sorted worst to best in [0, windowCount), with their ranks; only empty when the side is
+    private final int[] windowLevels = new int[WINDOW_LEVELS];
+    private final long[] windowRanks = new long[WINDOW_LEVELS];
+    private int windowCount;
+
+    //capture epoch each level slot was last copied or opened in
+    private int[] levelCaptured;
+    private int captureEpoch;
+    private boolean capturing;
+    private int captureCursor;
+    private int captureEnd;
+    private BookCapture.Side capture;
+
+    //treap of the levels behind the window, ordered by rank
+    private int[] treeLeft;
+    private int[] treeRight;
+    private int[] treePriority;
+    private int root = NONE;
+    private int prioritySeed = 0x2545F491;
+    //the level a new one goes right behind, left by the last find
+    private int ceiling;
+
+    public OrderBookSide(OrderType side) {
+        this(side, new OrderStore());
+    }
+
+    /**
+     * @param side   the side this book holds
+     * @param orders the store the side's resting orders live in, which may be shared with the other side
+     */
+    public OrderBookSide(OrderType side, OrderStore orders) {
+        this.side = side;
+        this.orders = orders;
+        int capacity = 256;
+        levelPrices = new long[capacity];
+        levelRanks = new long[capacity];
+        levelQuantities = new long[capacity];
+        levelOrderCounts = new int[capacity];
+        levelHeads = new int[capacity];
+        levelTails = new int[capacity];
+        levelBetter = new int[capacity];
+        levelWorse = new int[capacity];
+        levelCaptured = new int[capacity];
+        treeLeft = new int[capacity];
+        treeRight = new int[capacity];
+        treePriority = new int[capacity];
+    }
+
+    public OrderType getSide() {
+        return side;
+    }
+
+    public OrderStore orders() {
+        return orders;
+    }
+
+    /**
+     * Appends an order to the tail of its price level, creating the level if needed.
+     *
+     * @param orderId   the id the engine assigned to the order
+     * @param price     the limit price in ticks
+     * @param quantity  the quantity to rest
+     * @param accountId the account owning the order
+     * @return the order's handle in the {@link OrderStore}
+     */
+    public int add(long orderId, long price, int quantity, String accountId) {
+        int level = levelFor(price);
+        preserve(level);
+        int order = orders.allocate(orderId, side, price, quantity, accountId);
+        int tail = levelTails[level];
+        orders.level(order, level);
+        orders.prev(order, tail);
+        if (tail == NONE) {
+            levelHeads[level] = order;
+        } else {
+            orders.next(tail, order);
+        }
+        levelTails[level] = order;
+        levelQuantities[level] += quantity;
+        levelOrderCounts[level]++;
+        return order;
+    }
+
+    /**
+     * Unlinks a resting order from its level, drops the level once it is empty and frees the order's handle.
+     *
+     * @param order a handle returned by {@link #add(long, long, int, String)}
+     */
+    public void remove(int order) {
+        int level = orders.level(order);
+        if (level == NONE) {
+            return;
+        }
+        preserve(level);
+        int prev = orders.prev(order);
+        int next = orders.next(order);
+        if (prev == NONE) {
+            levelHeads[level] = next;
+        } else {
+            orders.next(prev, next);
+        }
+        if (next == NONE) {
+            levelTails[level] = prev;
+        } else {
+            orders.prev(next, prev);
+        }
+        levelQuantities[level] -= orders.quantity(order);
+        levelOrderCounts[level]--;
+        orders.free(order);
+        if (levelHeads[level] == NONE) {
+            removeLevel(level);
+        }
+    }
+
+    /**
+     * Executes part or all of a resting order's remaining quantity, removing it once fully filled.
+     *
+     * @param order    the handle of the order being executed against
+     * @param quantity the executed quantity, at most the order's remaining quantity
+     */
+    public void fill(int order, int quantity) {
+        preserve(orders.level(order));
+        int remaining = orders.quantity(order);
+        if (quantity >= remaining) {
+            remove(order);
+        } else {
+            orders.quantity(order, remaining - quantity);
+            levelQuantities[orders.level(order)] -= quantity;
+        }
+    }
+
+    /**
+     * Copies every resting order of this side, in priority order, into flat arrays.
+     */
+    public BookSnapshot.Side snapshot() {
+        int count = 0;
+        for (int level = bestLevel; level != NONE; level = levelWorse[level]) {
+            count += levelOrderCounts[level];
+        }
+        long[] prices = new long[count];
+        int[] quantities = new int[count];
+        String[] accountIds = new String[count];
+        long[] orderIds = new long[count];
+        int i = 0;
+        for (int level = bestLevel; level != NONE; level = levelWorse[level]) {
+            for (int order = levelHeads[level]; order != NONE; order = orders.next(order)) {
+                prices[i] = levelPrices[level];
+                quantities[i] = orders.quantity(order);
+                accountIds[i] = orders.accountId(order);
+                orderIds[i] = orders.orderId(order);
+                i++;
+            }
+        }
+        return new BookSnapshot.Side(prices, quantities, accountIds, orderIds);
+    }
+
+    /**
+     * Drops every resting order of this side.
+     */
+    public void clear() {
+        for (int level = bestLevel; level != NONE; level = levelWorse[level]) {
+            int order = levelHeads[level];
+            while (order != NONE) {
+                int next = orders.next(order);
+                orders.free(order);
+                order = next;
+            }
+        }
+        levelsUsed = 0;
+        freeLevel = NONE;
+        levelCount = 0;
+        bestLevel = NONE;
+        windowCount = 0;
+        root = NONE;
+        capturing = false;
+        capture = null;
+    }
+
+    /**
+     * Starts copying this side, as it is now, into {@code capture}.
+     *
+     * @throws IllegalStateException when the previous capture is not complete yet
+     */
+    public void beginCapture(BookCapture capture) {
+        if (capturing) {
+            throw new IllegalStateException("A capture of the " + side + " side is already in progress");
+        }
+        captureEpoch++;
+        capturing = true;
+        captureCursor = 0;
+        captureEnd = levelsUsed;
+        this.capture = side == OrderType.BUY ? capture.bids : capture.asks;
+    }
+
+    /**
+     * Copies the next levels of the capture in progress, if any.
+     *
+     * @param budget how many level slots and orders to visit at most, give or take the orders of the last level
+     * @return the budget left, {@code 0} when it ran out before the capture completed
+     */
+    public int captureSlice(int budget) {
+        while (capturing && budget > 0 && captureCursor < captureEnd) {
+            int level = captureCursor++;
+            budget--;
+            //a slot with no orders is free, open levels always have one
+            if (levelHeads[level] != NONE && levelCaptured[level] != captureEpoch) {
+                budget -= copyLevel(level);
+            }
+        }
+        if (capturing && captureCursor == captureEnd) {
+            capturing = false;
+            capture = null;
+        }
+        return Math.max(0, budget);
+    }
+
+    /**
+     * @return whether a capture began and still has levels to copy
+     */
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * @return the handle of the best priced level, or {@link OrderStore#NONE} when this side is empty
+     */
+    public int bestLevel() {
+        return bestLevel;
+    }
+
+    /**
+     * Walks the side from the {@link #bestLevel()} towards the worst one.
+     *
+     * @return the handle of the level right behind {@code level}, or {@link OrderStore#NONE} after the worst level
+     */
+    public int nextLevel(int level) {
+        return levelWorse[level];
+    }
+
+    /**
+     * @param price a price in ticks
+     * @return the handle of the level at that price, or {@link OrderStore#NONE} when nothing rests there
+     */
+    public int findLevel(long price) {
+        long rank = rank(price);
+        if (windowCount > 0 && rank >= windowRanks[0]) {
+            int found = Arrays.binarySearch(windowRanks, 0, windowCount, rank);
+            return found < 0 ? NONE : windowLevels[found];
+        }
+        return find(rank);
+    }
+
+    /**
+     * @return the level's price in ticks
+     */
+    public long levelPrice(int level) {
+        return levelPrices[level];
+    }
+
+    public long levelQuantity(int level) {
+        return levelQuantities[level];
+    }
+
+    public int levelOrderCount(int level) {
+        return levelOrderCounts[level];
+    }
+
+    /**
+     * @return the handle of the order with time priority at the level
+     */
+    public int levelHead(int level) {
+        return levelHeads[level];
+    }
+
+    public int levelCount() {
+        return levelCount;
+    }
+
+    public boolean isEmpty() {
+        return levelCount == 0;
+    }
+
+    /**
+     * Copies a level into the capture in progress before it changes, unless it was copied already or opened since.
+     */
+    private void preserve(int level) {
+        if (capturing && levelCaptured[level] != captureEpoch) {
+            copyLevel(level);
+        }
+    }
+
+    /**
+     * @return the number of orders copied
+     */
+    private int copyLevel(int level) {
+        levelCaptured[level] = captureEpoch;
+        capture.startLevel(levelPrices[level], levelOrderCounts[level]);
+        for (int order = levelHeads[level]; order != NONE; order = orders.next(order)) {
+            capture.addOrder(orders.quantity(order), orders.accountId(order), orders.orderId(order));
+        }
+        return levelOrderCounts[level];
+    }
+
+    /**
+     * Ranks sort ascending from worst to best: BUY prices as they are, SELL prices negated.
+     */
+    private long rank(long price) {
+        return side == OrderType.BUY ? price : -price;
+    }
+
+    private int levelFor(long price) {
+        long rank = rank(price);
+        if (windowCount > 0 && rank == windowRanks[windowCount - 1]) {
+            return bestLevel;
+        }
+        //the window holds any level from its worst one up, and while it has room, any level above the treap's best
+        int windowWorst = windowCount == 0 ? NONE : windowLevels[0];
+        int treapBest = windowWorst == NONE ? NONE : levelWorse[windowWorst];
+        if (windowCount == 0 || rank >= windowRanks[0]
+                || windowCount < WINDOW_LEVELS && (treapBest == NONE || rank > levelRanks[treapBest])) {
+            int position = windowCount;
+            if (windowCount > 0 && rank < windowRanks[windowCount - 1]) {
+                int found = Arrays.binarySearch(windowRanks, 0, windowCount, rank);
+                if (found >= 0) {
+                    return windowLevels[found];
+                }
+                position = -found - 1;
+            }
+            int level = newLevel(price, rank);
+            if (windowCount == WINDOW_LEVELS) {
+                demoteWindowWorst();
+                position--;
+            }
+            System.arraycopy(windowLevels, position, windowLevels, position + 1, windowCount - position);
+            System.arraycopy(windowRanks, position, windowRanks, position + 1, windowCount - position);
+            windowLevels[position] = level;
+            windowRanks[position] = rank;
+            windowCount++;
+            linkLevel(level, position == windowCount - 1 ? NONE : windowLevels[position + 1]);
+            return level;
+        }
+        int found = find(rank);
+        if (found != NONE) {
+            return found;
+        }
+        int better = ceiling == NONE ? windowWorst : ceiling;
+        int level = newLevel(price, rank);
+        insert(level, rank);
+        linkLevel(level, better);
+        return level;
+    }
+
+    /**
+     * Links a new level into the side right behind {@code better}, or as the best level when it is {@link OrderStore#NONE}.
+     */
+    private void linkLevel(int level, int better) {
+        int worse = better == NONE ? bestLevel : levelWorse[better];
+        levelBetter[level] = better;
+        levelWorse[level] = worse;
+        if (better == NONE) {
+            bestLevel = level;
+        } else {
+            levelWorse[better] = level;
+        }
+        if (worse != NONE) {
+            levelBetter[worse] = level;
+        }
+        levelCount++;
+    }
+
+    private void removeLevel(int level) {
+        long rank = levelRanks[level];
+        if (rank >= windowRanks[0]) {
+            if (level != bestLevel) {
+                int index = Arrays.binarySearch(windowRanks, 0, windowCount - 1, rank);
+                System.arraycopy(windowLevels, index + 1, windowLevels, index, windowCount - 1 - index);
+                System.arraycopy(windowRanks, index + 1, windowRanks, index, windowCount - 1 - index);
+            }
+            windowCount--;
+        } else {
+            delete(level);
+        }
+        int better = levelBetter[level];
+        int worse = levelWorse[level];
+        if (better == NONE) {
+            bestLevel = worse;
+        } else {
+            levelWorse[better] = worse;
+        }
+        if (worse != NONE) {
+            levelBetter[worse] = better;
+        }
+        levelCount--;
+        levelTails[level] = freeLevel;
+        freeLevel = level;
+        if (windowCount == 0 && levelCount > 0) {
+            refillWindow();
+        }
+    }
+
+    /**
+     * Hands the worst level of the full window to the treap, where it becomes the best level.
+     */
+    private void demoteWindowWorst() {
+        insert(windowLevels[0], windowRanks[0]);
+        windowCount--;
+        System.arraycopy(windowLevels, 1, windowLevels, 0, windowCount);
+        System.arraycopy(windowRanks, 1, windowRanks, 0, windowCount);
+    }
+
+    /**
+     * Takes the best half window of levels back from the treap once the window has been swept empty.
+     */
+    private void refillWindow() {
+        int count = Math.min(WINDOW_LEVELS / 2, levelCount);
+        for (int position = count - 1; position >= 0; position--) {
+            int level = deleteBest();
+            windowLevels[position] = level;
+            windowRanks[position] = levelRanks[level];
+        }
+        windowCount = count;
+    }
+
+    /**
+     * @return the level at {@code rank}, or {@link OrderStore#NONE} after leaving the level with the lowest rank above
+     * it, the one a new level at {@code rank} goes right behind, in {@link #ceiling}
+     */
+    private int find(long rank) {
+        ceiling = NONE;
+        int node = root;
+        while (node != NONE) {
+            long nodeRank = levelRanks[node];
+            if (rank == nodeRank) {
+                return node;
+            }
+            if (rank < nodeRank) {
+                ceiling = node;
+                node = treeLeft[node];
+            } else {
+                node = treeRight[node];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds a level to the treap: it goes down the search path to the first node of lower priority, which it
+     * replaces, and that node's subtree is split by rank into the new level's two children.
+     */
+    private void insert(int level, long rank) {
+        int priority = treePriority[level];
+        int parent = NONE;
+        boolean left = false;
+        int node = root;
+        while (node != NONE && treePriority[node] > priority) {
+            parent = node;
+            left = rank < levelRanks[node];
+            node = left ? treeLeft[node] : treeRight[node];
+        }
+        link(parent, left, level);
+        //the lower ranks hang off the right of the last node split to the left, starting with level's left child
+        int lowTail = level;
+        boolean lowLeft = true;
+        int highTail = level;
+        boolean highLeft = false;
+        while (node != NONE) {
+            if (levelRanks[node] < rank) {
+                link(lowTail, lowLeft, node);
+                lowTail = node;
+                lowLeft = false;
+                node = treeRight[node];
+            } else {
+                link(highTail, highLeft, node);
+                highTail = node;
+                highLeft = true;
+                node = treeLeft[node];
+            }
+        }
+        link(lowTail, lowLeft, NONE);
+        link(highTail, highLeft, NONE);
+    }
+
+    /**
+     * Removes a level from the treap, merging its two subtrees in its place by priority.
+     */
+    private void delete(int level) {
+        long rank = levelRanks[level];
+        int parent = NONE;
+        boolean left = false;
+        int node = root;
+        while (node != level) {
+            parent = node;
+            left = rank < levelRanks[node];
+            node = left ? treeLeft[node] : treeRight[node];
+        }
+        int low = treeLeft[level];
+        int high = treeRight[level];
+        while (low != NONE && high != NONE) {
+            if (treePriority[low] > treePriority[high]) {
+                link(parent, left, low);
+                parent = low;
+                left = false;
+                low = treeRight[low];
+            } else {
+                link(parent, left, high);
+                parent = high;
+                left = true;
+                high = treeLeft[high];
+            }
+        }
+        link(parent, left, low != NONE ? low : high);
+    }
+
+    /**
+     * Removes the best level from the treap, the one at the end of its right spine.
+     */
+    private int deleteBest() {
+        int parent = NONE;
+        int node = root;
+        while (treeRight[node] != NONE) {
+            parent = node;
+            node = treeRight[node];
+        }
+        link(parent, false, treeLeft[node]);
+        return node;
+    }
+
+    private void link(int parent, boolean left, int child) {
+        if (parent == NONE) {
+            root = child;
+        } else if (left) {
+            treeLeft[parent] = child;
+        } else {
+            treeRight[parent] = child;
+        }
+    }
+
+    private int nextPriority() {
+        //xorshift, enough to keep the tree balanced without the cost of Random
+        prioritySeed ^= prioritySeed << 13;
+        prioritySeed ^= prioritySeed >>> 17;
+        prioritySeed ^= prioritySeed << 5;
+        return prioritySeed;
+    }
+
+    private int newLevel(long price, long rank) {
+        int level;
+        if (freeLevel != NONE) {
+            level = freeLevel;
+            freeLevel = levelTails[level];
+        } else {
+            if (levelsUsed == levelPrices.length) {
+                growLevels();
+            }
+            level = levelsUsed++;
+        }
+        levelPrices[level] = price;
+        levelRanks[level] = rank;
+        levelQuantities[level] = 0;
+        levelOrderCounts[level] = 0;
+        levelHeads[level] = NONE;
+        levelTails[level] = NONE;
+        //a level opened during a capture was not there when it began
+        levelCaptured[level] = captureEpoch;
+        treeLeft[level] = NONE;
+        treeRight[level] = NONE;
+        treePriority[level] = nextPriority();
+        return level;
+    }
+
+    private void growLevels() {
+        int capacity = levelPrices.length << 1;
+        levelPrices = Arrays.copyOf(levelPrices, capacity);
+        levelRanks = Arrays.copyOf(levelRanks, capacity);
+        levelQuantities = Arrays.copyOf(levelQuantities, capacity);
+        levelOrderCounts = Arrays.copyOf(levelOrderCounts, capacity);
+        levelHeads = Arrays.copyOf(levelHeads, capacity);
+        levelTails = Arrays.copyOf(levelTails, capacity);
+        levelBetter = Arrays.copyOf(levelBetter, capacity);
+        levelWorse = Arrays.copyOf(levelWorse, capacity);
+        levelCaptured = Arrays.copyOf(levelCaptured, capacity);
+        treeLeft = Arrays.copyOf(treeLeft, capacity);
+        treeRight = Arrays.copyOf(treeRight, capacity);
+        treePriority = Arrays.copyOf(treePriority, capacity);
+    }
+}
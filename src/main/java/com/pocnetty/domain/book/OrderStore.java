@@ -0,0 +1,167 @@
+package com.pocnetty.domain.book;
+
+import com.pocnetty.domain.enums.OrderType;
+
+import java.util.Arrays;
+
+/**
+ * Resting orders of one engine, stored as parallel primitive arrays and addressed by {@code int} handles.
+ * <p>
+ * Each order is one slot across the arrays rather than an object, and a slot is linked into the
+ * FIFO queue of its price level through the {@code prev}/{@code next} handles. Freed slots are
+ * recycled through a free list, so once the arrays have grown to the peak number of resting
+ * orders, resting and removing orders allocates nothing and the collector has a handful of large
+ * arrays to trace instead of one object per order.
+ * <p>
+ * A handle is only valid while its order rests: once the order is filled or removed, the slot may
+ * be reused by the next order.
+ */
+public final class OrderStore {
+
+    public static final int NONE = -1;
+
+    private static final OrderType[] SIDES = OrderType.values();
+
+    private long[] orderIds;
+    private long[] prices;
+    private int[] quantities;
+    private int[] prev;
+    private int[] next;
+    private int[] levels;
+    private byte[] sides;
+    private String[] accountIds;
+    private int used;
+    private int freeHead = NONE;
+    private int count;
+
+    public OrderStore() {
+        this(1024);
+    }
+
+    public OrderStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        orderIds = new long[capacity];
+        prices = new long[capacity];
+        quantities = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        levels = new int[capacity];
+        sides = new byte[capacity];
+        accountIds = new String[capacity];
+    }
+
+    int allocate(long orderId, OrderType side, long price, int quantity, String accountId) {
+        int handle;
+        if (freeHead != NONE) {
+            handle = freeHead;
+            freeHead = next[handle];
+        } else {
+            if (used == orderIds.length) {
+                grow();
+            }
+            handle = used++;
+        }
+        orderIds[handle] = orderId;
+        prices[handle] = price;
+        quantities[handle] = quantity;
+        prev[handle] = NONE;
+        next[handle] = NONE;
+        levels[handle] = NONE;
+        sides[handle] = (byte) side.ordinal();
+        accountIds[handle] = accountId;
+        count++;
+        return handle;
+    }
+
+    void free(int handle) {
+        //drop the reference so a freed slot does not keep the account id reachable
+        accountIds[handle] = null;
+        levels[handle] = NONE;
+        next[handle] = freeHead;
+        freeHead = handle;
+        count--;
+    }
+
+    public long orderId(int handle) {
+        return orderIds[handle];
+    }
+
+    /**
+     * @return the limit price in ticks
+     */
+    public long price(int handle) {
+        return prices[handle];
+    }
+
+    /**
+     * @return the quantity still resting
+     */
+    public int quantity(int handle) {
+        return quantities[handle];
+    }
+
+    public OrderType side(int handle) {
+        return SIDES[sides[handle]];
+    }
+
+    public String accountId(int handle) {
+        return accountIds[handle];
+    }
+
+    /**
+     * @return the order queued before this one at the same price, or {@link #NONE} at the head of the level
+     */
+    public int prev(int handle) {
+        return prev[handle];
+    }
+
+    /**
+     * @return the order queued after this one at the same price, or {@link #NONE} at the tail of the level
+     */
+    public int next(int handle) {
+        return next[handle];
+    }
+
+    public boolean isResting(int handle) {
+        return levels[handle] != NONE;
+    }
+
+    /**
+     * @return the number of resting orders
+     */
+    public int count() {
+        return count;
+    }
+
+    int level(int handle) {
+        return levels[handle];
+    }
+
+    void level(int handle, int level) {
+        levels[handle] = level;
+    }
+
+    void prev(int handle, int prevHandle) {
+        prev[handle] = prevHandle;
+    }
+
+    void next(int handle, int nextHandle) {
+        next[handle] = nextHandle;
+    }
+
+    void quantity(int handle, int quantity) {
+        quantities[handle] = quantity;
+    }
+
+    private void grow() {
+        int capacity = orderIds.length << 1;
+        orderIds = Arrays.copyOf(orderIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        sides = Arrays.copyOf(sides, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+    }
+}
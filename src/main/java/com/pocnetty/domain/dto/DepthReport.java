@@ -0,0 +1,30 @@
+package com.pocnetty.domain.dto;
+
+import com.pocnetty.domain.book.BookDepth;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Answer to a {@link DepthRequest}: the first {@code levels} levels of each side of a cached {@link BookDepth}.
+ * <p>
+ * The depth is shared with every other report of the same book and must not be modified.
+ */
+@Getter
+@AllArgsConstructor
+public class DepthReport {
+
+    private final long requestId;
+    private final BookDepth depth;
+    /**
+     * Most levels sent per side.
+     */
+    private final int levels;
+
+    public int bidCount() {
+        return Math.min(levels, depth.getBids().size());
+    }
+
+    public int askCount() {
+        return Math.min(levels, depth.getAsks().size());
+    }
+}
@@ -0,0 +1,32 @@
+package com.pocnetty.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Asks for the aggregated top levels of one instrument's book. Answered from the cached view the
+ * matching thread publishes, so it never queues behind orders.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonIgnoreProperties("query")
+public class DepthRequest {
+
+    /**
+     * Instrument to look up; requests without one get the configured default instrument.
+     */
+    private String symbol;
+    /**
+     * Levels wanted per side, {@code 0} for as many as the server keeps.
+     */
+    private int levels;
+    /**
+     * Id chosen by the client to correlate the answer with this request; echoed back unchanged.
+     */
+    private long requestId;
+}
@@ -12,13 +12,19 @@ public class LimitOrder {
     private int quantity;
     private double price;
     private String accountId;
+    private String symbol;
     private long timestamp;
 
     public LimitOrder(OrderType type, int quantity, double price, String accountId) {
+        this(type, quantity, price, accountId, null);
+    }
+
+    public LimitOrder(OrderType type, int quantity, double price, String accountId, String symbol) {
         this.type = type;
         this.quantity = quantity;
         this.price = price;
         this.accountId = accountId;
+        this.symbol = symbol;
         this.timestamp = System.nanoTime();
     }
 }
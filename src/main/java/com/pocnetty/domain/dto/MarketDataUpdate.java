@@ -0,0 +1,33 @@
+package com.pocnetty.domain.dto;
+
+import com.pocnetty.domain.enums.MarketDataType;
+import com.pocnetty.domain.enums.OrderType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One market data message as seen by a subscriber.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MarketDataUpdate {
+
+    private MarketDataType type;
+    /**
+     * Matching sequence of the event behind the message.
+     */
+    private long sequence;
+    private String symbol;
+    /**
+     * Side of the level, or of the incoming order for a trade; {@code null} for a refresh.
+     */
+    private OrderType side;
+    private double price;
+    /**
+     * Total quantity left at the level, {@code 0} once it is gone; the executed quantity for a trade.
+     */
+    private long quantity;
+    private int orderCount;
+}
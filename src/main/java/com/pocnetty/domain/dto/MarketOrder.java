@@ -4,8 +4,10 @@ import com.pocnetty.domain.enums.OrderType;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 @Getter
+@Setter
 @AllArgsConstructor
 @NoArgsConstructor
 public class MarketOrder {
@@ -13,4 +15,20 @@ public class MarketOrder {
     private OrderType type;
     private int quantity;
     private String accountId;
+    /**
+     * Instrument to trade; orders without one are routed to the configured default instrument.
+     */
+    private String symbol;
+    /**
+     * Id chosen by the client to correlate the execution report with this order; echoed back unchanged.
+     */
+    private long clientOrderId;
+
+    public MarketOrder(OrderType type, int quantity, String accountId) {
+        this(type, quantity, accountId, null);
+    }
+
+    public MarketOrder(OrderType type, int quantity, String accountId, String symbol) {
+        this(type, quantity, accountId, symbol, 0);
+    }
 }
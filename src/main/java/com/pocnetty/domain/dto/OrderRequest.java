@@ -0,0 +1,51 @@
+package com.pocnetty.domain.dto;
+
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Any order entry message a client can send: a market order, a new limit order, or a cancel or
+ * cancel/replace of a resting limit order. Requests without an {@code action} are market orders,
+ * so plain {@link MarketOrder} JSON binds to this class unchanged.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderRequest {
+
+    private OrderAction action = OrderAction.MARKET;
+    private OrderType type;
+    /**
+     * Quantity to trade; for a cancel/replace, the new remaining quantity of the resting order.
+     */
+    private int quantity;
+    /**
+     * Limit price of a NEW_LIMIT or CANCEL_REPLACE in ticks of {@link com.pocnetty.domain.Prices#SCALE}, ignored
+     * otherwise; JSON clients send it as a decimal, which the decoder converts.
+     */
+    private long price;
+    private String accountId;
+    private String symbol;
+    private long clientOrderId;
+    /**
+     * Engine-assigned id of the resting order targeted by a CANCEL or CANCEL_REPLACE.
+     */
+    private long orderId;
+
+    public static OrderRequest limit(OrderType type, int quantity, long price, String accountId, String symbol, long clientOrderId) {
+        return new OrderRequest(OrderAction.NEW_LIMIT, type, quantity, price, accountId, symbol, clientOrderId, 0);
+    }
+
+    public static OrderRequest cancel(long orderId, String accountId, String symbol, long clientOrderId) {
+        return new OrderRequest(OrderAction.CANCEL, null, 0, 0, accountId, symbol, clientOrderId, orderId);
+    }
+
+    public static OrderRequest replace(long orderId, int quantity, long price, String accountId, String symbol, long clientOrderId) {
+        return new OrderRequest(OrderAction.CANCEL_REPLACE, null, quantity, price, accountId, symbol, clientOrderId, orderId);
+    }
+}
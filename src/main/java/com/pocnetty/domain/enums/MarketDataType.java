@@ -0,0 +1,16 @@
+package com.pocnetty.domain.enums;
+
+public enum MarketDataType {
+    /**
+     * New state of one price level.
+     */
+    LEVEL,
+    /**
+     * An execution at one price level.
+     */
+    TRADE,
+    /**
+     * Start of a full-depth refresh: the levels that follow replace the symbol's whole book.
+     */
+    REFRESH
+}
@@ -0,0 +1,8 @@
+package com.pocnetty.domain.enums;
+
+public enum OrderAction {
+    MARKET,
+    NEW_LIMIT,
+    CANCEL,
+    CANCEL_REPLACE
+}
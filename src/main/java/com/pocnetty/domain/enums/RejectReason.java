@@ -0,0 +1,40 @@
+package com.pocnetty.domain.enums;
+
+/**
+ * Why the pre-trade risk check refused an order; carried by its REJECTED report.
+ */
+public enum RejectReason {
+    /**
+     * The account id is missing, empty or longer than the journal can record, or the shard has no risk slot left for a
+     * new account.
+     */
+    INVALID_ACCOUNT,
+    /**
+     * The quantity is not positive.
+     */
+    INVALID_QUANTITY,
+    /**
+     * Fat finger: the quantity is above the per-order maximum.
+     */
+    MAX_ORDER_QUANTITY,
+    /**
+     * Fat finger: quantity times price is above the per-order maximum notional.
+     */
+    MAX_ORDER_NOTIONAL,
+    /**
+     * Fat finger: the limit price is too far from the book's reference price.
+     */
+    PRICE_BAND,
+    /**
+     * The account sent more orders in the last second than it is allowed to.
+     */
+    ORDER_RATE,
+    /**
+     * The position the account would hold if all its open orders on that side filled is above its limit.
+     */
+    POSITION_LIMIT,
+    /**
+     * The notional of the account's resting orders would be above its limit.
+     */
+    OPEN_NOTIONAL_LIMIT
+}
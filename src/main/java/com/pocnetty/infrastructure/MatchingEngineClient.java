@@ -1,6 +1,9 @@
 package com.pocnetty.infrastructure;// MatchingEngineClient.java
 import com.pocnetty.domain.dto.MarketOrder;
 import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
 import com.pocnetty.infrastructure.handlers.MatchingEngineClientHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
@@ -17,12 +20,15 @@ import io.netty.util.CharsetUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class MatchingEngineClient {
+    private static final ObjectMapper mapper = new ObjectMapper();
     private final String host;
     private final int port;
+    private final WireProtocol protocol;
 
-    public MatchingEngineClient(String host, int port) {
+    public MatchingEngineClient(String host, int port, WireProtocol protocol) {
         this.host = host;
         this.port = port;
+        this.protocol = protocol;
     }
 
     public void run() throws Exception {
@@ -35,18 +41,26 @@ public class MatchingEngineClient {
                         @Override
                         protected void initChannel(SocketChannel ch) {
                             ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new DelimiterBasedFrameDecoder(8192, Unpooled.wrappedBuffer("\n".getBytes())));
-                            pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-                            pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+                            if (protocol == WireProtocol.BINARY) {
+                                pipeline.addLast(new BinaryReportDecoder());
+                                pipeline.addLast(new BinaryOrderEncoder());
+                            } else {
+                                pipeline.addLast(new DelimiterBasedFrameDecoder(8192, Unpooled.wrappedBuffer("\n".getBytes())));
+                                pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
+                                pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+                            }
                             pipeline.addLast(new MatchingEngineClientHandler());
                         }
                     });
 
             ChannelFuture f = b.connect(host, port).sync();
             MarketOrder order = new MarketOrder(OrderType.BUY, 10, "1233");
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonOrder = mapper.writeValueAsString(order) + "\n";
-            f.channel().writeAndFlush(jsonOrder);
+            if (protocol == WireProtocol.BINARY) {
+                f.channel().writeAndFlush(order);
+            } else {
+                String jsonOrder = mapper.writeValueAsString(order) + "\n";
+                f.channel().writeAndFlush(jsonOrder);
+            }
             f.channel().closeFuture().sync();
         } finally {
             group.shutdownGracefully();
@@ -1,52 +1,533 @@
 package com.pocnetty.infrastructure;
 
+import com.pocnetty.infrastructure.codec.BinaryOrderDecoder;
+import com.pocnetty.infrastructure.codec.BinaryReportEncoder;
+import com.pocnetty.infrastructure.codec.JsonOrderDecoder;
+import com.pocnetty.infrastructure.codec.JsonReportEncoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.handlers.DepthQueryHandler;
 import com.pocnetty.infrastructure.handlers.MatchingEngineHandler;
+import com.pocnetty.infrastructure.marketdata.MarketDataFeed;
+import com.pocnetty.infrastructure.marketdata.MarketDataSubscriber;
+import com.pocnetty.infrastructure.metrics.FlushTimingHandler;
+import com.pocnetty.infrastructure.metrics.MetricsHttpHandler;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.posttrade.AuditLogConsumer;
+import com.pocnetty.infrastructure.posttrade.PostTradeConsumer;
+import com.pocnetty.infrastructure.posttrade.PostTradeDispatcher;
+import com.pocnetty.infrastructure.posttrade.SyntheticDelayConsumer;
+import com.pocnetty.infrastructure.replication.ReplicationLink;
+import com.pocnetty.infrastructure.replication.ReplicationPrimaryHandler;
+import com.pocnetty.infrastructure.replication.ReplicationProtocol;
+import com.pocnetty.infrastructure.replication.ReplicationRole;
+import com.pocnetty.infrastructure.replication.ReplicationStandbyHandler;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.transport.ServerTransport;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.buffer.Unpooled;
-import io.netty.util.CharsetUtil;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
 @Slf4j
 public class MatchingEngineServer {
-    private final int port;
+    private static final int MAX_JSON_LINE_LENGTH = 8192;
+    private static final int MAX_METRICS_REQUEST_LENGTH = 8192;
+
+    private final AppProperties.Server serverProperties;
+    private final AppProperties.Engine engineProperties;
+    private final AppProperties.Journal journalProperties;
+    private final AppProperties.Snapshot snapshotProperties;
+    private final List<Channel> serverChannels = new CopyOnWriteArrayList<>();
+    private final CountDownLatch promoted = new CountDownLatch(1);
+    //set by the first loss of the primary, so a reconnect lost while promoting cannot promote twice
+    private final AtomicBoolean promoting = new AtomicBoolean();
+    private ServerTransport transport;
+    private int acceptors;
+    private ByteBufAllocator allocator;
+    private InstrumentRouter router;
+    private MarketDataFeed marketDataFeed;
+    private Channel marketDataChannel;
+    private ServerMetrics metrics = ServerMetrics.NONE;
+    private Channel metricsChannel;
+    private PostTradeDispatcher postTrade;
+    private boolean standby;
+    private ReplicationLink replicationLink;
+    private volatile Channel replicationChannel;
+    private EventLoopGroup replicationGroup;
+    private Bootstrap replicationBootstrap;
+    private volatile boolean stopping;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
 
-    public MatchingEngineServer(int port) {
-        this.port = port;
+    public MatchingEngineServer(AppProperties.Server serverProperties, AppProperties.Engine engineProperties,
+                                AppProperties.Journal journalProperties, AppProperties.Snapshot snapshotProperties) {
+        this.serverProperties = serverProperties;
+        this.engineProperties = engineProperties;
+        this.journalProperties = journalProperties;
+        this.snapshotProperties = snapshotProperties;
     }
 
     public void run() throws Exception {
-        NioEventLoopGroup bossGroup = new NioEventLoopGroup(1);
-        NioEventLoopGroup workerGroup = new NioEventLoopGroup();
+        start();
         try {
-            ServerBootstrap serverBootstrap = new ServerBootstrap();
-            serverBootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new DelimiterBasedFrameDecoder(8192, Unpooled.wrappedBuffer("\n".getBytes())));
-                            pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-                            pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
-                            pipeline.addLast(new MatchingEngineHandler());
-                        }
-                    });
-
-            ChannelFuture f = serverBootstrap.bind(port).sync();
-            log.debug("Server started on port " + port);
-            f.channel().closeFuture().sync();
+            if (standby) {
+                //a standby has nothing to serve until it takes over
+                promoted.await();
+            }
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.closeFuture().sync();
+            }
         } finally {
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+            stop();
+        }
+    }
+
+    /**
+     * Starts the matching shards and binds every listener without blocking the caller. A standby
+     * instead connects to its primary and only starts its shards and binds its listeners as it
+     * receives the primary's books, and once it takes over.
+     */
+    public MatchingEngineServer start() throws InterruptedException {
+        transport = ServerTransport.select(serverProperties.getTransport());
+        acceptors = acceptorsPerListener(transport);
+        allocator = newAllocator(serverProperties.getAllocator());
+        AppProperties.MarketData marketData = serverProperties.getMarketData();
+        AppProperties.Metrics metricsProperties = serverProperties.getMetrics();
+        AppProperties.Replication replication = serverProperties.getReplication();
+        standby = replication.getRole() == ReplicationRole.STANDBY;
+        if (standby) {
+            checkEmptyJournal();
+        }
+        router = new InstrumentRouter(engineProperties, journalProperties, snapshotProperties);
+        if (marketData.isEnabled()) {
+            marketDataFeed = new MarketDataFeed(allocator);
+            router.withMarketData(marketDataFeed);
+        }
+        if (metricsProperties.isEnabled()) {
+            metrics = new ServerMetrics();
+            router.withMetrics(metrics);
+        }
+        if (serverProperties.getPostTrade().isEnabled()) {
+            postTrade = newPostTrade(serverProperties.getPostTrade());
+            router.withPostTrade(postTrade);
+        }
+        if (replication.getRole() == ReplicationRole.PRIMARY) {
+            replicationLink = new ReplicationLink(allocator, metrics);
+            router.withReplication(replicationLink);
+        }
+        if (!standby) {
+            router.start();
+        }
+        bossGroup = transport.newGroup(Math.max(serverProperties.getBossThreads(), acceptors), "boss");
+        workerGroup = transport.newGroup(serverProperties.getWorkerThreads(), "worker");
+        if (metrics.isEnabled()) {
+            metrics.registerShards(router.shards())
+                    .registerEventLoops("boss", bossGroup)
+                    .registerEventLoops("worker", workerGroup);
+            if (marketDataFeed != null) {
+                metrics.registerMarketData(marketDataFeed);
+            }
+            if (replicationLink != null) {
+                metrics.registerReplication(replicationLink);
+            }
+            if (postTrade != null) {
+                metrics.registerPostTrade(postTrade);
+            }
+        }
+        logSettings(transport, acceptors);
+        scheduleShardStats(bossGroup, router);
+        try {
+            if (standby) {
+                connectToPrimary(replication);
+            } else {
+                bindListeners();
+            }
+            if (replicationLink != null) {
+                replicationChannel = newBootstrap(transport, allocator, new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(ReplicationProtocol.newFrameDecoder(),
+                                new IdleStateHandler(0, replication.getHeartbeatIntervalMillis(), 0, TimeUnit.MILLISECONDS),
+                                new ReplicationPrimaryHandler(replicationLink));
+                    }
+                }).bind(replication.getPort()).sync().channel();
+                log.info("Replicating to a standby on port {}", replicationPort());
+            }
+            if (metrics.isEnabled()) {
+                MetricsHttpHandler metricsHandler = new MetricsHttpHandler(metrics);
+                metricsChannel = newBootstrap(transport, allocator, new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(MAX_METRICS_REQUEST_LENGTH), metricsHandler);
+                    }
+                }).bind(metricsProperties.getPort()).sync().channel();
+                log.info("Metrics served at http://localhost:{}{}", metricsPort(), MetricsHttpHandler.PATH);
+            }
+        } catch (Exception e) {
+            //sync() rethrows bind failures unchecked, so release everything before propagating
+            stop();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * Binds the order entry listeners and the market data port.
+     */
+    private void bindListeners() throws InterruptedException {
+        AppProperties.MarketData marketData = serverProperties.getMarketData();
+        FlushTimingHandler flushTiming = metrics.isEnabled() ? new FlushTimingHandler(metrics) : null;
+        for (AppProperties.Listener listener : serverProperties.getListeners()) {
+            ServerBootstrap serverBootstrap = newBootstrap(transport, allocator, new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ChannelPipeline pipeline = ch.pipeline();
+                    if (flushTiming != null) {
+                        pipeline.addLast(flushTiming);
+                    }
+                    addCodec(pipeline, listener.getProtocol(), metrics);
+                    pipeline.addLast(new DepthQueryHandler(router, metrics));
+                    pipeline.addLast(new MatchingEngineHandler(router, metrics, serverProperties.getMaxInFlightOrders()));
+                }
+            });
+            if (acceptors > 1) {
+                serverBootstrap.option(transport.getReusePortOption(), true);
+            }
+
+            Channel first = serverBootstrap.bind(listener.getPort()).sync().channel();
+            serverChannels.add(first);
+            //with port 0 the extra acceptors must join the port the first bind was given
+            int port = ((InetSocketAddress) first.localAddress()).getPort();
+            for (int i = 1; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind(port).sync().channel());
+            }
+            log.debug("Server started on port " + port + " speaking " + listener.getProtocol());
+        }
+        if (marketDataFeed != null) {
+            marketDataChannel = newBootstrap(transport, allocator, new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new MarketDataSubscriber(marketDataFeed));
+                }
+            }).bind(marketData.getPort()).sync().channel();
+            marketDataFeed.scheduleRefresh(bossGroup, marketData.getRefreshIntervalMillis());
+            log.info("Market data published on port {}", marketDataPort());
+        }
+    }
+
+    /**
+     * Connects the standby to its primary on an event loop of its own, retrying until the primary is up.
+     */
+    private void connectToPrimary(AppProperties.Replication replication) {
+        replicationGroup = transport.newGroup(1, "replication");
+        replicationBootstrap = new Bootstrap()
+                .group(replicationGroup)
+                .channel(transport.getSocketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                //an unreachable primary is as lost as a silent one
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) replication.getHeartbeatTimeoutMillis())
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(ReplicationProtocol.newFrameDecoder(),
+                                new IdleStateHandler(replication.getHeartbeatTimeoutMillis(), 0, 0, TimeUnit.MILLISECONDS),
+                                new ReplicationStandbyHandler(router.shards(), MatchingEngineServer.this::promote,
+                                        MatchingEngineServer.this::reconnectOrPromote));
+                    }
+                });
+        connect(replicationBootstrap, replication);
+    }
+
+    /**
+     * Connects to the primary again after a link that was working closed, as the primary drops a
+     * standby that falls too far behind and sends it new snapshots once it is back. Takes over when
+     * the primary cannot be reached, or, through the new link's handler, when it sends nothing over it.
+     */
+    private void reconnectOrPromote() {
+        if (stopping) {
+            return;
+        }
+        AppProperties.Replication replication = serverProperties.getReplication();
+        replicationBootstrap.connect(replication.getPrimaryHost(), replication.getPrimaryPort()).addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                replicationChannel = future.channel();
+                log.warn("Reconnected to primary {}:{}, starting over from its snapshots", replication.getPrimaryHost(),
+                        replication.getPrimaryPort());
+            } else {
+                log.warn("Primary {}:{} unreachable ({})", replication.getPrimaryHost(), replication.getPrimaryPort(),
+                        future.cause().getMessage());
+                promote();
+            }
+        });
+    }
+
+    private void connect(Bootstrap bootstrap, AppProperties.Replication replication) {
+        bootstrap.connect(replication.getPrimaryHost(), replication.getPrimaryPort()).addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                replicationChannel = future.channel();
+            } else if (!stopping) {
+                log.warn("Primary {}:{} unreachable ({}), retrying", replication.getPrimaryHost(), replication.getPrimaryPort(),
+                        future.cause().getMessage());
+                future.channel().eventLoop().schedule(() -> connect(bootstrap, replication),
+                        replication.getHeartbeatTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Turns the standby into a primary: starts the shards the primary never sent books for and binds
+     * the listeners. Runs on a thread of its own, as binding blocks and must not run on an event loop.
+     */
+    private void promote() {
+        if (stopping || !promoting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread promotion = new Thread(() -> {
+            try {
+                for (MatchingCore shard : router.shards()) {
+                    if (!shard.isStarted()) {
+                        log.warn("{} never received the primary's books, starting it from its own state", shard.getName());
+                        shard.start();
+                    }
+                }
+                bindListeners();
+                log.warn("Standby promoted to primary, taking orders on ports {}", boundPorts());
+                promoted.countDown();
+            } catch (Exception e) {
+                log.error("Standby promotion failed", e);
+            }
+        }, "standby-promotion");
+        promotion.start();
+    }
+
+    /**
+     * Waits until a standby has taken over from its primary.
+     *
+     * @return {@code true} once promoted, {@code false} when the timeout elapsed first
+     */
+    public boolean awaitPromotion(long timeout, TimeUnit unit) throws InterruptedException {
+        return promoted.await(timeout, unit);
+    }
+
+    private void checkEmptyJournal() {
+        Path root = Path.of(journalProperties.getDirectory());
+        if (!journalProperties.isEnabled() || !Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).findFirst().ifPresent(file -> {
+                throw new IllegalStateException("A standby takes its books from the primary and needs an empty journal directory, found "
+                        + file);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ServerBootstrap newBootstrap(ServerTransport transport, ByteBufAllocator allocator, ChannelInitializer<Channel> initializer) {
+        ServerBootstrap serverBootstrap = new ServerBootstrap();
+        serverBootstrap.group(bossGroup, workerGroup)
+                .channel(transport.getServerChannelClass())
+                .option(ChannelOption.SO_BACKLOG, serverProperties.getSoBacklog())
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.TCP_NODELAY, serverProperties.isTcpNoDelay())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        serverProperties.getWriteBufferLowWaterMark(), serverProperties.getWriteBufferHighWaterMark()))
+                .childHandler(initializer);
+        if (serverProperties.getSoRcvBuf() > 0) {
+            //set on the listening socket too, accepted sockets inherit it before the TCP window is negotiated
+            serverBootstrap.option(ChannelOption.SO_RCVBUF, serverProperties.getSoRcvBuf());
+            serverBootstrap.childOption(ChannelOption.SO_RCVBUF, serverProperties.getSoRcvBuf());
+        }
+        if (serverProperties.getSoSndBuf() > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, serverProperties.getSoSndBuf());
+        }
+        return serverBootstrap;
+    }
+
+    private int acceptorsPerListener(ServerTransport transport) {
+        if (!serverProperties.isReusePort() || serverProperties.getAcceptors() <= 1) {
+            return 1;
+        }
+        if (transport.getReusePortOption() == null) {
+            log.warn("SO_REUSEPORT needs a native transport, binding each listener once on {}", transport.getType());
+            return 1;
+        }
+        return serverProperties.getAcceptors();
+    }
+
+    private static ByteBufAllocator newAllocator(AppProperties.Allocator properties) {
+        return new PooledByteBufAllocator(properties.isPreferDirect(), properties.getHeapArenas(), properties.getDirectArenas(),
+                properties.getPageSize(), properties.getMaxOrder(), properties.getSmallCacheSize(),
+                properties.getNormalCacheSize(), properties.isUseCacheForAllThreads());
+    }
+
+    private void logSettings(ServerTransport transport, int acceptors) {
+        AppProperties.Allocator allocator = serverProperties.getAllocator();
+        log.info("Transport {} (requested {}), {} boss and {} worker threads, {} acceptor(s) per listener",
+                transport.getType(), serverProperties.getTransport(), threads(bossGroup), threads(workerGroup), acceptors);
+        log.info("Channel options: TCP_NODELAY={} SO_RCVBUF={} SO_SNDBUF={} SO_BACKLOG={} write buffer water mark {}-{}, {} orders in flight per connection",
+                serverProperties.isTcpNoDelay(), socketBuffer(serverProperties.getSoRcvBuf()),
+                socketBuffer(serverProperties.getSoSndBuf()), serverProperties.getSoBacklog(),
+                serverProperties.getWriteBufferLowWaterMark(), serverProperties.getWriteBufferHighWaterMark(),
+                serverProperties.getMaxInFlightOrders());
+        log.info("Pooled allocator: preferDirect={} heapArenas={} directArenas={} pageSize={} maxOrder={} smallCache={} normalCache={} cacheForAllThreads={}",
+                allocator.isPreferDirect(), allocator.getHeapArenas(), allocator.getDirectArenas(), allocator.getPageSize(),
+                allocator.getMaxOrder(), allocator.getSmallCacheSize(), allocator.getNormalCacheSize(),
+                allocator.isUseCacheForAllThreads());
+    }
+
+    private static int threads(EventLoopGroup group) {
+        int threads = 0;
+        for (EventExecutor ignored : group) {
+            threads++;
+        }
+        return threads;
+    }
+
+    private static String socketBuffer(int size) {
+        return size > 0 ? String.valueOf(size) : "default";
+    }
+
+    /**
+     * @return the bound port of each listener, in configuration order; useful when a listener asks for port 0
+     */
+    public List<Integer> boundPorts() {
+        List<Integer> ports = new ArrayList<>();
+        for (Channel serverChannel : serverChannels) {
+            ports.add(((InetSocketAddress) serverChannel.localAddress()).getPort());
+        }
+        return ports;
+    }
+
+    /**
+     * @return the bound market data port, or {@code -1} when the feed is disabled
+     */
+    public int marketDataPort() {
+        return marketDataChannel == null ? -1 : ((InetSocketAddress) marketDataChannel.localAddress()).getPort();
+    }
+
+    /**
+     * @return the port a primary accepts its standby on, or {@code -1} when it is not a primary
+     */
+    public int replicationPort() {
+        return replicationLink == null || replicationChannel == null ? -1
+                : ((InetSocketAddress) replicationChannel.localAddress()).getPort();
+    }
+
+    /**
+     * @return the bound metrics port, or {@code -1} when metrics are disabled
+     */
+    public int metricsPort() {
+        return metricsChannel == null ? -1 : ((InetSocketAddress) metricsChannel.localAddress()).getPort();
+    }
+
+    /**
+     * Closes the listeners, waits for the event loops to terminate and stops the matching shards.
+     */
+    public void stop() throws InterruptedException {
+        //closing the link to the primary must not promote the standby
+        stopping = true;
+        if (replicationGroup != null) {
+            replicationGroup.shutdownGracefully().sync();
+        }
+        if (replicationLink != null && replicationChannel != null) {
+            replicationChannel.close().sync();
+        }
+        for (Channel serverChannel : serverChannels) {
+            serverChannel.close().sync();
+        }
+        if (marketDataChannel != null) {
+            marketDataChannel.close().sync();
+        }
+        if (metricsChannel != null) {
+            metricsChannel.close().sync();
+        }
+        if (marketDataFeed != null) {
+            marketDataFeed.close();
+        }
+        workerGroup.shutdownGracefully().sync();
+        bossGroup.shutdownGracefully().sync();
+        router.close();
+        if (postTrade != null) {
+            //after the matching threads, so every report they dispatched is still handled
+            postTrade.close();
+        }
+    }
+
+    private static PostTradeDispatcher newPostTrade(AppProperties.PostTrade properties) {
+        List<PostTradeConsumer> consumers = new ArrayList<>();
+        if (properties.isAuditLog()) {
+            consumers.add(new AuditLogConsumer());
+        }
+        if (properties.getSyntheticDelayMicros() > 0) {
+            consumers.add(new SyntheticDelayConsumer(properties.getSyntheticDelayMicros()));
+        }
+        log.info("Post-trade: {} on {} virtual-thread lanes of {} reports", consumers.stream()
+                        .map(consumer -> consumer.getClass().getSimpleName()).toList(),
+                properties.getLanes(), properties.getLaneCapacity());
+        return new PostTradeDispatcher(consumers, properties.getLanes(), properties.getLaneCapacity());
+    }
+
+    private void scheduleShardStats(EventLoopGroup group, InstrumentRouter router) {
+        int interval = engineProperties.getStatsIntervalSeconds();
+        if (interval <= 0) {
+            return;
+        }
+        long[] lastProcessed = new long[router.shards().size()];
+        group.scheduleAtFixedRate(() -> {
+            List<MatchingCore> shards = router.shards();
+            for (int i = 0; i < shards.size(); i++) {
+                MatchingCore shard = shards.get(i);
+                long processed = shard.processedCount();
+                log.info("{} {}: queue depth {}, processed {}, {} orders/s", shard.getName(), shard.symbols(),
+                        shard.queueDepth(), processed, (processed - lastProcessed[i]) / interval);
+                lastProcessed[i] = processed;
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static void addCodec(ChannelPipeline pipeline, WireProtocol protocol, ServerMetrics metrics) {
+        switch (protocol) {
+            case JSON -> {
+                pipeline.addLast(new LineBasedFrameDecoder(MAX_JSON_LINE_LENGTH));
+                pipeline.addLast(new JsonReportEncoder(metrics));
+                pipeline.addLast(new JsonOrderDecoder(metrics));
+            }
+            case BINARY -> {
+                pipeline.addLast(new BinaryOrderDecoder(metrics));
+                pipeline.addLast(new BinaryReportEncoder(metrics));
+            }
         }
     }
 }
@@ -0,0 +1,148 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.BinaryProtocol;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Layout of a capture file: the order flow one matching shard sequenced, with the time each event
+ * was received and the report it was answered with, so it can be replayed and checked.
+ * <p>
+ * All fields are little-endian:
+ * <pre>
+ * header   magic:int32 version:int32 snapshotLength:int32 snapshot:bytes
+ * record   length:int32 receivedNanos:int64 sequence:int64 action:int8 side:int8 quantity:int32 price:int64
+ *          orderId:int64 clientOrderId:int64 symbolLength:uint8 symbol:ascii accountLength:uint8 accountId:ascii
+ *          report:bytes
+ * </pre>
+ * The snapshot, in the {@link SnapshotStore} format, holds the shard's books when the capture
+ * started, which every record after it applies to in order. {@code receivedNanos} is the
+ * {@link System#nanoTime()} at which an event loop handed the event to the shard, so only the
+ * differences between records mean anything. {@code side} is {@code -1} for events without one,
+ * prices are in ticks and {@code report} is the whole EXECUTION_REPORT frame of
+ * {@link BinaryProtocol}, byte for byte what a binary client received.
+ */
+public final class CaptureFormat {
+
+    public static final int MAGIC = 0x43415054;
+    public static final int VERSION = 1;
+    public static final int LENGTH_FIELD_SIZE = 4;
+    public static final int MAX_TEXT_LENGTH = 255;
+    public static final String FILE_SUFFIX = ".capture";
+
+    private static final OrderAction[] ACTIONS = OrderAction.values();
+    private static final OrderType[] SIDES = OrderType.values();
+    private static final byte NO_SIDE = -1;
+
+    private CaptureFormat() {
+    }
+
+    public static void writeHeader(ByteBuf out, ShardSnapshot books) throws IOException {
+        out.writeIntLE(MAGIC);
+        out.writeIntLE(VERSION);
+        int lengthIndex = out.writerIndex();
+        out.writeIntLE(0);
+        try (DataOutputStream stream = new DataOutputStream(new ByteBufOutputStream(out))) {
+            SnapshotStore.writeTo(stream, books);
+        }
+        out.setIntLE(lengthIndex, out.writerIndex() - lengthIndex - LENGTH_FIELD_SIZE);
+    }
+
+    /**
+     * @param in holds at least the whole header
+     */
+    public static ShardSnapshot readHeader(ByteBuf in) throws IOException {
+        int magic = in.readIntLE();
+        int version = in.readIntLE();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Not a capture file of version " + VERSION + ": magic " + Integer.toHexString(magic)
+                    + ", version " + version);
+        }
+        int length = in.readIntLE();
+        return SnapshotStore.readFrom(new DataInputStream(new ByteBufInputStream(in.readSlice(length))));
+    }
+
+    /**
+     * Writes one record, its report encoded as the binary protocol would.
+     *
+     * @param price the limit price in ticks
+     */
+    public static void writeRecord(ByteBuf out, long receivedNanos, long sequence, OrderAction action, OrderType side,
+                                   int quantity, long price, long orderId, long clientOrderId, String symbol,
+                                   String accountId, ExecutionReport report) {
+        //checked up front so a refused record leaves nothing half written behind
+        checkText(symbol);
+        checkText(accountId);
+        int start = out.writerIndex();
+        out.writeIntLE(0);
+        out.writeLongLE(receivedNanos);
+        out.writeLongLE(sequence);
+        out.writeByte(action.ordinal());
+        out.writeByte(side == null ? NO_SIDE : side.ordinal());
+        out.writeIntLE(quantity);
+        out.writeLongLE(price);
+        out.writeLongLE(orderId);
+        out.writeLongLE(clientOrderId);
+        writeText(out, symbol);
+        writeText(out, accountId);
+        BinaryProtocol.writeExecutionReport(out, report);
+        out.setIntLE(start, out.writerIndex() - start - LENGTH_FIELD_SIZE);
+    }
+
+    /**
+     * Reads the record that starts at the reader index of {@code in}, which must hold all of it.
+     * The event's report is a slice of {@code in}.
+     */
+    public static void readRecord(ByteBuf in, CapturedEvent event) {
+        int length = in.readIntLE();
+        int end = in.readerIndex() + length;
+        event.receivedNanos = in.readLongLE();
+        event.sequence = in.readLongLE();
+        event.action = ACTIONS[in.readByte()];
+        byte side = in.readByte();
+        event.side = side == NO_SIDE ? null : SIDES[side];
+        event.quantity = in.readIntLE();
+        event.price = in.readLongLE();
+        event.orderId = in.readLongLE();
+        event.clientOrderId = in.readLongLE();
+        event.symbol = readText(in);
+        event.accountId = readText(in);
+        event.report = in.readSlice(end - in.readerIndex());
+    }
+
+    private static void checkText(String value) {
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Captured text fields are limited to " + MAX_TEXT_LENGTH + " characters: " + value);
+        }
+    }
+
+    private static void writeText(ByteBuf out, String value) {
+        int length = value == null ? 0 : value.length();
+        out.writeByte(length);
+        for (int i = 0; i < length; i++) {
+            out.writeByte(value.charAt(i));
+        }
+    }
+
+    private static String readText(ByteBuf in) {
+        int length = in.readUnsignedByte();
+        if (length == 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) in.readByte();
+        }
+        return new String(chars);
+    }
+}
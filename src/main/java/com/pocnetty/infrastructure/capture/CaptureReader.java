@@ -0,0 +1,94 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a capture file front to back through one reused buffer, so files of any size can be
+ * replayed without loading them.
+ */
+public class CaptureReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel file;
+    private final ShardSnapshot books;
+    private ByteBuf buffer = Unpooled.buffer(BUFFER_SIZE);
+    private boolean endOfFile;
+
+    public CaptureReader(Path path) throws IOException {
+        this.file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            //the header holds every book of the shard, so it may be larger than the buffer
+            int headerLength = 3 * Integer.BYTES;
+            fill(headerLength);
+            int snapshotLength = buffer.getIntLE(buffer.readerIndex() + 2 * Integer.BYTES);
+            if (!fill(headerLength + snapshotLength)) {
+                throw new EOFException("Truncated capture header in " + path);
+            }
+            this.books = CaptureFormat.readHeader(buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the shard's books when the capture started
+     */
+    public ShardSnapshot books() {
+        return books;
+    }
+
+    /**
+     * Reads the next record into {@code event}. Its report stays valid until the next call.
+     *
+     * @return {@code false} at the end of the file, including a last record cut short by a crash
+     */
+    public boolean next(CapturedEvent event) throws IOException {
+        if (!fill(CaptureFormat.LENGTH_FIELD_SIZE)) {
+            return false;
+        }
+        int length = buffer.getIntLE(buffer.readerIndex());
+        if (!fill(CaptureFormat.LENGTH_FIELD_SIZE + length)) {
+            return false;
+        }
+        CaptureFormat.readRecord(buffer, event);
+        return true;
+    }
+
+    /**
+     * Makes sure {@code bytes} bytes are readable, reading more of the file when needed.
+     *
+     * @return {@code false} when the file ends first
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.readableBytes() >= bytes) {
+            return true;
+        }
+        buffer.discardReadBytes();
+        if (buffer.capacity() < bytes) {
+            ByteBuf larger = Unpooled.buffer(bytes);
+            larger.writeBytes(buffer);
+            buffer = larger;
+        }
+        while (buffer.readableBytes() < bytes && !endOfFile) {
+            if (buffer.writeBytes(file, buffer.writableBytes()) < 0) {
+                endOfFile = true;
+            }
+        }
+        return buffer.readableBytes() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
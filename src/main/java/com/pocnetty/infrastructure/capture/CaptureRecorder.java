@@ -0,0 +1,172 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the order flow of one matching shard into a capture file (see {@link CaptureFormat}),
+ * on the shard's matching thread.
+ * <p>
+ * Records are encoded into one pooled buffer as events are applied, and each batch is handed to a
+ * writer thread of its own when the matching core calls {@link #flush()}, so the matching thread
+ * never waits on the disk. When the writer falls more than {@code maxPendingBytes} behind, the
+ * capture stops rather than let the backlog grow; the file written so far stays a valid capture.
+ * <p>
+ * Not thread-safe: every method but {@link #close()} is called on the matching thread.
+ */
+@Slf4j
+public class CaptureRecorder implements AutoCloseable {
+
+    private static final int INITIAL_BATCH_CAPACITY = 64 * 1024;
+
+    private final Path directory;
+    private final String name;
+    private final long maxPendingBytes;
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private ExecutorService writer;
+    private FileChannel file;
+    private Path path;
+    private boolean recording;
+    private ByteBuf batch;
+
+    /**
+     * @param directory       where the capture file is created
+     * @param name            the shard's name, which starts the file name
+     * @param maxPendingBytes captured bytes the writer may lag behind before the capture stops
+     */
+    public CaptureRecorder(Path directory, String name, long maxPendingBytes) {
+        this.directory = directory;
+        this.name = name;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Creates the capture file and writes the books every following record applies to. Called once
+     * the shard has recovered, before its matching thread starts.
+     */
+    public void begin(long lastSequence, Collection<MatchingEngine> engines) {
+        List<BookSnapshot> books = new ArrayList<>(engines.size());
+        for (MatchingEngine engine : engines) {
+            books.add(engine.snapshot());
+        }
+        ByteBuf header = allocator.heapBuffer(INITIAL_BATCH_CAPACITY);
+        try {
+            Files.createDirectories(directory);
+            path = directory.resolve(name + "-" + System.currentTimeMillis() + CaptureFormat.FILE_SUFFIX);
+            file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            CaptureFormat.writeHeader(header, new ShardSnapshot(lastSequence, System.currentTimeMillis(), books));
+            write(header);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start capture in " + directory, e);
+        } finally {
+            header.release();
+        }
+        writer = Executors.newSingleThreadExecutor(new DefaultThreadFactory(name + "-capture"));
+        recording = true;
+        log.info("{} capturing its order flow to {}", name, path);
+    }
+
+    /**
+     * Encodes a sequenced event and the report it was answered with.
+     *
+     * @param price the limit price in ticks
+     */
+    public void record(long receivedNanos, long sequence, OrderAction action, OrderType side, int quantity, long price,
+                       long orderId, long clientOrderId, String symbol, String accountId, ExecutionReport report) {
+        if (!recording) {
+            return;
+        }
+        if (batch == null) {
+            batch = allocator.directBuffer(INITIAL_BATCH_CAPACITY);
+        }
+        CaptureFormat.writeRecord(batch, receivedNanos, sequence, action, side, quantity, price, orderId, clientOrderId,
+                symbol, accountId, report);
+    }
+
+    /**
+     * Hands the records encoded since the last call to the writer thread.
+     */
+    public void flush() {
+        if (batch == null) {
+            return;
+        }
+        ByteBuf full = batch;
+        batch = null;
+        int size = full.readableBytes();
+        if (pendingBytes.addAndGet(size) > maxPendingBytes) {
+            pendingBytes.addAndGet(-size);
+            full.release();
+            recording = false;
+            log.warn("{} stopped capturing, the writer of {} is more than {} bytes behind", name, path, maxPendingBytes);
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                if (file.isOpen()) {
+                    write(full);
+                }
+            } catch (IOException e) {
+                log.error("Failed to write capture " + path, e);
+            } finally {
+                pendingBytes.addAndGet(-size);
+                full.release();
+            }
+        });
+    }
+
+    private void write(ByteBuf buffer) throws IOException {
+        while (buffer.isReadable()) {
+            buffer.readBytes(file, buffer.readableBytes());
+        }
+    }
+
+    /**
+     * @return the capture file, or {@code null} before {@link #begin}
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Writes what was captured and closes the file. Call once the matching thread has stopped.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        flush();
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
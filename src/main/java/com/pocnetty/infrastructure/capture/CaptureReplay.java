@@ -0,0 +1,236 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchResult;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.BinaryProtocol;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays captured order flow into fresh {@link MatchingEngine}s and checks every report against
+ * the recorded one, byte for byte. Also generates synthetic captures, so the same replay doubles
+ * as a regression benchmark on datasets of any size.
+ * <p>
+ * The engines start from the books in the capture's header and apply its records in sequence
+ * order on the calling thread, exactly as the shard's matching thread did, so any report that
+ * differs points at a change in matching behaviour. Records are sequenced events only: orders the
+ * pre-trade risk check refused never reached the engine and are not captured.
+ * <p>
+ * As fast as possible, each message is due when the previous one is done and the latency is the
+ * time to match it and encode its report. Paced, each message is due at its recorded receive time
+ * relative to the first, and its latency is measured from then, so a replay that falls behind is
+ * charged for the wait (no coordinated omission).
+ * <pre>
+ * CaptureReplay replay &lt;file&gt; [paced]
+ * CaptureReplay generate &lt;file&gt; &lt;messages&gt; [seed] [messagesPerSecond]
+ * </pre>
+ */
+@Slf4j
+public final class CaptureReplay {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    //closer to its due time than this, a paced replay spins instead of parking
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int WRITE_THRESHOLD = 1 << 20;
+    private static final String SYNTHETIC_SYMBOL = "SYNTH";
+    private static final long SYNTHETIC_MID = Prices.toTicks(100.0);
+    private static final long SYNTHETIC_TICK = Prices.toTicks(0.01);
+    private static final int SYNTHETIC_ACCOUNTS = 1_000;
+    private static final int MAX_TRACKED_ORDERS = 1 << 16;
+
+    private CaptureReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("replay")) {
+            ReplayResult result = replay(Path.of(args[1]), args.length > 2 && args[2].equals("paced"));
+            Histogram latency = result.getLatency();
+            log.info("Replayed {} messages in {} ms ({} messages/s), {} report mismatches", result.getMessages(),
+                    result.getElapsedNanos() / 1_000_000, Math.round(result.throughput()), result.getMismatches());
+            log.info("Latency (us): p50={} p99={} p99.9={} p99.99={} max={}", micros(latency.getValueAtPercentile(50)),
+                    micros(latency.getValueAtPercentile(99)), micros(latency.getValueAtPercentile(99.9)),
+                    micros(latency.getValueAtPercentile(99.99)), micros(latency.getMaxValue()));
+            if (result.getFirstMismatch() != null) {
+                log.error("First mismatch: {}", result.getFirstMismatch());
+            }
+            System.exit(result.getMismatches() == 0 ? 0 : 1);
+        } else if (args.length >= 3 && args[0].equals("generate")) {
+            generate(Path.of(args[1]), Long.parseLong(args[2]), args.length > 3 ? Long.parseLong(args[3]) : 1,
+                    args.length > 4 ? Long.parseLong(args[4]) : 1_000_000);
+        } else {
+            System.err.println("Usage: CaptureReplay replay <file> [paced]");
+            System.err.println("       CaptureReplay generate <file> <messages> [seed] [messagesPerSecond]");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Replays a capture and compares every report with the recorded one.
+     *
+     * @param paced whether to keep the recorded spacing between messages instead of going as fast as possible
+     */
+    public static ReplayResult replay(Path path, boolean paced) throws IOException {
+        try (CaptureReader reader = new CaptureReader(path)) {
+            Map<String, MatchingEngine> engines = new HashMap<>();
+            for (BookSnapshot book : reader.books().getBooks()) {
+                MatchingEngine engine = new MatchingEngine(book.getSymbol());
+                engine.restore(book);
+                engines.put(book.getSymbol(), engine);
+            }
+            Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            ByteBuf replayed = Unpooled.buffer(BinaryProtocol.MAX_FRAME_LENGTH);
+            CapturedEvent event = new CapturedEvent();
+            long messages = 0;
+            long mismatches = 0;
+            String firstMismatch = null;
+            long firstReceived = 0;
+            long start = System.nanoTime();
+            while (reader.next(event)) {
+                if (messages == 0) {
+                    firstReceived = event.getReceivedNanos();
+                }
+                long due = paced ? waitUntil(start + event.getReceivedNanos() - firstReceived) : System.nanoTime();
+                ExecutionReport report = apply(engines, event);
+                replayed.clear();
+                BinaryProtocol.writeExecutionReport(replayed, report);
+                latency.recordValue(Math.max(1, Math.min(System.nanoTime() - due, HIGHEST_TRACKABLE_NANOS)));
+                if (!ByteBufUtil.equals(replayed, event.getReport())) {
+                    if (mismatches++ == 0) {
+                        firstMismatch = "sequence " + event.getSequence() + " " + event.getAction() + " from account "
+                                + event.getAccountId() + " was answered " + ByteBufUtil.hexDump(event.getReport())
+                                + " and now " + ByteBufUtil.hexDump(replayed);
+                    }
+                }
+                messages++;
+            }
+            return new ReplayResult(messages, mismatches, firstMismatch, System.nanoTime() - start, latency);
+        }
+    }
+
+    private static ExecutionReport apply(Map<String, MatchingEngine> engines, CapturedEvent event) throws IOException {
+        MatchingEngine engine = engines.get(event.getSymbol());
+        if (engine == null) {
+            throw new IOException("Sequence " + event.getSequence() + " is for " + event.getSymbol()
+                    + ", which has no book in the capture");
+        }
+        try {
+            return engine.execute(event.getAction(), event.getSide(), event.getQuantity(), event.getPrice(), event.getOrderId(),
+                    event.getAccountId(), event.getClientOrderId()).toReport();
+        } catch (RuntimeException e) {
+            //the matching core answers an event that failed to apply the same way
+            return ExecutionReport.rejected(event.getQuantity(), event.getAccountId(), event.getSymbol(),
+                    event.getClientOrderId(), event.getOrderId());
+        }
+    }
+
+    private static long waitUntil(long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Writes a synthetic capture: limit orders around a fixed mid, some crossing it, market orders,
+     * and cancels and replaces of orders still believed to rest, from a pool of accounts. The flow
+     * is matched as it is generated, so the capture records the reports a server would have sent.
+     *
+     * @param seed              the same seed generates the same capture
+     * @param messagesPerSecond spacing of the recorded receive times, which a paced replay keeps
+     */
+    public static void generate(Path path, long messages, long seed, long messagesPerSecond) throws IOException {
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        MatchingEngine engine = new MatchingEngine(SYNTHETIC_SYMBOL);
+        String[] accounts = new String[SYNTHETIC_ACCOUNTS];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = String.valueOf(1_000 + i);
+        }
+        long[] restingIds = new long[MAX_TRACKED_ORDERS];
+        int[] restingAccounts = new int[MAX_TRACKED_ORDERS];
+        int resting = 0;
+        double intervalNanos = 1e9 / messagesPerSecond;
+        ByteBuf out = Unpooled.buffer(2 * WRITE_THRESHOLD);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            CaptureFormat.writeHeader(out, new ShardSnapshot(0, System.currentTimeMillis(), List.of(engine.snapshot())));
+            for (long i = 0; i < messages; i++) {
+                int roll = random.nextInt(100);
+                //cancels and replaces become limit orders while nothing is known to rest
+                OrderAction action = roll < 45 || (roll >= 60 && resting == 0) ? OrderAction.NEW_LIMIT
+                        : roll < 60 ? OrderAction.MARKET : roll < 85 ? OrderAction.CANCEL : OrderAction.CANCEL_REPLACE;
+                OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                int quantity = 1 + random.nextInt(100);
+                //mostly behind the touch, a quarter of them crossing it
+                long offset = (random.nextInt(40) - 10) * SYNTHETIC_TICK;
+                long price = side == OrderType.BUY ? SYNTHETIC_MID - offset : SYNTHETIC_MID + offset;
+                if (action == OrderAction.MARKET) {
+                    price = 0;
+                }
+                int account = random.nextInt(accounts.length);
+                long orderId = 0;
+                if (action == OrderAction.CANCEL || action == OrderAction.CANCEL_REPLACE) {
+                    int pick = random.nextInt(resting);
+                    orderId = restingIds[pick];
+                    account = restingAccounts[pick];
+                    side = null;
+                    price = action == OrderAction.CANCEL ? 0 : price;
+                    if (action == OrderAction.CANCEL) {
+                        resting--;
+                        restingIds[pick] = restingIds[resting];
+                        restingAccounts[pick] = restingAccounts[resting];
+                    }
+                }
+                MatchResult result = engine.execute(action, side, quantity, price, orderId, accounts[account], i);
+                if (action == OrderAction.NEW_LIMIT && result.getLeavesQuantity() > 0 && resting < MAX_TRACKED_ORDERS) {
+                    restingIds[resting] = result.getOrderId();
+                    restingAccounts[resting] = account;
+                    resting++;
+                }
+                CaptureFormat.writeRecord(out, (long) (i * intervalNanos), i + 1, action, side, quantity, price, orderId, i,
+                        SYNTHETIC_SYMBOL, accounts[account], result.toReport());
+                if (out.readableBytes() >= WRITE_THRESHOLD) {
+                    writeTo(file, out);
+                }
+            }
+            writeTo(file, out);
+        }
+        log.info("Generated {} messages into {} in {} ms", messages, path, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void writeTo(FileChannel file, ByteBuf out) throws IOException {
+        while (out.isReadable()) {
+            out.readBytes(file, out.readableBytes());
+        }
+        out.clear();
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1_000;
+    }
+}
@@ -0,0 +1,31 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+/**
+ * One record read from a capture file. Instances are mutable and reused for every record read.
+ */
+@Getter
+public class CapturedEvent {
+
+    long receivedNanos;
+    long sequence;
+    OrderAction action;
+    OrderType side;
+    int quantity;
+    /**
+     * Limit price in ticks.
+     */
+    long price;
+    long orderId;
+    long clientOrderId;
+    String symbol;
+    String accountId;
+    /**
+     * The recorded EXECUTION_REPORT frame, valid until the next record is read.
+     */
+    ByteBuf report;
+}
@@ -0,0 +1,32 @@
+package com.pocnetty.infrastructure.capture;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Outcome of replaying a capture.
+ */
+@Getter
+@AllArgsConstructor
+public class ReplayResult {
+
+    private final long messages;
+    /**
+     * Reports that differed from the recorded ones.
+     */
+    private final long mismatches;
+    /**
+     * Describes the first mismatch, {@code null} when every report matched.
+     */
+    private final String firstMismatch;
+    private final long elapsedNanos;
+    /**
+     * Per-message latency in nanoseconds, from when the message was due until its report was encoded.
+     */
+    private final Histogram latency;
+
+    public double throughput() {
+        return messages * 1_000_000_000.0 / elapsedNanos;
+    }
+}
@@ -0,0 +1,69 @@
+package com.pocnetty.infrastructure.codec;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns a fixed-width ASCII field into a {@link String}, reusing the previous instance when the
+ * bytes have not changed.
+ * <p>
+ * A connection usually repeats the same account or symbol on every message, so comparing the
+ * bytes in place and handing back the cached String avoids allocating one per decoded message.
+ * Not thread-safe; keep one instance per decoder.
+ */
+public class AsciiStringCache {
+
+    private final byte[] bytes;
+    private int length = -1;
+    private String value;
+
+    public AsciiStringCache(int width) {
+        this.bytes = new byte[width];
+    }
+
+    /**
+     * @param buf   the buffer holding the field
+     * @param index absolute index of the first byte of the field
+     * @return the field value with trailing NUL padding removed
+     */
+    public String get(ByteBuf buf, int index) {
+        int fieldLength = 0;
+        while (fieldLength < bytes.length && buf.getByte(index + fieldLength) != 0) {
+            fieldLength++;
+        }
+        if (fieldLength == length && matches(buf, index)) {
+            return value;
+        }
+        return update(buf, index, fieldLength);
+    }
+
+    /**
+     * @param buf    the buffer holding the field
+     * @param index  absolute index of the first byte of the field
+     * @param length the length of a length-prefixed field, at most the cache's width
+     * @return the field value
+     */
+    public String get(ByteBuf buf, int index, int length) {
+        if (length == this.length && matches(buf, index)) {
+            return value;
+        }
+        return update(buf, index, length);
+    }
+
+    private String update(ByteBuf buf, int index, int fieldLength) {
+        buf.getBytes(index, bytes, 0, fieldLength);
+        length = fieldLength;
+        value = new String(bytes, 0, fieldLength, StandardCharsets.US_ASCII);
+        return value;
+    }
+
+    private boolean matches(ByteBuf buf, int index) {
+        for (int i = 0; i < length; i++) {
+            if (buf.getByte(index + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
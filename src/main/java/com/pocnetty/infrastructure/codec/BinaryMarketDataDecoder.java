@@ -0,0 +1,55 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.dto.MarketDataUpdate;
+import com.pocnetty.domain.enums.MarketDataType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Subscriber-side decoder turning market data frames into {@link MarketDataUpdate}s.
+ */
+public class BinaryMarketDataDecoder extends ByteToMessageDecoder {
+
+    private final AsciiStringCache symbols = new AsciiStringCache(SYMBOL_LENGTH);
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < LENGTH_FIELD_SIZE) {
+            return;
+        }
+        int frameLength = in.getIntLE(in.readerIndex());
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            in.skipBytes(in.readableBytes());
+            throw new TooLongFrameException("Invalid frame length " + frameLength);
+        }
+        if (in.readableBytes() < LENGTH_FIELD_SIZE + frameLength) {
+            return;
+        }
+        int frameStart = in.readerIndex() + LENGTH_FIELD_SIZE;
+        in.readerIndex(frameStart + frameLength);
+
+        //every market data message starts with the message type, sequence and symbol of a refresh
+        if (frameLength < BOOK_REFRESH_LENGTH) {
+            return;
+        }
+        byte messageType = in.getByte(frameStart);
+        long sequence = in.getLongLE(frameStart + 1);
+        int index = frameStart + 1 + 8 + SYMBOL_LENGTH;
+        if (messageType == LEVEL_UPDATE && frameLength >= LEVEL_UPDATE_LENGTH) {
+            out.add(new MarketDataUpdate(MarketDataType.LEVEL, sequence, symbols.get(in, frameStart + 1 + 8),
+                    decodeSide(in.getByte(index)), fromScaledPrice(in.getLongLE(index + 1)), in.getLongLE(index + 1 + 8),
+                    in.getIntLE(index + 1 + 8 + 8)));
+        } else if (messageType == TRADE && frameLength >= TRADE_LENGTH) {
+            out.add(new MarketDataUpdate(MarketDataType.TRADE, sequence, symbols.get(in, frameStart + 1 + 8),
+                    decodeSide(in.getByte(index)), fromScaledPrice(in.getLongLE(index + 1)), in.getIntLE(index + 1 + 8), 0));
+        } else if (messageType == BOOK_REFRESH) {
+            out.add(new MarketDataUpdate(MarketDataType.REFRESH, sequence, symbols.get(in, frameStart + 1 + 8), null, 0, 0, 0));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.dto.DepthRequest;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Server-side decoder for binary frames.
+ * <p>
+ * Fields are read straight out of the pooled inbound {@link ByteBuf} into a single
+ * {@link OrderRequest} or {@link DepthRequest} owned by this decoder, so steady-state decoding allocates nothing. The
+ * instance is handed downstream once per frame and overwritten by the next frame, which means
+ * the next handler must copy what it needs before returning, as publishing to the matching core does.
+ */
+@Slf4j
+public class BinaryOrderDecoder extends ByteToMessageDecoder {
+
+    private final OrderRequest request = new OrderRequest();
+    private final DepthRequest depthRequest = new DepthRequest();
+    private final AsciiStringCache accountIds = new AsciiStringCache(ACCOUNT_ID_LENGTH);
+    private final AsciiStringCache symbols = new AsciiStringCache(SYMBOL_LENGTH);
+    private final ServerMetrics metrics;
+
+    public BinaryOrderDecoder() {
+        this(ServerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time spent decoding each frame
+     */
+    public BinaryOrderDecoder(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < LENGTH_FIELD_SIZE) {
+            return;
+        }
+        int frameLength = in.getIntLE(in.readerIndex());
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            in.skipBytes(in.readableBytes());
+            throw new TooLongFrameException("Invalid frame length " + frameLength);
+        }
+        if (in.readableBytes() < LENGTH_FIELD_SIZE + frameLength) {
+            return;
+        }
+        long start = System.nanoTime();
+        int frameStart = in.readerIndex() + LENGTH_FIELD_SIZE;
+        in.readerIndex(frameStart + frameLength);
+
+        byte messageType = in.getByte(frameStart);
+        int index = frameStart + 1;
+        if (messageType == MARKET_ORDER && frameLength >= MARKET_ORDER_LENGTH) {
+            request.setAction(OrderAction.MARKET);
+            request.setType(decodeSide(in.getByte(index)));
+            request.setQuantity(in.getIntLE(index + 1));
+            request.setPrice(0);
+            request.setOrderId(0);
+            index += 1 + 4;
+        } else if (messageType == NEW_LIMIT && frameLength >= NEW_LIMIT_LENGTH) {
+            request.setAction(OrderAction.NEW_LIMIT);
+            request.setType(decodeSide(in.getByte(index)));
+            request.setQuantity(in.getIntLE(index + 1));
+            request.setPrice(in.getLongLE(index + 1 + 4));
+            request.setOrderId(0);
+            index += 1 + 4 + 8;
+        } else if (messageType == CANCEL && frameLength >= CANCEL_LENGTH) {
+            request.setAction(OrderAction.CANCEL);
+            request.setType(null);
+            request.setOrderId(in.getLongLE(index));
+            request.setQuantity(0);
+            request.setPrice(0);
+            index += 8;
+        } else if (messageType == CANCEL_REPLACE && frameLength >= CANCEL_REPLACE_LENGTH) {
+            request.setAction(OrderAction.CANCEL_REPLACE);
+            request.setType(null);
+            request.setOrderId(in.getLongLE(index));
+            request.setQuantity(in.getIntLE(index + 8));
+            request.setPrice(in.getLongLE(index + 8 + 4));
+            index += 8 + 4 + 8;
+        } else if (messageType == DEPTH_REQUEST && frameLength >= DEPTH_REQUEST_LENGTH) {
+            String symbol = symbols.get(in, index);
+            depthRequest.setSymbol(symbol.isEmpty() ? null : symbol);
+            depthRequest.setLevels(in.getUnsignedShortLE(index + SYMBOL_LENGTH));
+            depthRequest.setRequestId(in.getLongLE(index + SYMBOL_LENGTH + 2));
+            //queries are not order flow and stay out of the decode stage
+            out.add(depthRequest);
+            return;
+        } else {
+            log.warn("Dropping frame with message type {} and length {}", messageType, frameLength);
+            return;
+        }
+        //every order entry message ends with the same account, symbol and client order id fields
+        request.setAccountId(accountIds.get(in, index));
+        String symbol = symbols.get(in, index + ACCOUNT_ID_LENGTH);
+        request.setSymbol(symbol.isEmpty() ? null : symbol);
+        request.setClientOrderId(in.getLongLE(index + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH));
+        metrics.record(LatencyStage.DECODE, System.nanoTime() - start);
+        out.add(request);
+    }
+}
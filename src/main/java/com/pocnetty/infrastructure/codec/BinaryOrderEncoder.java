@@ -0,0 +1,93 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.dto.DepthRequest;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Client-side encoder writing {@link MarketOrder}s, {@link OrderRequest}s and {@link DepthRequest}s as binary frames.
+ */
+public class BinaryOrderEncoder extends MessageToByteEncoder<Object> {
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof MarketOrder || msg instanceof OrderRequest || msg instanceof DepthRequest;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) {
+        return ctx.alloc().directBuffer(LENGTH_FIELD_SIZE + frameLength(msg));
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) {
+        if (msg instanceof MarketOrder order) {
+            writeMarketOrder(out, order.getType(), order.getQuantity());
+            writeTrailer(out, order.getAccountId(), order.getSymbol(), order.getClientOrderId());
+            return;
+        }
+        if (msg instanceof DepthRequest depthRequest) {
+            out.writeIntLE(DEPTH_REQUEST_LENGTH);
+            out.writeByte(DEPTH_REQUEST);
+            writeAscii(out, depthRequest.getSymbol(), SYMBOL_LENGTH);
+            out.writeShortLE(depthRequest.getLevels());
+            out.writeLongLE(depthRequest.getRequestId());
+            return;
+        }
+        OrderRequest request = (OrderRequest) msg;
+        switch (request.getAction()) {
+            case MARKET -> writeMarketOrder(out, request.getType(), request.getQuantity());
+            case NEW_LIMIT -> {
+                out.writeIntLE(NEW_LIMIT_LENGTH);
+                out.writeByte(NEW_LIMIT);
+                out.writeByte(encodeSide(request.getType()));
+                out.writeIntLE(request.getQuantity());
+                out.writeLongLE(request.getPrice());
+            }
+            case CANCEL -> {
+                out.writeIntLE(CANCEL_LENGTH);
+                out.writeByte(CANCEL);
+                out.writeLongLE(request.getOrderId());
+            }
+            case CANCEL_REPLACE -> {
+                out.writeIntLE(CANCEL_REPLACE_LENGTH);
+                out.writeByte(CANCEL_REPLACE);
+                out.writeLongLE(request.getOrderId());
+                out.writeIntLE(request.getQuantity());
+                out.writeLongLE(request.getPrice());
+            }
+        }
+        writeTrailer(out, request.getAccountId(), request.getSymbol(), request.getClientOrderId());
+    }
+
+    private static void writeMarketOrder(ByteBuf out, OrderType side, int quantity) {
+        out.writeIntLE(MARKET_ORDER_LENGTH);
+        out.writeByte(MARKET_ORDER);
+        out.writeByte(encodeSide(side));
+        out.writeIntLE(quantity);
+    }
+
+    private static void writeTrailer(ByteBuf out, String accountId, String symbol, long clientOrderId) {
+        writeAscii(out, accountId, ACCOUNT_ID_LENGTH);
+        writeAscii(out, symbol, SYMBOL_LENGTH);
+        out.writeLongLE(clientOrderId);
+    }
+
+    private static int frameLength(Object msg) {
+        if (msg instanceof OrderRequest request) {
+            return switch (request.getAction()) {
+                case MARKET -> MARKET_ORDER_LENGTH;
+                case NEW_LIMIT -> NEW_LIMIT_LENGTH;
+                case CANCEL -> CANCEL_LENGTH;
+                case CANCEL_REPLACE -> CANCEL_REPLACE_LENGTH;
+            };
+        }
+        return msg instanceof DepthRequest ? DEPTH_REQUEST_LENGTH : MARKET_ORDER_LENGTH;
+    }
+}
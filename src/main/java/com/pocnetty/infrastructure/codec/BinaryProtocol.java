@@ -0,0 +1,276 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Layout of the binary wire protocol.
+ * <p>
+ * Every frame is a little-endian {@code int32} length (not counting itself) followed by a one byte
+ * message type and the fixed fields of that message, all little-endian. Prices are sent as
+ * {@code int64} scaled by {@link #PRICE_SCALE}, the engine's own tick size; text fields are
+ * fixed-width, NUL-padded ASCII.
+ * <pre>
+ * MARKET_ORDER     (1)   side:int8 quantity:int32 accountId:char[16] symbol:char[8] clientOrderId:int64
+ * NEW_LIMIT        (2)   side:int8 quantity:int32 price:int64 accountId:char[16] symbol:char[8] clientOrderId:int64
+ * CANCEL           (3)   orderId:int64 accountId:char[16] symbol:char[8] clientOrderId:int64
+ * CANCEL_REPLACE   (4)   orderId:int64 quantity:int32 price:int64 accountId:char[16] symbol:char[8] clientOrderId:int64
+ * DEPTH_REQUEST    (5)   symbol:char[8] levels:uint16 requestId:int64
+ * EXECUTION_REPORT (101) status:int8 rejectReason:int8 initialQuantity:int32 executedPrice:int64 executedQuantity:int32
+ *                        leavesQuantity:int32 accountId:char[16] symbol:char[8] clientOrderId:int64 orderId:int64
+ *                        fillCount:uint16 fillCount x (price:int64 quantity:int32)
+ * DEPTH_REPORT     (102) sequence:int64 symbol:char[8] requestId:int64 bidCount:uint16 askCount:uint16
+ *                        (bidCount + askCount) x (price:int64 quantity:int64 orderCount:int32)
+ * LEVEL_UPDATE     (201) sequence:int64 symbol:char[8] side:int8 price:int64 quantity:int64 orderCount:int32
+ * TRADE            (202) sequence:int64 symbol:char[8] aggressorSide:int8 price:int64 quantity:int32
+ * BOOK_REFRESH     (203) sequence:int64 symbol:char[8]
+ * </pre>
+ * A report with nothing executed carries {@code 0} for the executed price and quantity, and an empty
+ * symbol on an order selects the default instrument. An order executes against at most
+ * {@link #MAX_FILLS} levels, one fill each, so a report always fits a frame. {@code orderId} is
+ * assigned by the engine to every limit order that rests and is what cancels and replaces refer
+ * to; it is {@code 0} on reports for market orders. A THROTTLED report answers an order refused without matching because its
+ * connection already had too many orders in flight; it can be resent once earlier orders are answered.
+ * {@code rejectReason} is {@code 0}, or one plus the ordinal of the {@link RejectReason} of an order
+ * refused by the pre-trade risk check.
+ * <p>
+ * A depth request is answered with a DEPTH_REPORT of the book's aggregated levels, bids then asks,
+ * each best price first, as of the matching {@code sequence} it carries, and at most
+ * {@link #MAX_DEPTH_LEVELS} per side; {@code levels} {@code 0} asks for as many as the server keeps.
+ * It does not queue behind orders, so it can overtake the reports of orders sent before it. An
+ * unknown symbol is answered with a REJECTED report carrying the request id as client order id.
+ * <p>
+ * Market data subscribers only receive the 2xx messages, with {@code sequence} the matching
+ * sequence of the event that caused them. A level update carries the level's new total rather than
+ * the change, and a quantity of {@code 0} removes it. A book refresh means the levels of the symbol
+ * that follow replace everything known about its book, so updates of a symbol received before its
+ * first refresh can be ignored.
+ */
+public final class BinaryProtocol {
+
+    public static final int LENGTH_FIELD_SIZE = 4;
+    public static final int MAX_FRAME_LENGTH = 8192;
+    public static final long PRICE_SCALE = Prices.SCALE;
+    public static final int ACCOUNT_ID_LENGTH = 16;
+    public static final int SYMBOL_LENGTH = 8;
+
+    public static final byte MARKET_ORDER = 1;
+    public static final byte NEW_LIMIT = 2;
+    public static final byte CANCEL = 3;
+    public static final byte CANCEL_REPLACE = 4;
+    public static final byte DEPTH_REQUEST = 5;
+    public static final byte EXECUTION_REPORT = 101;
+    public static final byte DEPTH_REPORT = 102;
+    public static final byte LEVEL_UPDATE = (byte) 201;
+    public static final byte TRADE = (byte) 202;
+    public static final byte BOOK_REFRESH = (byte) 203;
+
+    public static final int MARKET_ORDER_LENGTH = 1 + 1 + 4 + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH + 8;
+    public static final int NEW_LIMIT_LENGTH = 1 + 1 + 4 + 8 + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH + 8;
+    public static final int CANCEL_LENGTH = 1 + 8 + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH + 8;
+    public static final int CANCEL_REPLACE_LENGTH = 1 + 8 + 4 + 8 + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH + 8;
+    public static final int EXECUTION_REPORT_FIXED_LENGTH = 1 + 1 + 1 + 4 + 8 + 4 + 4 + ACCOUNT_ID_LENGTH + SYMBOL_LENGTH + 8 + 8 + 2;
+    public static final int FILL_LENGTH = 8 + 4;
+    //an order sweeps at most this many levels, one fill each, so every report fits MAX_FRAME_LENGTH
+    public static final int MAX_FILLS = MatchingEngine.MAX_SWEEP_LEVELS;
+    public static final int DEPTH_REQUEST_LENGTH = 1 + SYMBOL_LENGTH + 2 + 8;
+    public static final int DEPTH_REPORT_FIXED_LENGTH = 1 + 8 + SYMBOL_LENGTH + 8 + 2 + 2;
+    public static final int DEPTH_LEVEL_LENGTH = 8 + 8 + 4;
+    //keeps a full report of both sides within MAX_FRAME_LENGTH
+    public static final int MAX_DEPTH_LEVELS = 200;
+    public static final int LEVEL_UPDATE_LENGTH = 1 + 8 + SYMBOL_LENGTH + 1 + 8 + 8 + 4;
+    public static final int TRADE_LENGTH = 1 + 8 + SYMBOL_LENGTH + 1 + 8 + 4;
+    public static final int BOOK_REFRESH_LENGTH = 1 + 8 + SYMBOL_LENGTH;
+
+    public static final byte STATUS_FILLED = 0;
+    public static final byte STATUS_PARTIALLY_FILLED = 1;
+    public static final byte STATUS_REJECTED = 2;
+    public static final byte STATUS_NEW = 3;
+    public static final byte STATUS_CANCELED = 4;
+    public static final byte STATUS_REPLACED = 5;
+    public static final byte STATUS_THROTTLED = 6;
+
+    static {
+        if (EXECUTION_REPORT_FIXED_LENGTH + MAX_FILLS * FILL_LENGTH > MAX_FRAME_LENGTH) {
+            throw new IllegalStateException("An execution report with " + MAX_FILLS + " fills exceeds " + MAX_FRAME_LENGTH + " bytes");
+        }
+    }
+
+    private BinaryProtocol() {
+    }
+
+    public static byte encodeSide(OrderType type) {
+        return (byte) type.ordinal();
+    }
+
+    public static OrderType decodeSide(byte side) {
+        return switch (side) {
+            case 0 -> OrderType.BUY;
+            case 1 -> OrderType.SELL;
+            default -> throw new IllegalArgumentException("Unknown side " + side);
+        };
+    }
+
+    public static byte encodeStatus(String status) {
+        return switch (status) {
+            case "FILLED" -> STATUS_FILLED;
+            case "PARTIALLY_FILLED" -> STATUS_PARTIALLY_FILLED;
+            case "NEW" -> STATUS_NEW;
+            case "CANCELED" -> STATUS_CANCELED;
+            case "REPLACED" -> STATUS_REPLACED;
+            case "THROTTLED" -> STATUS_THROTTLED;
+            default -> STATUS_REJECTED;
+        };
+    }
+
+    public static String decodeStatus(byte status) {
+        return switch (status) {
+            case STATUS_FILLED -> "FILLED";
+            case STATUS_PARTIALLY_FILLED -> "PARTIALLY_FILLED";
+            case STATUS_NEW -> "NEW";
+            case STATUS_CANCELED -> "CANCELED";
+            case STATUS_REPLACED -> "REPLACED";
+            case STATUS_THROTTLED -> "THROTTLED";
+            default -> "REJECTED";
+        };
+    }
+
+    public static byte encodeRejectReason(RejectReason reason) {
+        return reason == null ? 0 : (byte) (reason.ordinal() + 1);
+    }
+
+    public static RejectReason decodeRejectReason(byte code) {
+        RejectReason[] reasons = RejectReason.values();
+        return code <= 0 || code > reasons.length ? null : reasons[code - 1];
+    }
+
+    public static long toScaledPrice(double price) {
+        return Prices.toTicks(price);
+    }
+
+    public static double fromScaledPrice(long scaledPrice) {
+        return Prices.toPrice(scaledPrice);
+    }
+
+    /**
+     * @return the length of the report's EXECUTION_REPORT frame, not counting the length field
+     * @throws IllegalArgumentException when the report has more than {@link #MAX_FILLS} fills, as
+     *                                  clients would drop the frame and lose the stream
+     */
+    public static int executionReportLength(ExecutionReport report) {
+        int fillCount = report.getFillPrices().length;
+        if (fillCount > MAX_FILLS) {
+            throw new IllegalArgumentException("Execution report with " + fillCount + " fills exceeds the "
+                    + MAX_FRAME_LENGTH + " byte frame limit");
+        }
+        return EXECUTION_REPORT_FIXED_LENGTH + fillCount * FILL_LENGTH;
+    }
+
+    /**
+     * Writes a whole EXECUTION_REPORT frame.
+     */
+    public static void writeExecutionReport(ByteBuf out, ExecutionReport report) {
+        double[] fillPrices = report.getFillPrices();
+        int[] fillQuantities = report.getFillQuantities();
+        out.writeIntLE(executionReportLength(report));
+        out.writeByte(EXECUTION_REPORT);
+        out.writeByte(encodeStatus(report.getStatus()));
+        out.writeByte(encodeRejectReason(report.getRejectReason()));
+        out.writeIntLE(report.getInitialQuantity());
+        out.writeLongLE(toScaledPrice(report.getExecutedPrice()));
+        out.writeIntLE(report.getExecutedQuantity());
+        out.writeIntLE(report.getLeavesQuantity());
+        writeAscii(out, report.getAccountId(), ACCOUNT_ID_LENGTH);
+        writeAscii(out, report.getSymbol(), SYMBOL_LENGTH);
+        out.writeLongLE(report.getClientOrderId());
+        out.writeLongLE(report.getOrderId());
+        out.writeShortLE(fillPrices.length);
+        for (int i = 0; i < fillPrices.length; i++) {
+            out.writeLongLE(toScaledPrice(fillPrices[i]));
+            out.writeIntLE(fillQuantities[i]);
+        }
+    }
+
+    /**
+     * @return the length of the report's DEPTH_REPORT frame, not counting the length field
+     */
+    public static int depthReportLength(DepthReport report) {
+        return DEPTH_REPORT_FIXED_LENGTH + (report.bidCount() + report.askCount()) * DEPTH_LEVEL_LENGTH;
+    }
+
+    /**
+     * Writes a whole DEPTH_REPORT frame; prices are in engine ticks, which is already the wire scale.
+     */
+    public static void writeDepthReport(ByteBuf out, DepthReport report) {
+        BookDepth depth = report.getDepth();
+        out.writeIntLE(depthReportLength(report));
+        out.writeByte(DEPTH_REPORT);
+        out.writeLongLE(depth.getSequence());
+        writeAscii(out, depth.getSymbol(), SYMBOL_LENGTH);
+        out.writeLongLE(report.getRequestId());
+        out.writeShortLE(report.bidCount());
+        out.writeShortLE(report.askCount());
+        writeDepthLevels(out, depth.getBids(), report.bidCount());
+        writeDepthLevels(out, depth.getAsks(), report.askCount());
+    }
+
+    private static void writeDepthLevels(ByteBuf out, BookDepth.Side side, int count) {
+        for (int i = 0; i < count; i++) {
+            out.writeLongLE(side.getPrices()[i]);
+            out.writeLongLE(side.getQuantities()[i]);
+            out.writeIntLE(side.getOrderCounts()[i]);
+        }
+    }
+
+    /**
+     * Writes a whole LEVEL_UPDATE frame; the price is in engine ticks, which is already the wire scale.
+     */
+    public static void writeLevelUpdate(ByteBuf out, long sequence, String symbol, OrderType side, long price,
+                                        long quantity, int orderCount) {
+        out.writeIntLE(LEVEL_UPDATE_LENGTH);
+        out.writeByte(LEVEL_UPDATE);
+        out.writeLongLE(sequence);
+        writeAscii(out, symbol, SYMBOL_LENGTH);
+        out.writeByte(encodeSide(side));
+        out.writeLongLE(price);
+        out.writeLongLE(quantity);
+        out.writeIntLE(orderCount);
+    }
+
+    /**
+     * Writes a whole TRADE frame; the price is in engine ticks, which is already the wire scale.
+     */
+    public static void writeTrade(ByteBuf out, long sequence, String symbol, OrderType aggressorSide, long price, int quantity) {
+        out.writeIntLE(TRADE_LENGTH);
+        out.writeByte(TRADE);
+        out.writeLongLE(sequence);
+        writeAscii(out, symbol, SYMBOL_LENGTH);
+        out.writeByte(encodeSide(aggressorSide));
+        out.writeLongLE(price);
+        out.writeIntLE(quantity);
+    }
+
+    public static void writeBookRefresh(ByteBuf out, long sequence, String symbol) {
+        out.writeIntLE(BOOK_REFRESH_LENGTH);
+        out.writeByte(BOOK_REFRESH);
+        out.writeLongLE(sequence);
+        writeAscii(out, symbol, SYMBOL_LENGTH);
+    }
+
+    /**
+     * Writes {@code value} as a fixed-width, NUL-padded ASCII field, truncating anything longer.
+     */
+    public static void writeAscii(ByteBuf out, String value, int width) {
+        int length = value == null ? 0 : Math.min(value.length(), width);
+        for (int i = 0; i < length; i++) {
+            out.writeByte(value.charAt(i));
+        }
+        out.writeZero(width - length);
+    }
+}
@@ -0,0 +1,108 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.domain.enums.RejectReason;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Client-side decoder turning binary frames back into {@link ExecutionReport}s and {@link DepthReport}s.
+ */
+public class BinaryReportDecoder extends ByteToMessageDecoder {
+
+    private final AsciiStringCache accountIds = new AsciiStringCache(ACCOUNT_ID_LENGTH);
+    private final AsciiStringCache symbols = new AsciiStringCache(SYMBOL_LENGTH);
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < LENGTH_FIELD_SIZE) {
+            return;
+        }
+        int frameLength = in.getIntLE(in.readerIndex());
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            in.skipBytes(in.readableBytes());
+            throw new TooLongFrameException("Invalid frame length " + frameLength);
+        }
+        if (in.readableBytes() < LENGTH_FIELD_SIZE + frameLength) {
+            return;
+        }
+        in.skipBytes(LENGTH_FIELD_SIZE);
+        int frameEnd = in.readerIndex() + frameLength;
+        byte messageType = in.readByte();
+        if (messageType == DEPTH_REPORT) {
+            out.add(readDepthReport(in));
+            in.readerIndex(frameEnd);
+            return;
+        }
+        if (messageType != EXECUTION_REPORT) {
+            in.readerIndex(frameEnd);
+            return;
+        }
+        String status = decodeStatus(in.readByte());
+        RejectReason rejectReason = decodeRejectReason(in.readByte());
+        int initialQuantity = in.readIntLE();
+        long executedPrice = in.readLongLE();
+        int executedQuantity = in.readIntLE();
+        int leavesQuantity = in.readIntLE();
+        String accountId = accountIds.get(in, in.readerIndex());
+        in.skipBytes(ACCOUNT_ID_LENGTH);
+        String symbol = symbols.get(in, in.readerIndex());
+        in.skipBytes(SYMBOL_LENGTH);
+        long clientOrderId = in.readLongLE();
+        long orderId = in.readLongLE();
+        int fillCount = in.readUnsignedShortLE();
+        double[] fillPrices = new double[fillCount];
+        int[] fillQuantities = new int[fillCount];
+        for (int i = 0; i < fillCount; i++) {
+            fillPrices[i] = fromScaledPrice(in.readLongLE());
+            fillQuantities[i] = in.readIntLE();
+        }
+        in.readerIndex(frameEnd);
+        out.add(new ExecutionReport(
+                initialQuantity,
+                fromScaledPrice(executedPrice),
+                executedQuantity,
+                leavesQuantity,
+                accountId,
+                symbol,
+                status,
+                fillPrices,
+                fillQuantities,
+                clientOrderId,
+                orderId,
+                rejectReason
+        ));
+    }
+
+    private DepthReport readDepthReport(ByteBuf in) {
+        long sequence = in.readLongLE();
+        String symbol = symbols.get(in, in.readerIndex());
+        in.skipBytes(SYMBOL_LENGTH);
+        long requestId = in.readLongLE();
+        int bidCount = in.readUnsignedShortLE();
+        int askCount = in.readUnsignedShortLE();
+        BookDepth.Side bids = readDepthLevels(in, bidCount);
+        BookDepth.Side asks = readDepthLevels(in, askCount);
+        return new DepthReport(requestId, new BookDepth(symbol, sequence, bids, asks), Math.max(bidCount, askCount));
+    }
+
+    private static BookDepth.Side readDepthLevels(ByteBuf in, int count) {
+        long[] prices = new long[count];
+        long[] quantities = new long[count];
+        int[] orderCounts = new int[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = in.readLongLE();
+            quantities[i] = in.readLongLE();
+            orderCounts[i] = in.readIntLE();
+        }
+        return new BookDepth.Side(prices, quantities, orderCounts);
+    }
+}
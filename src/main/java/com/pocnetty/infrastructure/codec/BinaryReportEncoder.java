@@ -0,0 +1,54 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Server-side encoder writing {@link ExecutionReport}s and {@link DepthReport}s as binary frames into pooled direct buffers.
+ */
+public class BinaryReportEncoder extends MessageToByteEncoder<Object> {
+
+    private final ServerMetrics metrics;
+
+    public BinaryReportEncoder() {
+        this(ServerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time spent encoding each report
+     */
+    public BinaryReportEncoder(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof ExecutionReport || msg instanceof DepthReport;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) {
+        return ctx.alloc().directBuffer(LENGTH_FIELD_SIZE + (msg instanceof ExecutionReport report
+                ? executionReportLength(report)
+                : depthReportLength((DepthReport) msg)));
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) {
+        if (msg instanceof DepthReport report) {
+            //queries are not order flow and stay out of the encode stage
+            writeDepthReport(out, report);
+            return;
+        }
+        long start = System.nanoTime();
+        writeExecutionReport(out, (ExecutionReport) msg);
+        metrics.record(LatencyStage.ENCODE, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,142 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.DepthRequest;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Binds one JSON line, framed without its delimiter, to an {@link OrderRequest}; lines without an
+ * {@code action} are market orders. A line whose first field is {@code "query":"DEPTH"} binds to a
+ * {@link DepthRequest} instead. Lines that cannot be parsed are answered with a REJECTED report and
+ * the connection stays open, and so are orders whose symbol or account id is not plain ASCII, as
+ * the journal, replication and capture records store one byte per character. The decimal
+ * {@code price} of a line is converted to the ticks an {@link OrderRequest} carries here, the only
+ * place a price is ever a {@code double} on its way to the book.
+ * <p>
+ * The UTF-8 bytes are parsed in place, through {@link ObjectReader}s built once: a heap frame is
+ * read straight from its backing array, and a direct one is copied once into a scratch array owned
+ * by the channel, so no {@link String} is ever made of the line. The first field name is read from
+ * the same parser the request is then bound with, so telling queries from orders costs nothing.
+ */
+@Slf4j
+public class JsonOrderDecoder extends MessageToMessageDecoder<ByteBuf> {
+    private static final ObjectMapper mapper = new ObjectMapper().addMixIn(OrderRequest.class, DecimalPrice.class);
+    private static final ObjectReader requestReader = mapper.readerFor(OrderRequest.class);
+    private static final ObjectReader depthRequestReader = mapper.readerFor(DepthRequest.class);
+    private static final String QUERY_FIELD = "query";
+    private static final String DEPTH_QUERY = "DEPTH";
+    private static final int INITIAL_SCRATCH_SIZE = 256;
+    private final ServerMetrics metrics;
+    //only touched on the channel's event loop
+    private byte[] scratch = new byte[INITIAL_SCRATCH_SIZE];
+
+    public JsonOrderDecoder() {
+        this(ServerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time spent binding each line
+     */
+    public JsonOrderDecoder(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf line, List<Object> out) {
+        try {
+            long start = System.nanoTime();
+            Object request = read(line);
+            if (request instanceof OrderRequest order) {
+                metrics.record(LatencyStage.DECODE, System.nanoTime() - start);
+                if (!isAscii(order.getSymbol()) || !isAscii(order.getAccountId())) {
+                    log.warn("Rejecting order {} with a non-ASCII symbol or account id", order.getClientOrderId());
+                    ctx.writeAndFlush(ExecutionReport.rejected(order.getQuantity(), order.getAccountId(), order.getSymbol(),
+                            order.getClientOrderId()));
+                    return;
+                }
+            }
+            out.add(request);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            ctx.writeAndFlush(ExecutionReport.rejected(0, "unknown", null, 0));
+        }
+    }
+
+    private Object read(ByteBuf line) throws IOException {
+        int length = line.readableBytes();
+        if (line.hasArray()) {
+            return read(line.array(), line.arrayOffset() + line.readerIndex(), length);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        line.getBytes(line.readerIndex(), scratch, 0, length);
+        return read(scratch, 0, length);
+    }
+
+    private static boolean isAscii(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object read(byte[] bytes, int offset, int length) throws IOException {
+        try (JsonParser parser = requestReader.createParser(bytes, offset, length)) {
+            //binding resumes from the first field, or from the end of an empty object
+            if (parser.nextToken() == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME
+                    && QUERY_FIELD.equals(parser.currentName())) {
+                if (parser.nextToken() != JsonToken.VALUE_STRING || !DEPTH_QUERY.equals(parser.getText())) {
+                    throw new JsonParseException(parser, "Unknown query " + parser.getText());
+                }
+                parser.nextToken();
+                return depthRequestReader.readValue(parser);
+            }
+            return requestReader.readValue(parser);
+        }
+    }
+
+    /**
+     * Binds the decimal price of a JSON order to {@link OrderRequest#setPrice(long)} in ticks.
+     */
+    private abstract static class DecimalPrice {
+
+        @JsonDeserialize(using = TicksDeserializer.class)
+        abstract void setPrice(long price);
+    }
+
+    private static final class TicksDeserializer extends StdDeserializer<Long> {
+
+        TicksDeserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return Prices.toTicks(parser.getDoubleValue());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serializes an {@link ExecutionReport} or a {@link DepthReport} as one newline-terminated JSON line.
+ * <p>
+ * The report is streamed as UTF-8 by an {@link ObjectWriter} built once, straight into a pooled
+ * direct buffer sized for a typical report with its fills, and the delimiter is appended in place.
+ * A depth report is written field by field from the shared cached levels, as
+ * {@code {"type":"depth","symbol":..,"sequence":..,"requestId":..,"bids":[{"price":..,"quantity":..,"orderCount":..}],"asks":[..]}}.
+ */
+public class JsonReportEncoder extends MessageToByteEncoder<Object> {
+    private static final ObjectWriter reportWriter = new ObjectMapper().writerFor(ExecutionReport.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    //a report without fills takes about 300 bytes, each fill adds a price and a quantity
+    private static final int ESTIMATED_LENGTH = 384;
+    private static final int ESTIMATED_FILL_LENGTH = 32;
+    private static final int ESTIMATED_DEPTH_LENGTH = 128;
+    private static final int ESTIMATED_LEVEL_LENGTH = 64;
+    private static final String DEPTH_REPORT_TYPE = "depth";
+    private static final byte DELIMITER = '\n';
+    private final ServerMetrics metrics;
+
+    public JsonReportEncoder() {
+        this(ServerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time spent serializing each report
+     */
+    public JsonReportEncoder(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof ExecutionReport || msg instanceof DepthReport;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) {
+        if (msg instanceof DepthReport report) {
+            return ctx.alloc().directBuffer(ESTIMATED_DEPTH_LENGTH + (report.bidCount() + report.askCount()) * ESTIMATED_LEVEL_LENGTH);
+        }
+        ExecutionReport report = (ExecutionReport) msg;
+        int fills = report.getFillPrices() == null ? 0 : report.getFillPrices().length;
+        return ctx.alloc().directBuffer(ESTIMATED_LENGTH + fills * ESTIMATED_FILL_LENGTH);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws IOException {
+        if (msg instanceof DepthReport report) {
+            //queries are not order flow and stay out of the encode stage
+            write(report, out);
+            return;
+        }
+        long start = System.nanoTime();
+        write((ExecutionReport) msg, out);
+        metrics.record(LatencyStage.ENCODE, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the report as one JSON line, delimiter included.
+     */
+    public static void write(ExecutionReport report, ByteBuf out) throws IOException {
+        reportWriter.writeValue((OutputStream) new ByteBufOutputStream(out), report);
+        out.writeByte(DELIMITER);
+    }
+
+    /**
+     * Writes the depth report as one JSON line, delimiter included.
+     */
+    public static void write(DepthReport report, ByteBuf out) throws IOException {
+        BookDepth depth = report.getDepth();
+        try (JsonGenerator generator = reportWriter.createGenerator((OutputStream) new ByteBufOutputStream(out))) {
+            generator.writeStartObject();
+            generator.writeStringField("type", DEPTH_REPORT_TYPE);
+            generator.writeStringField("symbol", depth.getSymbol());
+            generator.writeNumberField("sequence", depth.getSequence());
+            generator.writeNumberField("requestId", report.getRequestId());
+            writeLevels(generator, "bids", depth.getBids(), report.bidCount());
+            writeLevels(generator, "asks", depth.getAsks(), report.askCount());
+            generator.writeEndObject();
+        }
+        out.writeByte(DELIMITER);
+    }
+
+    private static void writeLevels(JsonGenerator generator, String name, BookDepth.Side side, int count) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (int i = 0; i < count; i++) {
+            generator.writeStartObject();
+            generator.writeNumberField("price", Prices.toPrice(side.getPrices()[i]));
+            generator.writeNumberField("quantity", side.getQuantities()[i]);
+            generator.writeNumberField("orderCount", side.getOrderCounts()[i]);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+}
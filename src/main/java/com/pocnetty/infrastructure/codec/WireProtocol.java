@@ -0,0 +1,15 @@
+package com.pocnetty.infrastructure.codec;
+
+/**
+ * Wire format spoken on a listening port.
+ */
+public enum WireProtocol {
+    /**
+     * Newline-delimited JSON, one {@code OrderRequest} / {@code ExecutionReport} per line.
+     */
+    JSON,
+    /**
+     * Fixed-layout little-endian frames, see {@link BinaryProtocol}.
+     */
+    BINARY
+}
@@ -0,0 +1,340 @@
+package com.pocnetty.infrastructure.config;
+
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.handlers.MatchingEngineHandler;
+import com.pocnetty.infrastructure.journal.FsyncPolicy;
+import com.pocnetty.infrastructure.replication.ReplicationRole;
+import com.pocnetty.infrastructure.sequencer.WaitStrategy;
+import com.pocnetty.infrastructure.transport.TransportType;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings bound from the {@code app} section of {@code application.yml}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app")
+public class AppProperties {
+
+    private Server server = new Server();
+    private Engine engine = new Engine();
+    private Journal journal = new Journal();
+    private Snapshot snapshot = new Snapshot();
+    private LoadGenerator loadGenerator = new LoadGenerator();
+
+    @Getter
+    @Setter
+    public static class Server {
+        /**
+         * Ports to listen on, each speaking its own wire protocol.
+         */
+        private List<Listener> listeners = new ArrayList<>(List.of(new Listener()));
+        /**
+         * Requested transport; falls back to the next available one (io_uring, epoll, NIO).
+         */
+        private TransportType transport = TransportType.NIO;
+        private int bossThreads = 1;
+        /**
+         * {@code 0} uses Netty's default of twice the number of cores.
+         */
+        private int workerThreads = 0;
+        /**
+         * Bind each listener this many times with SO_REUSEPORT so the kernel spreads accepts over
+         * several boss threads. Only honoured by the native transports.
+         */
+        private boolean reusePort = false;
+        private int acceptors = 1;
+        private boolean tcpNoDelay = true;
+        /**
+         * Socket buffer sizes in bytes; {@code 0} keeps the OS default.
+         */
+        private int soRcvBuf = 0;
+        private int soSndBuf = 0;
+        private int soBacklog = 1024;
+        /**
+         * Outbound bytes above which a channel becomes unwritable, and below which it becomes writable again.
+         */
+        private int writeBufferHighWaterMark = 64 * 1024;
+        private int writeBufferLowWaterMark = 32 * 1024;
+        /**
+         * Orders a connection may have sent and not yet been answered for; more are answered THROTTLED.
+         */
+        private int maxInFlightOrders = MatchingEngineHandler.DEFAULT_MAX_IN_FLIGHT;
+        private Allocator allocator = new Allocator();
+        private MarketData marketData = new MarketData();
+        private Metrics metrics = new Metrics();
+        private Replication replication = new Replication();
+        private PostTrade postTrade = new PostTrade();
+    }
+
+    /**
+     * Post-trade consumers of the execution reports, run on virtual threads off the event loops and matching threads.
+     */
+    @Getter
+    @Setter
+    public static class PostTrade {
+        private boolean enabled = false;
+        /**
+         * Virtual threads the accounts are striped over; an account's reports are handled in order on its lane.
+         */
+        private int lanes = 16;
+        /**
+         * Reports a lane holds before dropping new ones, a power of two.
+         */
+        private int laneCapacity = 65536;
+        /**
+         * Writes every report to the {@code audit} logger.
+         */
+        private boolean auditLog = true;
+        /**
+         * Adds a consumer sleeping this long per report, to simulate a slow downstream system; 0 adds none.
+         */
+        private long syntheticDelayMicros = 0;
+    }
+
+    /**
+     * Primary/standby replication of the sequenced events over a link of its own. A standby needs the
+     * same engine configuration as its primary and an empty journal directory.
+     */
+    @Getter
+    @Setter
+    public static class Replication {
+        private ReplicationRole role = ReplicationRole.NONE;
+        /**
+         * Port a primary accepts its standby on.
+         */
+        private int port = 8085;
+        /**
+         * Where a standby finds its primary.
+         */
+        private String primaryHost = "localhost";
+        private int primaryPort = 8085;
+        /**
+         * A primary sends a heartbeat after this long without sending anything else.
+         */
+        private long heartbeatIntervalMillis = 100;
+        /**
+         * A standby takes over after this long without hearing from its primary.
+         */
+        private long heartbeatTimeoutMillis = 1000;
+    }
+
+    /**
+     * Stage latencies, counters and gauges in the Prometheus text format, served over HTTP on a port of its own.
+     */
+    @Getter
+    @Setter
+    public static class Metrics {
+        private boolean enabled = false;
+        private int port = 8084;
+    }
+
+    /**
+     * Market data feed: level updates, trades and full-depth refreshes in the binary protocol, on a port of its own.
+     */
+    @Getter
+    @Setter
+    public static class MarketData {
+        private boolean enabled = false;
+        private int port = 8083;
+        /**
+         * How often every book is sent in full so late joiners can sync, 0 to refresh only when someone subscribes.
+         */
+        private long refreshIntervalMillis = 5000;
+    }
+
+    /**
+     * Settings of the pooled buffer allocator used by server channels; defaults are Netty's.
+     */
+    @Getter
+    @Setter
+    public static class Allocator {
+        private boolean preferDirect = true;
+        private int heapArenas = PooledByteBufAllocator.defaultNumHeapArena();
+        private int directArenas = PooledByteBufAllocator.defaultNumDirectArena();
+        private int pageSize = PooledByteBufAllocator.defaultPageSize();
+        private int maxOrder = PooledByteBufAllocator.defaultMaxOrder();
+        private int smallCacheSize = PooledByteBufAllocator.defaultSmallCacheSize();
+        private int normalCacheSize = PooledByteBufAllocator.defaultNormalCacheSize();
+        private boolean useCacheForAllThreads = PooledByteBufAllocator.defaultUseCacheForAllThreads();
+    }
+
+    @Getter
+    @Setter
+    public static class Listener {
+        private int port = 8081;
+        private WireProtocol protocol = WireProtocol.JSON;
+    }
+
+    @Getter
+    @Setter
+    public static class Engine {
+        /**
+         * Number of pre-allocated slots in the matching core's ring buffer, must be a power of two.
+         */
+        private int ringBufferSize = 65536;
+        private WaitStrategy waitStrategy = WaitStrategy.YIELDING;
+        /**
+         * Number of matching threads; each instrument is owned by exactly one of them.
+         */
+        private int shards = 1;
+        /**
+         * Instrument used for orders that carry no symbol.
+         */
+        private String defaultSymbol = MatchingEngine.DEFAULT_SYMBOL;
+        private List<Instrument> instruments = new ArrayList<>();
+        /**
+         * Seed every book with the fixed demo orders of {@code MatchingEngine.withDemoBook}.
+         */
+        private boolean demoBook = false;
+        /**
+         * How often per-shard queue depth and throughput are logged, 0 to disable.
+         */
+        private int statsIntervalSeconds = 0;
+        /**
+         * Price levels per side kept in each book's cached view for depth queries, 0 to disable them.
+         */
+        private int depthLevels = 10;
+        private Risk risk = new Risk();
+        private Capture capture = new Capture();
+    }
+
+    /**
+     * Recording of each shard's order flow and reports into a capture file, for {@code CaptureReplay}.
+     */
+    @Getter
+    @Setter
+    public static class Capture {
+        private boolean enabled = false;
+        private String directory = "capture";
+        /**
+         * Captured data the writer may fall behind by before the capture stops, in megabytes.
+         */
+        private int maxPendingMb = 64;
+    }
+
+    /**
+     * Pre-trade risk limits, checked on the matching thread before an order is journaled or matched.
+     * Every limit is per account and applies within each matching shard; {@code 0} disables it.
+     */
+    @Getter
+    @Setter
+    public static class Risk {
+        private boolean enabled = false;
+        /**
+         * Fat-finger limits on a single order; a market order's notional is priced at the best opposite level.
+         */
+        private int maxOrderQuantity = 0;
+        private double maxOrderNotional = 0;
+        /**
+         * Furthest a limit price may be from the best opposite price (or the best price of its own side when the
+         * opposite side is empty), in basis points.
+         */
+        private int priceBandBps = 0;
+        /**
+         * New orders and replaces per account in any one-second window; cancels are never rate limited.
+         */
+        private int maxOrdersPerSecond = 0;
+        /**
+         * Largest position per instrument the account could reach if all its open orders on one side filled.
+         */
+        private long maxPosition = 0;
+        /**
+         * Largest total notional of the account's resting orders.
+         */
+        private double maxOpenNotional = 0;
+        /**
+         * Accounts each matching shard keeps risk state for, allocated up front; orders from further accounts are
+         * refused as invalid.
+         */
+        private int maxAccounts = 16384;
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        private boolean enabled = false;
+        /**
+         * Root directory; each matching shard journals into its own {@code shard-N} subdirectory.
+         */
+        private String directory = "journal";
+        private int segmentSizeMb = 64;
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.BATCH;
+        private int fsyncBatchSize = 256;
+        private long fsyncBatchMicros = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        private boolean enabled = false;
+        /**
+         * Root directory; each matching shard writes into its own {@code shard-N} subdirectory.
+         */
+        private String directory = "snapshot";
+        /**
+         * Number of applied events between two snapshots of a shard.
+         */
+        private long intervalEvents = 1_000_000;
+        private int retain = 2;
+        /**
+         * Delete journal segments once a written snapshot covers them.
+         */
+        private boolean pruneJournal = true;
+    }
+
+    @Getter
+    @Setter
+    public static class LoadGenerator {
+        /**
+         * Drive the local server with generated load instead of sending the single demo order.
+         */
+        private boolean enabled = false;
+        private String host = "localhost";
+        /**
+         * Target port and protocol; default to the first configured listener.
+         */
+        private Integer port;
+        private WireProtocol protocol;
+        private int connections = 4;
+        /**
+         * Total orders per second across all connections, sent on a fixed schedule regardless of responses.
+         */
+        private long ratePerSecond = 10_000;
+        private int durationSeconds = 30;
+        /**
+         * Responses to orders scheduled within this initial period are not recorded in the histogram.
+         */
+        private int warmupSeconds = 5;
+        /**
+         * Maximum number of orders written to a connection before it is flushed.
+         */
+        private int flushBatchSize = 16;
+        private int quantity = 1;
+        /**
+         * Instruments to cycle through; empty sends every order to the default instrument.
+         */
+        private List<String> symbols = new ArrayList<>();
+        /**
+         * Optional file receiving the full percentile distribution in microseconds, in HdrHistogram's text format.
+         */
+        private String histogramFile;
+    }
+
+    @Getter
+    @Setter
+    public static class Instrument {
+        private String symbol;
+        /**
+         * Shard pinned to this instrument, or empty to let the router balance it at startup.
+         */
+        private Integer shard;
+    }
+}
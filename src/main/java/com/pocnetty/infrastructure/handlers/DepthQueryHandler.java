@@ -0,0 +1,64 @@
+package com.pocnetty.infrastructure.handlers;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.domain.dto.DepthRequest;
+import com.pocnetty.infrastructure.codec.BinaryProtocol;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+/**
+ * Answers {@link DepthRequest}s on the channel's event loop from the depth the matching threads
+ * publish, and passes every other message on to order entry.
+ * <p>
+ * A query reads one volatile reference and writes a report that shares the cached levels, so it
+ * never enters a ring buffer, never waits for a matching thread and allocates nothing but the
+ * report; polling clients share no lock with the matching threads. Answers are written without flushing
+ * and flushed once the read completes, like order entry rejects.
+ */
+public class DepthQueryHandler extends SimpleChannelInboundHandler<DepthRequest> {
+
+    private final InstrumentRouter router;
+    private final ServerMetrics metrics;
+    //only touched on the channel's event loop
+    private boolean unflushed;
+
+    public DepthQueryHandler(InstrumentRouter router) {
+        this(router, ServerMetrics.NONE);
+    }
+
+    /**
+     * @param metrics counts the queries answered
+     */
+    public DepthQueryHandler(InstrumentRouter router, ServerMetrics metrics) {
+        this.router = router;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, DepthRequest request) {
+        metrics.recordDepthQuery();
+        BookDepth depth = router.depth(request.getSymbol());
+        Object answer;
+        if (depth == null) {
+            answer = ExecutionReport.rejected(0, null, request.getSymbol(), request.getRequestId());
+        } else {
+            int levels = request.getLevels() <= 0 ? BinaryProtocol.MAX_DEPTH_LEVELS : request.getLevels();
+            answer = new DepthReport(request.getRequestId(), depth, Math.min(levels, BinaryProtocol.MAX_DEPTH_LEVELS));
+        }
+        ctx.write(answer, ctx.voidPromise());
+        unflushed = true;
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (unflushed) {
+            unflushed = false;
+            ctx.flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+}
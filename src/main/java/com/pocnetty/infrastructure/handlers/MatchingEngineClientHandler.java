@@ -5,10 +5,11 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class MatchingEngineClientHandler extends SimpleChannelInboundHandler<String> {
+public class MatchingEngineClientHandler extends SimpleChannelInboundHandler<Object> {
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String msg) {
-        log.debug("Received execution report: " + msg);
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+        //parameterized, so the report is only rendered when debug logging is on
+        log.debug("Received execution report: {}", msg);
     }
 
     @Override
@@ -1,30 +1,131 @@
 package com.pocnetty.infrastructure.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pocnetty.domain.ExecutionReport;
-import com.pocnetty.domain.MatchingEngine;
-import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.SimpleChannelInboundHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.function.Consumer;
+
+/**
+ * Protocol-agnostic order entry: receives decoded {@link OrderRequest}s from whichever codec sits in
+ * front of it and writes {@link ExecutionReport}s back for the matching encoder to serialize.
+ * <p>
+ * Reports are written without flushing. Reports from the matching thread are flushed once by a
+ * task queued behind them, so a burst that reaches the event loop together costs one syscall, and
+ * rejects written while reading are flushed once the read completes.
+ * <p>
+ * A connection has at most {@code maxInFlight} orders published and not yet answered; further
+ * orders are answered with a THROTTLED report without reaching the matching shard. While the
+ * client does not read its reports and the channel is above its write buffer high water mark, the
+ * channel stops reading, so a misbehaving client holds at most the water mark plus its in-flight
+ * reports in server memory.
+ */
 @Slf4j
-public class MatchingEngineHandler extends ChannelInboundHandlerAdapter {
-    private static final ObjectMapper mapper = new ObjectMapper();
-    private static final MatchingEngine matchingEngine = new MatchingEngine();
+public class MatchingEngineHandler extends SimpleChannelInboundHandler<OrderRequest> {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4096;
+
+    private final InstrumentRouter router;
+    private final ServerMetrics metrics;
+    private final int maxInFlight;
+    private Consumer<ExecutionReport> reportSink;
+    private Runnable flushTask;
+    //only touched on the channel's event loop
+    private int inFlight;
+    private boolean unflushed;
+    private boolean flushScheduled;
+
+    public MatchingEngineHandler(InstrumentRouter router) {
+        this(router, ServerMetrics.NONE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param metrics     records how long reports wait for this channel's event loop and counts rejected requests
+     * @param maxInFlight orders this connection may have published and not yet answered
+     */
+    public MatchingEngineHandler(InstrumentRouter router, ServerMetrics metrics, int maxInFlight) {
+        this.router = router;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+    }
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        String json = (String) msg;
-        try {
-            MarketOrder order = mapper.readValue(json, MarketOrder.class);
-            ExecutionReport report = matchingEngine.processMarketOrder(order);
-            String response = mapper.writeValueAsString(report) + "\n";
-            ctx.writeAndFlush(response);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            ExecutionReport errorReport = new ExecutionReport(0, null, null, "unknown", "REJECTED");
-            ctx.writeAndFlush(mapper.writeValueAsString(errorReport) + "\n");
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        flushTask = () -> flushReports(ctx);
+        //reports are produced on the matching thread, hop back onto this channel's event loop to write them
+        reportSink = report -> {
+            long handedOff = System.nanoTime();
+            ctx.executor().execute(() -> {
+                metrics.record(LatencyStage.HANDOFF, System.nanoTime() - handedOff);
+                onReport(ctx, report);
+            });
+        };
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, OrderRequest request) {
+        if (inFlight >= maxInFlight) {
+            metrics.recordThrottle();
+            write(ctx, ExecutionReport.throttled(request.getQuantity(), request.getAccountId(), request.getSymbol(),
+                    request.getClientOrderId(), request.getOrderId()));
+            return;
+        }
+        //the request may be a decoder-owned flyweight, publish copies it into the ring buffer before returning
+        if (router.publish(request, reportSink)) {
+            inFlight++;
+        } else {
+            metrics.recordEntryReject();
+            log.warn("Unknown symbol {} or matching shard full, rejecting {} from account {}", request.getSymbol(),
+                    request.getAction(), request.getAccountId());
+            write(ctx, ExecutionReport.rejected(request.getQuantity(), request.getAccountId(), request.getSymbol(),
+                    request.getClientOrderId(), request.getOrderId()));
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (unflushed) {
+            unflushed = false;
+            ctx.flush();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        //stop taking orders from a client that does not read its reports, until it drains below the low water mark
+        ctx.channel().config().setAutoRead(ctx.channel().isWritable());
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void onReport(ChannelHandlerContext ctx, ExecutionReport report) {
+        inFlight--;
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        write(ctx, report);
+        if (!flushScheduled) {
+            //runs after the reports the matching thread has already queued, so they share one flush
+            flushScheduled = true;
+            ctx.executor().execute(flushTask);
+        }
+    }
+
+    private void write(ChannelHandlerContext ctx, ExecutionReport report) {
+        ctx.write(report, ctx.voidPromise());
+        unflushed = true;
+    }
+
+    private void flushReports(ChannelHandlerContext ctx) {
+        flushScheduled = false;
+        if (unflushed) {
+            unflushed = false;
+            ctx.flush();
         }
     }
 
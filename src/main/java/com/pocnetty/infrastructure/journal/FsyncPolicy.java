@@ -0,0 +1,19 @@
+package com.pocnetty.infrastructure.journal;
+
+/**
+ * When journal writes are forced from the page cache to the storage device.
+ */
+public enum FsyncPolicy {
+    /**
+     * Force after every appended record. Nothing acknowledged is ever lost, at the cost of one device flush per event.
+     */
+    EVERY_EVENT,
+    /**
+     * Force once {@code fsyncBatchSize} records or {@code fsyncBatchMicros} have accumulated, whichever comes first.
+     */
+    BATCH,
+    /**
+     * Never force explicitly and let the OS write back dirty pages. Survives a process crash, not a power loss.
+     */
+    OS
+}
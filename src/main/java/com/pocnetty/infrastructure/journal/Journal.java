@@ -0,0 +1,375 @@
+package com.pocnetty.infrastructure.journal;
+
+import com.pocnetty.domain.enums.OrderType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Sequenced write-ahead journal of matching input events, stored in memory-mapped segment files.
+ * <p>
+ * Segments are pre-sized to {@code segmentSize} bytes and named after the sequence of their first
+ * record, so they sort in replay order. Each record is little-endian:
+ * <pre>
+ * length:int32 sequence:int64 timestamp:int64 type:int8 side:int8 quantity:int32 price:int64
+ * orderId:int64 symbolLength:uint8 symbol:ascii accountLength:uint8 accountId:ascii crc32c:int32
+ * </pre>
+ * where {@code length} counts every byte after itself, {@code price} is in ticks, {@code side} is {@code -1} for records without one and the CRC covers everything between the
+ * length and the CRC. Unused segment space is zero, so a zero length marks the end of the data.
+ * <p>
+ * A journal has a single writer, the matching thread of its shard. {@link #replay(long, Consumer)}
+ * must be called once before the first {@link #append(JournalRecord)}; it stops at the first torn
+ * or corrupt record of the last segment and positions the writer right there.
+ */
+@Slf4j
+public class Journal implements AutoCloseable {
+
+    /**
+     * Longest symbol or account id a record can hold.
+     */
+    public static final int MAX_TEXT_LENGTH = 255;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int LENGTH_FIELD_SIZE = 4;
+    private static final int FIXED_BODY_SIZE = 8 + 8 + 1 + 1 + 4 + 8 + 8 + 1 + 1 + 4;
+    private static final OrderType[] SIDES = OrderType.values();
+    //cancels and replaces do not repeat the side of the order they target
+    private static final byte NO_SIDE = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncBatchSize;
+    private final long fsyncBatchNanos;
+    private final CRC32C crc = new CRC32C();
+    private final AsciiField symbolField = new AsciiField();
+    private final AsciiField accountField = new AsciiField();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private ByteBuffer crcView;
+    private long lastSequence;
+    private boolean replayed;
+    private int forcedPosition;
+    private int unforcedRecords;
+    private long firstUnforcedNanos;
+
+    public Journal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, int fsyncBatchSize, long fsyncBatchMicros) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncBatchSize = fsyncBatchSize;
+        this.fsyncBatchNanos = fsyncBatchMicros * 1_000;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads every valid record in sequence order and leaves the journal ready for appending after the last one.
+     *
+     * @param handler receives each record; the instance is reused, so copy what must be kept
+     * @return the number of records replayed
+     */
+    public long replay(Consumer<JournalRecord> handler) {
+        return replay(0, handler);
+    }
+
+    /**
+     * Replays only the records after {@code afterSequence}, typically the sequence covered by a snapshot.
+     * Segments that end before it are skipped without being read.
+     *
+     * @param afterSequence last sequence already reflected in the state being rebuilt
+     * @param handler       receives each record; the instance is reused, so copy what must be kept
+     * @return the number of records handed to the handler
+     */
+    public long replay(long afterSequence, Consumer<JournalRecord> handler) {
+        JournalRecord record = new JournalRecord();
+        List<Path> segments = segments();
+        long count = 0;
+        try {
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                if (!last && firstSequence(segments.get(i + 1)) <= afterSequence + 1) {
+                    continue;
+                }
+                try (FileChannel readChannel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    ByteBuffer view = buffer.duplicate();
+                    while (read(buffer, view, record)) {
+                        if (record.getSequence() != lastSequence + 1 && lastSequence != 0) {
+                            throw new IllegalStateException("Journal gap in " + segments.get(i) + ": expected sequence "
+                                    + (lastSequence + 1) + " but found " + record.getSequence());
+                        }
+                        lastSequence = record.getSequence();
+                        if (lastSequence > afterSequence) {
+                            handler.accept(record);
+                            count++;
+                        }
+                    }
+                    if (!last && buffer.remaining() >= LENGTH_FIELD_SIZE && buffer.getInt(buffer.position()) != 0) {
+                        throw new IllegalStateException("Corrupt record in " + segments.get(i) + " at offset " + buffer.position());
+                    }
+                    if (last) {
+                        openForAppend(segments.get(i), buffer.position());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        replayed = true;
+        return count;
+    }
+
+    /**
+     * Appends a record, rolling to a new segment when the current one is full, and applies the fsync policy.
+     */
+    public void append(JournalRecord record) {
+        if (!replayed) {
+            throw new IllegalStateException("Journal must be replayed before appending");
+        }
+        String symbol = record.getSymbol();
+        String accountId = record.getAccountId();
+        int bodyLength = FIXED_BODY_SIZE + asciiLength(symbol) + asciiLength(accountId);
+        if (segment == null || segment.remaining() < LENGTH_FIELD_SIZE + bodyLength + LENGTH_FIELD_SIZE) {
+            roll(record.getSequence());
+        }
+        int start = segment.position();
+        segment.putInt(bodyLength);
+        segment.putLong(record.getSequence());
+        segment.putLong(record.getTimestamp());
+        segment.put(record.getRecordType());
+        segment.put(record.getSide() == null ? NO_SIDE : (byte) record.getSide().ordinal());
+        segment.putInt(record.getQuantity());
+        segment.putLong(record.getPrice());
+        segment.putLong(record.getOrderId());
+        putAscii(symbol);
+        putAscii(accountId);
+        crc.reset();
+        crcView.limit(segment.position()).position(start + LENGTH_FIELD_SIZE);
+        crc.update(crcView);
+        segment.putInt((int) crc.getValue());
+        lastSequence = record.getSequence();
+
+        switch (fsyncPolicy) {
+            case EVERY_EVENT -> force();
+            case BATCH -> {
+                if (unforcedRecords++ == 0) {
+                    firstUnforcedNanos = System.nanoTime();
+                }
+                if (unforcedRecords >= fsyncBatchSize || System.nanoTime() - firstUnforcedNanos >= fsyncBatchNanos) {
+                    force();
+                }
+            }
+            case OS -> {
+            }
+        }
+    }
+
+    /**
+     * Forces a pending batch whose time budget has run out. Called by the writer while it is idle,
+     * so a quiet period does not leave the tail of a batch unsynced.
+     */
+    public void flushIfDue() {
+        if (unforcedRecords > 0 && System.nanoTime() - firstUnforcedNanos >= fsyncBatchNanos) {
+            force();
+        }
+    }
+
+    /**
+     * Deletes the segments holding only records up to {@code sequence}, once a snapshot covers them.
+     * The segment containing {@code sequence + 1} and the segment being written are always kept, so
+     * this is safe to call from a thread other than the writer.
+     *
+     * @return the number of segments deleted
+     */
+    public int deleteSegmentsBefore(long sequence) {
+        List<Path> segments = segments();
+        int deleted = 0;
+        try {
+            for (int i = 0; i < segments.size() - 1; i++) {
+                if (firstSequence(segments.get(i + 1)) > sequence + 1) {
+                    break;
+                }
+                Files.deleteIfExists(segments.get(i));
+                deleted++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return the sequence of the last record replayed or appended, {@code 0} for an empty journal
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    private boolean read(MappedByteBuffer buffer, ByteBuffer view, JournalRecord record) {
+        int start = buffer.position();
+        if (buffer.remaining() < LENGTH_FIELD_SIZE) {
+            return false;
+        }
+        int bodyLength = buffer.getInt(start);
+        if (bodyLength < FIXED_BODY_SIZE || bodyLength > buffer.remaining() - LENGTH_FIELD_SIZE) {
+            return false;
+        }
+        int crcIndex = start + LENGTH_FIELD_SIZE + bodyLength - 4;
+        crc.reset();
+        crc.update(view.limit(crcIndex).position(start + LENGTH_FIELD_SIZE));
+        if ((int) crc.getValue() != buffer.getInt(crcIndex)) {
+            return false;
+        }
+        buffer.position(start + LENGTH_FIELD_SIZE);
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        byte type = buffer.get();
+        byte sideOrdinal = buffer.get();
+        OrderType side = sideOrdinal == NO_SIDE ? null : SIDES[sideOrdinal];
+        int quantity = buffer.getInt();
+        long price = buffer.getLong();
+        long orderId = buffer.getLong();
+        String symbol = symbolField.read(buffer);
+        String accountId = accountField.read(buffer);
+        buffer.position(crcIndex + 4);
+        record.set(sequence, timestamp, type, side, quantity, price, orderId, symbol, accountId);
+        return true;
+    }
+
+    private void roll(long firstSequence) {
+        try {
+            closeSegment();
+            Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            //size the file up front so appends only ever touch already allocated, mapped pages
+            channel.write(ByteBuffer.allocate(1), segmentSize - 1);
+            mapSegment(0);
+            log.info("Journal rolled to segment {}", path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openForAppend(Path path, int position) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapSegment(position);
+        //wipe whatever a torn write left behind so the next replay cannot mistake it for data
+        for (int i = position; i < segment.limit() && i < position + LENGTH_FIELD_SIZE + FIXED_BODY_SIZE + 512; i++) {
+            segment.put(i, (byte) 0);
+        }
+    }
+
+    private void mapSegment(int position) throws IOException {
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.position(position);
+        crcView = segment.duplicate();
+        forcedPosition = position;
+        unforcedRecords = 0;
+    }
+
+    private void force() {
+        int position = segment.position();
+        if (position > forcedPosition) {
+            segment.force(forcedPosition, position - forcedPosition);
+            forcedPosition = position;
+        }
+        unforcedRecords = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null && fsyncPolicy != FsyncPolicy.OS) {
+            force();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        segment = null;
+        channel = null;
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int asciiLength(String value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Journal text fields are limited to " + MAX_TEXT_LENGTH + " characters: " + value);
+        }
+        return value.length();
+    }
+
+    private void putAscii(String value) {
+        int length = asciiLength(value);
+        segment.put((byte) length);
+        for (int i = 0; i < length; i++) {
+            segment.put((byte) value.charAt(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    /**
+     * Decodes a length-prefixed ASCII field, handing back the previous String when the bytes repeat.
+     * An empty field decodes to {@code null}.
+     */
+    private static class AsciiField {
+        private final byte[] bytes = new byte[MAX_TEXT_LENGTH];
+        private int length = -1;
+        private String value;
+
+        String read(ByteBuffer buffer) {
+            int fieldLength = buffer.get() & 0xFF;
+            int start = buffer.position();
+            boolean same = fieldLength == length;
+            for (int i = 0; same && i < fieldLength; i++) {
+                same = buffer.get(start + i) == bytes[i];
+            }
+            if (!same) {
+                buffer.get(start, bytes, 0, fieldLength);
+                length = fieldLength;
+                value = new String(bytes, 0, fieldLength, StandardCharsets.US_ASCII);
+            }
+            buffer.position(start + fieldLength);
+            return fieldLength == 0 ? null : value;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.pocnetty.infrastructure.journal;
+
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import lombok.Getter;
+
+/**
+ * One journaled input event. Instances are mutable and reused for every append and replayed record.
+ */
+@Getter
+public class JournalRecord {
+
+    public static final byte MARKET_ORDER = 1;
+    public static final byte NEW_LIMIT = 2;
+    public static final byte CANCEL = 3;
+    public static final byte CANCEL_REPLACE = 4;
+
+    private long sequence;
+    private long timestamp;
+    private byte recordType;
+    private OrderType side;
+    private int quantity;
+    /**
+     * Limit price in ticks.
+     */
+    private long price;
+    private long orderId;
+    private String symbol;
+    private String accountId;
+
+    public JournalRecord set(long sequence, long timestamp, byte recordType, OrderType side, int quantity,
+                             long price, long orderId, String symbol, String accountId) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.recordType = recordType;
+        this.side = side;
+        this.quantity = quantity;
+        this.price = price;
+        this.orderId = orderId;
+        this.symbol = symbol;
+        this.accountId = accountId;
+        return this;
+    }
+
+    public JournalRecord marketOrder(long sequence, long timestamp, OrderType side, int quantity, String symbol, String accountId) {
+        return set(sequence, timestamp, MARKET_ORDER, side, quantity, 0, 0, symbol, accountId);
+    }
+
+    /**
+     * Fills the record for any order entry action; fields the action does not use are recorded as given.
+     */
+    public JournalRecord order(long sequence, long timestamp, OrderAction action, OrderType side, int quantity,
+                               long price, long orderId, String symbol, String accountId) {
+        return set(sequence, timestamp, recordType(action), side, quantity, price, orderId, symbol, accountId);
+    }
+
+    private static byte recordType(OrderAction action) {
+        return switch (action) {
+            case MARKET -> MARKET_ORDER;
+            case NEW_LIMIT -> NEW_LIMIT;
+            case CANCEL -> CANCEL;
+            case CANCEL_REPLACE -> CANCEL_REPLACE;
+        };
+    }
+}
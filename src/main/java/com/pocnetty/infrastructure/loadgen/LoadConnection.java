@@ -0,0 +1,155 @@
+package com.pocnetty.infrastructure.loadgen;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One load generator connection. Orders are written and responses recorded on the channel's event
+ * loop only, so the histogram and counters need no synchronization while the run is in progress.
+ * <p>
+ * The connection owns every {@code connectionCount}-th order of the schedule; the client order id
+ * is the order's index in the schedule, which is all that is needed to correlate a response.
+ */
+@Slf4j
+class LoadConnection extends SimpleChannelInboundHandler<Object> {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectWriter orderWriter = mapper.writerFor(MarketOrder.class);
+    private static final ObjectReader reportReader = mapper.reader();
+
+    private final int index;
+    private final int connectionCount;
+    private final WireProtocol protocol;
+    private final int flushBatchSize;
+    private final String[] symbols;
+    private final LongAdder totalReceived;
+    private final MarketOrder order;
+    private final Histogram latency;
+    private ChannelHandlerContext ctx;
+    private OrderSchedule schedule;
+    private long recordFromNanos;
+    private long sent;
+    private long received;
+    private long rejected;
+
+    LoadConnection(int index, int connectionCount, WireProtocol protocol, int flushBatchSize, int quantity,
+                   String[] symbols, String accountId, Histogram latency, LongAdder totalReceived) {
+        this.index = index;
+        this.connectionCount = connectionCount;
+        this.protocol = protocol;
+        this.flushBatchSize = Math.max(1, flushBatchSize);
+        this.symbols = symbols;
+        this.latency = latency;
+        this.totalReceived = totalReceived;
+        this.order = new MarketOrder(OrderType.BUY, quantity, accountId);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * Sets the schedule before the first {@link #send(long, long)}; the hand-off to the event loop publishes it.
+     *
+     * @param recordFromNanos responses to orders due before this time are not recorded
+     */
+    void start(OrderSchedule schedule, long recordFromNanos) {
+        this.schedule = schedule;
+        this.recordFromNanos = recordFromNanos;
+    }
+
+    /**
+     * Writes this connection's share of orders {@code [from, to)}, flushing every {@code flushBatchSize}
+     * writes and once at the end. Must run on the channel's event loop.
+     */
+    void send(long from, long to) {
+        int unflushed = 0;
+        for (long id = from + Math.floorMod(index - from, connectionCount); id < to; id += connectionCount) {
+            order.setType(id % 2 == 0 ? OrderType.BUY : OrderType.SELL);
+            order.setSymbol(symbols[(int) (id % symbols.length)]);
+            order.setClientOrderId(id);
+            //writes from the event loop are encoded immediately, so the order instance can be reused
+            ctx.write(protocol == WireProtocol.BINARY ? order : toJson(order));
+            sent++;
+            if (++unflushed == flushBatchSize) {
+                ctx.flush();
+                unflushed = 0;
+            }
+        }
+        if (unflushed > 0) {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long now = System.nanoTime();
+        long clientOrderId;
+        boolean isRejected;
+        if (msg instanceof ExecutionReport report) {
+            clientOrderId = report.getClientOrderId();
+            isRejected = isRejected(report.getStatus());
+        } else {
+            JsonNode report = reportReader.readTree((String) msg);
+            clientOrderId = report.path("clientOrderId").asLong();
+            isRejected = isRejected(report.path("status").asText());
+        }
+        long dueNanos = schedule.dueNanos(clientOrderId);
+        if (dueNanos >= recordFromNanos) {
+            latency.recordValue(Math.min(now - dueNanos, latency.getHighestTrackableValue()));
+        }
+        received++;
+        if (isRejected) {
+            rejected++;
+        }
+        totalReceived.increment();
+    }
+
+    private static boolean isRejected(String status) {
+        return "REJECTED".equals(status) || "THROTTLED".equals(status);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.error(cause.getMessage(), cause);
+        ctx.close();
+    }
+
+    long sent() {
+        return sent;
+    }
+
+    long received() {
+        return received;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+
+    Histogram latency() {
+        return latency;
+    }
+
+    private static String toJson(MarketOrder order) {
+        try {
+            return orderWriter.writeValueAsString(order) + "\n";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.pocnetty.infrastructure.loadgen;
+
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.CharsetUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: spreads a fixed order rate over several connections and reports the
+ * round-trip latency distribution and the achieved throughput.
+ * <p>
+ * The calling thread follows the {@link OrderSchedule} and hands each connection the range of
+ * orders that became due, which the connection writes on its event loop with explicit flush
+ * batching. Responses are matched to their order by client order id.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String host;
+    private final int port;
+    private final WireProtocol protocol;
+    private final AppProperties.LoadGenerator properties;
+
+    public LoadGenerator(String host, int port, WireProtocol protocol, AppProperties.LoadGenerator properties) {
+        this.host = host;
+        this.port = port;
+        this.protocol = protocol;
+        this.properties = properties;
+    }
+
+    public LoadResult run() throws InterruptedException {
+        int connectionCount = Math.max(1, properties.getConnections());
+        long orderCount = properties.getRatePerSecond() * properties.getDurationSeconds();
+        String[] symbols = properties.getSymbols().isEmpty()
+                ? new String[]{null}
+                : properties.getSymbols().toArray(new String[0]);
+        LongAdder totalReceived = new LongAdder();
+        NioEventLoopGroup group = new NioEventLoopGroup(Math.min(connectionCount, Runtime.getRuntime().availableProcessors()));
+        List<Channel> channels = new ArrayList<>();
+        List<LoadConnection> connections = new ArrayList<>();
+        try {
+            //the schedule starts once every connection is up, so connecting is not charged to the first orders
+            for (int i = 0; i < connectionCount; i++) {
+                LoadConnection connection = new LoadConnection(i, connectionCount, protocol, properties.getFlushBatchSize(),
+                        properties.getQuantity(), symbols, String.valueOf(900_000 + i), new Histogram(HIGHEST_TRACKABLE_NANOS, 3), totalReceived);
+                connections.add(connection);
+                channels.add(connect(group, connection));
+            }
+            long start = System.nanoTime() + START_DELAY_NANOS;
+            OrderSchedule schedule = new OrderSchedule(start, properties.getRatePerSecond(), orderCount);
+            long recordFromNanos = start + TimeUnit.SECONDS.toNanos(properties.getWarmupSeconds());
+            for (LoadConnection connection : connections) {
+                connection.start(schedule, recordFromNanos);
+            }
+            log.info("Sending {} orders/s for {} s over {} {} connections to {}:{}", properties.getRatePerSecond(),
+                    properties.getDurationSeconds(), connectionCount, protocol, host, port);
+
+            sendAll(schedule, channels, connections);
+            long end = awaitResponses(orderCount, totalReceived);
+            for (Channel channel : channels) {
+                channel.close().sync();
+            }
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+            return report(connections, end - start);
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private Channel connect(NioEventLoopGroup group, LoadConnection connection) throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        if (protocol == WireProtocol.BINARY) {
+                            pipeline.addLast(new BinaryReportDecoder());
+                            pipeline.addLast(new BinaryOrderEncoder());
+                        } else {
+                            pipeline.addLast(new DelimiterBasedFrameDecoder(8192, Unpooled.wrappedBuffer("\n".getBytes())));
+                            pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
+                            pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+                        }
+                        pipeline.addLast(connection);
+                    }
+                })
+                .connect(host, port)
+                .sync()
+                .channel();
+    }
+
+    /**
+     * Follows the schedule on the calling thread. Orders that became due since the last pass are
+     * handed to every connection as one range, so a late pass catches up in a single batch instead of
+     * slowing the schedule down.
+     */
+    private void sendAll(OrderSchedule schedule, List<Channel> channels, List<LoadConnection> connections) {
+        long next = 0;
+        while (next < schedule.orderCount()) {
+            long now = System.nanoTime();
+            long due = schedule.dueBy(now);
+            if (due <= next) {
+                LockSupport.parkNanos(schedule.dueNanos(next) - now);
+                continue;
+            }
+            long from = next;
+            for (int i = 0; i < channels.size(); i++) {
+                LoadConnection connection = connections.get(i);
+                channels.get(i).eventLoop().execute(() -> connection.send(from, due));
+            }
+            next = due;
+        }
+    }
+
+    private static long awaitResponses(long orderCount, LongAdder totalReceived) {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (totalReceived.sum() < orderCount) {
+            if (System.nanoTime() - deadline > 0) {
+                log.warn("Gave up waiting for {} responses", orderCount - totalReceived.sum());
+                break;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return System.nanoTime();
+    }
+
+    private LoadResult report(List<LoadConnection> connections, long elapsedNanos) {
+        Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        long sent = 0;
+        long received = 0;
+        long rejected = 0;
+        for (LoadConnection connection : connections) {
+            latency.add(connection.latency());
+            sent += connection.sent();
+            received += connection.received();
+            rejected += connection.rejected();
+        }
+        LoadResult result = new LoadResult(sent, received, rejected, elapsedNanos, latency);
+        log.info("Sent {} orders, received {} responses ({} rejected), achieved {} orders/s",
+                sent, received, rejected, Math.round(result.throughput()));
+        log.info("Round-trip latency (us): p50={} p99={} p99.9={} max={} over {} samples",
+                micros(latency.getValueAtPercentile(50)), micros(latency.getValueAtPercentile(99)),
+                micros(latency.getValueAtPercentile(99.9)), micros(latency.getMaxValue()), latency.getTotalCount());
+        if (properties.getHistogramFile() != null) {
+            writeHistogram(latency, Path.of(properties.getHistogramFile()));
+        }
+        return result;
+    }
+
+    private static void writeHistogram(Histogram latency, Path file) {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            latency.outputPercentileDistribution(out, 1000.0);
+            log.info("Latency distribution written to {}", file);
+        } catch (IOException e) {
+            log.error("Failed to write latency distribution to " + file, e);
+        }
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.pocnetty.infrastructure.loadgen;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Outcome of a load generator run.
+ */
+@Getter
+@AllArgsConstructor
+public class LoadResult {
+
+    private final long sent;
+    private final long received;
+    private final long rejected;
+    /**
+     * Time from the first scheduled order until the last response arrived or the drain timed out.
+     */
+    private final long elapsedNanos;
+    /**
+     * Round-trip latency in nanoseconds, measured from each order's scheduled send time.
+     */
+    private final Histogram latency;
+
+    public double throughput() {
+        return received * 1_000_000_000.0 / elapsedNanos;
+    }
+}
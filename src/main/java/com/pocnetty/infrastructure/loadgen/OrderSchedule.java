@@ -0,0 +1,49 @@
+package com.pocnetty.infrastructure.loadgen;
+
+/**
+ * Fixed-rate send schedule of an open-loop run: order {@code i} is due at {@code start + i / rate}
+ * whether or not earlier orders have been answered.
+ * <p>
+ * Latency is measured from the time an order was due rather than the time it was actually written,
+ * so a stalled server or client is charged for every order it delayed (no coordinated omission), and
+ * the send time never has to be stored: it is recomputed from the client order id.
+ */
+class OrderSchedule {
+
+    private static final double SECOND_NANOS = 1_000_000_000.0;
+
+    private final long startNanos;
+    private final double intervalNanos;
+    private final long orderCount;
+
+    OrderSchedule(long startNanos, long ratePerSecond, long orderCount) {
+        this.startNanos = startNanos;
+        this.intervalNanos = SECOND_NANOS / ratePerSecond;
+        this.orderCount = orderCount;
+    }
+
+    long startNanos() {
+        return startNanos;
+    }
+
+    long orderCount() {
+        return orderCount;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which order {@code index} is due
+     */
+    long dueNanos(long index) {
+        return startNanos + (long) (index * intervalNanos);
+    }
+
+    /**
+     * @return the number of orders due at {@code nowNanos}
+     */
+    long dueBy(long nowNanos) {
+        if (nowNanos < startNanos) {
+            return 0;
+        }
+        return Math.min(orderCount, (long) ((nowNanos - startNanos) / intervalNanos) + 1);
+    }
+}
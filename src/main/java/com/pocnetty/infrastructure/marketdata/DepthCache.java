@@ -0,0 +1,130 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MarketDataListener;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.enums.OrderType;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregated top-of-book view of every book of one matching shard, for depth queries.
+ * <p>
+ * The engines report their level changes to the cache on the matching thread, which only marks a
+ * side of a book stale when the change can alter its cached levels: a level at or better than the
+ * worst cached one, or any level while the side shows fewer than {@code maxLevels}. Changes further
+ * down the book cost a lookup and a comparison. At the end of each batch, {@link #flush(long)}
+ * copies the levels of the stale sides, reuses the previous copy of the other side, and publishes
+ * the result as a new {@link BookDepth} with a volatile write, so readers on any thread get a
+ * consistent view without touching the engines or waiting on the matching thread, and any number
+ * of them share the same copy.
+ * <p>
+ * Not thread-safe: only {@link #get(String)} may be called from other threads.
+ */
+public class DepthCache implements MarketDataListener {
+
+    private final int maxLevels;
+    //never modified after construction, so lookups from other threads need no synchronization
+    private final Map<String, Book> booksBySymbol = new HashMap<>();
+    private final Book[] books;
+
+    /**
+     * @param engines   the books of the shard
+     * @param maxLevels price levels kept per side
+     */
+    public DepthCache(Collection<MatchingEngine> engines, int maxLevels) {
+        this.maxLevels = maxLevels;
+        this.books = new Book[engines.size()];
+        int i = 0;
+        for (MatchingEngine engine : engines) {
+            books[i] = new Book(engine);
+            booksBySymbol.put(engine.getSymbol(), books[i++]);
+        }
+    }
+
+    public int maxLevels() {
+        return maxLevels;
+    }
+
+    /**
+     * @return the latest published levels of the symbol's book, or {@code null} when the shard does not own it
+     */
+    public BookDepth get(String symbol) {
+        Book book = booksBySymbol.get(symbol);
+        return book == null ? null : book.depth;
+    }
+
+    @Override
+    public void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount) {
+        Book book = booksBySymbol.get(symbol);
+        if (book == null) {
+            return;
+        }
+        boolean buy = side == OrderType.BUY;
+        if (buy ? book.staleBids : book.staleAsks) {
+            return;
+        }
+        BookDepth.Side cached = buy ? book.depth.getBids() : book.depth.getAsks();
+        int size = cached.size();
+        boolean stale = size < maxLevels || (buy ? price >= cached.getPrices()[size - 1] : price <= cached.getPrices()[size - 1]);
+        if (buy) {
+            book.staleBids = stale;
+        } else {
+            book.staleAsks = stale;
+        }
+    }
+
+    @Override
+    public void onTrade(String symbol, OrderType aggressorSide, long price, int quantity) {
+        //a trade is always followed by the update of the level it executed against
+    }
+
+    /**
+     * Publishes the levels of every book, whether it changed or not, as of {@code sequence}.
+     */
+    public void publishAll(long sequence) {
+        for (Book book : books) {
+            book.staleBids = true;
+            book.staleAsks = true;
+            book.publish(sequence, maxLevels);
+        }
+    }
+
+    /**
+     * Publishes the levels of every book whose cached levels changed since the last call.
+     *
+     * @param sequence the matching sequence of the last event applied
+     */
+    public void flush(long sequence) {
+        for (Book book : books) {
+            if (book.staleBids || book.staleAsks) {
+                book.publish(sequence, maxLevels);
+            }
+        }
+    }
+
+    private static final class Book {
+
+        private final MatchingEngine engine;
+        private volatile BookDepth depth;
+        //only touched on the matching thread
+        private boolean staleBids;
+        private boolean staleAsks;
+
+        private Book(MatchingEngine engine) {
+            this.engine = engine;
+            this.depth = BookDepth.copyOf(engine.getSymbol(), 0, engine.getBuyOrders(), engine.getSellOrders(), 0);
+        }
+
+        private void publish(long sequence, int maxLevels) {
+            BookDepth previous = depth;
+            depth = new BookDepth(engine.getSymbol(), sequence,
+                    staleBids ? BookDepth.Side.copyOf(engine.getBuyOrders(), maxLevels) : previous.getBids(),
+                    staleAsks ? BookDepth.Side.copyOf(engine.getSellOrders(), maxLevels) : previous.getAsks());
+            staleBids = false;
+            staleAsks = false;
+        }
+    }
+}
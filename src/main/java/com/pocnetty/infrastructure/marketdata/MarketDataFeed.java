@@ -0,0 +1,158 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the market data of every matching shard out to the subscriber channels.
+ * <p>
+ * Subscribers are grouped by the event loop of their channel, and each batch from a
+ * {@link MarketDataPublisher} is handed to every such event loop as a single task that writes it to
+ * all of the loop's subscribers. The matching threads therefore never touch a channel and never
+ * wait for one, and the cost of a batch on the matching thread depends on the number of event
+ * loops, not on the number of subscribers. A subscriber that cannot keep up conflates on its own
+ * event loop (see {@link MarketDataSubscriber}).
+ * <p>
+ * Every new subscriber triggers a full-depth refresh from all publishers, and
+ * {@link #scheduleRefresh(EventExecutorGroup, long)} adds periodic ones.
+ */
+@Slf4j
+public class MarketDataFeed implements AutoCloseable {
+
+    private final ByteBufAllocator allocator;
+    private final ChannelGroup channels = new DefaultChannelGroup("market-data", GlobalEventExecutor.INSTANCE);
+    private final Map<EventExecutor, LoopSubscribers> subscribersByLoop = new ConcurrentHashMap<>();
+    private final List<MarketDataPublisher> publishers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /**
+     * @param allocator allocates the publishers' batches
+     */
+    public MarketDataFeed(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    ByteBufAllocator allocator() {
+        return allocator;
+    }
+
+    void register(MarketDataPublisher publisher) {
+        publishers.add(publisher);
+    }
+
+    void unregister(MarketDataPublisher publisher) {
+        publishers.remove(publisher);
+    }
+
+    /**
+     * Must be called on the channel's event loop.
+     */
+    void subscribe(MarketDataSubscriber subscriber, Channel channel) {
+        channels.add(channel);
+        subscribersByLoop.computeIfAbsent(channel.eventLoop(), LoopSubscribers::new).subscribers.add(subscriber);
+        subscriberCount.incrementAndGet();
+        requestRefresh();
+    }
+
+    /**
+     * Must be called on the channel's event loop.
+     */
+    void unsubscribe(MarketDataSubscriber subscriber, Channel channel) {
+        LoopSubscribers loop = subscribersByLoop.get(channel.eventLoop());
+        if (loop != null && loop.subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return subscriberCount.get() > 0;
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Asks every publisher for a full-depth refresh of its books.
+     */
+    public void requestRefresh() {
+        for (MarketDataPublisher publisher : publishers) {
+            publisher.requestRefresh();
+        }
+    }
+
+    /**
+     * Requests a refresh every {@code intervalMillis} on one of the group's executors; does nothing for {@code 0}.
+     */
+    public void scheduleRefresh(EventExecutorGroup group, long intervalMillis) {
+        if (intervalMillis > 0) {
+            group.scheduleAtFixedRate(this::requestRefresh, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands a batch to every event loop with subscribers, taking ownership of the buffer.
+     */
+    void broadcast(ByteBuf batch) {
+        try {
+            for (LoopSubscribers loop : subscribersByLoop.values()) {
+                ByteBuf copy = batch.retainedDuplicate();
+                try {
+                    loop.executor.execute(() -> loop.deliver(copy));
+                } catch (RejectedExecutionException e) {
+                    //the event loop is shutting down along with its subscribers
+                    copy.release();
+                }
+            }
+        } finally {
+            batch.release();
+        }
+    }
+
+    /**
+     * Closes every subscriber channel.
+     */
+    @Override
+    public void close() {
+        channels.close().awaitUninterruptibly();
+    }
+
+    /**
+     * Subscribers of one event loop, only ever touched on that loop.
+     */
+    private static final class LoopSubscribers {
+
+        private final EventExecutor executor;
+        private final List<MarketDataSubscriber> subscribers = new ArrayList<>();
+
+        private LoopSubscribers(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        private void deliver(ByteBuf batch) {
+            try {
+                for (int i = 0; i < subscribers.size(); i++) {
+                    subscribers.get(i).onBatch(batch.retainedDuplicate());
+                }
+            } finally {
+                batch.release();
+            }
+        }
+    }
+}
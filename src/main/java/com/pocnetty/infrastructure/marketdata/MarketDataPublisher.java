@@ -0,0 +1,125 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MarketDataListener;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.book.OrderBookSide;
+import com.pocnetty.domain.book.OrderStore;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * Encodes the market data of one matching shard on its matching thread and hands it to the {@link MarketDataFeed}.
+ * <p>
+ * Level updates and trades are appended to one pooled buffer as the engines report them, and the
+ * buffer is broadcast once per batch of events, when the matching core calls {@link #flush()}. A
+ * full-depth refresh of every book is appended at the end of the next batch once one has been
+ * requested, so it always reflects the updates before it. Nothing is encoded while the feed has no
+ * subscribers.
+ * <p>
+ * Not thread-safe: only {@link #requestRefresh()} may be called from other threads.
+ */
+public class MarketDataPublisher implements MarketDataListener, AutoCloseable {
+
+    private static final int INITIAL_BATCH_CAPACITY = 4096;
+
+    private final MarketDataFeed feed;
+    private final List<MatchingEngine> engines;
+    private volatile boolean refreshRequested;
+    private ByteBuf batch;
+    private long sequence;
+
+    /**
+     * @param feed    the feed the batches are broadcast to
+     * @param engines the books of the shard, walked for full-depth refreshes
+     */
+    public MarketDataPublisher(MarketDataFeed feed, Collection<MatchingEngine> engines) {
+        this.feed = feed;
+        this.engines = List.copyOf(engines);
+        feed.register(this);
+    }
+
+    /**
+     * @param sequence the matching sequence of the event about to be applied, stamped on what it publishes
+     */
+    public void sequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount) {
+        if (feed.hasSubscribers()) {
+            writeLevelUpdate(batch(), sequence, symbol, side, price, quantity, orderCount);
+        }
+    }
+
+    @Override
+    public void onTrade(String symbol, OrderType aggressorSide, long price, int quantity) {
+        if (feed.hasSubscribers()) {
+            writeTrade(batch(), sequence, symbol, aggressorSide, price, quantity);
+        }
+    }
+
+    /**
+     * Asks for a full-depth refresh of every book of the shard with the next {@link #flush()}. Safe to call from any thread.
+     */
+    public void requestRefresh() {
+        refreshRequested = true;
+    }
+
+    /**
+     * Broadcasts what was encoded since the last call, followed by a full-depth refresh when one was requested.
+     */
+    public void flush() {
+        if (refreshRequested) {
+            refreshRequested = false;
+            if (feed.hasSubscribers()) {
+                writeRefresh();
+            }
+        }
+        if (batch != null && batch.isReadable()) {
+            ByteBuf full = batch;
+            batch = null;
+            feed.broadcast(full);
+        }
+    }
+
+    private void writeRefresh() {
+        ByteBuf out = batch();
+        for (MatchingEngine engine : engines) {
+            writeBookRefresh(out, sequence, engine.getSymbol());
+            writeLevels(out, engine.getSymbol(), engine.getBuyOrders());
+            writeLevels(out, engine.getSymbol(), engine.getSellOrders());
+        }
+    }
+
+    private void writeLevels(ByteBuf out, String symbol, OrderBookSide side) {
+        for (int level = side.bestLevel(); level != OrderStore.NONE; level = side.nextLevel(level)) {
+            writeLevelUpdate(out, sequence, symbol, side.getSide(), side.levelPrice(level), side.levelQuantity(level),
+                    side.levelOrderCount(level));
+        }
+    }
+
+    private ByteBuf batch() {
+        if (batch == null) {
+            batch = feed.allocator().directBuffer(INITIAL_BATCH_CAPACITY);
+        }
+        return batch;
+    }
+
+    /**
+     * Drops whatever was not flushed. Call once the matching thread has stopped.
+     */
+    @Override
+    public void close() {
+        if (batch != null) {
+            batch.release();
+            batch = null;
+        }
+        feed.unregister(this);
+    }
+}
@@ -0,0 +1,166 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.AsciiStringCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.pocnetty.infrastructure.codec.BinaryProtocol.*;
+
+/**
+ * One market data subscriber connection: writes every batch from the {@link MarketDataFeed} as it
+ * is or, while the channel is not writable, conflates it.
+ * <p>
+ * Conflation keeps only the latest state of each price level and the latest refresh of each symbol,
+ * which is all a subscriber needs to bring its books up to date; trades are dropped and counted. Its
+ * memory is bounded by the size of the books rather than by how far behind the subscriber is, and
+ * the matching threads are never slowed down. Once the channel drains below its low water mark, the
+ * conflated state is written in one go and batches flow through again.
+ */
+@Slf4j
+public class MarketDataSubscriber extends ChannelInboundHandlerAdapter {
+
+    private final MarketDataFeed feed;
+    private final AsciiStringCache symbols = new AsciiStringCache(SYMBOL_LENGTH);
+    private final Map<String, ConflatedBook> conflated = new LinkedHashMap<>();
+    private ChannelHandlerContext ctx;
+    private boolean conflating;
+    private long droppedTrades;
+
+    public MarketDataSubscriber(MarketDataFeed feed) {
+        this.feed = feed;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        feed.subscribe(this, ctx.channel());
+        log.debug("Market data subscriber {} connected", ctx.channel().remoteAddress());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        feed.unsubscribe(this, ctx.channel());
+        conflated.clear();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        //subscribers have nothing to send
+        ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (conflating && ctx.channel().isWritable()) {
+            writeConflated();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Closing market data subscriber {}: {}", ctx.channel().remoteAddress(), cause.toString());
+        ctx.close();
+    }
+
+    /**
+     * Called on the channel's event loop with a batch of frames this subscriber now owns.
+     */
+    void onBatch(ByteBuf batch) {
+        if (!conflating && ctx.channel().isWritable()) {
+            ctx.writeAndFlush(batch, ctx.voidPromise());
+            return;
+        }
+        try {
+            conflate(batch);
+        } finally {
+            batch.release();
+        }
+        conflating = true;
+    }
+
+    boolean isConflating() {
+        return conflating;
+    }
+
+    private void conflate(ByteBuf batch) {
+        int index = batch.readerIndex();
+        while (index < batch.writerIndex()) {
+            int frame = index + LENGTH_FIELD_SIZE;
+            index = frame + batch.getIntLE(index);
+            byte messageType = batch.getByte(frame);
+            long sequence = batch.getLongLE(frame + 1);
+            if (messageType == TRADE) {
+                droppedTrades++;
+                continue;
+            }
+            String symbol = symbols.get(batch, frame + 1 + 8);
+            ConflatedBook book = conflated.computeIfAbsent(symbol, ignored -> new ConflatedBook());
+            if (messageType == BOOK_REFRESH) {
+                book.refreshSequence = sequence;
+                book.levels.clear();
+            } else if (messageType == LEVEL_UPDATE) {
+                int fields = frame + 1 + 8 + SYMBOL_LENGTH;
+                OrderType side = decodeSide(batch.getByte(fields));
+                long price = batch.getLongLE(fields + 1);
+                //prices are positive, so the sign tells the sides apart
+                ConflatedLevel level = book.levels.computeIfAbsent(side == OrderType.BUY ? price : -price,
+                        ignored -> new ConflatedLevel(side, price));
+                level.sequence = sequence;
+                level.quantity = batch.getLongLE(fields + 1 + 8);
+                level.orderCount = batch.getIntLE(fields + 1 + 8 + 8);
+            }
+        }
+    }
+
+    private void writeConflated() {
+        ByteBuf out = ctx.alloc().directBuffer();
+        conflated.forEach((symbol, book) -> {
+            if (book.refreshSequence >= 0) {
+                writeBookRefresh(out, book.refreshSequence, symbol);
+            }
+            for (ConflatedLevel level : book.levels.values()) {
+                writeLevelUpdate(out, level.sequence, symbol, level.side, level.price, level.quantity, level.orderCount);
+            }
+        });
+        conflated.clear();
+        conflating = false;
+        if (droppedTrades > 0) {
+            log.debug("Market data subscriber {} caught up, {} trades dropped", ctx.channel().remoteAddress(), droppedTrades);
+            droppedTrades = 0;
+        }
+        if (out.isReadable()) {
+            ctx.writeAndFlush(out, ctx.voidPromise());
+        } else {
+            out.release();
+        }
+    }
+
+    private static final class ConflatedBook {
+        //-1 until a refresh of the symbol was conflated
+        private long refreshSequence = -1;
+        private final Map<Long, ConflatedLevel> levels = new LinkedHashMap<>();
+    }
+
+    private static final class ConflatedLevel {
+        private final OrderType side;
+        private final long price;
+        private long sequence;
+        private long quantity;
+        private int orderCount;
+
+        private ConflatedLevel(OrderType side, long price) {
+            this.side = side;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.pocnetty.infrastructure.metrics;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+
+/**
+ * Records the {@link LatencyStage#FLUSH} stage. Must be the first handler of the pipeline, so that
+ * the flush it times is the one that writes the channel's outbound buffer to the socket.
+ */
+@ChannelHandler.Sharable
+public class FlushTimingHandler extends ChannelOutboundHandlerAdapter {
+
+    private final ServerMetrics metrics;
+
+    public FlushTimingHandler(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        long start = System.nanoTime();
+        ctx.flush();
+        metrics.record(LatencyStage.FLUSH, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,41 @@
+package com.pocnetty.infrastructure.metrics;
+
+/**
+ * The stages of an order's path through the server whose latency is recorded.
+ */
+public enum LatencyStage {
+    /**
+     * Parsing one order entry message out of the inbound bytes, on the channel's event loop.
+     */
+    DECODE,
+    /**
+     * Waiting in the ring buffer, from publication on the event loop until the matching thread picks it up.
+     */
+    ENQUEUE,
+    /**
+     * Journaling and matching the order and building its report, on the matching thread.
+     */
+    MATCH,
+    /**
+     * Waiting for the channel's event loop to pick the report up from the matching thread.
+     */
+    HANDOFF,
+    /**
+     * Serializing one report, on the channel's event loop.
+     */
+    ENCODE,
+    /**
+     * Writing a channel's pending reports to its socket.
+     */
+    FLUSH,
+    /**
+     * Round trip of replicated events, from the primary sending a batch until the standby acknowledges it applied it.
+     */
+    REPLICATE;
+
+    private final String label = name().toLowerCase();
+
+    public String label() {
+        return label;
+    }
+}
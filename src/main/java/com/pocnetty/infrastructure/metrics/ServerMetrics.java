@@ -0,0 +1,267 @@
+package com.pocnetty.infrastructure.metrics;
+
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.marketdata.MarketDataFeed;
+import com.pocnetty.infrastructure.posttrade.PostTradeDispatcher;
+import com.pocnetty.infrastructure.replication.ReplicationLink;
+import com.pocnetty.infrastructure.replication.ReplicationPublisher;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms, counters and gauges of one server, rendered in the Prometheus text format.
+ * <p>
+ * Each {@link LatencyStage} records into an HdrHistogram {@link Recorder} with a fixed range, so
+ * {@link #record(LatencyStage, long)} is wait-free and allocates nothing, from any number of event
+ * loops and matching threads at once. Counters and book depth are kept by the matching cores
+ * themselves and only read here, and event loop backlogs are sampled when scraped, so nothing on
+ * the order path ever waits for a scrape.
+ * <p>
+ * Stage quantiles cover the interval since the previous scrape, while their {@code _count} and
+ * {@code _sum} accumulate since startup, so Prometheus can still derive rates from them.
+ * {@link #NONE} records nothing and is what every component uses unless metrics are enabled.
+ */
+public class ServerMetrics {
+
+    //longer stages are recorded as this value instead of growing the histograms
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public static final ServerMetrics NONE = new ServerMetrics(false);
+
+    private final boolean enabled;
+    private final Recorder[] recorders = new Recorder[LatencyStage.values().length];
+    private final Histogram[] intervals = new Histogram[LatencyStage.values().length];
+    private final long[] totalCounts = new long[LatencyStage.values().length];
+    private final double[] totalSeconds = new double[LatencyStage.values().length];
+    private final LongAdder entryRejects = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder depthQueries = new LongAdder();
+    private final List<MatchingCore> shards = new ArrayList<>();
+    private final Map<String, List<SingleThreadEventExecutor>> eventLoops = new LinkedHashMap<>();
+    private MarketDataFeed marketData;
+    private ReplicationLink replication;
+    private PostTradeDispatcher postTrade;
+
+    public ServerMetrics() {
+        this(true);
+    }
+
+    private ServerMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(1, HIGHEST_TRACKABLE_NANOS, 2);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records how long one order spent in a stage. Wait-free and allocation-free, safe to call from any thread.
+     */
+    public void record(LatencyStage stage, long nanos) {
+        if (enabled) {
+            recorders[stage.ordinal()].recordValue(Math.max(1, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+        }
+    }
+
+    /**
+     * Counts a request rejected before reaching a matching shard, for an unknown symbol or a full ring buffer.
+     */
+    public void recordEntryReject() {
+        if (enabled) {
+            entryRejects.increment();
+        }
+    }
+
+    /**
+     * Counts an order refused because its connection had too many orders in flight.
+     */
+    public void recordThrottle() {
+        if (enabled) {
+            throttled.increment();
+        }
+    }
+
+    /**
+     * Counts a depth query answered on an event loop.
+     */
+    public void recordDepthQuery() {
+        if (enabled) {
+            depthQueries.increment();
+        }
+    }
+
+    public synchronized ServerMetrics registerShards(List<MatchingCore> shards) {
+        this.shards.addAll(shards);
+        return this;
+    }
+
+    /**
+     * Reports the pending task count of every event loop of the group under the given name.
+     */
+    public synchronized ServerMetrics registerEventLoops(String group, EventExecutorGroup loops) {
+        List<SingleThreadEventExecutor> executors = new ArrayList<>();
+        for (EventExecutor executor : loops) {
+            if (executor instanceof SingleThreadEventExecutor singleThreaded) {
+                executors.add(singleThreaded);
+            }
+        }
+        eventLoops.put(group, executors);
+        return this;
+    }
+
+    public synchronized ServerMetrics registerMarketData(MarketDataFeed feed) {
+        this.marketData = feed;
+        return this;
+    }
+
+    public synchronized ServerMetrics registerReplication(ReplicationLink link) {
+        this.replication = link;
+        return this;
+    }
+
+    public synchronized ServerMetrics registerPostTrade(PostTradeDispatcher dispatcher) {
+        this.postTrade = dispatcher;
+        return this;
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format
+     */
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        writeLatencies(out);
+        writeShards(out);
+        header(out, "matching_entry_rejects_total", "counter", "Requests rejected before reaching a shard, for an unknown symbol or a full ring buffer");
+        sample(out, "matching_entry_rejects_total", entryRejects.sum());
+        header(out, "matching_throttled_total", "counter", "Orders refused because their connection had too many orders in flight");
+        sample(out, "matching_throttled_total", throttled.sum());
+        header(out, "depth_queries_total", "counter", "Depth queries answered from the cached book levels");
+        sample(out, "depth_queries_total", depthQueries.sum());
+        header(out, "netty_event_loop_pending_tasks", "gauge", "Tasks queued on an event loop and not run yet");
+        eventLoops.forEach((group, executors) -> {
+            for (int i = 0; i < executors.size(); i++) {
+                sample(out, "netty_event_loop_pending_tasks", executors.get(i).pendingTasks(), "group", group, "loop", String.valueOf(i));
+            }
+        });
+        if (marketData != null) {
+            header(out, "market_data_subscribers", "gauge", "Connected market data subscribers");
+            sample(out, "market_data_subscribers", marketData.subscriberCount());
+        }
+        if (replication != null) {
+            header(out, "replication_standby_connected", "gauge", "Whether a standby is connected to this primary");
+            sample(out, "replication_standby_connected", replication.isConnected() ? 1 : 0);
+            header(out, "replication_standby_drops_total", "counter", "Standbys dropped for falling more than the write buffer high water mark behind");
+            sample(out, "replication_standby_drops_total", replication.dropCount());
+            header(out, "replication_lag_events", "gauge", "Events sent to the standby and not acknowledged as applied yet");
+            List<ReplicationPublisher> publishers = replication.publishers();
+            for (int i = 0; i < publishers.size(); i++) {
+                //publishers register in shard order
+                String shard = i < shards.size() ? shards.get(i).getName() : String.valueOf(i);
+                sample(out, "replication_lag_events", publishers.get(i).lag(), "shard", shard);
+            }
+        }
+        if (postTrade != null) {
+            header(out, "post_trade_backlog", "gauge", "Reports queued for the post-trade consumers and not handled yet");
+            sample(out, "post_trade_backlog", postTrade.backlog());
+            header(out, "post_trade_dropped_total", "counter", "Reports skipped by the post-trade consumers because their lane was full");
+            sample(out, "post_trade_dropped_total", postTrade.droppedCount());
+        }
+        return out.toString();
+    }
+
+    private void writeLatencies(StringBuilder out) {
+        String name = "matching_stage_latency_seconds";
+        header(out, name, "summary", "Time an order spends in each stage; quantiles cover the interval since the previous scrape");
+        for (LatencyStage stage : LatencyStage.values()) {
+            int i = stage.ordinal();
+            //the previous interval histogram is recycled, so scraping allocates no histograms either
+            Histogram interval = recorders[i].getIntervalHistogram(intervals[i]);
+            intervals[i] = interval;
+            long count = interval.getTotalCount();
+            totalCounts[i] += count;
+            totalSeconds[i] += interval.getMean() * count / NANOS_PER_SECOND;
+            for (double quantile : QUANTILES) {
+                double value = count == 0 ? Double.NaN : interval.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND;
+                sample(out, name, value, "stage", stage.label(), "quantile", String.valueOf(quantile));
+            }
+            sample(out, name + "_sum", totalSeconds[i], "stage", stage.label());
+            sample(out, name + "_count", totalCounts[i], "stage", stage.label());
+        }
+    }
+
+    private void writeShards(StringBuilder out) {
+        header(out, "matching_events_total", "counter", "Events applied by a matching shard");
+        for (MatchingCore shard : shards) {
+            sample(out, "matching_events_total", shard.processedCount(), "shard", shard.getName());
+        }
+        header(out, "matching_fills_total", "counter", "Executions against resting orders, one per resting order filled");
+        for (MatchingCore shard : shards) {
+            sample(out, "matching_fills_total", shard.fillCount(), "shard", shard.getName());
+        }
+        header(out, "matching_rejects_total", "counter", "Requests rejected by a matching shard");
+        for (MatchingCore shard : shards) {
+            sample(out, "matching_rejects_total", shard.rejectCount(), "shard", shard.getName());
+        }
+        header(out, "matching_queue_depth", "gauge", "Events published to a shard's ring buffer and not processed yet");
+        for (MatchingCore shard : shards) {
+            sample(out, "matching_queue_depth", shard.queueDepth(), "shard", shard.getName());
+        }
+        header(out, "matching_book_levels", "gauge", "Price levels of a book side at the end of the last batch");
+        for (MatchingCore shard : shards) {
+            List<String> symbols = shard.symbols();
+            for (int i = 0; i < symbols.size(); i++) {
+                sample(out, "matching_book_levels", shard.bookLevels(i, OrderType.BUY), "symbol", symbols.get(i), "side", "buy");
+                sample(out, "matching_book_levels", shard.bookLevels(i, OrderType.SELL), "symbol", symbols.get(i), "side", "sell");
+            }
+        }
+        header(out, "matching_book_orders", "gauge", "Resting orders of a book at the end of the last batch");
+        for (MatchingCore shard : shards) {
+            List<String> symbols = shard.symbols();
+            for (int i = 0; i < symbols.size(); i++) {
+                sample(out, "matching_book_orders", shard.restingOrders(i), "symbol", symbols.get(i));
+            }
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
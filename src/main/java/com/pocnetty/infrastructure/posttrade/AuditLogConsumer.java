@@ -0,0 +1,18 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes every execution report to the {@code audit} logger, whose appenders may block on disk.
+ */
+@Slf4j(topic = "audit")
+public class AuditLogConsumer implements PostTradeConsumer {
+
+    @Override
+    public void accept(ExecutionReport report) {
+        log.info("{} account={} symbol={} orderId={} clOrdId={} qty={} executed={}@{} leaves={}", report.getStatus(),
+                report.getAccountId(), report.getSymbol(), report.getOrderId(), report.getClientOrderId(),
+                report.getInitialQuantity(), report.getExecutedQuantity(), report.getExecutedPrice(), report.getLeavesQuantity());
+    }
+}
@@ -0,0 +1,20 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+
+/**
+ * A post-trade side effect of execution reports, such as an audit log, a drop copy to the back
+ * office or persistence in a database.
+ * <p>
+ * Consumers run on the virtual threads of a {@link PostTradeDispatcher}, never on an event loop or
+ * a matching thread, so they may block. Each consumer sees the reports of one account in the order
+ * the account's shard produced them, but reports of different accounts concurrently.
+ */
+@FunctionalInterface
+public interface PostTradeConsumer {
+
+    /**
+     * @param report a report already sent to the client, which must not be modified
+     */
+    void accept(ExecutionReport report) throws Exception;
+}
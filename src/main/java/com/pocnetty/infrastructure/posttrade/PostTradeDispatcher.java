@@ -0,0 +1,151 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.infrastructure.sequencer.RingBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands execution reports from the matching threads to the {@link PostTradeConsumer}s, which run on
+ * virtual threads.
+ * <p>
+ * Reports are striped over a fixed number of lanes by the hash of their account id. Each lane is
+ * a lock-free {@link RingBuffer} drained by one virtual thread, which runs every consumer on a
+ * report before taking the next, so the reports of an account reach the consumers in the order
+ * they were dispatched while a slow account only holds up the accounts sharing its lane.
+ * <p>
+ * {@link #dispatch(ExecutionReport)} never blocks: when a lane is full, because its consumers fall
+ * behind, the report is dropped from post-trade processing and counted in {@link #droppedCount()}.
+ * The client has its report either way.
+ */
+@Slf4j
+public class PostTradeDispatcher implements AutoCloseable {
+
+    private final List<PostTradeConsumer> consumers;
+    private final Lane[] lanes;
+    private final ExecutorService executor;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param consumers    run in this order on every report
+     * @param lanes        number of virtual threads, each serving the accounts hashed to it
+     * @param laneCapacity reports a lane holds before dropping, a power of two
+     */
+    public PostTradeDispatcher(List<PostTradeConsumer> consumers, int lanes, int laneCapacity) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Post-trade needs at least one lane: " + lanes);
+        }
+        this.consumers = List.copyOf(consumers);
+        this.lanes = new Lane[lanes];
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("post-trade-", 0).factory());
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(laneCapacity);
+            executor.execute(this.lanes[i]);
+        }
+    }
+
+    /**
+     * Queues a report for the consumers. Called by the matching threads; never blocks.
+     *
+     * @return {@code false} when the report's lane was full and the report was dropped
+     */
+    public boolean dispatch(ExecutionReport report) {
+        String accountId = report.getAccountId();
+        Lane lane = lanes[accountId == null ? 0 : Math.floorMod(accountId.hashCode(), lanes.length)];
+        if (!lane.offer(report)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return reports dropped because their lane was full, since startup
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return reports dispatched and not yet handled by every consumer, over all lanes
+     */
+    public long backlog() {
+        long backlog = 0;
+        for (Lane lane : lanes) {
+            backlog += lane.reports.depth();
+        }
+        return backlog;
+    }
+
+    /**
+     * Lets the lanes finish the reports already dispatched and waits for them. Call once the
+     * matching threads have stopped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        executor.close();
+    }
+
+    private static final class Slot {
+        private ExecutionReport report;
+    }
+
+    private final class Lane implements Runnable {
+
+        private final RingBuffer<Slot> reports;
+        private volatile Thread thread;
+
+        private Lane(int capacity) {
+            this.reports = new RingBuffer<>(capacity, Slot::new);
+        }
+
+        private boolean offer(ExecutionReport report) {
+            long sequence = reports.tryNext();
+            if (sequence < 0) {
+                return false;
+            }
+            reports.get(sequence).report = report;
+            reports.publish(sequence);
+            //a permit left on a running thread only costs it one extra loop
+            LockSupport.unpark(thread);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            long next = 0;
+            while (running || reports.isPublished(next)) {
+                if (!reports.isPublished(next)) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                Slot slot = reports.get(next);
+                ExecutionReport report = slot.report;
+                slot.report = null;
+                for (PostTradeConsumer consumer : consumers) {
+                    try {
+                        consumer.accept(report);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        log.error("Post-trade consumer {} failed on order {} of account {}", consumer.getClass().getSimpleName(),
+                                report.getOrderId(), report.getAccountId(), e);
+                    }
+                }
+                reports.release(next++);
+            }
+        }
+    }
+}
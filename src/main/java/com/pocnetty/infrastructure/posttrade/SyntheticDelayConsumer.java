@@ -0,0 +1,24 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stands in for a slow downstream system by sleeping for a fixed time per report, to show that
+ * the event loops and matching threads do not feel it.
+ */
+public class SyntheticDelayConsumer implements PostTradeConsumer {
+
+    private final long delayNanos;
+
+    public SyntheticDelayConsumer(long delayMicros) {
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+    }
+
+    @Override
+    public void accept(ExecutionReport report) throws InterruptedException {
+        //sleeping unmounts a virtual thread, so this occupies no carrier thread
+        Thread.sleep(delayNanos / 1_000_000, (int) (delayNanos % 1_000_000));
+    }
+}
@@ -0,0 +1,161 @@
+package com.pocnetty.infrastructure.replication;
+
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The primary's end of the replication link: the connection to its single standby, shared by the
+ * {@link ReplicationPublisher} of every matching shard.
+ * <p>
+ * Replication is asynchronous: the matching threads hand their frames to the standby's channel and
+ * never wait for it, so orders are answered before the standby has applied them and a failover
+ * loses whatever the standby had not received yet. {@link ReplicationPublisher#lag()} and the
+ * {@link LatencyStage#REPLICATE} round trip measure how much that is.
+ * <p>
+ * Nor do they let a standby that cannot keep up pile frames up on the primary: once more is queued
+ * for it than the channel's write buffer high water mark, not counting the snapshots and the
+ * events held back behind them still on their way, the link closes its connection instead of queueing more. The standby reconnects and starts
+ * over from new snapshots, and {@link #dropCount()} counts how often that happened.
+ */
+@Slf4j
+public class ReplicationLink {
+
+    private final ByteBufAllocator allocator;
+    private final ServerMetrics metrics;
+    private final List<ReplicationPublisher> publishers = new CopyOnWriteArrayList<>();
+    private volatile Channel standby;
+    //bytes of catch-up frames queued and not written to the socket yet, which may pass the high water mark on their own
+    private final AtomicLong catchUpBytes = new AtomicLong();
+    private final LongAdder drops = new LongAdder();
+
+    /**
+     * @param allocator allocates the publishers' frames
+     * @param metrics   records the replication round trip
+     */
+    public ReplicationLink(ByteBufAllocator allocator, ServerMetrics metrics) {
+        this.allocator = allocator;
+        this.metrics = metrics;
+    }
+
+    ByteBufAllocator allocator() {
+        return allocator;
+    }
+
+    /**
+     * @return the shard index the publisher's frames are tagged with, in registration order
+     */
+    synchronized int register(ReplicationPublisher publisher) {
+        publishers.add(publisher);
+        return publishers.size() - 1;
+    }
+
+    /**
+     * Makes the channel the standby and asks every shard for a snapshot to start it from.
+     *
+     * @return {@code false} when another standby is already connected
+     */
+    synchronized boolean attach(Channel channel) {
+        Channel current = standby;
+        if (current != null && current.isActive()) {
+            return false;
+        }
+        standby = channel;
+        for (ReplicationPublisher publisher : publishers) {
+            publisher.requestSnapshot();
+        }
+        return true;
+    }
+
+    synchronized void detach(Channel channel) {
+        if (standby == channel) {
+            standby = null;
+        }
+    }
+
+    public boolean isConnected() {
+        Channel channel = standby;
+        return channel != null && channel.isActive();
+    }
+
+    /**
+     * Writes a frame to the standby, taking ownership of the buffer, or drops the standby when it is too
+     * far behind to take it. Called by the matching threads.
+     */
+    void send(ByteBuf frame) {
+        Channel channel = standby;
+        if (channel == null) {
+            frame.release();
+            return;
+        }
+        //an unwritable channel has the low water mark plus bytesBeforeWritable queued
+        if (!channel.isWritable() && channel.bytesBeforeWritable() + channel.config().getWriteBufferLowWaterMark()
+                - catchUpBytes.get() > channel.config().getWriteBufferHighWaterMark()) {
+            frame.release();
+            drop(channel);
+            return;
+        }
+        //the write is queued on the standby's event loop in call order, so each shard's frames stay in sequence
+        channel.writeAndFlush(frame, channel.voidPromise());
+    }
+
+    /**
+     * Writes a SNAPSHOT frame, or an EVENTS frame held back behind one, to the standby like
+     * {@link #send(ByteBuf)}, without counting it against the high water mark.
+     */
+    void sendCatchUp(ByteBuf frame) {
+        Channel channel = standby;
+        if (channel == null) {
+            frame.release();
+            return;
+        }
+        int size = frame.readableBytes();
+        catchUpBytes.addAndGet(size);
+        channel.writeAndFlush(frame).addListener(future -> catchUpBytes.addAndGet(-size));
+    }
+
+    private void drop(Channel channel) {
+        synchronized (this) {
+            //another shard may have dropped it first
+            if (standby != channel) {
+                return;
+            }
+            standby = null;
+        }
+        drops.increment();
+        log.warn("Dropping standby {}, which fell more than the write buffer high water mark behind", channel.remoteAddress());
+        channel.close();
+    }
+
+    /**
+     * @return how many times a standby was dropped for falling behind
+     */
+    public long dropCount() {
+        return drops.sum();
+    }
+
+    /**
+     * @param echoedNanos the {@code sentNanos} of the acknowledged frame
+     */
+    void onAck(int shard, long sequence, long echoedNanos) {
+        if (shard < publishers.size()) {
+            publishers.get(shard).acknowledged(sequence);
+            metrics.record(LatencyStage.REPLICATE, System.nanoTime() - echoedNanos);
+        }
+    }
+
+    /**
+     * @return the publisher of every shard, by shard index
+     */
+    public List<ReplicationPublisher> publishers() {
+        return publishers;
+    }
+}
@@ -0,0 +1,79 @@
+package com.pocnetty.infrastructure.replication;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.channels.ClosedChannelException;
+
+import static com.pocnetty.infrastructure.replication.ReplicationProtocol.*;
+
+/**
+ * The primary's side of a standby connection: attaches it to the {@link ReplicationLink}, reads its
+ * acknowledgements and sends a heartbeat whenever the link has been quiet for the writer idle time
+ * of the {@link IdleStateHandler} in front of it.
+ */
+@Slf4j
+public class ReplicationPrimaryHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private final ReplicationLink link;
+
+    public ReplicationPrimaryHandler(ReplicationLink link) {
+        this.link = link;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (!link.attach(ctx.channel())) {
+            log.warn("Refusing standby {}, another standby is already connected", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        log.info("Standby {} connected", ctx.channel().remoteAddress());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        link.detach(ctx.channel());
+        log.warn("Standby {} disconnected", ctx.channel().remoteAddress());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+        byte type = frame.readByte();
+        int shard = frame.readUnsignedByte();
+        long sentNanos = frame.readLongLE();
+        if (type == ACK) {
+            link.onAck(shard, frame.readLongLE(), sentNanos);
+        } else {
+            log.warn("Ignoring replication frame of type {} from the standby", type);
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent idle && idle.state() == IdleState.WRITER_IDLE) {
+            ByteBuf heartbeat = ctx.alloc().buffer(LENGTH_FIELD_SIZE + HEADER_LENGTH);
+            writeHeartbeat(heartbeat, System.nanoTime());
+            ctx.writeAndFlush(heartbeat, ctx.voidPromise());
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof ClosedChannelException) {
+            //a frame still queued when the link closed, the standby starts over from a snapshot anyway
+            return;
+        }
+        log.error(cause.getMessage(), cause);
+        ctx.close();
+    }
+}
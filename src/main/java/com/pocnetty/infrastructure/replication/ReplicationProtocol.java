@@ -0,0 +1,126 @@
+package com.pocnetty.infrastructure.replication;
+
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the replication link between a primary and its standby.
+ * <p>
+ * Every frame is a little-endian {@code int32} length (not counting itself) followed by a common
+ * header and the message, all little-endian:
+ * <pre>
+ * header          type:int8 shard:uint8 sentNanos:int64
+ * SNAPSHOT  (1)   snapshot:bytes, in the {@link com.pocnetty.infrastructure.snapshot.SnapshotStore} format
+ * EVENTS    (2)   count:int32 count x (sequence:int64 action:int8 side:int8 quantity:int32 price:int64
+ *                 orderId:int64 symbolLength:uint8 symbol:ascii accountLength:uint8 accountId:ascii)
+ * HEARTBEAT (3)
+ * ACK       (4)   sequence:int64
+ * </pre>
+ * Only ACK flows from the standby to the primary. {@code sentNanos} is the primary's
+ * {@link System#nanoTime()} when it sent the frame, and an ACK echoes that of the EVENTS frame it
+ * acknowledges, so the primary can time the whole round trip on its own clock. {@code side} is
+ * {@code -1} for events without one and prices are in ticks.
+ */
+public final class ReplicationProtocol {
+
+    public static final int LENGTH_FIELD_SIZE = 4;
+    //a snapshot of every book of a shard travels as one frame
+    public static final int MAX_FRAME_LENGTH = 1 << 30;
+    public static final int MAX_TEXT_LENGTH = 255;
+
+    public static final byte SNAPSHOT = 1;
+    public static final byte EVENTS = 2;
+    public static final byte HEARTBEAT = 3;
+    public static final byte ACK = 4;
+
+    public static final int HEADER_LENGTH = 1 + 1 + 8;
+    public static final int EVENT_FIXED_LENGTH = 8 + 1 + 1 + 4 + 8 + 8 + 1 + 1;
+
+    private static final OrderAction[] ACTIONS = OrderAction.values();
+    private static final OrderType[] SIDES = OrderType.values();
+    private static final byte NO_SIDE = -1;
+
+    private ReplicationProtocol() {
+    }
+
+    public static LengthFieldBasedFrameDecoder newFrameDecoder() {
+        return new LengthFieldBasedFrameDecoder(ByteOrder.LITTLE_ENDIAN, MAX_FRAME_LENGTH, 0, LENGTH_FIELD_SIZE,
+                0, LENGTH_FIELD_SIZE, true);
+    }
+
+    /**
+     * Starts a frame whose length is filled in by {@link #endFrame(ByteBuf, int)}.
+     *
+     * @return the index of the frame's length field
+     */
+    public static int startFrame(ByteBuf out, byte type, int shard, long sentNanos) {
+        int start = out.writerIndex();
+        out.writeIntLE(0);
+        out.writeByte(type);
+        out.writeByte(shard);
+        out.writeLongLE(sentNanos);
+        return start;
+    }
+
+    public static void endFrame(ByteBuf out, int start) {
+        out.setIntLE(start, out.writerIndex() - start - LENGTH_FIELD_SIZE);
+    }
+
+    /**
+     * Overwrites the {@code sentNanos} of a frame started at {@code start}, right before it is sent.
+     */
+    public static void stampSentNanos(ByteBuf out, int start, long sentNanos) {
+        out.setLongLE(start + LENGTH_FIELD_SIZE + 2, sentNanos);
+    }
+
+    public static void writeHeartbeat(ByteBuf out, long sentNanos) {
+        endFrame(out, startFrame(out, HEARTBEAT, 0, sentNanos));
+    }
+
+    public static void writeAck(ByteBuf out, int shard, long sequence, long echoedNanos) {
+        int start = startFrame(out, ACK, shard, echoedNanos);
+        out.writeLongLE(sequence);
+        endFrame(out, start);
+    }
+
+    public static void writeEvent(ByteBuf out, long sequence, OrderAction action, OrderType side, int quantity, long price,
+                                  long orderId, String symbol, String accountId) {
+        //checked up front so a refused event leaves nothing half written behind
+        checkText(symbol);
+        checkText(accountId);
+        out.writeLongLE(sequence);
+        out.writeByte(action.ordinal());
+        out.writeByte(side == null ? NO_SIDE : side.ordinal());
+        out.writeIntLE(quantity);
+        out.writeLongLE(price);
+        out.writeLongLE(orderId);
+        writeText(out, symbol);
+        writeText(out, accountId);
+    }
+
+    public static OrderAction decodeAction(byte action) {
+        return ACTIONS[action];
+    }
+
+    public static OrderType decodeSide(byte side) {
+        return side == NO_SIDE ? null : SIDES[side];
+    }
+
+    private static void checkText(String value) {
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Replicated text fields are limited to " + MAX_TEXT_LENGTH + " characters: " + value);
+        }
+    }
+
+    private static void writeText(ByteBuf out, String value) {
+        int length = value == null ? 0 : value.length();
+        out.writeByte(length);
+        for (int i = 0; i < length; i++) {
+            out.writeByte(value.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.pocnetty.infrastructure.replication;
+
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.pocnetty.infrastructure.replication.ReplicationProtocol.*;
+
+/**
+ * Streams the sequenced events of one matching shard to the standby, on the shard's matching thread.
+ * <p>
+ * Events are encoded into one pooled buffer as they are applied and sent as a single EVENTS frame
+ * per batch, when the matching core calls {@link #flush(long)}. When a standby connects, the
+ * matching core captures the shard's books a slice at a time as of the sequence it calls
+ * {@link #beginSnapshot(long)} with, and its snapshot writer serializes them into a SNAPSHOT frame
+ * with {@link #snapshotCaptured(ShardSnapshot)}. The EVENTS frames of the batches applied in the
+ * meantime are held back and follow the SNAPSHOT frame, so the standby starts from the exact state
+ * the events that follow apply to, and the matching thread neither copies nor serializes a whole
+ * book at once. Nothing is encoded while no standby is connected.
+ * <p>
+ * Not thread-safe: only {@link #requestSnapshot()}, {@link #snapshotCaptured(ShardSnapshot)} and
+ * the acknowledgement methods may be called from other threads.
+ */
+@Slf4j
+public class ReplicationPublisher implements AutoCloseable {
+
+    private static final int INITIAL_BATCH_CAPACITY = 4096;
+
+    private final ReplicationLink link;
+    private final int shard;
+    private volatile boolean snapshotRequested;
+    private volatile long sentSequence;
+    private volatile long ackedSequence;
+    private boolean streaming;
+    //set from beginSnapshot until the snapshot is sent, while the batches applied after it are held back
+    private boolean holding;
+    private long snapshotSequence;
+    private long snapshotStart;
+    private final Queue<ByteBuf> held = new ArrayDeque<>();
+    //SNAPSHOT frames serialized by the snapshot writer, waiting for the matching thread to send them
+    private final Queue<SnapshotFrame> serialized = new ConcurrentLinkedQueue<>();
+    private ByteBuf batch;
+    private int frameStart;
+    private int countIndex;
+    private int count;
+    private long lastAppended;
+
+    /**
+     * @param link the link to the standby
+     */
+    public ReplicationPublisher(ReplicationLink link) {
+        this.link = link;
+        this.shard = link.register(this);
+    }
+
+    /**
+     * Encodes an event the matching thread is about to apply with {@code sequence}.
+     *
+     * @param price the limit price in ticks
+     */
+    public void append(long sequence, OrderAction action, OrderType side, int quantity, long price, long orderId,
+                       String symbol, String accountId) {
+        if (!streaming) {
+            return;
+        }
+        if (batch == null) {
+            batch = link.allocator().directBuffer(INITIAL_BATCH_CAPACITY);
+            frameStart = startFrame(batch, EVENTS, shard, 0);
+            countIndex = batch.writerIndex();
+            batch.writeIntLE(0);
+            count = 0;
+        }
+        writeEvent(batch, sequence, action, side, quantity, price, orderId, symbol, accountId);
+        count++;
+        lastAppended = sequence;
+    }
+
+    /**
+     * Sends the events encoded since the last call, or holds them back while a snapshot is on its way,
+     * then the snapshot once the snapshot writer has serialized it.
+     *
+     * @param lastSequence the sequence of the last event the shard applied
+     */
+    public void flush(long lastSequence) {
+        if (batch != null) {
+            ByteBuf full = batch;
+            batch = null;
+            full.setIntLE(countIndex, count);
+            endFrame(full, frameStart);
+            if (holding) {
+                held.add(full);
+            } else {
+                stampSentNanos(full, frameStart, System.nanoTime());
+                sentSequence = lastAppended;
+                link.send(full);
+            }
+        }
+        SnapshotFrame ready;
+        while ((ready = serialized.poll()) != null) {
+            //a snapshot begun for a standby that has gone since is of no use to the next one
+            if (holding && ready.sequence() == snapshotSequence) {
+                sendSnapshot(ready.frame());
+            } else {
+                ready.frame().release();
+            }
+        }
+        if (streaming && !link.isConnected()) {
+            streaming = false;
+            holding = false;
+            releaseHeld();
+        }
+    }
+
+    /**
+     * @return whether a standby asked for a snapshot since the last call and is still connected
+     */
+    public boolean takeSnapshotRequest() {
+        if (!snapshotRequested) {
+            return false;
+        }
+        snapshotRequested = false;
+        return link.isConnected();
+    }
+
+    /**
+     * Starts streaming the events applied after {@code sequence}, holding them back until the snapshot
+     * of the books as of {@code sequence} is handed to {@link #snapshotCaptured(ShardSnapshot)} and sent.
+     */
+    public void beginSnapshot(long sequence) {
+        releaseHeld();
+        streaming = true;
+        holding = true;
+        snapshotSequence = sequence;
+        snapshotStart = System.nanoTime();
+    }
+
+    /**
+     * Serializes a snapshot begun with {@link #beginSnapshot(long)} into a SNAPSHOT frame, which the next
+     * {@link #flush(long)} sends. Called by the snapshot writer, off the matching thread.
+     */
+    public void snapshotCaptured(ShardSnapshot snapshot) {
+        ByteBuf frame = link.allocator().directBuffer(INITIAL_BATCH_CAPACITY);
+        int frameStart = startFrame(frame, SNAPSHOT, shard, 0);
+        try (DataOutputStream out = new DataOutputStream(new ByteBufOutputStream(frame))) {
+            SnapshotStore.writeTo(out, snapshot);
+        } catch (IOException e) {
+            frame.release();
+            throw new UncheckedIOException(e);
+        }
+        endFrame(frame, frameStart);
+        serialized.add(new SnapshotFrame(snapshot.getLastSequence(), frame));
+    }
+
+    private void sendSnapshot(ByteBuf frame) {
+        int size = frame.readableBytes();
+        stampSentNanos(frame, 0, System.nanoTime());
+        sentSequence = snapshotSequence;
+        link.sendCatchUp(frame);
+        int batches = held.size();
+        ByteBuf events;
+        while ((events = held.poll()) != null) {
+            stampSentNanos(events, 0, System.nanoTime());
+            link.sendCatchUp(events);
+        }
+        if (batches > 0) {
+            sentSequence = lastAppended;
+        }
+        holding = false;
+        log.info("Shard {} sent a snapshot at sequence {} ({} bytes) and {} held batches to the standby {} us after capturing it began",
+                shard, snapshotSequence, size, batches, (System.nanoTime() - snapshotStart) / 1_000);
+    }
+
+    private void releaseHeld() {
+        ByteBuf events;
+        while ((events = held.poll()) != null) {
+            events.release();
+        }
+    }
+
+    /**
+     * Asks for a snapshot with the next {@link #flush(long)}. Safe to call from any thread.
+     */
+    void requestSnapshot() {
+        snapshotRequested = true;
+    }
+
+    void acknowledged(long sequence) {
+        ackedSequence = sequence;
+    }
+
+    /**
+     * @return the number of events sent to the standby and not acknowledged as applied yet
+     */
+    public long lag() {
+        return Math.max(0, sentSequence - ackedSequence);
+    }
+
+    public long ackedSequence() {
+        return ackedSequence;
+    }
+
+    /**
+     * Drops whatever was not flushed. Call once the matching thread has stopped.
+     */
+    @Override
+    public void close() {
+        if (batch != null) {
+            batch.release();
+            batch = null;
+        }
+        releaseHeld();
+        SnapshotFrame ready;
+        while ((ready = serialized.poll()) != null) {
+            ready.frame().release();
+        }
+    }
+
+    private record SnapshotFrame(long sequence, ByteBuf frame) {
+    }
+}
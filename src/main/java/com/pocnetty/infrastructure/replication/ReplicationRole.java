@@ -0,0 +1,19 @@
+package com.pocnetty.infrastructure.replication;
+
+/**
+ * Part a server plays in primary/standby replication.
+ */
+public enum ReplicationRole {
+    /**
+     * No replication.
+     */
+    NONE,
+    /**
+     * Takes orders and streams every sequenced event to one standby.
+     */
+    PRIMARY,
+    /**
+     * Applies the primary's events without taking orders, and takes over once the primary goes quiet.
+     */
+    STANDBY
+}
@@ -0,0 +1,195 @@
+package com.pocnetty.infrastructure.replication;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.codec.AsciiStringCache;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.pocnetty.infrastructure.replication.ReplicationProtocol.*;
+
+/**
+ * The standby's side of the replication link: starts each matching shard from the primary's
+ * snapshot, feeds it the primary's events with their original sequence numbers and acknowledges
+ * every EVENTS frame once its last event is applied.
+ * <p>
+ * The shards apply the events through their own ring buffers and matching threads, so they
+ * journal, snapshot and publish market data exactly like the primary's. When the ring buffer of a
+ * shard is full, the handler waits for it instead of dropping events, which stops reading from the
+ * socket and pushes back on the primary through TCP.
+ * <p>
+ * The link is lost when its connection closes or when nothing, not even a heartbeat, arrived for
+ * the reader idle time of the {@link IdleStateHandler} in front of this handler. A primary drops a
+ * standby that falls too far behind the same way, so when the link had been carrying frames,
+ * {@code onLinkLost} runs and the standby may reconnect; a shard that is already running then
+ * starts over from the new snapshot. When the primary never sent anything over the connection,
+ * it is considered lost and {@code onPrimaryLost} runs instead. Either runs once.
+ */
+@Slf4j
+public class ReplicationStandbyHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private static final Consumer<ExecutionReport> IGNORE = report -> {
+    };
+
+    private final List<MatchingCore> shards;
+    private final Runnable onPrimaryLost;
+    private final Runnable onLinkLost;
+    private boolean heard;
+    private final boolean[] started;
+    //sequence of the last event handed to each shard
+    private final long[] published;
+    private final AsciiStringCache symbols = new AsciiStringCache(MAX_TEXT_LENGTH);
+    private final AsciiStringCache accounts = new AsciiStringCache(MAX_TEXT_LENGTH);
+
+    /**
+     * @param shards        this server's matching shards, in the primary's shard order; those not started yet start from the primary's snapshot
+     * @param onPrimaryLost called on this channel's event loop when the connection closes without the primary having sent anything
+     * @param onLinkLost    called on this channel's event loop when the connection closes after the primary sent frames over it
+     */
+    public ReplicationStandbyHandler(List<MatchingCore> shards, Runnable onPrimaryLost, Runnable onLinkLost) {
+        this.shards = shards;
+        this.onPrimaryLost = onPrimaryLost;
+        this.onLinkLost = onLinkLost;
+        this.started = new boolean[shards.size()];
+        this.published = new long[shards.size()];
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        log.info("Connected to primary {}", ctx.channel().remoteAddress());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) throws IOException {
+        byte type = frame.readByte();
+        int shard = frame.readUnsignedByte();
+        long sentNanos = frame.readLongLE();
+        heard = true;
+        if (type != HEARTBEAT && shard >= shards.size()) {
+            throw new IllegalStateException("The primary replicates shard " + shard + " but this standby has "
+                    + shards.size() + " shards; both need the same engine configuration");
+        }
+        switch (type) {
+            case SNAPSHOT -> install(ctx, shard, sentNanos, frame);
+            case EVENTS -> apply(ctx, shard, sentNanos, frame);
+            case HEARTBEAT -> {
+            }
+            default -> log.warn("Ignoring replication frame of unknown type {}", type);
+        }
+    }
+
+    private void install(ChannelHandlerContext ctx, int shard, long sentNanos, ByteBuf frame) throws IOException {
+        if (started[shard]) {
+            log.warn("Ignoring another snapshot for shard {}, which is already running", shard);
+            return;
+        }
+        ShardSnapshot snapshot = SnapshotStore.readFrom(new DataInputStream(new ByteBufInputStream(frame)));
+        MatchingCore core = shards.get(shard);
+        if (core.isStarted()) {
+            //reconnected after the primary dropped this standby, which missed the events since
+            while (!core.resync(snapshot)) {
+                Thread.onSpinWait();
+            }
+        } else {
+            core.startFrom(snapshot);
+        }
+        started[shard] = true;
+        published[shard] = snapshot.getLastSequence();
+        writeAck(ctx, shard, snapshot.getLastSequence(), sentNanos);
+    }
+
+    private void apply(ChannelHandlerContext ctx, int shard, long sentNanos, ByteBuf frame) {
+        if (!started[shard]) {
+            //events the primary sent before this standby's snapshot, which the snapshot already reflects
+            return;
+        }
+        MatchingCore core = shards.get(shard);
+        long last = published[shard];
+        int count = frame.readIntLE();
+        for (int i = 0; i < count; i++) {
+            long sequence = frame.readLongLE();
+            OrderAction action = decodeAction(frame.readByte());
+            OrderType side = decodeSide(frame.readByte());
+            int quantity = frame.readIntLE();
+            long price = frame.readLongLE();
+            long orderId = frame.readLongLE();
+            String symbol = readText(frame, symbols);
+            String accountId = readText(frame, accounts);
+            if (sequence <= last) {
+                continue;
+            }
+            if (sequence != last + 1) {
+                throw new IllegalStateException("Replication gap on shard " + shard + ": expected sequence "
+                        + (last + 1) + " but received " + sequence);
+            }
+            Consumer<ExecutionReport> applied = i == count - 1 ? ackOnceApplied(ctx, shard, sequence, sentNanos) : IGNORE;
+            while (!core.replicate(action, side, quantity, price, accountId, symbol, orderId, sequence, applied)) {
+                Thread.onSpinWait();
+            }
+            last = sequence;
+        }
+        published[shard] = last;
+    }
+
+    private static Consumer<ExecutionReport> ackOnceApplied(ChannelHandlerContext ctx, int shard, long sequence, long sentNanos) {
+        //runs on the matching thread once the event is applied, hop back onto the event loop to write
+        return report -> ctx.executor().execute(() -> writeAck(ctx, shard, sequence, sentNanos));
+    }
+
+    private static void writeAck(ChannelHandlerContext ctx, int shard, long sequence, long sentNanos) {
+        ByteBuf ack = ctx.alloc().buffer(LENGTH_FIELD_SIZE + HEADER_LENGTH + 8);
+        ReplicationProtocol.writeAck(ack, shard, sequence, sentNanos);
+        ctx.writeAndFlush(ack, ctx.voidPromise());
+    }
+
+    private static String readText(ByteBuf frame, AsciiStringCache cache) {
+        int length = frame.readUnsignedByte();
+        String value = length == 0 ? null : cache.get(frame, frame.readerIndex(), length);
+        frame.skipBytes(length);
+        return value;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent idle && idle.state() == IdleState.READER_IDLE) {
+            log.warn("No heartbeat from primary {}, dropping the link", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (heard) {
+            log.warn("Lost the link to primary {}", ctx.channel().remoteAddress());
+            onLinkLost.run();
+        } else {
+            log.warn("Lost primary {}", ctx.channel().remoteAddress());
+            onPrimaryLost.run();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.error(cause.getMessage(), cause);
+        ctx.close();
+    }
+}
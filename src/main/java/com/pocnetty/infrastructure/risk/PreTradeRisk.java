@@ -0,0 +1,325 @@
+package com.pocnetty.infrastructure.risk;
+
+import com.pocnetty.domain.FillListener;
+import com.pocnetty.domain.MatchResult;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.OrderBookSide;
+import com.pocnetty.domain.book.OrderStore;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import com.pocnetty.infrastructure.config.AppProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-trade risk check of one matching shard, run on its matching thread in front of the engines.
+ * <p>
+ * Each account gets a dense slot in parallel primitive arrays, sized once for {@code maxAccounts}
+ * accounts, so a check is one map lookup and a handful of array reads without locks, allocation or
+ * growth. An account only takes a slot once its first order passes the check, so refused orders
+ * leave no trace, and once every slot is taken orders from further accounts are refused as
+ * {@link RejectReason#INVALID_ACCOUNT}. Any non-empty account id will do. The state is only touched
+ * by the shard's matching thread, which is also why limits apply per shard.
+ * <p>
+ * Position limits are checked against the worst case: the position the account would reach if
+ * every one of its open orders on the order's side filled, the order included. The position and
+ * open quantities are kept up to date from the result of each order and, through
+ * {@link FillListener}, from every fill of a resting order. Positions start flat when the server
+ * starts, like at the start of a trading day, while open orders are rebuilt from the recovered
+ * books. Only accepted orders count towards the order rate.
+ * <p>
+ * Not thread-safe.
+ */
+@Slf4j
+public class PreTradeRisk implements FillListener {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int UNKNOWN = -1;
+
+    private final int maxOrderQuantity;
+    //notional limits in ticks times quantity, like the prices they are checked against
+    private final double maxOrderNotional;
+    private final long priceBandBps;
+    private final int maxOrdersPerSecond;
+    private final long maxPosition;
+    private final double maxOpenNotional;
+    private final Map<String, Integer> instruments = new HashMap<>();
+    private final int instrumentCount;
+    private final int maxAccounts;
+    private final Map<String, Integer> accounts;
+    //per account slot
+    private final double[] openNotional;
+    private final long[] rateWindowStart;
+    private final int[] rateCount;
+    //per account slot and instrument, at slot * instrumentCount + instrument
+    private final long[] positions;
+    private final long[] openBuys;
+    private final long[] openSells;
+    //the resting order a cancel or replace refers to, captured by check for onResult
+    private OrderType restingSide;
+    private int restingQuantity;
+    private long restingPrice;
+
+    /**
+     * @param limits  the limits to enforce, {@code 0} disabling each
+     * @param engines the books of the shard
+     */
+    public PreTradeRisk(AppProperties.Risk limits, List<MatchingEngine> engines) {
+        this.maxOrderQuantity = limits.getMaxOrderQuantity();
+        this.maxOrderNotional = limits.getMaxOrderNotional() * Prices.SCALE;
+        this.priceBandBps = limits.getPriceBandBps();
+        this.maxOrdersPerSecond = limits.getMaxOrdersPerSecond();
+        this.maxPosition = limits.getMaxPosition();
+        this.maxOpenNotional = limits.getMaxOpenNotional() * Prices.SCALE;
+        for (MatchingEngine engine : engines) {
+            instruments.put(engine.getSymbol(), instruments.size());
+        }
+        this.instrumentCount = Math.max(1, engines.size());
+        this.maxAccounts = limits.getMaxAccounts();
+        this.accounts = new HashMap<>(maxAccounts * 2);
+        this.openNotional = new double[maxAccounts];
+        this.rateWindowStart = new long[maxAccounts];
+        this.rateCount = new int[maxAccounts];
+        this.positions = new long[maxAccounts * instrumentCount];
+        this.openBuys = new long[maxAccounts * instrumentCount];
+        this.openSells = new long[maxAccounts * instrumentCount];
+    }
+
+    /**
+     * Registers the open orders of the books, which are already resting when the shard starts, and
+     * follows their fills from now on.
+     */
+    public void track(List<MatchingEngine> engines) {
+        for (MatchingEngine engine : engines) {
+            trackRestingOrders(engine, engine.getBuyOrders());
+            trackRestingOrders(engine, engine.getSellOrders());
+            engine.setFillListener(this);
+        }
+    }
+
+    private void trackRestingOrders(MatchingEngine engine, OrderBookSide side) {
+        OrderStore orders = side.orders();
+        int instrument = instruments.get(engine.getSymbol());
+        for (int level = side.bestLevel(); level != OrderStore.NONE; level = side.nextLevel(level)) {
+            for (int order = side.levelHead(level); order != OrderStore.NONE; order = orders.next(order)) {
+                String account = orders.accountId(order);
+                int slot = isValidAccount(account) ? intern(account) : UNKNOWN;
+                if (slot != UNKNOWN) {
+                    addOpen(slot, slot * instrumentCount + instrument, side.getSide(), orders.price(order), orders.quantity(order));
+                } else if (account != null) {
+                    log.warn("No risk slot left for account {}, its resting order {} is not tracked", account, orders.orderId(order));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks an order against the limits of its account, before it is journaled or matched. An
+     * accepted order counts towards its account's order rate.
+     *
+     * @param engine   the book the order is for
+     * @param type     the side, ignored for cancels and replaces, which take it from the resting order
+     * @param price    the limit price in ticks, ignored for market orders
+     * @param orderId  the resting order a cancel or replace refers to
+     * @param nowNanos {@link System#nanoTime()} on arrival, for the order rate
+     * @return why the order is refused, or {@code null} when it may go ahead
+     */
+    public RejectReason check(MatchingEngine engine, OrderAction action, OrderType type, int quantity, long price,
+                              String accountId, long orderId, long nowNanos) {
+        if (!isValidAccount(accountId)) {
+            return RejectReason.INVALID_ACCOUNT;
+        }
+        if (action == OrderAction.CANCEL || action == OrderAction.CANCEL_REPLACE) {
+            captureResting(engine, orderId);
+            //cancels only ever reduce risk, and the engine itself rejects replaces of unknown orders
+            if (action == OrderAction.CANCEL || restingSide == null) {
+                return null;
+            }
+            type = restingSide;
+        }
+        if (type == null || quantity <= 0) {
+            return RejectReason.INVALID_QUANTITY;
+        }
+        if (maxOrderQuantity > 0 && quantity > maxOrderQuantity) {
+            return RejectReason.MAX_ORDER_QUANTITY;
+        }
+        //an account without a slot has no state yet: no orders this second, no position and nothing open
+        int slot = slotOf(accountId);
+        boolean known = slot != UNKNOWN;
+        boolean windowOpen = known && rateCount[slot] > 0 && nowNanos - rateWindowStart[slot] < NANOS_PER_SECOND;
+        if (maxOrdersPerSecond > 0 && windowOpen && rateCount[slot] >= maxOrdersPerSecond) {
+            return RejectReason.ORDER_RATE;
+        }
+        boolean resting = action != OrderAction.MARKET;
+        if (maxOrderNotional > 0 || priceBandBps > 0) {
+            long reference = referencePrice(engine, type);
+            if (priceBandBps > 0 && resting && reference > 0
+                    && (double) Math.abs(price - reference) * 10_000 > (double) reference * priceBandBps) {
+                return RejectReason.PRICE_BAND;
+            }
+            //a market order is priced at the level it would execute at first
+            long notionalPrice = resting ? price : reference;
+            if (maxOrderNotional > 0 && (double) notionalPrice * quantity > maxOrderNotional) {
+                return RejectReason.MAX_ORDER_NOTIONAL;
+            }
+        }
+        int book = known ? slot * instrumentCount + instruments.get(engine.getSymbol()) : UNKNOWN;
+        boolean replace = action == OrderAction.CANCEL_REPLACE;
+        if (maxPosition > 0) {
+            long exposure = !known ? 0
+                    : type == OrderType.BUY ? positions[book] + openBuys[book] : openSells[book] - positions[book];
+            if (replace) {
+                exposure -= restingQuantity;
+            }
+            if (exposure + quantity > maxPosition) {
+                return RejectReason.POSITION_LIMIT;
+            }
+        }
+        if (maxOpenNotional > 0 && resting) {
+            double open = (known ? openNotional[slot] : 0) + (double) price * quantity;
+            if (replace) {
+                open -= (double) restingPrice * restingQuantity;
+            }
+            if (open > maxOpenNotional) {
+                return RejectReason.OPEN_NOTIONAL_LIMIT;
+            }
+        }
+        if (!known && (slot = intern(accountId)) == UNKNOWN) {
+            return RejectReason.INVALID_ACCOUNT;
+        }
+        if (maxOrdersPerSecond > 0) {
+            if (!windowOpen) {
+                rateWindowStart[slot] = nowNanos;
+                rateCount[slot] = 0;
+            }
+            rateCount[slot]++;
+        }
+        return null;
+    }
+
+    /**
+     * Applies the outcome of an order that passed {@link #check} to its account, right after it was matched.
+     */
+    public void onResult(OrderAction action, OrderType type, int quantity, long price, MatchResult result) {
+        if ("REJECTED".equals(result.getStatus())) {
+            return;
+        }
+        int slot = slotOf(result.getAccountId());
+        if (slot == UNKNOWN) {
+            //a cancel or replace of an order that was resting before any slot was free for its account
+            return;
+        }
+        int book = slot * instrumentCount + instruments.get(result.getSymbol());
+        switch (action) {
+            case MARKET -> addExecution(book, type, result.getExecutedQuantity());
+            case NEW_LIMIT -> {
+                addExecution(book, type, result.getExecutedQuantity());
+                addOpen(slot, book, type, price, result.getLeavesQuantity());
+            }
+            case CANCEL -> addOpen(slot, book, restingSide, restingPrice, -restingQuantity);
+            case CANCEL_REPLACE -> {
+                //same rule as the engine: a reduction at an unchanged price is done in place
+                if (price == restingPrice && quantity <= restingQuantity) {
+                    addOpen(slot, book, restingSide, restingPrice, quantity - restingQuantity);
+                } else {
+                    addOpen(slot, book, restingSide, restingPrice, -restingQuantity);
+                    addExecution(book, restingSide, result.getExecutedQuantity());
+                    addOpen(slot, book, restingSide, price, result.getLeavesQuantity());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onFill(String symbol, String accountId, OrderType side, long price, int quantity) {
+        int slot = slotOf(accountId);
+        if (slot == UNKNOWN) {
+            //an account that never traded through the check
+            return;
+        }
+        int book = slot * instrumentCount + instruments.get(symbol);
+        addExecution(book, side, quantity);
+        addOpen(slot, book, side, price, -quantity);
+    }
+
+    /**
+     * @return the account's position in the instrument, {@code 0} when it is unknown
+     */
+    long position(String accountId, String symbol) {
+        int slot = slotOf(accountId);
+        return slot == UNKNOWN ? 0 : positions[slot * instrumentCount + instruments.get(symbol)];
+    }
+
+    /**
+     * @return the number of accounts holding a slot
+     */
+    int accountCount() {
+        return accounts.size();
+    }
+
+    private void captureResting(MatchingEngine engine, long orderId) {
+        int order = engine.findOrder(orderId);
+        if (order == OrderStore.NONE) {
+            restingSide = null;
+            return;
+        }
+        restingSide = engine.orders().side(order);
+        restingQuantity = engine.orders().quantity(order);
+        restingPrice = engine.orders().price(order);
+    }
+
+    private void addExecution(int book, OrderType side, int quantity) {
+        positions[book] += side == OrderType.BUY ? quantity : -quantity;
+    }
+
+    private void addOpen(int slot, int book, OrderType side, long price, int quantity) {
+        if (side == OrderType.BUY) {
+            openBuys[book] += quantity;
+        } else {
+            openSells[book] += quantity;
+        }
+        openNotional[slot] += (double) price * quantity;
+    }
+
+    private static long referencePrice(MatchingEngine engine, OrderType type) {
+        OrderBookSide opposite = type == OrderType.BUY ? engine.getSellOrders() : engine.getBuyOrders();
+        int level = opposite.bestLevel();
+        if (level != OrderStore.NONE) {
+            return opposite.levelPrice(level);
+        }
+        OrderBookSide own = type == OrderType.BUY ? engine.getBuyOrders() : engine.getSellOrders();
+        level = own.bestLevel();
+        return level == OrderStore.NONE ? 0 : own.levelPrice(level);
+    }
+
+    private int slotOf(String accountId) {
+        Integer slot = accountId == null ? null : accounts.get(accountId);
+        return slot == null ? UNKNOWN : slot;
+    }
+
+    /**
+     * @return the account's slot, taking the next free one for a new account, or {@link #UNKNOWN} when none is left
+     */
+    private int intern(String accountId) {
+        Integer known = accounts.get(accountId);
+        if (known != null) {
+            return known;
+        }
+        int slot = accounts.size();
+        if (slot == maxAccounts) {
+            return UNKNOWN;
+        }
+        accounts.put(accountId, slot);
+        return slot;
+    }
+
+    private static boolean isValidAccount(String accountId) {
+        return accountId != null && !accountId.isEmpty();
+    }
+}
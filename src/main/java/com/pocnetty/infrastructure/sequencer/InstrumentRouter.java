@@ -0,0 +1,267 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.journal.Journal;
+import com.pocnetty.infrastructure.marketdata.MarketDataFeed;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.posttrade.PostTradeDispatcher;
+import com.pocnetty.infrastructure.replication.ReplicationLink;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Routes orders by symbol to the {@link MatchingCore} shard that owns the instrument.
+ * <p>
+ * Instruments are assigned to a fixed set of shards once at startup and the routing table is
+ * never modified afterwards, so lookups from the I/O threads need no synchronization.
+ */
+@Slf4j
+public class InstrumentRouter implements AutoCloseable {
+
+    private final MatchingCore[] shards;
+    private final Map<String, MatchingCore> shardBySymbol = new HashMap<>();
+    private final String defaultSymbol;
+
+    public InstrumentRouter(AppProperties.Engine properties, AppProperties.Journal journalProperties) {
+        this(properties, journalProperties, new AppProperties.Snapshot());
+    }
+
+    public InstrumentRouter(AppProperties.Engine properties, AppProperties.Journal journalProperties,
+                            AppProperties.Snapshot snapshotProperties) {
+        this.defaultSymbol = properties.getDefaultSymbol();
+        Map<String, Integer> assignment = assignShards(properties.getInstruments(), defaultSymbol, properties.getShards());
+        List<List<MatchingEngine>> enginesByShard = new ArrayList<>();
+        for (int i = 0; i < properties.getShards(); i++) {
+            enginesByShard.add(new ArrayList<>());
+        }
+        assignment.forEach((symbol, shard) -> enginesByShard.get(shard).add(properties.isDemoBook()
+                ? MatchingEngine.withDemoBook(symbol)
+                : new MatchingEngine(symbol)));
+
+        this.shards = new MatchingCore[properties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new MatchingCore("matching-shard-" + i, enginesByShard.get(i),
+                    properties.getRingBufferSize(), properties.getWaitStrategy(), openJournal(journalProperties, i));
+            for (MatchingEngine engine : enginesByShard.get(i)) {
+                shardBySymbol.put(engine.getSymbol(), shards[i]);
+            }
+            if (properties.getRisk().isEnabled()) {
+                shards[i].withRisk(properties.getRisk());
+            }
+            if (properties.getCapture().isEnabled()) {
+                shards[i].withCapture(properties.getCapture());
+            }
+            if (properties.getDepthLevels() > 0) {
+                shards[i].withDepth(properties.getDepthLevels());
+            }
+        }
+        if (snapshotProperties.isEnabled()) {
+            restoreSnapshots(snapshotProperties);
+        }
+    }
+
+    /**
+     * Hands every shard the newest snapshot of each instrument found in any shard directory, so an
+     * instrument moved to another shard by a configuration change keeps its book. Journal events
+     * recorded by its previous shard after that snapshot are not carried over, which a clean
+     * shutdown (final snapshot, empty journal tail) guarantees.
+     */
+    private void restoreSnapshots(AppProperties.Snapshot properties) {
+        Path root = Path.of(properties.getDirectory());
+        Map<String, BookSnapshot> books = new HashMap<>();
+        Map<String, Long> bookTimestamps = new HashMap<>();
+        Map<Path, ShardSnapshot> latestByDirectory = new HashMap<>();
+        for (Path directory : shardDirectories(root)) {
+            new SnapshotStore(directory, properties.getRetain()).loadLatest().ifPresent(snapshot -> {
+                latestByDirectory.put(directory, snapshot);
+                for (BookSnapshot book : snapshot.getBooks()) {
+                    if (snapshot.getTimestamp() >= bookTimestamps.getOrDefault(book.getSymbol(), Long.MIN_VALUE)) {
+                        books.put(book.getSymbol(), book);
+                        bookTimestamps.put(book.getSymbol(), snapshot.getTimestamp());
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < shards.length; i++) {
+            Path directory = root.resolve("shard-" + i);
+            ShardSnapshot own = latestByDirectory.get(directory);
+            shards[i].withSnapshots(new SnapshotStore(directory, properties.getRetain()),
+                    properties.getIntervalEvents(), properties.isPruneJournal());
+            shards[i].restoreFrom(own == null ? 0 : own.getLastSequence(), books);
+        }
+    }
+
+    private static List<Path> shardDirectories(Path root) {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> directories = Files.list(root)) {
+            return directories.filter(Files::isDirectory)
+                    .filter(path -> path.getFileName().toString().startsWith("shard-"))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Assigns every configured instrument to a shard. Instruments with an explicit shard keep it,
+     * the rest go to whichever shard currently holds the fewest instruments.
+     *
+     * @return symbol to shard index, in configuration order
+     */
+    static Map<String, Integer> assignShards(List<AppProperties.Instrument> instruments, String defaultSymbol, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one matching shard is required");
+        }
+        Map<String, Integer> assignment = new LinkedHashMap<>();
+        int[] load = new int[shardCount];
+        for (AppProperties.Instrument instrument : instruments) {
+            if (instrument.getShard() != null) {
+                int shard = Math.floorMod(instrument.getShard(), shardCount);
+                assignment.put(instrument.getSymbol(), shard);
+                load[shard]++;
+            }
+        }
+        List<String> unassigned = new ArrayList<>();
+        for (AppProperties.Instrument instrument : instruments) {
+            if (!assignment.containsKey(instrument.getSymbol())) {
+                unassigned.add(instrument.getSymbol());
+            }
+        }
+        if (!assignment.containsKey(defaultSymbol) && !unassigned.contains(defaultSymbol)) {
+            unassigned.add(defaultSymbol);
+        }
+        for (String symbol : unassigned) {
+            int leastLoaded = 0;
+            for (int shard = 1; shard < shardCount; shard++) {
+                if (load[shard] < load[leastLoaded]) {
+                    leastLoaded = shard;
+                }
+            }
+            assignment.put(symbol, leastLoaded);
+            load[leastLoaded]++;
+        }
+        return assignment;
+    }
+
+    private static Journal openJournal(AppProperties.Journal properties, int shard) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        return new Journal(Path.of(properties.getDirectory(), "shard-" + shard),
+                properties.getSegmentSizeMb() * 1024 * 1024,
+                properties.getFsyncPolicy(),
+                properties.getFsyncBatchSize(),
+                properties.getFsyncBatchMicros());
+    }
+
+    /**
+     * Publishes the market data of every shard to the feed. Must be called before {@link #start()}.
+     */
+    public InstrumentRouter withMarketData(MarketDataFeed feed) {
+        for (MatchingCore shard : shards) {
+            shard.withMarketData(feed);
+        }
+        return this;
+    }
+
+    /**
+     * Records the matching stages of every shard in the metrics. Must be called before {@link #start()}.
+     */
+    public InstrumentRouter withMetrics(ServerMetrics metrics) {
+        for (MatchingCore shard : shards) {
+            shard.withMetrics(metrics);
+        }
+        return this;
+    }
+
+    /**
+     * Streams every shard's sequenced events to the link's standby. Must be called before {@link #start()}.
+     */
+    public InstrumentRouter withReplication(ReplicationLink link) {
+        for (MatchingCore shard : shards) {
+            shard.withReplication(link);
+        }
+        return this;
+    }
+
+    /**
+     * Hands every shard's reports to the post-trade consumers. Must be called before {@link #start()}.
+     */
+    public InstrumentRouter withPostTrade(PostTradeDispatcher dispatcher) {
+        for (MatchingCore shard : shards) {
+            shard.withPostTrade(dispatcher);
+        }
+        return this;
+    }
+
+    public InstrumentRouter start() {
+        for (MatchingCore shard : shards) {
+            shard.start();
+        }
+        return this;
+    }
+
+    /**
+     * Publishes a market order to the shard owning its symbol; orders without a symbol go to the default instrument.
+     *
+     * @return {@code false} when the symbol is unknown or the shard's ring buffer is full
+     */
+    public boolean publish(MarketOrder order, Consumer<ExecutionReport> reportSink) {
+        String symbol = order.getSymbol() == null ? defaultSymbol : order.getSymbol();
+        MatchingCore shard = shardBySymbol.get(symbol);
+        return shard != null && shard.publish(order, symbol, reportSink);
+    }
+
+    /**
+     * Publishes any order entry request to the shard owning its symbol; requests without a symbol go to the default instrument.
+     *
+     * @return {@code false} when the symbol is unknown or the shard's ring buffer is full
+     */
+    public boolean publish(OrderRequest request, Consumer<ExecutionReport> reportSink) {
+        String symbol = request.getSymbol() == null ? defaultSymbol : request.getSymbol();
+        MatchingCore shard = shardBySymbol.get(symbol);
+        return shard != null && shard.publish(request, symbol, reportSink);
+    }
+
+    /**
+     * Reads the cached top levels of a symbol's book without involving its matching thread; no symbol means the default instrument.
+     *
+     * @return {@code null} when the symbol is unknown or depth is disabled
+     */
+    public BookDepth depth(String symbol) {
+        MatchingCore shard = shardBySymbol.get(symbol == null ? defaultSymbol : symbol);
+        return shard == null ? null : shard.depth(symbol == null ? defaultSymbol : symbol);
+    }
+
+    public List<MatchingCore> shards() {
+        return List.of(shards);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (MatchingCore shard : shards) {
+            shard.close();
+        }
+    }
+}
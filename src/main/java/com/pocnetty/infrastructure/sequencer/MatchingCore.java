@@ -0,0 +1,866 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MarketDataListener;
+import com.pocnetty.domain.MatchResult;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.book.BookCapture;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import com.pocnetty.infrastructure.capture.CaptureRecorder;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.journal.Journal;
+import com.pocnetty.infrastructure.journal.JournalRecord;
+import com.pocnetty.infrastructure.marketdata.DepthCache;
+import com.pocnetty.infrastructure.marketdata.MarketDataFeed;
+import com.pocnetty.infrastructure.marketdata.MarketDataPublisher;
+import com.pocnetty.infrastructure.metrics.LatencyStage;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.posttrade.PostTradeDispatcher;
+import com.pocnetty.infrastructure.replication.ReplicationLink;
+import com.pocnetty.infrastructure.replication.ReplicationPublisher;
+import com.pocnetty.infrastructure.risk.PreTradeRisk;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer matching core for one shard of instruments.
+ * <p>
+ * Netty I/O threads publish decoded order entry requests into a pre-allocated {@link RingBuffer}; one dedicated
+ * thread drains it in sequence order and is the only thread that ever touches the shard's
+ * {@link MatchingEngine}s, so the engines need no locks and no lock is shared with other shards.
+ * Each event is stamped with a monotonically increasing sequence number, and its report is handed
+ * to the sink supplied by the publisher, which is expected to hop back onto the publisher's own
+ * event loop.
+ * <p>
+ * With a {@link Journal}, every event is appended before it is applied, and {@link #start()}
+ * first rebuilds the books by replaying the journal, continuing its sequence numbering.
+ * <p>
+ * With a {@link SnapshotStore}, the matching thread captures its books every
+ * {@code snapshotIntervalEvents} events and a background thread serializes the copy, so the
+ * matching thread never waits on I/O. The capture holds the books as of the event it began after,
+ * but is copied a bounded slice at a time after each batch and while idle, with any level the
+ * matching changes in between copied right before, so a deep book never holds up matching for the
+ * whole copy. Recovery then restores the latest snapshot and replays only the journal tail after it.
+ * <p>
+ * With a {@link MarketDataFeed}, the engines report their book changes and trades to a
+ * {@link MarketDataPublisher} as they match, and the publisher broadcasts them once per batch of
+ * events, so market data never waits on a subscriber.
+ * <p>
+ * With a {@link DepthCache}, the engines also report their level changes to the cache, and the
+ * matching thread republishes the top levels of the books whose cached levels changed once per
+ * batch, where depth queries read them from any thread without touching the engines.
+ * <p>
+ * With {@link ServerMetrics}, the matching thread records how long each event waited in the ring
+ * buffer and how long it took to apply, and publishes its fill and reject counts and the depth of
+ * its books once per batch, where a scrape can read them without touching the engines.
+ * <p>
+ * With a {@link PreTradeRisk} check, the matching thread checks every event against the limits of
+ * its account before journaling it. A refused event is answered with a rejection and its reason,
+ * and is neither journaled nor given a sequence number, so recovery never sees it.
+ * <p>
+ * With a {@link ReplicationLink}, every sequenced event is also streamed to a standby once per
+ * batch. A standby that connects starts from a snapshot captured the same way as the periodic ones
+ * and serialized by the same background thread, which also serves as the periodic snapshot when one
+ * is due; a standby connecting while a periodic capture is in progress waits for it. On a standby, {@link #startFrom(ShardSnapshot)} starts the shard from the primary's books
+ * and {@link #replicate} feeds it the primary's events, which keep their sequence numbers and skip
+ * the risk verdict the primary already gave them. A standby its primary dropped for falling behind
+ * starts over from a newer snapshot with {@link #resync(ShardSnapshot)}.
+ * <p>
+ * With a {@link PostTradeDispatcher}, every report is also queued for the post-trade consumers,
+ * which run on virtual threads; replicated events are not, as the primary already dispatched them.
+ * <p>
+ * With a {@link CaptureRecorder}, every sequenced event is recorded with its receive time and its
+ * report once per batch, for {@code CaptureReplay} to replay and check later.
+ */
+@Slf4j
+public class MatchingCore implements AutoCloseable {
+
+    //upper bound on events processed before slots are released back to producers
+    private static final int MAX_BATCH = 256;
+    //level slots and orders a snapshot capture copies per batch
+    private static final int CAPTURE_SLICE = 4096;
+    //journal, replication and capture records hold text fields of at most this length
+    private static final int MAX_TEXT_LENGTH = Journal.MAX_TEXT_LENGTH;
+
+    private final String name;
+    private final Map<String, MatchingEngine> engines = new HashMap<>();
+    private final List<MatchingEngine> engineList;
+    //buy levels, sell levels and resting orders of each engine in engineList, as of the end of the last batch
+    private final AtomicIntegerArray bookDepth;
+    private final RingBuffer<OrderEvent> ringBuffer;
+    private final WaitStrategy waitStrategy;
+    private final Journal journal;
+    private final JournalRecord journalRecord = new JournalRecord();
+    private final Thread thread;
+    private SnapshotStore snapshotStore;
+    private long snapshotIntervalEvents;
+    private boolean pruneJournal;
+    private ExecutorService snapshotWriter;
+    private MarketDataPublisher marketData;
+    private DepthCache depth;
+    private ServerMetrics metrics = ServerMetrics.NONE;
+    private AppProperties.Risk riskLimits;
+    private PreTradeRisk risk;
+    private ReplicationPublisher replication;
+    private PostTradeDispatcher postTrade;
+    private CaptureRecorder capture;
+    private volatile boolean started;
+    private final AtomicBoolean snapshotInFlight = new AtomicBoolean();
+    private long lastSnapshotSequence;
+    //the snapshot being captured, one book per engine in engineList, and the engine the next slice starts at
+    private List<BookCapture> snapshotCapture;
+    private boolean captureToStore;
+    private boolean captureToStandby;
+    private int captureIndex;
+    private long captureSequence;
+    private long captureTimestamp;
+    private int captureSlices;
+    private long captureLongestSliceNanos;
+    private long restoredSequence;
+    private Map<String, BookSnapshot> restoredBooks;
+    private volatile boolean running = true;
+    private volatile long lastSequence;
+    private volatile long processedCount;
+    private long fills;
+    private long rejects;
+    private volatile long fillCount;
+    private volatile long rejectCount;
+
+    public MatchingCore(String name, Collection<MatchingEngine> engines, int ringBufferSize, WaitStrategy waitStrategy) {
+        this(name, engines, ringBufferSize, waitStrategy, null);
+    }
+
+    public MatchingCore(String name, Collection<MatchingEngine> engines, int ringBufferSize, WaitStrategy waitStrategy, Journal journal) {
+        this.name = name;
+        this.journal = journal;
+        for (MatchingEngine engine : engines) {
+            this.engines.put(engine.getSymbol(), engine);
+        }
+        this.engineList = List.copyOf(engines);
+        this.bookDepth = new AtomicIntegerArray(engineList.size() * 3);
+        this.ringBuffer = new RingBuffer<>(ringBufferSize, OrderEvent::new);
+        this.waitStrategy = waitStrategy;
+        this.thread = new Thread(this::run, name);
+    }
+
+    /**
+     * Enables periodic snapshots. Must be called before {@link #start()}.
+     *
+     * @param snapshotStore          where this shard's snapshots are written
+     * @param snapshotIntervalEvents number of applied events between two snapshots
+     * @param pruneJournal           delete journal segments fully covered by a written snapshot
+     */
+    public MatchingCore withSnapshots(SnapshotStore snapshotStore, long snapshotIntervalEvents, boolean pruneJournal) {
+        this.snapshotStore = snapshotStore;
+        this.snapshotIntervalEvents = snapshotIntervalEvents;
+        this.pruneJournal = pruneJournal;
+        startSnapshotWriter();
+        return this;
+    }
+
+    private void startSnapshotWriter() {
+        if (snapshotWriter == null) {
+            snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread writer = new Thread(runnable, name + "-snapshot");
+                writer.setDaemon(true);
+                return writer;
+            });
+        }
+    }
+
+    /**
+     * Publishes the shard's market data to the feed once the books are recovered. Must be called before {@link #start()}.
+     */
+    public MatchingCore withMarketData(MarketDataFeed feed) {
+        this.marketData = new MarketDataPublisher(feed, engines.values());
+        return this;
+    }
+
+    /**
+     * Keeps the top {@code maxLevels} levels of each side of every book for depth queries. Must be called before {@link #start()}.
+     */
+    public MatchingCore withDepth(int maxLevels) {
+        this.depth = new DepthCache(engineList, maxLevels);
+        return this;
+    }
+
+    /**
+     * Records stage latencies and publishes counters and book depth for the metrics. Must be called before {@link #start()}.
+     */
+    public MatchingCore withMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Checks every event against per-account risk limits before it is journaled. Must be called before {@link #start()}.
+     */
+    public MatchingCore withRisk(AppProperties.Risk limits) {
+        this.riskLimits = limits;
+        this.risk = new PreTradeRisk(limits, engineList);
+        return this;
+    }
+
+    /**
+     * Streams every sequenced event to the link's standby. Must be called before {@link #start()}.
+     */
+    public MatchingCore withReplication(ReplicationLink link) {
+        this.replication = new ReplicationPublisher(link);
+        //serializes the snapshots new standbys start from
+        startSnapshotWriter();
+        return this;
+    }
+
+    /**
+     * Hands every report to the post-trade consumers once it is on its way to the client. Must be called before {@link #start()}.
+     */
+    public MatchingCore withPostTrade(PostTradeDispatcher dispatcher) {
+        this.postTrade = dispatcher;
+        return this;
+    }
+
+    /**
+     * Records the shard's order flow from the recovered books on. Must be called before {@link #start()}.
+     */
+    public MatchingCore withCapture(AppProperties.Capture properties) {
+        this.capture = new CaptureRecorder(Path.of(properties.getDirectory()), name, properties.getMaxPendingMb() * 1024L * 1024L);
+        return this;
+    }
+
+    /**
+     * Restores books gathered by the caller instead of this shard's own latest snapshot, which is
+     * how instruments moved to another shard keep their state. Must be called before {@link #start()}.
+     *
+     * @param snapshotSequence sequence of this shard's own latest snapshot; its journal is replayed after it
+     * @param books            latest known book per symbol; symbols this shard does not own are ignored
+     */
+    void restoreFrom(long snapshotSequence, Map<String, BookSnapshot> books) {
+        this.restoredSequence = snapshotSequence;
+        this.restoredBooks = books;
+    }
+
+    /**
+     * Starts the shard from books replicated by a primary instead of this shard's own latest snapshot.
+     */
+    public MatchingCore startFrom(ShardSnapshot snapshot) {
+        restoreFrom(snapshot.getLastSequence(), booksBySymbol(snapshot));
+        return start();
+    }
+
+    public MatchingCore start() {
+        started = true;
+        if (snapshotStore != null && restoredBooks == null) {
+            snapshotStore.loadLatest().ifPresent(snapshot -> restoreFrom(snapshot.getLastSequence(), booksBySymbol(snapshot)));
+        }
+        if (restoredBooks != null) {
+            restoreSnapshot();
+        }
+        if (journal != null) {
+            recover();
+        }
+        lastSnapshotSequence = lastSequence;
+        if (marketData != null) {
+            //recovery is not published, subscribers start from a refresh of the recovered books
+            marketData.sequence(lastSequence);
+        }
+        if (depth != null) {
+            depth.publishAll(lastSequence);
+        }
+        setMarketDataListener(marketData == null ? depth : depth == null ? marketData : marketData.andThen(depth));
+        if (risk != null) {
+            //open orders survive a restart with the books, positions start flat
+            risk.track(engineList);
+        }
+        if (capture != null) {
+            capture.begin(lastSequence, engineList);
+        }
+        publishBookDepth();
+        thread.start();
+        log.info("Matching core {} started for {} with ring buffer size {} and {} wait strategy",
+                name, engines.keySet(), ringBuffer.capacity(), waitStrategy);
+        return this;
+    }
+
+    /**
+     * Publishes a market order to the matching thread. Safe to call from any number of threads.
+     *
+     * @param order      the decoded market order
+     * @param symbol     the instrument the order was routed to, one of this core's {@link #symbols()}
+     * @param reportSink receives the execution report on the matching thread
+     * @return {@code false} when the ring buffer is full and the order was not accepted
+     */
+    public boolean publish(MarketOrder order, String symbol, Consumer<ExecutionReport> reportSink) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            return false;
+        }
+        ringBuffer.get(sequence).set(OrderAction.MARKET, order.getType(), order.getQuantity(), 0, order.getAccountId(), symbol,
+                order.getClientOrderId(), 0, reportSink, System.nanoTime());
+        ringBuffer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Publishes any order entry request to the matching thread. Safe to call from any number of threads.
+     *
+     * @param request    the decoded request
+     * @param symbol     the instrument the request was routed to, one of this core's {@link #symbols()}
+     * @param reportSink receives the execution report on the matching thread
+     * @return {@code false} when the ring buffer is full and the request was not accepted
+     */
+    public boolean publish(OrderRequest request, String symbol, Consumer<ExecutionReport> reportSink) {
+        long sequence = ringBuffer.tryNext();
+        if (sequence < 0) {
+            return false;
+        }
+        ringBuffer.get(sequence).set(request.getAction(), request.getType(), request.getQuantity(), request.getPrice(),
+                request.getAccountId(), symbol, request.getClientOrderId(), request.getOrderId(), reportSink, System.nanoTime());
+        ringBuffer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Publishes an event a primary applied to the matching thread, to be applied with the same
+     * sequence number. Only ever called by the thread reading the replication link.
+     *
+     * @param price     the limit price in ticks
+     * @param sequence  the sequence number the primary applied the event with
+     * @param applied   receives the event's report on the matching thread once it is applied
+     * @return {@code false} when the ring buffer is full and the event was not accepted
+     */
+    public boolean replicate(OrderAction action, OrderType type, int quantity, long price, String accountId, String symbol,
+                             long orderId, long sequence, Consumer<ExecutionReport> applied) {
+        long slot = ringBuffer.tryNext();
+        if (slot < 0) {
+            return false;
+        }
+        ringBuffer.get(slot).set(action, type, quantity, price, accountId, symbol, 0, orderId, applied, System.nanoTime(), sequence);
+        ringBuffer.publish(slot);
+        return true;
+    }
+
+    /**
+     * Replaces the books of a running standby shard with a newer snapshot of its primary's, once the
+     * events published before it are applied. Only ever called by the thread reading the replication link.
+     *
+     * @return {@code false} when the ring buffer is full and the snapshot was not accepted
+     */
+    public boolean resync(ShardSnapshot snapshot) {
+        long slot = ringBuffer.tryNext();
+        if (slot < 0) {
+            return false;
+        }
+        ringBuffer.get(slot).resync(snapshot, System.nanoTime());
+        ringBuffer.publish(slot);
+        return true;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the symbols of this shard's books, in the order {@link #bookLevels(int, OrderType)} and {@link #restingOrders(int)} index them
+     */
+    public List<String> symbols() {
+        List<String> symbols = new ArrayList<>(engineList.size());
+        for (MatchingEngine engine : engineList) {
+            symbols.add(engine.getSymbol());
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the latest published top levels of the symbol's book, or {@code null} when this shard does
+     * not own the symbol or keeps no depth
+     */
+    public BookDepth depth(String symbol) {
+        return depth == null ? null : depth.get(symbol);
+    }
+
+    /**
+     * @return the sequence number of the last event applied to the engines
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the number of events the matching thread has processed so far
+     */
+    public long processedCount() {
+        return processedCount;
+    }
+
+    /**
+     * @return the number of executions against resting orders so far, one per resting order
+     * filled, as of the end of the last batch
+     */
+    public long fillCount() {
+        return fillCount;
+    }
+
+    /**
+     * @return the number of events rejected by the engines so far, as of the end of the last batch
+     */
+    public long rejectCount() {
+        return rejectCount;
+    }
+
+    /**
+     * @return the number of price levels on one side of the book at {@code index} in {@link #symbols()}, as of the end
+     * of the last batch; only kept up to date with metrics enabled
+     */
+    public int bookLevels(int index, OrderType side) {
+        return bookDepth.get(index * 3 + (side == OrderType.BUY ? 0 : 1));
+    }
+
+    /**
+     * @return the number of resting orders of the book at {@code index} in {@link #symbols()}, as of the end of the
+     * last batch; only kept up to date with metrics enabled
+     */
+    public int restingOrders(int index) {
+        return bookDepth.get(index * 3 + 2);
+    }
+
+    /**
+     * @return the number of published events the matching thread has not processed yet
+     */
+    public long queueDepth() {
+        return ringBuffer.depth();
+    }
+
+    private void run() {
+        long next = 0;
+        int idleCount = 0;
+        while (running) {
+            if (!ringBuffer.isPublished(next)) {
+                if (journal != null) {
+                    journal.flushIfDue();
+                }
+                if (marketData != null) {
+                    //picks up refresh requests while no orders arrive
+                    marketData.flush();
+                }
+                if (replication != null) {
+                    //picks up a new standby's snapshot request
+                    flushReplication();
+                }
+                if (snapshotCapture != null) {
+                    captureSlice();
+                    continue;
+                }
+                waitStrategy.idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            long batchStart = next;
+            do {
+                handle(ringBuffer.get(next));
+                next++;
+            } while (next - batchStart < MAX_BATCH && ringBuffer.isPublished(next));
+            ringBuffer.release(next - 1);
+            processedCount = next;
+            fillCount = fills;
+            rejectCount = rejects;
+            if (metrics.isEnabled()) {
+                publishBookDepth();
+            }
+            if (depth != null) {
+                depth.flush(lastSequence);
+            }
+            if (marketData != null) {
+                marketData.flush();
+            }
+            if (replication != null) {
+                flushReplication();
+            }
+            if (capture != null) {
+                capture.flush();
+            }
+            if (snapshotCapture != null) {
+                captureSlice();
+            }
+        }
+    }
+
+    private void publishBookDepth() {
+        for (int i = 0; i < engineList.size(); i++) {
+            MatchingEngine engine = engineList.get(i);
+            //ordered writes are enough for a gauge and cost no fence on the matching thread
+            bookDepth.lazySet(i * 3, engine.getBuyOrders().levelCount());
+            bookDepth.lazySet(i * 3 + 1, engine.getSellOrders().levelCount());
+            bookDepth.lazySet(i * 3 + 2, engine.orders().count());
+        }
+    }
+
+    private void handle(OrderEvent event) {
+        if (event.getResyncSnapshot() != null) {
+            applyResync(event.getResyncSnapshot());
+            event.clear();
+            return;
+        }
+        Consumer<ExecutionReport> reportSink = event.getReportSink();
+        MatchingEngine engine = engines.get(event.getSymbol());
+        long sequence = lastSequence + 1;
+        ExecutionReport report;
+        long dequeued = System.nanoTime();
+        metrics.record(LatencyStage.ENQUEUE, dequeued - event.getPublishedNanos());
+        boolean replicated = event.getReplicatedSequence() != 0;
+        try {
+            if (replicated && event.getReplicatedSequence() != sequence) {
+                throw new IllegalStateException(name + " expected replicated sequence " + sequence + " but got "
+                        + event.getReplicatedSequence());
+            }
+            RejectReason reason = checkText(event);
+            if (reason == null && risk != null) {
+                reason = risk.check(engine, event.getAction(), event.getType(), event.getQuantity(), event.getPrice(),
+                        event.getAccountId(), event.getOrderId(), dequeued);
+            }
+            //the primary already accepted a replicated event, the check only keeps the account state in step
+            if (reason != null && !replicated) {
+                rejects++;
+                report = ExecutionReport.rejected(event.getQuantity(), event.getAccountId(), event.getSymbol(),
+                        event.getClientOrderId(), event.getOrderId(), reason);
+                event.clear();
+                metrics.record(LatencyStage.MATCH, System.nanoTime() - dequeued);
+                reportSink.accept(report);
+                if (postTrade != null) {
+                    postTrade.dispatch(report);
+                }
+                return;
+            }
+            if (journal != null) {
+                journal.append(journalRecord.order(sequence, System.currentTimeMillis(), event.getAction(), event.getType(),
+                        event.getQuantity(), event.getPrice(), event.getOrderId(), event.getSymbol(), event.getAccountId()));
+            }
+            if (replication != null) {
+                replication.append(sequence, event.getAction(), event.getType(), event.getQuantity(), event.getPrice(),
+                        event.getOrderId(), event.getSymbol(), event.getAccountId());
+            }
+            lastSequence = sequence;
+            if (marketData != null) {
+                marketData.sequence(sequence);
+            }
+            MatchResult result = apply(engine, event);
+            if (risk != null) {
+                risk.onResult(event.getAction(), event.getType(), event.getQuantity(), event.getPrice(), result);
+            }
+            fills += result.getExecutionCount();
+            if ("REJECTED".equals(result.getStatus())) {
+                rejects++;
+            }
+            report = result.toReport();
+        } catch (RuntimeException e) {
+            log.error(e.getMessage(), e);
+            rejects++;
+            report = ExecutionReport.rejected(event.getQuantity(), event.getAccountId(), event.getSymbol(),
+                    event.getClientOrderId(), event.getOrderId());
+        }
+        if (capture != null && lastSequence == sequence) {
+            capture.record(event.getPublishedNanos(), sequence, event.getAction(), event.getType(), event.getQuantity(),
+                    event.getPrice(), event.getOrderId(), event.getClientOrderId(), event.getSymbol(), event.getAccountId(), report);
+        }
+        event.clear();
+        metrics.record(LatencyStage.MATCH, System.nanoTime() - dequeued);
+        reportSink.accept(report);
+        if (postTrade != null && !replicated) {
+            postTrade.dispatch(report);
+        }
+        if (snapshotStore != null && snapshotCapture == null && lastSequence - lastSnapshotSequence >= snapshotIntervalEvents) {
+            beginSnapshot();
+        }
+    }
+
+    /**
+     * Refuses an account id too long to be journaled, before it reaches the risk state or the journal.
+     * Symbols need no check, as only those of known books are routed here.
+     */
+    private static RejectReason checkText(OrderEvent event) {
+        String accountId = event.getAccountId();
+        return accountId != null && accountId.length() > MAX_TEXT_LENGTH ? RejectReason.INVALID_ACCOUNT : null;
+    }
+
+    private static MatchResult apply(MatchingEngine engine, OrderEvent event) {
+        return engine.execute(event.getAction(), event.getType(), event.getQuantity(), event.getPrice(), event.getOrderId(),
+                event.getAccountId(), event.getClientOrderId());
+    }
+
+    /**
+     * Sends the replication batch, and starts capturing the snapshot a new standby asked for once no other capture is in progress.
+     */
+    private void flushReplication() {
+        replication.flush(lastSequence);
+        //a capture in progress began before the events since were streamed, so the standby cannot start from it
+        if (snapshotCapture == null && replication.takeSnapshotRequest()) {
+            replication.beginSnapshot(lastSequence);
+            beginCapture(false, true);
+        }
+    }
+
+    /**
+     * Starts capturing the books for the periodic snapshot. It is skipped while the previous one is still being written.
+     */
+    private void beginSnapshot() {
+        if (!snapshotInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        beginCapture(true, false);
+    }
+
+    /**
+     * Starts capturing the books as of the event just applied; {@link #captureSlice()} copies them over the following batches.
+     */
+    private void beginCapture(boolean toStore, boolean toStandby) {
+        snapshotCapture = new ArrayList<>(engineList.size());
+        for (MatchingEngine engine : engineList) {
+            snapshotCapture.add(engine.beginCapture());
+        }
+        captureToStore = toStore;
+        captureToStandby = toStandby;
+        captureIndex = 0;
+        captureSequence = lastSequence;
+        captureTimestamp = System.currentTimeMillis();
+        captureSlices = 0;
+        captureLongestSliceNanos = 0;
+    }
+
+    /**
+     * Copies the next slice of the snapshot being captured, and hands it to the snapshot writer once it is complete.
+     */
+    private void captureSlice() {
+        long start = System.nanoTime();
+        int budget = CAPTURE_SLICE;
+        while (captureIndex < engineList.size() && budget > 0) {
+            MatchingEngine engine = engineList.get(captureIndex);
+            budget = engine.captureSlice(budget);
+            if (!engine.isCapturing()) {
+                captureIndex++;
+            }
+        }
+        captureSlices++;
+        captureLongestSliceNanos = Math.max(captureLongestSliceNanos, System.nanoTime() - start);
+        if (captureIndex < engineList.size()) {
+            return;
+        }
+        List<BookCapture> books = snapshotCapture;
+        long sequence = captureSequence;
+        long timestamp = captureTimestamp;
+        boolean toStandby = captureToStandby;
+        //a standby's snapshot doubles as the periodic one when that is due
+        boolean toStore = captureToStore || snapshotStore != null
+                && sequence - lastSnapshotSequence >= snapshotIntervalEvents && snapshotInFlight.compareAndSet(false, true);
+        snapshotCapture = null;
+        if (toStore) {
+            lastSnapshotSequence = sequence;
+        }
+        log.info("{} captured snapshot at sequence {} in {} slices, the longest taking {} us",
+                name, sequence, captureSlices, captureLongestSliceNanos / 1_000);
+        snapshotWriter.execute(() -> {
+            try {
+                ShardSnapshot snapshot = new ShardSnapshot(sequence, timestamp, books.stream().map(BookCapture::toSnapshot).toList());
+                if (toStandby) {
+                    replication.snapshotCaptured(snapshot);
+                }
+                if (toStore) {
+                    writeSnapshot(snapshot);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to serialize the snapshot at sequence " + sequence, e);
+            } finally {
+                if (toStore) {
+                    snapshotInFlight.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies the books all at once, for when the matching thread has stopped.
+     */
+    private ShardSnapshot captureSnapshot() {
+        long start = System.nanoTime();
+        List<BookSnapshot> books = new ArrayList<>(engines.size());
+        for (MatchingEngine engine : engines.values()) {
+            books.add(engine.snapshot());
+        }
+        ShardSnapshot snapshot = new ShardSnapshot(lastSequence, System.currentTimeMillis(), books);
+        log.info("{} captured snapshot at sequence {} in {} us", name, lastSequence, (System.nanoTime() - start) / 1_000);
+        return snapshot;
+    }
+
+    private void writeSnapshot(ShardSnapshot snapshot) {
+        long start = System.nanoTime();
+        try {
+            Path file = snapshotStore.write(snapshot);
+            log.info("{} wrote snapshot {} in {} ms", name, file, (System.nanoTime() - start) / 1_000_000);
+            if (pruneJournal && journal != null) {
+                journal.deleteSegmentsBefore(snapshot.getLastSequence());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write snapshot at sequence " + snapshot.getLastSequence(), e);
+        }
+    }
+
+    /**
+     * Starts the shard over from the primary's books, as if it had just started from them, after the
+     * primary dropped this standby and streamed the events in between to nobody.
+     */
+    private void applyResync(ShardSnapshot snapshot) {
+        long start = System.nanoTime();
+        long previous = lastSequence;
+        if (snapshotCapture != null) {
+            //restoring the books drops the capture in progress along with what it was copying
+            snapshotCapture = null;
+            if (captureToStore) {
+                snapshotInFlight.set(false);
+            }
+        }
+        //the restored orders are not changes to publish, subscribers get a refresh of the new books instead
+        setMarketDataListener(MarketDataListener.NONE);
+        Map<String, BookSnapshot> books = booksBySymbol(snapshot);
+        for (MatchingEngine engine : engineList) {
+            BookSnapshot book = books.get(engine.getSymbol());
+            if (book != null) {
+                engine.restore(book);
+            }
+        }
+        lastSequence = snapshot.getLastSequence();
+        setMarketDataListener(marketData == null ? depth : depth == null ? marketData : marketData.andThen(depth));
+        if (marketData != null) {
+            marketData.sequence(lastSequence);
+            marketData.requestRefresh();
+        }
+        if (depth != null) {
+            depth.publishAll(lastSequence);
+        }
+        if (risk != null) {
+            //positions start flat again, as after a restart
+            risk = new PreTradeRisk(riskLimits, engineList);
+            risk.track(engineList);
+        }
+        if (snapshotStore != null) {
+            //the journal skips the events this standby missed, so recovery has to start from these books
+            writeSnapshot(snapshot);
+            lastSnapshotSequence = lastSequence;
+        } else if (journal != null) {
+            log.warn("{} journal skips from sequence {} to {} and cannot be recovered without snapshots", name, previous, lastSequence);
+        }
+        publishBookDepth();
+        log.info("{} started over from the primary's books at sequence {}, having applied up to {}, in {} ms",
+                name, lastSequence, previous, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void setMarketDataListener(MarketDataListener listener) {
+        if (listener != null) {
+            for (MatchingEngine engine : engineList) {
+                engine.setMarketDataListener(listener);
+            }
+        }
+    }
+
+    private void restoreSnapshot() {
+        long start = System.nanoTime();
+        int restored = 0;
+        for (MatchingEngine engine : engines.values()) {
+            BookSnapshot book = restoredBooks.get(engine.getSymbol());
+            if (book != null) {
+                engine.restore(book);
+                restored++;
+            }
+        }
+        lastSequence = restoredSequence;
+        log.info("{} restored {} books from snapshot at sequence {} in {} ms",
+                name, restored, restoredSequence, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    static Map<String, BookSnapshot> booksBySymbol(ShardSnapshot snapshot) {
+        Map<String, BookSnapshot> books = new HashMap<>();
+        for (BookSnapshot book : snapshot.getBooks()) {
+            books.put(book.getSymbol(), book);
+        }
+        return books;
+    }
+
+    private void recover() {
+        long start = System.nanoTime();
+        long replayed = journal.replay(restoredSequence, record -> {
+            MatchingEngine engine = engines.get(record.getSymbol());
+            if (engine == null) {
+                log.warn("Skipping journaled event {} for {}, which is not owned by {}", record.getSequence(), record.getSymbol(), name);
+                return;
+            }
+            switch (record.getRecordType()) {
+                case JournalRecord.MARKET_ORDER -> engine.executeMarketOrder(record.getSide(), record.getQuantity(), record.getAccountId(), 0);
+                case JournalRecord.NEW_LIMIT -> engine.executeLimitOrder(record.getSide(), record.getQuantity(),
+                        record.getPrice(), record.getAccountId(), 0);
+                case JournalRecord.CANCEL -> engine.executeCancel(record.getOrderId(), record.getAccountId(), 0);
+                case JournalRecord.CANCEL_REPLACE -> engine.executeReplace(record.getOrderId(), record.getQuantity(),
+                        record.getPrice(), record.getAccountId(), 0);
+                default -> log.warn("Skipping journaled event {} of unknown type {}", record.getSequence(), record.getRecordType());
+            }
+        });
+        lastSequence = Math.max(lastSequence, journal.lastSequence());
+        log.info("{} replayed {} journaled events up to sequence {} in {} ms",
+                name, replayed, lastSequence, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        thread.join();
+        if (marketData != null) {
+            marketData.close();
+        }
+        if (snapshotWriter != null) {
+            //lets a standby's snapshot finish serializing before the publisher releases what it holds
+            snapshotWriter.shutdown();
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        if (replication != null) {
+            replication.close();
+        }
+        if (capture != null) {
+            capture.close();
+        }
+        if (snapshotStore != null) {
+            //covers a capture left incomplete too, as lastSnapshotSequence only moves once one completes
+            if (lastSequence > lastSnapshotSequence) {
+                //the matching thread has stopped, so the books can be captured from here
+                writeSnapshot(captureSnapshot());
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
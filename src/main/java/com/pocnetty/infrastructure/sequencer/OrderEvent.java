@@ -0,0 +1,80 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import lombok.Getter;
+
+import java.util.function.Consumer;
+
+/**
+ * Pre-allocated ring buffer slot carrying one inbound order to the matching thread, or on a standby
+ * the primary's books it starts over from.
+ * <p>
+ * Producers copy the decoded order into the slot instead of handing over the decoded object,
+ * so the slot is the only thing shared between the I/O and matching threads. The event's
+ * sequence number is assigned by the matching thread when it is applied.
+ */
+@Getter
+public class OrderEvent {
+
+    private OrderAction action;
+    private OrderType type;
+    private int quantity;
+    /**
+     * Limit price in ticks, see {@link com.pocnetty.domain.Prices}.
+     */
+    private long price;
+    private String accountId;
+    private String symbol;
+    private long clientOrderId;
+    private long orderId;
+    private Consumer<ExecutionReport> reportSink;
+    /**
+     * {@link System#nanoTime()} at publication, for the time the event waited in the ring buffer.
+     */
+    private long publishedNanos;
+    /**
+     * Sequence number the primary applied the event with, or {@code 0} for an order entered on this server.
+     */
+    private long replicatedSequence;
+    /**
+     * The primary's books a standby shard starts over from, see {@link MatchingCore#resync(ShardSnapshot)}, or {@code null} for an order.
+     */
+    private ShardSnapshot resyncSnapshot;
+
+    void set(OrderAction action, OrderType type, int quantity, long price, String accountId, String symbol,
+             long clientOrderId, long orderId, Consumer<ExecutionReport> reportSink, long publishedNanos) {
+        set(action, type, quantity, price, accountId, symbol, clientOrderId, orderId, reportSink, publishedNanos, 0);
+    }
+
+    void set(OrderAction action, OrderType type, int quantity, long price, String accountId, String symbol,
+             long clientOrderId, long orderId, Consumer<ExecutionReport> reportSink, long publishedNanos,
+             long replicatedSequence) {
+        this.action = action;
+        this.type = type;
+        this.quantity = quantity;
+        this.price = price;
+        this.accountId = accountId;
+        this.symbol = symbol;
+        this.clientOrderId = clientOrderId;
+        this.orderId = orderId;
+        this.reportSink = reportSink;
+        this.publishedNanos = publishedNanos;
+        this.replicatedSequence = replicatedSequence;
+        this.resyncSnapshot = null;
+    }
+
+    void resync(ShardSnapshot snapshot, long publishedNanos) {
+        set(null, null, 0, 0, null, null, 0, 0, null, publishedNanos, 0);
+        this.resyncSnapshot = snapshot;
+    }
+
+    void clear() {
+        accountId = null;
+        symbol = null;
+        reportSink = null;
+        resyncSnapshot = null;
+    }
+}
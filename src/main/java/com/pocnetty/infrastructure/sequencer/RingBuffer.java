@@ -0,0 +1,89 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Pre-allocated, lock-free multi-producer / single-consumer ring buffer.
+ * <p>
+ * Producers claim a sequence with a CAS on the shared cursor, fill the pre-allocated entry in
+ * place and then publish it. The single consumer reads published entries in sequence order and
+ * releases them in batches, which is what frees slots for producers. Producers never block: when
+ * the consumer is a full lap behind, {@link #tryNext()} fails and the caller decides what to do.
+ *
+ * @param <E> the mutable event type stored in each slot
+ */
+public class RingBuffer<E> {
+
+    private final E[] entries;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLongArray published;
+    private volatile long consumed = -1;
+
+    @SuppressWarnings("unchecked")
+    public RingBuffer(int size, Supplier<E> factory) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring buffer size must be a power of two: " + size);
+        }
+        this.entries = (E[]) new Object[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Claims the next sequence for a producer.
+     *
+     * @return the claimed sequence, or {@code -1} when the buffer is full
+     */
+    public long tryNext() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            if (next - entries.length > consumed) {
+                return -1;
+            }
+        } while (!cursor.compareAndSet(current, next));
+        return next;
+    }
+
+    public E get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a claimed and filled entry visible to the consumer.
+     */
+    public void publish(long sequence) {
+        published.setRelease((int) sequence & mask, sequence);
+    }
+
+    public boolean isPublished(long sequence) {
+        return published.getAcquire((int) sequence & mask) == sequence;
+    }
+
+    /**
+     * Called by the consumer once every entry up to and including {@code sequence} has been processed.
+     */
+    public void release(long sequence) {
+        consumed = sequence;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * @return the number of claimed entries the consumer has not released yet
+     */
+    public long depth() {
+        return cursor.get() - consumed;
+    }
+}
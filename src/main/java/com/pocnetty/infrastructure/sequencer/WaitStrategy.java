@@ -0,0 +1,59 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the matching thread does while the ring buffer is empty.
+ * <p>
+ * Producers never signal the consumer, so every strategy is a bounded back-off that trades
+ * wake-up latency against the CPU burnt while idle.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Spins on the cursor. Lowest latency, keeps one core at 100%.
+     */
+    BUSY_SPIN {
+        @Override
+        public void idle(int idleCount) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * Spins briefly, then yields the core to other runnable threads.
+     */
+    YIELDING {
+        @Override
+        public void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    /**
+     * Spins, then yields, then parks for short intervals. Cheapest while idle, slowest to wake up.
+     */
+    PARKING {
+        @Override
+        public void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * @param idleCount the number of consecutive polls that found nothing to process
+     */
+    public abstract void idle(int idleCount);
+}
@@ -0,0 +1,22 @@
+package com.pocnetty.infrastructure.snapshot;
+
+import com.pocnetty.domain.book.BookSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Books of every instrument owned by a matching shard, as of the last event the shard applied.
+ */
+@Getter
+@AllArgsConstructor
+public class ShardSnapshot {
+
+    /**
+     * Journal sequence of the last event reflected in the books; replay resumes right after it.
+     */
+    private final long lastSequence;
+    private final long timestamp;
+    private final List<BookSnapshot> books;
+}
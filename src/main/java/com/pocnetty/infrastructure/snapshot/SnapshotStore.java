@@ -0,0 +1,199 @@
+package com.pocnetty.infrastructure.snapshot;
+
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stores {@link ShardSnapshot}s as {@code snapshot-<lastSequence>.bin} files in one directory.
+ * <p>
+ * A snapshot is written to a temporary file and atomically renamed, and carries a CRC32C trailer,
+ * so a crash while writing leaves at worst an ignored temporary file. Only the newest
+ * {@code retain} snapshots are kept.
+ */
+@Slf4j
+public class SnapshotStore {
+
+    private static final int MAGIC = 0x534E4150;
+    //version 2 added order ids, version 3 stores prices in ticks; older snapshots are still readable
+    private static final int VERSION = 3;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final int retain;
+
+    public SnapshotStore(Path directory, int retain) {
+        this.directory = directory;
+        this.retain = Math.max(1, retain);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes a snapshot and prunes the ones beyond the retention count.
+     *
+     * @return the snapshot file
+     */
+    public Path write(ShardSnapshot snapshot) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, snapshot.getLastSequence(), SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            writeTo(out, snapshot);
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        prune();
+        return target;
+    }
+
+    /**
+     * @return the newest readable snapshot, skipping any that fail their checksum
+     */
+    public Optional<ShardSnapshot> loadLatest() {
+        List<Path> snapshots = snapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                return Optional.of(read(snapshots.get(i)));
+            } catch (IOException | IllegalStateException e) {
+                log.warn("Ignoring unreadable snapshot {}: {}", snapshots.get(i), e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private ShardSnapshot read(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            ShardSnapshot snapshot = readFrom(in);
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IllegalStateException("Checksum mismatch");
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Serializes a snapshot without the file's checksum trailer, e.g. to send it to a standby.
+     */
+    public static void writeTo(DataOutput out, ShardSnapshot snapshot) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.getLastSequence());
+        out.writeLong(snapshot.getTimestamp());
+        out.writeInt(snapshot.getBooks().size());
+        for (BookSnapshot book : snapshot.getBooks()) {
+            out.writeUTF(book.getSymbol());
+            out.writeLong(book.getNextOrderId());
+            writeSide(out, book.getBids());
+            writeSide(out, book.getAsks());
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo(DataOutput, ShardSnapshot)}.
+     *
+     * @throws IllegalStateException when the data is not a snapshot of a supported version
+     */
+    public static ShardSnapshot readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IllegalStateException("Not a snapshot");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalStateException("Unsupported snapshot version " + version);
+        }
+        long lastSequence = in.readLong();
+        long timestamp = in.readLong();
+        int bookCount = in.readInt();
+        List<BookSnapshot> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            String symbol = in.readUTF();
+            long nextOrderId = version >= 2 ? in.readLong() : 0;
+            BookSnapshot.Side bids = readSide(in, version);
+            BookSnapshot.Side asks = readSide(in, version);
+            books.add(new BookSnapshot(symbol, bids, asks, nextOrderId));
+        }
+        return new ShardSnapshot(lastSequence, timestamp, books);
+    }
+
+    private static void writeSide(DataOutput out, BookSnapshot.Side side) throws IOException {
+        out.writeInt(side.size());
+        for (int i = 0; i < side.size(); i++) {
+            out.writeLong(side.getPrices()[i]);
+            out.writeInt(side.getQuantities()[i]);
+            out.writeLong(side.getOrderIds()[i]);
+            String accountId = side.getAccountIds()[i];
+            out.writeBoolean(accountId != null);
+            if (accountId != null) {
+                out.writeUTF(accountId);
+            }
+        }
+    }
+
+    private static BookSnapshot.Side readSide(DataInput in, int version) throws IOException {
+        int size = in.readInt();
+        long[] prices = new long[size];
+        int[] quantities = new int[size];
+        String[] accountIds = new String[size];
+        long[] orderIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            prices[i] = version >= 3 ? in.readLong() : Prices.toTicks(in.readDouble());
+            quantities[i] = in.readInt();
+            orderIds[i] = version >= 2 ? in.readLong() : 0;
+            accountIds[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+        return new BookSnapshot.Side(prices, quantities, accountIds, orderIds);
+    }
+
+    private void prune() throws IOException {
+        List<Path> snapshots = snapshots();
+        for (int i = 0; i < snapshots.size() - retain; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    private List<Path> snapshots() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.pocnetty.infrastructure.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Event loop groups and channel classes of the transport selected for the server, for its listeners
+ * and for the connections it opens itself.
+ * <p>
+ * A transport that is not available on this host falls back to the next one, from io_uring to
+ * epoll to NIO. The io_uring transport is only shipped for Netty 4.2's {@code IoHandler} event loops,
+ * so it is looked up reflectively and the server keeps working on a 4.1 runtime.
+ */
+@Slf4j
+public final class ServerTransport {
+
+    private final TransportType type;
+    private final GroupFactory groupFactory;
+    private final Class<? extends ServerChannel> serverChannelClass;
+    private final Class<? extends Channel> socketChannelClass;
+    private final ChannelOption<Boolean> reusePortOption;
+
+    private ServerTransport(TransportType type, GroupFactory groupFactory, Class<? extends ServerChannel> serverChannelClass,
+                            Class<? extends Channel> socketChannelClass, ChannelOption<Boolean> reusePortOption) {
+        this.type = type;
+        this.groupFactory = groupFactory;
+        this.serverChannelClass = serverChannelClass;
+        this.socketChannelClass = socketChannelClass;
+        this.reusePortOption = reusePortOption;
+    }
+
+    /**
+     * @return the requested transport, or the best available one below it
+     */
+    public static ServerTransport select(TransportType requested) {
+        if (requested == TransportType.IO_URING) {
+            ServerTransport ioUring = ioUring();
+            if (ioUring != null) {
+                return ioUring;
+            }
+        }
+        if (requested == TransportType.IO_URING || requested == TransportType.EPOLL) {
+            if (Epoll.isAvailable()) {
+                return new ServerTransport(TransportType.EPOLL, EpollEventLoopGroup::new, EpollServerSocketChannel.class,
+                        EpollSocketChannel.class, EpollChannelOption.SO_REUSEPORT);
+            }
+            log.warn("Epoll transport is not available, falling back to NIO: {}", Epoll.unavailabilityCause().toString());
+        }
+        return new ServerTransport(TransportType.NIO, NioEventLoopGroup::new, NioServerSocketChannel.class, NioSocketChannel.class, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerTransport ioUring() {
+        try {
+            Class<?> ioUring = Class.forName("io.netty.channel.uring.IoUring");
+            if (!(Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                log.warn("io_uring transport is not available: {}", ioUring.getMethod("unavailabilityCause").invoke(null));
+                return null;
+            }
+            Class<?> ioHandlerFactory = Class.forName("io.netty.channel.IoHandlerFactory");
+            Object factory = Class.forName("io.netty.channel.uring.IoUringIoHandler").getMethod("newFactory").invoke(null);
+            Constructor<?> groupConstructor = Class.forName("io.netty.channel.MultiThreadIoEventLoopGroup")
+                    .getConstructor(int.class, ThreadFactory.class, ioHandlerFactory);
+            Class<? extends ServerChannel> channelClass = Class.forName("io.netty.channel.uring.IoUringServerSocketChannel")
+                    .asSubclass(ServerChannel.class);
+            Class<? extends Channel> socketChannelClass = Class.forName("io.netty.channel.uring.IoUringSocketChannel")
+                    .asSubclass(Channel.class);
+            ChannelOption<Boolean> reusePort = (ChannelOption<Boolean>) Class.forName("io.netty.channel.uring.IoUringChannelOption")
+                    .getField("SO_REUSEPORT").get(null);
+            return new ServerTransport(TransportType.IO_URING, (threads, threadFactory) -> {
+                try {
+                    return (EventLoopGroup) groupConstructor.newInstance(threads, threadFactory, factory);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot create io_uring event loop group", e);
+                }
+            }, channelClass, socketChannelClass, reusePort);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("io_uring transport cannot be used with this Netty runtime: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param threads number of event loops, {@code 0} for Netty's default
+     * @param name    prefix of the event loop thread names
+     */
+    public EventLoopGroup newGroup(int threads, String name) {
+        return groupFactory.create(threads, new DefaultThreadFactory(name));
+    }
+
+    public TransportType getType() {
+        return type;
+    }
+
+    public Class<? extends ServerChannel> getServerChannelClass() {
+        return serverChannelClass;
+    }
+
+    /**
+     * @return the class of outbound connections, which must run on the transport's event loops
+     */
+    public Class<? extends Channel> getSocketChannelClass() {
+        return socketChannelClass;
+    }
+
+    /**
+     * @return the transport's SO_REUSEPORT option, or {@code null} when it cannot bind a port more than once
+     */
+    public ChannelOption<Boolean> getReusePortOption() {
+        return reusePortOption;
+    }
+
+    @FunctionalInterface
+    private interface GroupFactory {
+        EventLoopGroup create(int threads, ThreadFactory threadFactory);
+    }
+}
@@ -0,0 +1,16 @@
+package com.pocnetty.infrastructure.transport;
+
+/**
+ * Netty transport the server runs its event loops on.
+ */
+public enum TransportType {
+    NIO,
+    /**
+     * Native Linux epoll; supports SO_REUSEPORT.
+     */
+    EPOLL,
+    /**
+     * Native Linux io_uring; needs a Netty 4.2 transport on the classpath and a recent kernel.
+     */
+    IO_URING
+}
@@ -1,9 +1,17 @@
 package com.pocnetty;
 
 import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MarketDataListener;
+import com.pocnetty.domain.MatchResult;
 import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookCapture;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.book.OrderStore;
 import com.pocnetty.domain.dto.MarketOrder;
 import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.sequencer.WaitStrategy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -21,7 +29,7 @@ public class MatchingEngineTest {
 
     @BeforeEach
     public void setUp() {
-        matchingEngine = new MatchingEngine();
+        matchingEngine = MatchingEngine.withDemoBook(MatchingEngine.DEFAULT_SYMBOL);
     }
 
     /**
@@ -57,40 +65,152 @@ public class MatchingEngineTest {
     }
 
     /**
-     * Test that a BUY market order with a quantity that does not match any SELL limit order is REJECTED.
-     * Expected: With no sell order having quantity 7, the order should be rejected.
+     * Test that a BUY market order smaller than the best SELL limit order partially consumes it.
+     * Expected: 7 of the 10 at 106.0 (S1001) are executed and the remaining 3 keep time priority at 106.0.
+     */
+    @Test
+    public void testBuyMarketOrderPartiallyConsumesRestingOrder() {
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 7, "1111"));
+
+        assertEquals("FILLED", report.getStatus(), "Order should be FILLED");
+        assertEquals(7, report.getInitialQuantity());
+        assertEquals(7, report.getExecutedQuantity());
+        assertEquals(0, report.getLeavesQuantity());
+        assertEquals(106.0, report.getExecutedPrice());
+        assertEquals("1111", report.getAccountId());
+
+        ExecutionReport rest = matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 3, "1111"));
+        assertEquals("FILLED", rest.getStatus());
+        assertEquals(106.0, rest.getExecutedPrice());
+    }
+
+    /**
+     * Test that a SELL market order smaller than the best BUY limit order partially consumes it.
+     * Expected: 7 of the 10 at 105.0 (B1001) are executed.
+     */
+    @Test
+    public void testSellMarketOrderPartiallyConsumesRestingOrder() {
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 7, "2222"));
+
+        assertEquals("FILLED", report.getStatus(), "Order should be FILLED");
+        assertEquals(7, report.getInitialQuantity());
+        assertEquals(7, report.getExecutedQuantity());
+        assertEquals(105.0, report.getExecutedPrice());
+        assertEquals("2222", report.getAccountId());
+    }
+
+    /**
+     * Test that a BUY market order sweeps several SELL levels and reports the VWAP and per-level fills.
+     * Expected: 10 at 106.0 and 2 at 107.0, VWAP (1060 + 214) / 12.
+     */
+    @Test
+    public void testBuyMarketOrderSweepsLevels() {
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 12, "1212"));
+
+        assertEquals("FILLED", report.getStatus());
+        assertEquals(12, report.getExecutedQuantity());
+        assertEquals(0, report.getLeavesQuantity());
+        assertEquals((1060.0 + 214.0) / 12, report.getExecutedPrice(), 1e-9);
+        assertArrayEquals(new double[]{106.0, 107.0}, report.getFillPrices());
+        assertArrayEquals(new int[]{10, 2}, report.getFillQuantities());
+    }
+
+    /**
+     * Test that a limit order stops after {@link MatchingEngine#MAX_SWEEP_LEVELS} levels and, as it still crosses the
+     * book, is cancelled instead of resting on a crossed book.
+     */
+    @Test
+    public void testLimitOrderSweepLimit() {
+        MatchingEngine engine = new MatchingEngine("ABC");
+        for (int i = 0; i < MatchingEngine.MAX_SWEEP_LEVELS + 2; i++) {
+            engine.executeLimitOrder(OrderType.SELL, 1, Prices.toTicks(100.0 + i), "1", 0);
+        }
+        MatchResult result = engine.executeLimitOrder(OrderType.BUY, 1_000, Prices.toTicks(1_000.0), "2", 0);
+
+        assertEquals("CANCELED", result.getStatus());
+        assertEquals(MatchingEngine.MAX_SWEEP_LEVELS, result.getFillCount());
+        assertEquals(MatchingEngine.MAX_SWEEP_LEVELS, result.getExecutedQuantity());
+        assertEquals(0, result.getLeavesQuantity());
+        assertTrue(engine.getBuyOrders().isEmpty(), "The remainder must not rest");
+        assertEquals(2, engine.getSellOrders().levelCount());
+    }
+
+    /**
+     * Test that the result counts one execution per resting order filled, while fills stay aggregated per level.
+     */
+    @Test
+    public void testExecutionCountPerRestingOrder() {
+        matchingEngine.executeLimitOrder(OrderType.SELL, 4, Prices.toTicks(106.0), "4444", 0);
+        MatchResult result = matchingEngine.executeMarketOrder(OrderType.BUY, 14, "1212", 0);
+
+        assertEquals(1, result.getFillCount());
+        assertEquals(2, result.getExecutionCount());
+    }
+
+    /**
+     * Test that a SELL market order larger than the whole BUY side is PARTIALLY_FILLED with the remainder cancelled.
+     * Expected: 10 at 105.0 and 5 at 104.0 executed, 5 left.
+     */
+    @Test
+    public void testSellMarketOrderPartiallyFilled() {
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 20, "2020"));
+
+        assertEquals("PARTIALLY_FILLED", report.getStatus());
+        assertEquals(20, report.getInitialQuantity());
+        assertEquals(15, report.getExecutedQuantity());
+        assertEquals(5, report.getLeavesQuantity());
+        assertEquals((1050.0 + 520.0) / 15, report.getExecutedPrice(), 1e-9);
+        assertArrayEquals(new double[]{105.0, 104.0}, report.getFillPrices());
+        assertArrayEquals(new int[]{10, 5}, report.getFillQuantities());
+    }
+
+    /**
+     * Test that a BUY market order is REJECTED once the SELL side has been exhausted.
      */
     @Test
     public void testBuyMarketOrderRejected() {
-        MarketOrder marketOrder = new MarketOrder(OrderType.BUY, 7, "1111");
-        ExecutionReport report = matchingEngine.processMarketOrder(marketOrder);
+        matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 15, "0000"));
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 7, "1111"));
 
         assertEquals("REJECTED", report.getStatus(), "Order should be REJECTED");
         assertEquals(7, report.getInitialQuantity());
-        assertNull(report.getExecutedPrice());
-        assertNull(report.getExecutedQuantity());
+        assertEquals(7, report.getLeavesQuantity());
+        assertEquals(0, report.getExecutedPrice());
+        assertEquals(0, report.getExecutedQuantity());
         assertEquals("1111", report.getAccountId());
     }
 
     /**
-     * Test that a SELL market order with a quantity that does not match any BUY limit order is REJECTED.
-     * Expected: With no buy order having quantity 7, the order should be rejected.
+     * Test that a SELL market order is REJECTED once the BUY side has been exhausted.
      */
     @Test
     public void testSellMarketOrderRejected() {
-        MarketOrder marketOrder = new MarketOrder(OrderType.SELL, 7, "2222");
-        ExecutionReport report = matchingEngine.processMarketOrder(marketOrder);
+        matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 15, "0000"));
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 7, "2222"));
 
         assertEquals("REJECTED", report.getStatus(), "Order should be REJECTED");
         assertEquals(7, report.getInitialQuantity());
-        assertNull(report.getExecutedPrice());
-        assertNull(report.getExecutedQuantity());
+        assertEquals(0, report.getExecutedPrice());
+        assertEquals(0, report.getExecutedQuantity());
         assertEquals("2222", report.getAccountId());
     }
 
     /**
-     * Test that a BUY market order with quantity matching an available SELL limit order of quantity 5 is FILLED.
-     * Expected: Should match the sell order with quantity 5 (S1002 with price 107.0).
+     * Test that a market order without a side is REJECTED and leaves both sides of the book untouched.
+     */
+    @Test
+    public void testMarketOrderWithoutSideRejected() {
+        ExecutionReport report = matchingEngine.processMarketOrder(new MarketOrder(null, 5, "3333"));
+
+        assertEquals("REJECTED", report.getStatus(), "Order should be REJECTED");
+        assertEquals(0, report.getExecutedQuantity());
+        assertEquals("FILLED", matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 15, "0000")).getStatus(),
+                "The BUY side should still hold its 15");
+    }
+
+    /**
+     * Test that a BUY market order of quantity 5 is FILLED at the best SELL price rather than against the quantity-5 order.
+     * Expected: Should execute against S1001 at 106.0, ahead of S1002 at 107.0.
      */
     @Test
     public void testBuyMarketOrderFilledWithQuantity5() {
@@ -100,13 +220,13 @@ public class MatchingEngineTest {
         assertEquals("FILLED", report.getStatus(), "Order should be FILLED");
         assertEquals(5, report.getInitialQuantity());
         assertEquals(5, report.getExecutedQuantity());
-        assertEquals(107.0, report.getExecutedPrice());
+        assertEquals(106.0, report.getExecutedPrice());
         assertEquals("3333", report.getAccountId());
     }
 
     /**
-     * Test that a SELL market order with quantity matching an available BUY limit order of quantity 5 is FILLED.
-     * Expected: Should match the buy order with quantity 5 (B1002 with price 104.0).
+     * Test that a SELL market order of quantity 5 is FILLED at the best BUY price.
+     * Expected: Should execute against B1001 at 105.0, ahead of B1002 at 104.0.
      */
     @Test
     public void testSellMarketOrderFilledWithQuantity5() {
@@ -116,14 +236,14 @@ public class MatchingEngineTest {
         assertEquals("FILLED", report.getStatus(), "Order should be FILLED");
         assertEquals(5, report.getInitialQuantity());
         assertEquals(5, report.getExecutedQuantity());
-        assertEquals(104.0, report.getExecutedPrice());
+        assertEquals(105.0, report.getExecutedPrice());
         assertEquals("4444", report.getAccountId());
     }
 
     /**
      * Test sequential BUY market orders:
      * First, process a BUY market order for quantity 10 to fill the available sell order (S1001).
-     * Then, process another BUY market order for quantity 10, which should be rejected as the matching order has been removed.
+     * Then, process another BUY market order for quantity 10, which only finds S1002 (quantity 5) and is partially filled.
      */
     @Test
     public void testSequentialBuyMarketOrders() {
@@ -133,13 +253,15 @@ public class MatchingEngineTest {
 
         MarketOrder secondOrder = new MarketOrder(OrderType.BUY, 10, "6666");
         ExecutionReport secondReport = matchingEngine.processMarketOrder(secondOrder);
-        assertEquals("REJECTED", secondReport.getStatus(), "Second order should be REJECTED");
+        assertEquals("PARTIALLY_FILLED", secondReport.getStatus(), "Second order should be PARTIALLY_FILLED");
+        assertEquals(107.0, secondReport.getExecutedPrice());
+        assertEquals(5, secondReport.getLeavesQuantity());
     }
 
     /**
      * Test sequential SELL market orders:
-     * First, process a SELL market order for quantity 5 to fill the available buy order (B1002).
-     * Then, process another SELL market order for quantity 5, which should be rejected as the matching order has been removed.
+     * First, process a SELL market order for quantity 5 against the best buy order (B1001).
+     * Then, process another SELL market order for quantity 5, which takes the remainder of B1001 at the same price.
      */
     @Test
     public void testSequentialSellMarketOrders() {
@@ -149,42 +271,211 @@ public class MatchingEngineTest {
 
         MarketOrder secondOrder = new MarketOrder(OrderType.SELL, 5, "8888");
         ExecutionReport secondReport = matchingEngine.processMarketOrder(secondOrder);
-        assertEquals("REJECTED", secondReport.getStatus(), "Second order should be REJECTED");
+        assertEquals("FILLED", secondReport.getStatus(), "Second order should be FILLED");
+        assertEquals(105.0, secondReport.getExecutedPrice());
     }
 
     /**
-     * Test concurrent processing of multiple SELL market orders.
-     * Only one SELL market order should be FILLED (matching the one BUY order with quantity 10) and the rest rejected.
+     * Test that a BUY limit order priced through the best ask executes up to its limit and rests the remainder.
+     * Expected: 10 fill at 106.0, 107.0 is beyond the limit, so the other 5 rest as the new best bid at 106.5.
      */
     @Test
-    public void testConcurrentSellMarketOrders() throws InterruptedException, ExecutionException {
-        int numThreads = 5;
-        try (ExecutorService executor = Executors.newFixedThreadPool(numThreads)) {
-            List<Future<ExecutionReport>> futures = new ArrayList<>();
-            Callable<ExecutionReport> task = () -> {
-                MarketOrder order = new MarketOrder(OrderType.SELL, 10, "concurrentSell");
-                return matchingEngine.processMarketOrder(order);
-            };
+    public void testBuyLimitOrderCrossesAndRests() {
+        ExecutionReport report = matchingEngine.processLimitOrder(OrderType.BUY, 15, 106.5, "9001", 1);
+
+        assertEquals("PARTIALLY_FILLED", report.getStatus());
+        assertEquals(10, report.getExecutedQuantity());
+        assertEquals(106.0, report.getExecutedPrice());
+        assertEquals(5, report.getLeavesQuantity());
+        assertEquals(1, report.getClientOrderId());
+
+        int resting = matchingEngine.findOrder(report.getOrderId());
+        assertNotEquals(OrderStore.NONE, resting, "The remainder should rest under the reported order id");
+        assertEquals(5, matchingEngine.orders().quantity(resting));
+        assertEquals(Prices.toTicks(106.5), matchingEngine.orders().price(resting));
+
+        ExecutionReport sell = matchingEngine.processMarketOrder(new MarketOrder(OrderType.SELL, 5, "9002"));
+        assertEquals(106.5, sell.getExecutedPrice(), "The resting remainder should be the best bid");
+        assertEquals(OrderStore.NONE, matchingEngine.findOrder(report.getOrderId()), "A filled order should leave the order id index");
+    }
+
+    /**
+     * Test that a limit order that does not cross rests untouched and is reported as NEW.
+     */
+    @Test
+    public void testLimitOrderRestsWithoutMatching() {
+        ExecutionReport report = matchingEngine.processLimitOrder(OrderType.SELL, 8, 106.0, "9001", 2);
+
+        assertEquals("NEW", report.getStatus());
+        assertEquals(0, report.getExecutedQuantity());
+        assertEquals(8, report.getLeavesQuantity());
+        assertTrue(report.getOrderId() > 0);
+
+        ExecutionReport buy = matchingEngine.processMarketOrder(new MarketOrder(OrderType.BUY, 18, "9002"));
+        assertEquals("FILLED", buy.getStatus());
+        assertArrayEquals(new int[]{18}, buy.getFillQuantities(), "The new order should queue behind S1001 at 106.0");
+    }
+
+    /**
+     * Test that a resting order can be cancelled once, by its owner only.
+     */
+    @Test
+    public void testCancelOrder() {
+        long orderId = matchingEngine.processLimitOrder(OrderType.BUY, 7, 100.0, "9001", 1).getOrderId();
+
+        assertEquals("REJECTED", matchingEngine.cancelOrder(orderId, "someone-else", 2).getStatus());
+        ExecutionReport cancel = matchingEngine.cancelOrder(orderId, "9001", 3);
+        assertEquals("CANCELED", cancel.getStatus());
+        assertEquals(7, cancel.getInitialQuantity());
+        assertEquals(0, cancel.getLeavesQuantity());
+        assertEquals(orderId, cancel.getOrderId());
+        assertEquals(3, cancel.getClientOrderId());
+
+        assertEquals(OrderStore.NONE, matchingEngine.findOrder(orderId));
+        assertEquals("REJECTED", matchingEngine.cancelOrder(orderId, "9001", 4).getStatus(), "A second cancel should be rejected");
+    }
+
+    /**
+     * Test that reducing a resting order in place keeps its time priority, while any other change sends it to the back.
+     */
+    @Test
+    public void testReplaceOrderPriority() {
+        long first = matchingEngine.processLimitOrder(OrderType.SELL, 10, 108.0, "A", 1).getOrderId();
+        long second = matchingEngine.processLimitOrder(OrderType.SELL, 10, 108.0, "B", 2).getOrderId();
+
+        ExecutionReport reduced = matchingEngine.replaceOrder(first, 4, 108.0, "A", 3);
+        assertEquals("REPLACED", reduced.getStatus());
+        OrderStore orders = matchingEngine.orders();
+        assertEquals(4, orders.quantity(matchingEngine.findOrder(first)));
+        assertEquals(OrderStore.NONE, orders.prev(matchingEngine.findOrder(first)), "A reduced order should stay at the head of its level");
+
+        matchingEngine.replaceOrder(first, 6, 108.0, "A", 4);
+        assertEquals(second, orders.orderId(orders.prev(matchingEngine.findOrder(first))), "An increased order should lose priority");
+    }
+
+    /**
+     * Test that replacing a resting order with a price through the opposite side executes it immediately.
+     */
+    @Test
+    public void testReplaceOrderCrosses() {
+        ExecutionReport report = matchingEngine.replaceOrder(1, 12, 106.0, "B1001", 5);
 
+        assertEquals("PARTIALLY_FILLED", report.getStatus());
+        assertEquals(10, report.getExecutedQuantity());
+        assertEquals(2, report.getLeavesQuantity());
+        assertEquals(1, report.getOrderId(), "The order should keep its id across the replace");
+        assertEquals(Prices.toTicks(106.0), matchingEngine.orders().price(matchingEngine.findOrder(1)));
+    }
+
+    /**
+     * Test that a capture copied a slice at a time holds the book as it was when it began, whatever is matched in between.
+     */
+    @Test
+    public void testCaptureIsPointInTime() {
+        MatchingEngine engine = new MatchingEngine("CAP");
+        List<Long> deepOrders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            deepOrders.add(engine.executeLimitOrder(OrderType.SELL, 10, Prices.toTicks(100 + i), "1", 0).getOrderId());
+            engine.executeLimitOrder(OrderType.SELL, 5, Prices.toTicks(100 + i), "2", 0);
+            engine.executeLimitOrder(OrderType.BUY, 10, Prices.toTicks(99 - i * 0.5), "3", 0);
+        }
+        BookSnapshot expected = engine.snapshot();
+
+        BookCapture capture = engine.beginCapture();
+        assertThrows(IllegalStateException.class, engine::beginCapture);
+        int event = 0;
+        while (engine.isCapturing()) {
+            engine.captureSlice(16);
+            //sweeps the top, cancels and replaces deeper orders and opens levels between the slices
+            long deep = deepOrders.get(199 - event / 5);
+            switch (event++ % 5) {
+                case 0 -> engine.executeMarketOrder(OrderType.BUY, 12, "4", 0);
+                case 1 -> engine.executeCancel(deep, "1", 0);
+                case 2 -> engine.executeReplace(deep, 20, Prices.toTicks(150.5), "1", 0);
+                case 3 -> engine.executeLimitOrder(OrderType.SELL, 3, Prices.toTicks(100.25 + event), "5", 0);
+                default -> engine.executeMarketOrder(OrderType.SELL, 4, "6", 0);
+            }
+        }
+        assertTrue(event > 10, "The capture should have been spread over several slices");
+
+        BookSnapshot captured = capture.toSnapshot();
+        assertEquals(expected.getNextOrderId(), captured.getNextOrderId());
+        for (boolean bids : new boolean[]{true, false}) {
+            BookSnapshot.Side want = bids ? expected.getBids() : expected.getAsks();
+            BookSnapshot.Side got = bids ? captured.getBids() : captured.getAsks();
+            assertArrayEquals(want.getPrices(), got.getPrices());
+            assertArrayEquals(want.getQuantities(), got.getQuantities());
+            assertArrayEquals(want.getAccountIds(), got.getAccountIds());
+            assertArrayEquals(want.getOrderIds(), got.getOrderIds());
+        }
+        assertNotEquals(expected.getAsks().size(), engine.snapshot().getAsks().size());
+    }
+
+    /**
+     * Test that the market data listener sees one trade and the new level state per level swept, and level changes from resting and cancelling.
+     */
+    @Test
+    public void testMarketDataListener() {
+        List<String> events = new ArrayList<>();
+        matchingEngine.setMarketDataListener(new MarketDataListener() {
+            @Override
+            public void onLevelUpdate(String symbol, OrderType side, long price, long quantity, int orderCount) {
+                events.add("level " + side + " " + Prices.toPrice(price) + " " + quantity + "/" + orderCount);
+            }
+
+            @Override
+            public void onTrade(String symbol, OrderType aggressorSide, long price, int quantity) {
+                events.add("trade " + aggressorSide + " " + Prices.toPrice(price) + " " + quantity);
+            }
+        });
+
+        matchingEngine.processMarketOrder(OrderType.BUY, 12, "1233");
+        long orderId = matchingEngine.processLimitOrder(OrderType.BUY, 4, 104.0, "1233", 1).getOrderId();
+        matchingEngine.cancelOrder(orderId, "1233", 2);
+
+        assertEquals(List.of(
+                "trade BUY 106.0 10", "level SELL 106.0 0/0",
+                "trade BUY 107.0 2", "level SELL 107.0 3/1",
+                "level BUY 104.0 9/2",
+                "level BUY 104.0 5/1"), events);
+    }
+
+    /**
+     * Test concurrent publishing of multiple SELL market orders through the single-writer matching core.
+     * The BUY side holds 15 in total: one SELL market order of 10 is FILLED, one is PARTIALLY_FILLED with 5 and the rest rejected.
+     */
+    @Test
+    public void testConcurrentSellMarketOrders() throws Exception {
+        int numThreads = 5;
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+        try (MatchingCore matchingCore = new MatchingCore("test-shard", List.of(matchingEngine), 16, WaitStrategy.YIELDING).start();
+             ExecutorService executor = Executors.newFixedThreadPool(numThreads)) {
             for (int i = 0; i < numThreads; i++) {
-                futures.add(executor.submit(task));
+                executor.submit(() -> matchingCore.publish(new MarketOrder(OrderType.SELL, 10, "concurrentSell"),
+                        matchingEngine.getSymbol(), reports::add));
             }
             executor.shutdown();
             assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS), "Executor did not terminate in time");
 
             int filledCount = 0;
+            int partiallyFilledCount = 0;
             int rejectedCount = 0;
-            for (Future<ExecutionReport> future : futures) {
-                ExecutionReport report = future.get();
+            for (int i = 0; i < numThreads; i++) {
+                ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+                assertNotNull(report, "Missing execution report");
                 if ("FILLED".equals(report.getStatus())) {
                     filledCount++;
+                } else if ("PARTIALLY_FILLED".equals(report.getStatus())) {
+                    partiallyFilledCount++;
                 } else if ("REJECTED".equals(report.getStatus())) {
                     rejectedCount++;
                 }
             }
 
             assertEquals(1, filledCount, "Only one SELL market order should be filled.");
-            assertEquals(numThreads - 1, rejectedCount, "The remaining SELL market orders should be rejected.");
+            assertEquals(1, partiallyFilledCount, "One SELL market order should take the remaining 5.");
+            assertEquals(numThreads - 2, rejectedCount, "The remaining SELL market orders should be rejected.");
+            assertEquals(numThreads, matchingCore.lastSequence(), "Every event should have been sequenced.");
         }
     }
 }
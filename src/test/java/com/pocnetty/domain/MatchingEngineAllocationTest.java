@@ -0,0 +1,57 @@
+package com.pocnetty.domain;
+
+import com.pocnetty.domain.enums.OrderType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MatchingEngineAllocationTest {
+
+    private static final int ITERATIONS = 20_000;
+
+    /**
+     * Test that the matching path allocates nothing once the book has reached its working size.
+     * Each iteration rests, replaces and cancels limit orders, crosses the spread with a limit
+     * order and sweeps levels with a market order, so every kind of request is counted.
+     */
+    @Test
+    public void testSteadyStateMatchingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counting is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        MatchingEngine engine = new MatchingEngine("ALLOC");
+        String maker = "maker";
+        String taker = "taker";
+        long id = Thread.currentThread().getId();
+
+        //the warm-up grows every array to its working size and lets the JIT compile the path
+        run(engine, maker, taker, ITERATIONS);
+        long before = threads.getThreadAllocatedBytes(id);
+        run(engine, maker, taker, ITERATIONS);
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        assertTrue(allocated < ITERATIONS, "Expected no allocation per order, got " + allocated + " bytes for "
+                + ITERATIONS + " iterations");
+    }
+
+    private static void run(MatchingEngine engine, String maker, String taker, int iterations) {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bidPrice = Prices.toTicks(99.0 - (i & 7));
+            long askPrice = Prices.toTicks(101.0 + (i & 7));
+            long bid = engine.executeLimitOrder(OrderType.BUY, 10, bidPrice, maker, i).getOrderId();
+            long ask = engine.executeLimitOrder(OrderType.SELL, 10, askPrice, maker, i).getOrderId();
+            checksum += engine.executeReplace(bid, 5, bidPrice, maker, i).getLeavesQuantity();
+            checksum += engine.executeReplace(ask, 20, askPrice, maker, i).getLeavesQuantity();
+            checksum += engine.executeLimitOrder(OrderType.BUY, 15, askPrice, taker, i).getExecutedQuantity();
+            checksum += engine.executeMarketOrder(OrderType.SELL, 3, taker, i).getFillCount();
+            checksum += engine.executeCancel(bid, maker, i).getInitialQuantity();
+            checksum += engine.executeCancel(ask, maker, i).getInitialQuantity();
+        }
+        assertTrue(checksum > 0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.pocnetty.domain.book;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIntHashMapTest {
+
+    /**
+     * Test that random puts and removes, including across resizes and colliding probe runs, agree with a HashMap.
+     */
+    @Test
+    public void testAgreesWithHashMap() {
+        LongIntHashMap map = new LongIntHashMap(4, -1);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1), map.remove(key));
+                expected.remove(key);
+            } else {
+                assertEquals(expected.getOrDefault(key, -1), map.put(key, i));
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+        }
+    }
+
+    /**
+     * Test that the reserved key is refused instead of silently corrupting the table.
+     */
+    @Test
+    public void testZeroKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongIntHashMap(16, -1).put(0, 1));
+    }
+}
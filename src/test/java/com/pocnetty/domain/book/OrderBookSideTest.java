@@ -0,0 +1,170 @@
+package com.pocnetty.domain.book;
+
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.enums.OrderType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static com.pocnetty.domain.book.OrderStore.NONE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderBookSideTest {
+
+    /**
+     * Test that BUY levels are ordered highest price first and the best level follows inserts and removals.
+     */
+    @Test
+    public void testBuySideBestLevel() {
+        OrderBookSide side = new OrderBookSide(OrderType.BUY);
+        add(side, 1, 104.0, 5);
+        int best = add(side, 2, 105.0, 10);
+        add(side, 3, 103.0, 1);
+
+        assertEquals(105.0, bestPrice(side));
+        assertEquals(List.of(105.0, 104.0, 103.0), prices(side));
+
+        side.remove(best);
+        assertEquals(104.0, bestPrice(side));
+        assertEquals(2, side.levelCount());
+    }
+
+    /**
+     * Test that SELL levels are ordered lowest price first, including levels opened below the best and in between.
+     */
+    @Test
+    public void testSellSideBestLevel() {
+        OrderBookSide side = new OrderBookSide(OrderType.SELL);
+        add(side, 1, 107.0, 5);
+        add(side, 2, 106.0, 10);
+        add(side, 3, 109.0, 1);
+        int middle = add(side, 4, 108.0, 1);
+
+        assertEquals(106.0, bestPrice(side));
+        assertEquals(List.of(106.0, 107.0, 108.0, 109.0), prices(side));
+
+        side.remove(middle);
+        assertEquals(List.of(106.0, 107.0, 109.0), prices(side));
+    }
+
+    /**
+     * Test that orders at the same price keep arrival order and that removing from the middle keeps the queue intact.
+     */
+    @Test
+    public void testFifoWithinLevel() {
+        OrderBookSide side = new OrderBookSide(OrderType.SELL);
+        OrderStore orders = side.orders();
+        int first = add(side, 1, 100.0, 1);
+        int second = add(side, 2, 100.0, 2);
+        int third = add(side, 3, 100.0, 3);
+
+        int level = side.bestLevel();
+        assertEquals(first, side.levelHead(level));
+        assertEquals(6, side.levelQuantity(level));
+
+        side.remove(second);
+        assertFalse(orders.isResting(second));
+        assertEquals(third, orders.next(first));
+        assertEquals(4, side.levelQuantity(level));
+        assertEquals(2, side.levelOrderCount(level));
+
+        side.remove(first);
+        side.remove(third);
+        assertTrue(side.isEmpty());
+        assertEquals(NONE, side.bestLevel());
+        assertEquals(0, orders.count());
+    }
+
+    /**
+     * Test that freed order and level slots are reused, so a book that keeps its size stops growing its arrays.
+     */
+    @Test
+    public void testSlotsAreReused() {
+        OrderBookSide side = new OrderBookSide(OrderType.BUY);
+        int order = add(side, 1, 100.0, 1);
+        int level = side.bestLevel();
+        side.fill(order, 1);
+
+        assertEquals(order, add(side, 2, 101.0, 1));
+        assertEquals(level, side.bestLevel());
+        assertEquals(101.0, bestPrice(side));
+    }
+
+    /**
+     * Test that levels stay sorted through random opens and closes anywhere in a book deep enough to grow the arrays,
+     * and through a sweep of the whole book.
+     */
+    @Test
+    public void testLevelsStaySortedAsTheBookGrows() {
+        OrderBookSide side = new OrderBookSide(OrderType.SELL);
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        Random random = new Random(7);
+        for (int i = 1; i <= 20_000; i++) {
+            long price = 1_000_000 + random.nextInt(2_000);
+            if (!expected.containsKey(price)) {
+                expected.put(price, side.add(i, price, 1, "A"));
+            } else if (random.nextBoolean()) {
+                side.remove(expected.remove(price));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), ticks(side));
+        assertEquals(expected.size(), side.levelCount());
+        for (long price = 1_000_000; price < 1_002_000; price++) {
+            Integer order = expected.get(price);
+            assertEquals(order == null ? NONE : side.orders().level(order), side.findLevel(price));
+        }
+
+        //a deep book seeded from the top down only ever opens levels below the worst one
+        OrderBookSide buys = new OrderBookSide(OrderType.BUY);
+        List<Long> seeded = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            seeded.add(1_000_000L - i);
+            buys.add(i + 1, 1_000_000L - i, 1, "A");
+        }
+        assertEquals(seeded, ticks(buys));
+
+        //a second order at each price joins its level, wherever the level sits
+        for (int i = 0; i < 10_000; i++) {
+            buys.add(10_001 + i, seeded.get(i), 1, "B");
+        }
+        assertEquals(seeded, ticks(buys));
+        assertEquals(10_000, buys.levelCount());
+
+        //sweeping it from the top brings the deeper levels forward in order
+        for (long expectedBest : seeded) {
+            int level = buys.bestLevel();
+            assertEquals(expectedBest, buys.levelPrice(level));
+            assertEquals(2, buys.levelOrderCount(level));
+            buys.remove(buys.levelHead(level));
+            buys.remove(buys.levelHead(level));
+        }
+        assertTrue(buys.isEmpty());
+    }
+
+    private static int add(OrderBookSide side, long orderId, double price, int quantity) {
+        return side.add(orderId, Prices.toTicks(price), quantity, "A" + orderId);
+    }
+
+    private static double bestPrice(OrderBookSide side) {
+        return Prices.toPrice(side.levelPrice(side.bestLevel()));
+    }
+
+    private static List<Double> prices(OrderBookSide side) {
+        List<Double> prices = new ArrayList<>();
+        for (int level = side.bestLevel(); level != NONE; level = side.nextLevel(level)) {
+            prices.add(Prices.toPrice(side.levelPrice(level)));
+        }
+        return prices;
+    }
+
+    private static List<Long> ticks(OrderBookSide side) {
+        List<Long> ticks = new ArrayList<>();
+        for (int level = side.bestLevel(); level != NONE; level = side.nextLevel(level)) {
+            ticks.add(side.levelPrice(level));
+        }
+        return ticks;
+    }
+}
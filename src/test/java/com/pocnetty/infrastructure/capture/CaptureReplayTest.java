@@ -0,0 +1,96 @@
+package com.pocnetty.infrastructure.capture;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptureReplayTest {
+
+    /**
+     * Test that a synthetic capture replays to identical reports, as fast as possible and at its recorded pace.
+     */
+    @Test
+    public void testSyntheticCaptureReplays(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("synthetic" + CaptureFormat.FILE_SUFFIX);
+        CaptureReplay.generate(file, 50_000, 7, 1_000_000);
+
+        ReplayResult fast = CaptureReplay.replay(file, false);
+        assertEquals(50_000, fast.getMessages());
+        assertEquals(0, fast.getMismatches(), fast.getFirstMismatch());
+        assertEquals(50_000, fast.getLatency().getTotalCount());
+
+        ReplayResult paced = CaptureReplay.replay(file, true);
+        assertEquals(0, paced.getMismatches(), paced.getFirstMismatch());
+        assertTrue(paced.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(49), "Recorded pacing is 50 ms of flow");
+    }
+
+    /**
+     * Test that the order flow a running shard captured, starting from a seeded book, replays to the reports it sent.
+     */
+    @Test
+    public void testRecordedFlowReplays(@TempDir Path dir) throws Exception {
+        AppProperties.Engine properties = new AppProperties.Engine();
+        properties.setRingBufferSize(16);
+        properties.setDemoBook(true);
+        properties.getCapture().setEnabled(true);
+        properties.getCapture().setDirectory(dir.toString());
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+
+        try (InstrumentRouter router = new InstrumentRouter(properties, new AppProperties.Journal()).start()) {
+            assertTrue(router.publish(OrderRequest.limit(OrderType.BUY, 10, Prices.toTicks(1.0), "1", null, 1), reports::add));
+            assertTrue(router.publish(new MarketOrder(OrderType.BUY, 4, "2"), reports::add));
+            assertTrue(router.publish(OrderRequest.cancel(999, "3", null, 3), reports::add));
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(reports.poll(5, TimeUnit.SECONDS));
+            }
+            long orderId = 0;
+            for (ExecutionReport report : List.copyOf(reports)) {
+                orderId = Math.max(orderId, report.getOrderId());
+            }
+            assertTrue(router.publish(OrderRequest.replace(orderId, 5, Prices.toTicks(1.5), "1", null, 4), reports::add));
+            assertNotNull(reports.poll(5, TimeUnit.SECONDS));
+        }
+
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.filter(path -> path.toString().endsWith(CaptureFormat.FILE_SUFFIX)).findFirst().orElseThrow();
+        }
+        ReplayResult result = CaptureReplay.replay(file, false);
+        assertEquals(4, result.getMessages());
+        assertEquals(0, result.getMismatches(), result.getFirstMismatch());
+    }
+
+    /**
+     * Test that a report differing from the recorded one is reported.
+     */
+    @Test
+    public void testMismatchDetected(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("tampered" + CaptureFormat.FILE_SUFFIX);
+        CaptureReplay.generate(file, 100, 7, 1_000_000);
+        byte[] bytes = Files.readAllBytes(file);
+        //the last bytes of the file end the last record's report
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        ReplayResult result = CaptureReplay.replay(file, false);
+        assertEquals(100, result.getMessages());
+        assertEquals(1, result.getMismatches());
+        assertTrue(result.getFirstMismatch().startsWith("sequence 100 "), result.getFirstMismatch());
+    }
+}
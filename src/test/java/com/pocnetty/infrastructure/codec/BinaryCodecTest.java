@@ -0,0 +1,189 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTest {
+
+    /**
+     * Test that a market order survives the client encoder and server decoder, even when the frame arrives in pieces.
+     */
+    @Test
+    public void testMarketOrderRoundTrip() {
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryOrderEncoder());
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryOrderDecoder());
+
+        assertTrue(client.writeOutbound(new MarketOrder(OrderType.SELL, 42, "ACC-1", "MSFT", 9_000_000_001L)));
+        ByteBuf frame = client.readOutbound();
+        assertEquals(BinaryProtocol.LENGTH_FIELD_SIZE + BinaryProtocol.MARKET_ORDER_LENGTH, frame.readableBytes());
+
+        assertFalse(server.writeInbound(frame.readRetainedSlice(5)));
+        assertTrue(server.writeInbound(frame));
+        OrderRequest decoded = server.readInbound();
+        assertEquals(OrderAction.MARKET, decoded.getAction());
+        assertEquals(OrderType.SELL, decoded.getType());
+        assertEquals(42, decoded.getQuantity());
+        assertEquals("ACC-1", decoded.getAccountId());
+        assertEquals("MSFT", decoded.getSymbol());
+        assertEquals(9_000_000_001L, decoded.getClientOrderId());
+    }
+
+    /**
+     * Test that limit, cancel and cancel/replace requests survive the client encoder and server decoder.
+     */
+    @Test
+    public void testOrderEntryRoundTrip() {
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryOrderEncoder());
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryOrderDecoder());
+
+        client.writeOutbound(OrderRequest.limit(OrderType.BUY, 25, Prices.toTicks(105.25), "ACC-1", "MSFT", 11));
+        server.writeInbound((ByteBuf) client.readOutbound());
+        OrderRequest limit = server.readInbound();
+        assertEquals(OrderAction.NEW_LIMIT, limit.getAction());
+        assertEquals(OrderType.BUY, limit.getType());
+        assertEquals(25, limit.getQuantity());
+        assertEquals(Prices.toTicks(105.25), limit.getPrice());
+        assertEquals("MSFT", limit.getSymbol());
+        assertEquals(11, limit.getClientOrderId());
+
+        client.writeOutbound(OrderRequest.cancel(1L << 40, "ACC-1", "MSFT", 12));
+        server.writeInbound((ByteBuf) client.readOutbound());
+        OrderRequest cancel = server.readInbound();
+        assertEquals(OrderAction.CANCEL, cancel.getAction());
+        assertEquals(1L << 40, cancel.getOrderId());
+        assertEquals("ACC-1", cancel.getAccountId());
+        assertEquals(12, cancel.getClientOrderId());
+
+        client.writeOutbound(OrderRequest.replace(7, 30, Prices.toTicks(104.5), "ACC-1", null, 13));
+        server.writeInbound((ByteBuf) client.readOutbound());
+        OrderRequest replace = server.readInbound();
+        assertEquals(OrderAction.CANCEL_REPLACE, replace.getAction());
+        assertEquals(7, replace.getOrderId());
+        assertEquals(30, replace.getQuantity());
+        assertEquals(Prices.toTicks(104.5), replace.getPrice());
+        assertNull(replace.getSymbol());
+        assertEquals(13, replace.getClientOrderId());
+    }
+
+    /**
+     * Test that consecutive orders from the same account reuse the decoded account id instead of allocating a new String.
+     */
+    @Test
+    public void testAccountIdIsCached() {
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryOrderEncoder());
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryOrderDecoder());
+
+        client.writeOutbound(new MarketOrder(OrderType.BUY, 1, "1233"));
+        server.writeInbound((ByteBuf) client.readOutbound());
+        String first = ((OrderRequest) server.readInbound()).getAccountId();
+
+        client.writeOutbound(new MarketOrder(OrderType.BUY, 2, "1233"));
+        server.writeInbound((ByteBuf) client.readOutbound());
+        String second = ((OrderRequest) server.readInbound()).getAccountId();
+
+        assertSame(first, second);
+    }
+
+    /**
+     * Test that an execution report with per-level fills survives the server encoder and client decoder.
+     */
+    @Test
+    public void testExecutionReportRoundTrip() {
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryReportEncoder());
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryReportDecoder());
+
+        ExecutionReport report = new ExecutionReport(20, 106.1666, 12, 8, "1212", "AAPL", "PARTIALLY_FILLED",
+                new double[]{106.0, 107.0}, new int[]{10, 2}, 77, 5);
+        assertTrue(server.writeOutbound(report));
+        assertTrue(client.writeInbound((ByteBuf) server.readOutbound()));
+
+        ExecutionReport decoded = client.readInbound();
+        assertEquals("PARTIALLY_FILLED", decoded.getStatus());
+        assertEquals(20, decoded.getInitialQuantity());
+        assertEquals(106.1666, decoded.getExecutedPrice());
+        assertEquals(12, decoded.getExecutedQuantity());
+        assertEquals(8, decoded.getLeavesQuantity());
+        assertEquals("1212", decoded.getAccountId());
+        assertEquals("AAPL", decoded.getSymbol());
+        assertArrayEquals(new double[]{106.0, 107.0}, decoded.getFillPrices());
+        assertArrayEquals(new int[]{10, 2}, decoded.getFillQuantities());
+        assertEquals(77, decoded.getClientOrderId());
+        assertEquals(5, decoded.getOrderId());
+    }
+
+    /**
+     * Test that an order swept through 700 levels reports at most {@link BinaryProtocol#MAX_FILLS} fills, which fit a
+     * frame the client accepts, and that a report with more fills is refused rather than written.
+     */
+    @Test
+    public void testDeepSweepFitsFrame() {
+        MatchingEngine engine = new MatchingEngine("AAPL");
+        for (int i = 0; i < 700; i++) {
+            engine.executeLimitOrder(OrderType.SELL, 1, Prices.toTicks(100.0 + i), "1", 0);
+        }
+        ExecutionReport report = engine.processMarketOrder(OrderType.BUY, 700, "2", 1);
+        assertEquals(BinaryProtocol.MAX_FILLS, report.getFillPrices().length);
+
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryReportEncoder());
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryReportDecoder());
+        assertTrue(server.writeOutbound(report));
+        ByteBuf frame = server.readOutbound();
+        assertTrue(frame.readableBytes() - BinaryProtocol.LENGTH_FIELD_SIZE <= BinaryProtocol.MAX_FRAME_LENGTH);
+        assertTrue(client.writeInbound(frame));
+        ExecutionReport decoded = client.readInbound();
+        assertEquals("PARTIALLY_FILLED", decoded.getStatus());
+        assertEquals(BinaryProtocol.MAX_FILLS, decoded.getExecutedQuantity());
+        assertEquals(700 - BinaryProtocol.MAX_FILLS, decoded.getLeavesQuantity());
+
+        ExecutionReport oversized = new ExecutionReport(700, 100.0, 700, 0, "2", "AAPL", "FILLED",
+                new double[700], new int[700], 1, 0);
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.executionReportLength(oversized));
+    }
+
+    /**
+     * Test that a rejected report keeps its zero executed price and quantity across the wire.
+     */
+    @Test
+    public void testRejectedReportRoundTrip() {
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryReportEncoder());
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryReportDecoder());
+
+        server.writeOutbound(new ExecutionReport(7, 0, 0, "1111", "REJECTED"));
+        client.writeInbound((ByteBuf) server.readOutbound());
+
+        ExecutionReport decoded = client.readInbound();
+        assertEquals("REJECTED", decoded.getStatus());
+        assertEquals(0, decoded.getExecutedPrice());
+        assertEquals(0, decoded.getExecutedQuantity());
+        assertEquals(7, decoded.getLeavesQuantity());
+        assertNull(decoded.getRejectReason());
+    }
+
+    /**
+     * Test that the reason of a risk rejection survives the wire.
+     */
+    @Test
+    public void testRejectReasonRoundTrip() {
+        EmbeddedChannel server = new EmbeddedChannel(new BinaryReportEncoder());
+        EmbeddedChannel client = new EmbeddedChannel(new BinaryReportDecoder());
+
+        server.writeOutbound(ExecutionReport.rejected(7, "1111", "AAPL", 3, 0, RejectReason.POSITION_LIMIT));
+        client.writeInbound((ByteBuf) server.readOutbound());
+
+        ExecutionReport decoded = client.readInbound();
+        assertEquals("REJECTED", decoded.getStatus());
+        assertEquals(RejectReason.POSITION_LIMIT, decoded.getRejectReason());
+        assertEquals(3, decoded.getClientOrderId());
+    }
+}
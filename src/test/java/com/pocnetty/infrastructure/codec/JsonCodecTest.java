@@ -0,0 +1,93 @@
+package com.pocnetty.infrastructure.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonCodecTest {
+
+    /**
+     * Test that lines split across reads are framed and bound, from direct and heap buffers alike.
+     */
+    @Test
+    public void testDecodeLines() {
+        EmbeddedChannel server = new EmbeddedChannel(new LineBasedFrameDecoder(8192), new JsonOrderDecoder());
+        String limit = "{\"action\":\"NEW_LIMIT\",\"type\":\"BUY\",\"quantity\":25,\"price\":105.25,\"accountId\":\"ACC-1\","
+                + "\"symbol\":\"MSFT\",\"clientOrderId\":11}\n";
+        String market = "{\"type\":\"SELL\",\"quantity\":7,\"accountId\":\"ACC-2\"}\n";
+        byte[] bytes = (limit + market).getBytes(CharsetUtil.UTF_8);
+
+        server.writeInbound(Unpooled.directBuffer().writeBytes(bytes, 0, 20));
+        server.writeInbound(Unpooled.wrappedBuffer(bytes, 20, bytes.length - 20));
+        OrderRequest first = server.readInbound();
+        assertEquals(OrderAction.NEW_LIMIT, first.getAction());
+        assertEquals(OrderType.BUY, first.getType());
+        assertEquals(25, first.getQuantity());
+        assertEquals(Prices.toTicks(105.25), first.getPrice());
+        assertEquals("MSFT", first.getSymbol());
+        assertEquals(11, first.getClientOrderId());
+        OrderRequest second = server.readInbound();
+        assertEquals(OrderAction.MARKET, second.getAction());
+        assertEquals(OrderType.SELL, second.getType());
+        assertEquals("ACC-2", second.getAccountId());
+        assertNull(server.readInbound());
+        assertFalse(server.finishAndReleaseAll());
+    }
+
+    /**
+     * Test that a line that cannot be parsed is answered with a REJECTED report and the channel stays open.
+     */
+    @Test
+    public void testMalformedLineRejected() {
+        EmbeddedChannel server = new EmbeddedChannel(new JsonOrderDecoder());
+
+        server.writeInbound(Unpooled.copiedBuffer("{\"quantity\":", CharsetUtil.UTF_8));
+        assertNull(server.readInbound());
+        ExecutionReport rejected = server.readOutbound();
+        assertEquals("REJECTED", rejected.getStatus());
+        assertTrue(server.isActive());
+    }
+
+    /**
+     * Test that an order whose account id would not survive the journal's one byte per character is rejected.
+     */
+    @Test
+    public void testNonAsciiAccountRejected() {
+        EmbeddedChannel server = new EmbeddedChannel(new JsonOrderDecoder());
+
+        server.writeInbound(Unpooled.copiedBuffer("{\"type\":\"BUY\",\"quantity\":3,\"accountId\":\"Zoë\",\"clientOrderId\":8}",
+                CharsetUtil.UTF_8));
+        assertNull(server.readInbound());
+        ExecutionReport rejected = server.readOutbound();
+        assertEquals("REJECTED", rejected.getStatus());
+        assertEquals(8, rejected.getClientOrderId());
+        assertEquals("Zoë", rejected.getAccountId());
+    }
+
+    /**
+     * Test that a report is written as the same JSON line the object mapper produces, delimiter included.
+     */
+    @Test
+    public void testEncodeReport() throws Exception {
+        EmbeddedChannel server = new EmbeddedChannel(new JsonReportEncoder());
+        ExecutionReport report = new ExecutionReport(15, 105.6667, 15, 0, "ACC-1", "MSFT", "FILLED",
+                new double[]{105.0, 107.0}, new int[]{10, 5}, 42, 7);
+
+        assertTrue(server.writeOutbound(report));
+        ByteBuf line = server.readOutbound();
+        assertTrue(line.isDirect());
+        assertEquals(new ObjectMapper().writeValueAsString(report) + "\n", line.toString(CharsetUtil.UTF_8));
+        line.release();
+    }
+}
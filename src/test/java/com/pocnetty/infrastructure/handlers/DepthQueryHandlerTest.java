@@ -0,0 +1,101 @@
+package com.pocnetty.infrastructure.handlers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.DepthReport;
+import com.pocnetty.domain.dto.DepthRequest;
+import com.pocnetty.infrastructure.codec.BinaryOrderDecoder;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.BinaryReportEncoder;
+import com.pocnetty.infrastructure.codec.JsonOrderDecoder;
+import com.pocnetty.infrastructure.codec.JsonReportEncoder;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DepthQueryHandlerTest {
+
+    /**
+     * Test that a JSON depth query is answered from the cached levels, truncated to the levels asked for, and that an
+     * unknown symbol is rejected.
+     */
+    @Test
+    public void testJsonQuery() throws Exception {
+        try (InstrumentRouter router = newRouter()) {
+            EmbeddedChannel channel = new EmbeddedChannel(new JsonReportEncoder(), new JsonOrderDecoder(),
+                    new DepthQueryHandler(router), new MatchingEngineHandler(router));
+
+            channel.writeInbound(line("{\"query\":\"DEPTH\",\"symbol\":\"DEFAULT\",\"levels\":1,\"requestId\":9}"));
+            channel.writeInbound(line("{\"query\":\"DEPTH\",\"symbol\":\"NOPE\",\"requestId\":10}"));
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode depth = mapper.readTree(text(channel.readOutbound()));
+            assertEquals("depth", depth.get("type").asText());
+            assertEquals(9, depth.get("requestId").asLong());
+            assertEquals(1, depth.get("bids").size());
+            assertEquals(105.0, depth.get("bids").get(0).get("price").asDouble());
+            assertEquals(10, depth.get("bids").get(0).get("quantity").asLong());
+            assertEquals(106.0, depth.get("asks").get(0).get("price").asDouble());
+            JsonNode rejected = mapper.readTree(text(channel.readOutbound()));
+            assertEquals("REJECTED", rejected.get("status").asText());
+            assertEquals(10, rejected.get("clientOrderId").asLong());
+            assertEquals(0, router.shards().get(0).queueDepth());
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * Test that a binary depth query survives the client encoder and server decoder, and its report the server
+     * encoder and client decoder, with every level the server keeps.
+     */
+    @Test
+    public void testBinaryQuery() throws Exception {
+        try (InstrumentRouter router = newRouter()) {
+            EmbeddedChannel client = new EmbeddedChannel(new BinaryReportDecoder(), new BinaryOrderEncoder());
+            EmbeddedChannel server = new EmbeddedChannel(new BinaryOrderDecoder(), new BinaryReportEncoder(),
+                    new DepthQueryHandler(router), new MatchingEngineHandler(router));
+
+            client.writeOutbound(new DepthRequest(null, 0, 11));
+            server.writeInbound((ByteBuf) client.readOutbound());
+            client.writeInbound((ByteBuf) server.readOutbound());
+            DepthReport report = client.readInbound();
+            assertEquals(11, report.getRequestId());
+            assertEquals("DEFAULT", report.getDepth().getSymbol());
+            assertEquals(2, report.bidCount());
+            assertEquals(2, report.askCount());
+            assertEquals(Prices.toTicks(104.0), report.getDepth().getBids().getPrices()[1]);
+            assertEquals(5, report.getDepth().getAsks().getQuantities()[1]);
+            assertEquals(1, report.getDepth().getAsks().getOrderCounts()[1]);
+            assertFalse(client.inboundMessages().stream().anyMatch(ExecutionReport.class::isInstance));
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    private static InstrumentRouter newRouter() {
+        AppProperties.Engine properties = new AppProperties.Engine();
+        properties.setRingBufferSize(16);
+        properties.setDemoBook(true);
+        return new InstrumentRouter(properties, new AppProperties.Journal()).start();
+    }
+
+    private static ByteBuf line(String json) {
+        return Unpooled.copiedBuffer(json, CharsetUtil.UTF_8);
+    }
+
+    private static String text(ByteBuf buffer) {
+        try {
+            return buffer.toString(CharsetUtil.UTF_8);
+        } finally {
+            buffer.release();
+        }
+    }
+}
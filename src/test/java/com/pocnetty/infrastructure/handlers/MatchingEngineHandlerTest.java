@@ -0,0 +1,72 @@
+package com.pocnetty.infrastructure.handlers;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.metrics.ServerMetrics;
+import com.pocnetty.infrastructure.sequencer.InstrumentRouter;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchingEngineHandlerTest {
+
+    /**
+     * Test that orders beyond the in-flight limit are answered THROTTLED without reaching the shard, flushed once the read completes.
+     */
+    @Test
+    public void testOrdersBeyondTheInFlightLimitAreThrottled() throws Exception {
+        //never started, so published orders stay in flight
+        InstrumentRouter router = new InstrumentRouter(new AppProperties.Engine(), new AppProperties.Journal());
+        EmbeddedChannel channel = new EmbeddedChannel(new MatchingEngineHandler(router, ServerMetrics.NONE, 2));
+
+        for (long clientOrderId = 1; clientOrderId <= 3; clientOrderId++) {
+            channel.pipeline().fireChannelRead(order(clientOrderId));
+        }
+        assertNull(channel.readOutbound(), "Reports written while reading should wait for the read to complete");
+        channel.pipeline().fireChannelReadComplete();
+
+        ExecutionReport report = channel.readOutbound();
+        assertEquals("THROTTLED", report.getStatus());
+        assertEquals(3, report.getClientOrderId());
+        assertNull(channel.readOutbound());
+        assertEquals(2, router.shards().get(0).queueDepth());
+        channel.finishAndReleaseAll();
+        router.close();
+    }
+
+    /**
+     * Test that the channel stops reading while its outbound buffer is above the high water mark.
+     */
+    @Test
+    public void testReadingPausesWhileTheClientDoesNotRead() throws Exception {
+        InstrumentRouter router = new InstrumentRouter(new AppProperties.Engine(), new AppProperties.Journal());
+        EmbeddedChannel channel = new EmbeddedChannel(new MatchingEngineHandler(router));
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+
+        channel.write(Unpooled.wrappedBuffer(new byte[64]));
+        assertFalse(channel.isWritable());
+        assertFalse(channel.config().isAutoRead());
+
+        channel.flush();
+        assertTrue(channel.isWritable());
+        assertTrue(channel.config().isAutoRead());
+        channel.finishAndReleaseAll();
+        router.close();
+    }
+
+    private static OrderRequest order(long clientOrderId) {
+        OrderRequest request = new OrderRequest();
+        request.setAction(OrderAction.MARKET);
+        request.setType(OrderType.BUY);
+        request.setQuantity(1);
+        request.setAccountId("1233");
+        request.setClientOrderId(clientOrderId);
+        return request;
+    }
+}
@@ -0,0 +1,174 @@
+package com.pocnetty.infrastructure.journal;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.sequencer.WaitStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that records written across several segments are replayed in order and that appending continues the sequence.
+     */
+    @Test
+    public void testAppendAndReplayAcrossSegments() throws Exception {
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.BATCH, 16, 1000)) {
+            assertEquals(0, journal.replay(record -> fail("Journal should be empty")));
+            JournalRecord record = new JournalRecord();
+            for (int i = 1; i <= 500; i++) {
+                journal.append(record.marketOrder(i, i, i % 2 == 0 ? OrderType.BUY : OrderType.SELL, i, "AAPL", "acc" + i));
+            }
+        }
+        assertTrue(segmentCount() > 1, "Small segments should have rolled");
+
+        List<String> replayed = new ArrayList<>();
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.OS, 1, 0)) {
+            assertEquals(500, journal.replay(record -> replayed.add(record.getSequence() + ":" + record.getSide()
+                    + ":" + record.getQuantity() + ":" + record.getSymbol() + ":" + record.getAccountId())));
+            assertEquals(500, journal.lastSequence());
+            journal.append(new JournalRecord().marketOrder(501, 0, OrderType.BUY, 1, "AAPL", null));
+        }
+        assertEquals("1:SELL:1:AAPL:acc1", replayed.get(0));
+        assertEquals("500:BUY:500:AAPL:acc500", replayed.get(499));
+
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.OS, 1, 0)) {
+            assertEquals(501, journal.replay(record -> {
+            }));
+        }
+    }
+
+    /**
+     * Test that a torn record at the tail of the last segment is dropped and overwritten by the next append.
+     */
+    @Test
+    public void testTornTailIsDiscarded() throws Exception {
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.EVERY_EVENT, 1, 0)) {
+            journal.replay(record -> {
+            });
+            JournalRecord record = new JournalRecord();
+            journal.append(record.marketOrder(1, 0, OrderType.BUY, 10, "AAPL", "1"));
+            journal.append(record.marketOrder(2, 0, OrderType.BUY, 20, "AAPL", "1"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            //corrupt the quantity of the second record, as if it had only been partially written
+            long secondRecord = 4 + file.readUnsignedByte() + ((long) file.readUnsignedByte() << 8);
+            file.seek(secondRecord + 4 + 8 + 8 + 2);
+            file.writeInt(0xDEAD);
+        }
+
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.EVERY_EVENT, 1, 0)) {
+            assertEquals(1, journal.replay(record -> assertEquals(10, record.getQuantity())));
+            journal.append(new JournalRecord().marketOrder(2, 0, OrderType.SELL, 30, "AAPL", "1"));
+        }
+        List<Integer> quantities = new ArrayList<>();
+        try (Journal journal = new Journal(directory, 4096, FsyncPolicy.EVERY_EVENT, 1, 0)) {
+            journal.replay(record -> quantities.add(record.getQuantity()));
+        }
+        assertEquals(List.of(10, 30), quantities);
+    }
+
+    /**
+     * Test that a matching core rebuilds its book from the journal after a restart.
+     * Expected: the BUY 10 applied before the restart consumed S1001, so the same order afterwards only finds S1002.
+     */
+    @Test
+    public void testMatchingCoreRecoversBook() throws Exception {
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+        try (MatchingCore core = newCore()) {
+            core.publish(new MarketOrder(OrderType.BUY, 10, "1"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            assertEquals("FILLED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+        }
+
+        try (MatchingCore core = newCore()) {
+            assertEquals(1, core.lastSequence());
+            core.publish(new MarketOrder(OrderType.BUY, 10, "1"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+            assertEquals("PARTIALLY_FILLED", report.getStatus());
+            assertEquals(107.0, report.getExecutedPrice());
+            assertEquals(2, core.lastSequence());
+        }
+    }
+
+    /**
+     * Test that limit orders, cancels and replaces are journaled and replayed into the same book and order ids.
+     */
+    @Test
+    public void testMatchingCoreRecoversLimitOrders() throws Exception {
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+        long kept;
+        try (MatchingCore core = newCore()) {
+            core.publish(OrderRequest.limit(OrderType.SELL, 3, Prices.toTicks(105.5), "1", null, 1), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            kept = reports.poll(5, TimeUnit.SECONDS).getOrderId();
+            core.publish(OrderRequest.limit(OrderType.SELL, 4, Prices.toTicks(105.75), "1", null, 2), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            long cancelled = reports.poll(5, TimeUnit.SECONDS).getOrderId();
+            core.publish(OrderRequest.cancel(cancelled, "1", null, 3), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            assertEquals("CANCELED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+            core.publish(OrderRequest.replace(kept, 2, Prices.toTicks(105.5), "1", null, 4), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            assertEquals("REPLACED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+        }
+
+        try (MatchingCore core = newCore()) {
+            assertEquals(4, core.lastSequence());
+            core.publish(new MarketOrder(OrderType.BUY, 3, "2"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+            assertArrayEquals(new double[]{105.5, 106.0}, report.getFillPrices());
+            assertArrayEquals(new int[]{2, 1}, report.getFillQuantities());
+
+            core.publish(OrderRequest.cancel(kept, "1", null, 5), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            assertEquals("REJECTED", reports.poll(5, TimeUnit.SECONDS).getStatus(), "The replayed order was filled");
+        }
+    }
+
+    /**
+     * Test that an account id too long for a record is refused with a reason before it is journaled.
+     */
+    @Test
+    public void testOverlongAccountRejected() throws Exception {
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+        try (MatchingCore core = newCore()) {
+            core.publish(new MarketOrder(OrderType.BUY, 1, "a".repeat(Journal.MAX_TEXT_LENGTH + 1)), MatchingEngine.DEFAULT_SYMBOL,
+                    reports::add);
+            ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+            assertEquals("REJECTED", report.getStatus());
+            assertEquals(RejectReason.INVALID_ACCOUNT, report.getRejectReason());
+            assertEquals(0, core.lastSequence());
+        }
+    }
+
+    private MatchingCore newCore() {
+        return new MatchingCore("journal-test", List.of(MatchingEngine.withDemoBook(MatchingEngine.DEFAULT_SYMBOL)), 16,
+                WaitStrategy.YIELDING, new Journal(directory, 4096, FsyncPolicy.EVERY_EVENT, 1, 0)).start();
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
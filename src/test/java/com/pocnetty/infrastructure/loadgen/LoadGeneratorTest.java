@@ -0,0 +1,63 @@
+package com.pocnetty.infrastructure.loadgen;
+
+import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    /**
+     * Test that the order schedule is open loop: orders fall due at the configured rate from the start time.
+     */
+    @Test
+    public void testScheduleIsFixedRate() {
+        OrderSchedule schedule = new OrderSchedule(1_000, 1_000, 10);
+
+        assertEquals(1_000, schedule.dueNanos(0));
+        assertEquals(1_000 + 3_000_000, schedule.dueNanos(3));
+        assertEquals(0, schedule.dueBy(999));
+        assertEquals(1, schedule.dueBy(1_000));
+        assertEquals(4, schedule.dueBy(1_000 + 3_500_000));
+        assertEquals(10, schedule.dueBy(Long.MAX_VALUE / 2), "Never more than the orders of the run");
+    }
+
+    /**
+     * Test that every order sent over each protocol is answered and correlated back to its connection.
+     */
+    @Test
+    public void testEveryOrderIsAnswered() throws Exception {
+        for (WireProtocol protocol : WireProtocol.values()) {
+            AppProperties.Listener listener = new AppProperties.Listener();
+            listener.setPort(0);
+            listener.setProtocol(protocol);
+            AppProperties.Server serverProperties = new AppProperties.Server();
+            serverProperties.setListeners(List.of(listener));
+            AppProperties.Engine engine = new AppProperties.Engine();
+            engine.setDemoBook(true);
+            MatchingEngineServer server = new MatchingEngineServer(serverProperties, engine,
+                    new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+            try {
+                AppProperties.LoadGenerator properties = new AppProperties.LoadGenerator();
+                properties.setConnections(3);
+                properties.setRatePerSecond(2_000);
+                properties.setDurationSeconds(1);
+                properties.setWarmupSeconds(0);
+                properties.setFlushBatchSize(4);
+
+                LoadResult result = new LoadGenerator("localhost", server.boundPorts().get(0), protocol, properties).run();
+
+                assertEquals(2_000, result.getSent(), protocol.name());
+                assertEquals(2_000, result.getReceived(), protocol.name());
+                assertEquals(2_000, result.getLatency().getTotalCount(), protocol.name());
+                assertTrue(result.getRejected() > 0, "The demo book runs dry, later orders are rejected");
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
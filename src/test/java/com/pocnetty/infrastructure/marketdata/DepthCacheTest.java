@@ -0,0 +1,51 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.enums.OrderType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DepthCacheTest {
+
+    /**
+     * Test that a book is only copied again once a change reaches its cached levels, and that the copy has the new levels.
+     */
+    @Test
+    public void testRepublishedOnlyWhenCachedLevelsChange() {
+        MatchingEngine engine = MatchingEngine.withDemoBook("ABC");
+        DepthCache cache = new DepthCache(List.of(engine), 1);
+        engine.setMarketDataListener(cache);
+        cache.publishAll(0);
+        BookDepth initial = cache.get("ABC");
+        assertEquals(1, initial.getBids().size());
+        assertEquals(Prices.toTicks(105.0), initial.getBids().getPrices()[0]);
+        assertNull(cache.get("XYZ"));
+
+        //behind the cached best bid and ask
+        engine.executeLimitOrder(OrderType.BUY, 3, Prices.toTicks(103.0), "1", 0);
+        engine.executeLimitOrder(OrderType.SELL, 3, Prices.toTicks(108.0), "1", 0);
+        cache.flush(2);
+        assertSame(initial, cache.get("ABC"));
+
+        //joins the best bid
+        engine.executeLimitOrder(OrderType.BUY, 4, Prices.toTicks(105.0), "1", 0);
+        cache.flush(3);
+        BookDepth joined = cache.get("ABC");
+        assertEquals(3, joined.getSequence());
+        assertEquals(14, joined.getBids().getQuantities()[0]);
+        assertEquals(2, joined.getBids().getOrderCounts()[0]);
+        assertEquals(Prices.toTicks(106.0), joined.getAsks().getPrices()[0]);
+        assertSame(initial.getAsks(), joined.getAsks(), "Only the side that changed is copied");
+
+        //sweeps the best ask, the next level moves up
+        engine.executeMarketOrder(OrderType.BUY, 10, "1", 0);
+        cache.flush(4);
+        assertEquals(Prices.toTicks(107.0), cache.get("ABC").getAsks().getPrices()[0]);
+        assertEquals(Prices.toTicks(106.0), joined.getAsks().getPrices()[0], "Published copies are never modified");
+    }
+}
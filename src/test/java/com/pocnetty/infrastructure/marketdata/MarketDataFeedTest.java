@@ -0,0 +1,160 @@
+package com.pocnetty.infrastructure.marketdata;
+
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.dto.MarketDataUpdate;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.MarketDataType;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.codec.BinaryMarketDataDecoder;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MarketDataFeedTest {
+
+    /**
+     * Test that a new subscriber first receives a full-depth refresh, then the trades and level updates of later orders.
+     */
+    @Test
+    public void testSubscriberSyncsThenFollowsTheBook() throws Exception {
+        AppProperties.Listener listener = new AppProperties.Listener();
+        listener.setPort(0);
+        listener.setProtocol(WireProtocol.BINARY);
+        AppProperties.Server serverProperties = new AppProperties.Server();
+        serverProperties.setListeners(List.of(listener));
+        serverProperties.getMarketData().setEnabled(true);
+        serverProperties.getMarketData().setPort(0);
+        serverProperties.getMarketData().setRefreshIntervalMillis(0);
+        AppProperties.Engine engine = new AppProperties.Engine();
+        engine.setDemoBook(true);
+        MatchingEngineServer server = new MatchingEngineServer(serverProperties, engine,
+                new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            BlockingQueue<MarketDataUpdate> updates = new LinkedBlockingQueue<>();
+            connect(group, server.marketDataPort(), new BinaryMarketDataDecoder(), new SimpleChannelInboundHandler<MarketDataUpdate>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, MarketDataUpdate update) {
+                    updates.add(update);
+                }
+            });
+
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.REFRESH, null, 0, 0);
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.LEVEL, OrderType.BUY, 105.0, 10);
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.LEVEL, OrderType.BUY, 104.0, 5);
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.LEVEL, OrderType.SELL, 106.0, 10);
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.LEVEL, OrderType.SELL, 107.0, 5);
+
+            Channel orders = connect(group, server.boundPorts().get(0), new BinaryReportDecoder(), new BinaryOrderEncoder());
+            orders.writeAndFlush(new MarketOrder(OrderType.BUY, 3, "1233")).sync();
+
+            MarketDataUpdate trade = updates.poll(5, TimeUnit.SECONDS);
+            assertUpdate(trade, MarketDataType.TRADE, OrderType.BUY, 106.0, 3);
+            assertEquals(MatchingEngine.DEFAULT_SYMBOL, trade.getSymbol());
+            assertEquals(1, trade.getSequence());
+            assertUpdate(updates.poll(5, TimeUnit.SECONDS), MarketDataType.LEVEL, OrderType.SELL, 106.0, 7);
+        } finally {
+            group.shutdownGracefully().sync();
+            server.stop();
+        }
+    }
+
+    /**
+     * Test that a subscriber whose channel is not writable keeps only the latest state of each level and drops trades until it drains.
+     */
+    @Test
+    public void testSlowSubscriberIsConflated() {
+        MarketDataFeed feed = new MarketDataFeed(UnpooledByteBufAllocator.DEFAULT);
+        MatchingEngine engine = MatchingEngine.withDemoBook(MatchingEngine.DEFAULT_SYMBOL);
+        MarketDataPublisher publisher = new MarketDataPublisher(feed, List.of(engine));
+        engine.setMarketDataListener(publisher);
+        MarketDataSubscriber subscriber = new MarketDataSubscriber(feed);
+        EmbeddedChannel channel = new EmbeddedChannel(subscriber);
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+
+        publisher.flush();
+        channel.runPendingTasks();
+        assertEquals(5, decode(channel.readOutbound()).size(), "The subscriber should be sent a refresh when it joins");
+
+        //queue more than the high water mark without flushing, as a peer that stopped reading would
+        channel.write(Unpooled.wrappedBuffer(new byte[64]));
+        assertFalse(channel.isWritable());
+        engine.processLimitOrder(OrderType.SELL, 2, 106.0, "S2001", 1);
+        engine.processMarketOrder(OrderType.BUY, 5, "1233");
+        engine.processLimitOrder(OrderType.BUY, 1, 100.0, "B2001", 2);
+        publisher.flush();
+        channel.runPendingTasks();
+        assertTrue(subscriber.isConflating());
+        assertNull(channel.readOutbound());
+
+        channel.flush();
+        channel.runPendingTasks();
+        ((ByteBuf) channel.readOutbound()).release();
+        List<MarketDataUpdate> conflated = decode(channel.readOutbound());
+
+        assertFalse(subscriber.isConflating());
+        assertEquals(2, conflated.size(), "Three updates of the same level and a trade should conflate away");
+        assertUpdate(conflated.get(0), MarketDataType.LEVEL, OrderType.SELL, 106.0, 7);
+        assertEquals(2, conflated.get(0).getOrderCount());
+        assertUpdate(conflated.get(1), MarketDataType.LEVEL, OrderType.BUY, 100.0, 1);
+        channel.finishAndReleaseAll();
+        publisher.close();
+    }
+
+    private static Channel connect(NioEventLoopGroup group, int port, ChannelHandler... handlers) throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(handlers);
+                    }
+                })
+                .connect("localhost", port)
+                .sync()
+                .channel();
+    }
+
+    private static List<MarketDataUpdate> decode(ByteBuf frames) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new BinaryMarketDataDecoder());
+        decoder.writeInbound(frames);
+        List<MarketDataUpdate> updates = new ArrayList<>();
+        for (MarketDataUpdate update = decoder.readInbound(); update != null; update = decoder.readInbound()) {
+            updates.add(update);
+        }
+        return updates;
+    }
+
+    private static void assertUpdate(MarketDataUpdate update, MarketDataType type, OrderType side, double price, long quantity) {
+        assertNotNull(update, "Expected a " + type + " update");
+        assertEquals(type, update.getType());
+        assertEquals(side, update.getSide());
+        assertEquals(price, update.getPrice());
+        assertEquals(quantity, update.getQuantity());
+    }
+}
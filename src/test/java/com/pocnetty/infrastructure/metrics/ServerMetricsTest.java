@@ -0,0 +1,138 @@
+package com.pocnetty.infrastructure.metrics;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ServerMetricsTest {
+
+    private static final int ITERATIONS = 100_000;
+
+    /**
+     * Test that recording stage latencies allocates nothing, including values beyond the histograms' range.
+     */
+    @Test
+    public void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counting is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        ServerMetrics metrics = new ServerMetrics();
+        long id = Thread.currentThread().getId();
+
+        record(metrics);
+        long before = threads.getThreadAllocatedBytes(id);
+        record(metrics);
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        assertTrue(allocated < ITERATIONS, "Expected no allocation per recorded value, got " + allocated + " bytes");
+        assertTrue(metrics.scrape().contains("matching_stage_latency_seconds_count{stage=\"flush\"} " + 4 * ITERATIONS));
+    }
+
+    /**
+     * Test that an order shows up in every stage, counter and gauge served on the metrics port.
+     */
+    @Test
+    public void testScrapeAfterAnOrder() throws Exception {
+        AppProperties.Listener listener = new AppProperties.Listener();
+        listener.setPort(0);
+        listener.setProtocol(WireProtocol.BINARY);
+        AppProperties.Server serverProperties = new AppProperties.Server();
+        serverProperties.setListeners(List.of(listener));
+        serverProperties.getMetrics().setEnabled(true);
+        serverProperties.getMetrics().setPort(0);
+        AppProperties.Engine engine = new AppProperties.Engine();
+        engine.setDemoBook(true);
+        MatchingEngineServer server = new MatchingEngineServer(serverProperties, engine,
+                new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+            Channel channel = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new BinaryReportDecoder(), new BinaryOrderEncoder(),
+                                    new SimpleChannelInboundHandler<ExecutionReport>() {
+                                        @Override
+                                        protected void channelRead0(ChannelHandlerContext ctx, ExecutionReport report) {
+                                            reports.add(report);
+                                        }
+                                    });
+                        }
+                    })
+                    .connect("localhost", server.boundPorts().get(0))
+                    .sync()
+                    .channel();
+            channel.writeAndFlush(new MarketOrder(OrderType.BUY, 3, "1233")).sync();
+            assertNotNull(reports.poll(5, TimeUnit.SECONDS));
+
+            //counters are published at the end of each batch, shortly after the report is handed off
+            String metrics = scrape(server.metricsPort());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!metrics.contains("matching_events_total{shard=\"matching-shard-0\"} 1") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+                metrics = scrape(server.metricsPort());
+            }
+
+            for (LatencyStage stage : LatencyStage.values()) {
+                assertTrue(metrics.contains("matching_stage_latency_seconds_count{stage=\"" + stage.label() + "\"}"), stage.label());
+            }
+            assertTrue(metrics.contains("matching_stage_latency_seconds_count{stage=\"match\"} 1"), metrics);
+            assertTrue(metrics.contains("matching_fills_total{shard=\"matching-shard-0\"} 1"), metrics);
+            assertTrue(metrics.contains("matching_rejects_total{shard=\"matching-shard-0\"} 0"), metrics);
+            assertTrue(metrics.contains("matching_book_levels{symbol=\"DEFAULT\",side=\"sell\"} 2"), metrics);
+            assertTrue(metrics.contains("matching_book_orders{symbol=\"DEFAULT\"} 4"), metrics);
+            assertTrue(metrics.contains("netty_event_loop_pending_tasks{group=\"worker\",loop=\"0\"}"), metrics);
+        } finally {
+            group.shutdownGracefully().sync();
+            server.stop();
+        }
+    }
+
+    private static void record(ServerMetrics metrics) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            metrics.record(LatencyStage.FLUSH, i);
+            metrics.record(LatencyStage.FLUSH, Long.MAX_VALUE);
+        }
+    }
+
+    private static String scrape(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + MetricsHttpHandler.PATH).toURL().openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
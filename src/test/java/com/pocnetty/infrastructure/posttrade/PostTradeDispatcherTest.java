@@ -0,0 +1,77 @@
+package com.pocnetty.infrastructure.posttrade;
+
+import com.pocnetty.domain.ExecutionReport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostTradeDispatcherTest {
+
+    /**
+     * Test that every account's reports reach a slow consumer in dispatch order, while accounts on other lanes proceed.
+     */
+    @Test
+    public void testOrderedPerAccount() {
+        Map<String, List<Long>> received = new ConcurrentHashMap<>();
+        PostTradeConsumer recorder = report -> received.computeIfAbsent(report.getAccountId(), account -> new ArrayList<>())
+                .add(report.getClientOrderId());
+        int accounts = 50;
+        int reportsPerAccount = 200;
+
+        try (PostTradeDispatcher dispatcher = new PostTradeDispatcher(List.of(new SyntheticDelayConsumer(1), recorder), 8, 1024)) {
+            for (int i = 0; i < reportsPerAccount; i++) {
+                for (int account = 0; account < accounts; account++) {
+                    while (!dispatcher.dispatch(ExecutionReport.rejected(1, String.valueOf(account), "DEFAULT", i))) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+        }
+
+        assertEquals(accounts, received.size());
+        received.forEach((account, clientOrderIds) -> {
+            assertEquals(reportsPerAccount, clientOrderIds.size(), account);
+            for (int i = 0; i < reportsPerAccount; i++) {
+                assertEquals(i, clientOrderIds.get(i), "Reports of account " + account + " out of order");
+            }
+        });
+    }
+
+    /**
+     * Test that dispatching returns at once while the consumer is stuck, and drops reports once the lane is full.
+     */
+    @Test
+    public void testDispatchNeverBlocks() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        PostTradeConsumer blocking = report -> {
+            stuck.await();
+            handled.incrementAndGet();
+        };
+
+        try (PostTradeDispatcher dispatcher = new PostTradeDispatcher(List.of(blocking), 1, 16)) {
+            long start = System.nanoTime();
+            int accepted = 0;
+            for (int i = 0; i < 100; i++) {
+                if (dispatcher.dispatch(ExecutionReport.rejected(1, "1", "DEFAULT", i))) {
+                    accepted++;
+                }
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Dispatching waited for the consumer");
+            assertEquals(16, accepted);
+            assertEquals(84, dispatcher.droppedCount());
+            assertEquals(16, dispatcher.backlog());
+            stuck.countDown();
+        }
+
+        assertEquals(16, handled.get(), "Closing lets the lanes finish what was dispatched");
+    }
+}
@@ -0,0 +1,338 @@
+package com.pocnetty.infrastructure.replication;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookDepth;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.dto.OrderRequest;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.codec.BinaryOrderEncoder;
+import com.pocnetty.infrastructure.codec.BinaryReportDecoder;
+import com.pocnetty.infrastructure.codec.WireProtocol;
+import com.pocnetty.infrastructure.config.AppProperties;
+import com.pocnetty.infrastructure.metrics.MetricsHttpHandler;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.sequencer.WaitStrategy;
+import com.pocnetty.infrastructure.snapshot.ShardSnapshot;
+import com.pocnetty.infrastructure.snapshot.SnapshotStore;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTest {
+
+    /**
+     * Test that a standby on loopback keeps the primary's books and order ids, and takes orders once the primary stops.
+     */
+    @Test
+    public void testStandbyTakesOver() throws Exception {
+        MatchingEngineServer primary = new MatchingEngineServer(server(ReplicationRole.PRIMARY, 0), new AppProperties.Engine(),
+                new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+        MatchingEngineServer standby = null;
+        boolean primaryStopped = false;
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            standby = new MatchingEngineServer(server(ReplicationRole.STANDBY, primary.replicationPort()), new AppProperties.Engine(),
+                    new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+            assertTrue(standby.boundPorts().isEmpty(), "A standby takes no orders before it is promoted");
+            waitFor(primary.metricsPort(), "replication_standby_connected 1");
+
+            BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+            Channel channel = connect(group, primary.boundPorts().get(0), reports);
+            channel.writeAndFlush(OrderRequest.limit(OrderType.SELL, 10, Prices.toTicks(100.0), "1", null, 1)).sync();
+            ExecutionReport resting = reports.poll(5, TimeUnit.SECONDS);
+            assertNotNull(resting);
+            assertEquals("NEW", resting.getStatus());
+            channel.writeAndFlush(OrderRequest.limit(OrderType.SELL, 5, Prices.toTicks(101.0), "2", null, 2)).sync();
+            channel.writeAndFlush(new MarketOrder(OrderType.BUY, 3, "3")).sync();
+            assertNotNull(reports.poll(5, TimeUnit.SECONDS));
+            assertEquals("FILLED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+
+            waitFor(standby.metricsPort(), "matching_events_total{shard=\"matching-shard-0\"} 3");
+            waitFor(primary.metricsPort(), "replication_lag_events{shard=\"matching-shard-0\"} 0");
+            channel.close().sync();
+            primary.stop();
+            primaryStopped = true;
+
+            assertTrue(standby.awaitPromotion(5, TimeUnit.SECONDS), "The standby takes over once the primary is gone");
+            channel = connect(group, standby.boundPorts().get(0), reports);
+            channel.writeAndFlush(OrderRequest.cancel(resting.getOrderId(), "1", null, 3)).sync();
+            ExecutionReport canceled = reports.poll(5, TimeUnit.SECONDS);
+            assertNotNull(canceled);
+            assertEquals("CANCELED", canceled.getStatus(), "The order rested on the primary is known to the standby");
+            assertEquals(7, canceled.getInitialQuantity(), "The fill on the primary was replicated");
+
+            channel.writeAndFlush(OrderRequest.limit(OrderType.SELL, 1, Prices.toTicks(102.0), "1", null, 4)).sync();
+            ExecutionReport next = reports.poll(5, TimeUnit.SECONDS);
+            assertNotNull(next);
+            assertEquals(resting.getOrderId() + 2, next.getOrderId(), "Order ids carry on from the primary's");
+        } finally {
+            group.shutdownGracefully().sync();
+            if (!primaryStopped) {
+                primary.stop();
+            }
+            if (standby != null) {
+                standby.stop();
+            }
+        }
+    }
+
+    /**
+     * Test that a primary drops a standby that stops reading once more than the high water mark is queued
+     * for it, counts the drop and keeps answering orders.
+     */
+    @Test
+    public void testPrimaryDropsStandbyThatFallsBehind() throws Exception {
+        AppProperties.Server properties = server(ReplicationRole.PRIMARY, 0);
+        properties.setSoSndBuf(4096);
+        MatchingEngineServer primary = new MatchingEngineServer(properties, new AppProperties.Engine(),
+                new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            //a standby that never reads what the primary sends
+            Channel stuck = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.AUTO_READ, false)
+                    .option(ChannelOption.SO_RCVBUF, 4096)
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect("localhost", primary.replicationPort())
+                    .sync()
+                    .channel();
+            waitFor(primary.metricsPort(), "replication_standby_connected 1");
+
+            BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+            Channel channel = connect(group, primary.boundPorts().get(0), reports);
+            int orders = 20_000;
+            for (int i = 1; i <= orders; i++) {
+                channel.write(OrderRequest.limit(OrderType.SELL, 1, Prices.toTicks(100.0) + i, "1", null, i));
+                if (i % 100 == 0) {
+                    channel.flush();
+                    for (int answered = 0; answered < 100; answered++) {
+                        assertEquals("NEW", reports.poll(5, TimeUnit.SECONDS).getStatus());
+                    }
+                }
+            }
+
+            waitFor(primary.metricsPort(), "replication_standby_drops_total 1");
+            waitFor(primary.metricsPort(), "replication_standby_connected 0");
+            //reading what was sent before the drop reaches the end of the stream
+            stuck.config().setAutoRead(true);
+            assertTrue(stuck.closeFuture().await(5, TimeUnit.SECONDS), "The primary closes the lagging standby's connection");
+            waitFor(primary.metricsPort(), "matching_events_total{shard=\"matching-shard-0\"} " + orders);
+        } finally {
+            group.shutdownGracefully().sync();
+            primary.stop();
+        }
+    }
+
+    /**
+     * Test that a running standby shard starts over from the snapshot its primary sends after the link
+     * was lost, skipping the events it missed, and that only a link the primary never sent anything over
+     * counts as losing the primary.
+     */
+    @Test
+    public void testStandbyStartsOverAfterLinkLoss() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        BlockingQueue<Channel> accepted = new LinkedBlockingQueue<>();
+        Channel fakePrimary = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        accepted.add(ch);
+                    }
+                })
+                .bind(0)
+                .sync()
+                .channel();
+        int port = ((InetSocketAddress) fakePrimary.localAddress()).getPort();
+        AtomicInteger primaryLost = new AtomicInteger();
+        AtomicInteger linkLost = new AtomicInteger();
+        MatchingEngine engine = new MatchingEngine("RSY");
+        try (MatchingCore core = new MatchingCore("resync-test", List.of(engine), 16, WaitStrategy.YIELDING).withDepth(5)) {
+            Bootstrap standby = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(ReplicationProtocol.newFrameDecoder(),
+                                    new ReplicationStandbyHandler(List.of(core), primaryLost::incrementAndGet, linkLost::incrementAndGet));
+                        }
+                    });
+
+            standby.connect("localhost", port).sync();
+            Channel link = accepted.poll(5, TimeUnit.SECONDS);
+            link.writeAndFlush(snapshotFrame(new BookSnapshot("RSY", side(), side(), 1), 0));
+            link.writeAndFlush(limitFrame(1, OrderType.SELL, 10, 100.0, "1"));
+            awaitDepth(core, "RSY", 1);
+            link.close().sync();
+            awaitCount(linkLost, 1);
+
+            //meanwhile the primary sold the resting order and rested order 4, neither of which reached this standby
+            standby.connect("localhost", port).sync();
+            link = accepted.poll(5, TimeUnit.SECONDS);
+            link.writeAndFlush(snapshotFrame(new BookSnapshot("RSY", side(Prices.toTicks(99.0), 3, 4), side(), 5), 5));
+            link.writeAndFlush(limitFrame(6, OrderType.BUY, 2, 98.0, "2"));
+            BookDepth depth = awaitDepth(core, "RSY", 6);
+            assertEquals(0, depth.getAsks().size(), "The book the standby had is gone");
+            assertArrayEquals(new long[]{Prices.toTicks(99.0), Prices.toTicks(98.0)}, depth.getBids().getPrices());
+            assertArrayEquals(new long[]{3, 2}, depth.getBids().getQuantities());
+            assertEquals(6, core.lastSequence());
+            link.close().sync();
+            awaitCount(linkLost, 2);
+            assertEquals(0, primaryLost.get(), "A link that was carrying frames may have been dropped by a live primary");
+
+            standby.connect("localhost", port).sync();
+            accepted.poll(5, TimeUnit.SECONDS).close().sync();
+            awaitCount(primaryLost, 1);
+        } finally {
+            fakePrimary.close().sync();
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    private static BookSnapshot.Side side(Object... orders) {
+        int count = orders.length / 3;
+        long[] prices = new long[count];
+        int[] quantities = new int[count];
+        String[] accountIds = new String[count];
+        long[] orderIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = (Long) orders[i * 3];
+            quantities[i] = (Integer) orders[i * 3 + 1];
+            accountIds[i] = "A";
+            orderIds[i] = ((Integer) orders[i * 3 + 2]).longValue();
+        }
+        return new BookSnapshot.Side(prices, quantities, accountIds, orderIds);
+    }
+
+    private static ByteBuf snapshotFrame(BookSnapshot book, long sequence) throws IOException {
+        ByteBuf frame = Unpooled.buffer();
+        int start = ReplicationProtocol.startFrame(frame, ReplicationProtocol.SNAPSHOT, 0, System.nanoTime());
+        try (DataOutputStream out = new DataOutputStream(new ByteBufOutputStream(frame))) {
+            SnapshotStore.writeTo(out, new ShardSnapshot(sequence, System.currentTimeMillis(), List.of(book)));
+        }
+        ReplicationProtocol.endFrame(frame, start);
+        return frame;
+    }
+
+    private static ByteBuf limitFrame(long sequence, OrderType side, int quantity, double price, String accountId) {
+        ByteBuf frame = Unpooled.buffer();
+        int start = ReplicationProtocol.startFrame(frame, ReplicationProtocol.EVENTS, 0, System.nanoTime());
+        frame.writeIntLE(1);
+        ReplicationProtocol.writeEvent(frame, sequence, OrderAction.NEW_LIMIT, side, quantity, Prices.toTicks(price), 0, "RSY", accountId);
+        ReplicationProtocol.endFrame(frame, start);
+        return frame;
+    }
+
+    private static BookDepth awaitDepth(MatchingCore core, String symbol, long sequence) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        BookDepth depth = core.depth(symbol);
+        while ((depth == null || depth.getSequence() < sequence) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            depth = core.depth(symbol);
+        }
+        assertNotNull(depth);
+        assertEquals(sequence, depth.getSequence());
+        return depth;
+    }
+
+    private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count.get());
+    }
+
+    private static AppProperties.Server server(ReplicationRole role, int primaryPort) {
+        AppProperties.Listener listener = new AppProperties.Listener();
+        listener.setPort(0);
+        listener.setProtocol(WireProtocol.BINARY);
+        AppProperties.Server server = new AppProperties.Server();
+        server.setListeners(List.of(listener));
+        server.getMetrics().setEnabled(true);
+        server.getMetrics().setPort(0);
+        AppProperties.Replication replication = server.getReplication();
+        replication.setRole(role);
+        replication.setPort(0);
+        replication.setPrimaryPort(primaryPort);
+        replication.setHeartbeatIntervalMillis(20);
+        replication.setHeartbeatTimeoutMillis(500);
+        return server;
+    }
+
+    private static Channel connect(NioEventLoopGroup group, int port, BlockingQueue<ExecutionReport> reports) throws InterruptedException {
+        return new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new BinaryReportDecoder(), new BinaryOrderEncoder(),
+                                new SimpleChannelInboundHandler<ExecutionReport>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, ExecutionReport report) {
+                                        reports.add(report);
+                                    }
+                                });
+                    }
+                })
+                .connect("localhost", port)
+                .sync()
+                .channel();
+    }
+
+    private static void waitFor(int metricsPort, String sample) throws Exception {
+        String metrics = scrape(metricsPort);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!metrics.contains(sample) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            metrics = scrape(metricsPort);
+        }
+        assertTrue(metrics.contains(sample), metrics);
+    }
+
+    private static String scrape(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + MetricsHttpHandler.PATH).toURL().openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
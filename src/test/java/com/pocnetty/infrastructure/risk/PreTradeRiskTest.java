@@ -0,0 +1,151 @@
+package com.pocnetty.infrastructure.risk;
+
+import com.pocnetty.domain.MatchResult;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.enums.OrderAction;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.domain.enums.RejectReason;
+import com.pocnetty.infrastructure.config.AppProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreTradeRiskTest {
+
+    private final MatchingEngine engine = new MatchingEngine("AAPL");
+    private PreTradeRisk risk;
+    private long lastOrderId;
+
+    /**
+     * Test that missing accounts and oversized, overpriced or off-market orders are refused.
+     */
+    @Test
+    public void testFatFingerChecks() {
+        AppProperties.Risk limits = new AppProperties.Risk();
+        limits.setMaxOrderQuantity(100);
+        limits.setMaxOrderNotional(10_000);
+        limits.setPriceBandBps(500);
+        start(limits);
+
+        assertEquals(RejectReason.INVALID_ACCOUNT, limit(OrderType.BUY, 10, 100, "", 0));
+        assertEquals(RejectReason.INVALID_QUANTITY, limit(OrderType.BUY, 0, 100, "1", 0));
+        assertEquals(RejectReason.MAX_ORDER_QUANTITY, limit(OrderType.BUY, 101, 100, "1", 0));
+        //no reference price yet, so only the notional applies
+        assertEquals(RejectReason.MAX_ORDER_NOTIONAL, limit(OrderType.BUY, 100, 200, "1", 0));
+
+        assertNull(limit(OrderType.SELL, 10, 100, "3", 0));
+        assertEquals(RejectReason.PRICE_BAND, limit(OrderType.BUY, 10, 106, "1", 0));
+        assertNull(limit(OrderType.BUY, 10, 104, "acc1", 0), "Account ids need not be numeric");
+
+        //a market order is priced at the best opposite level
+        assertNull(limit(OrderType.SELL, 60, 150, "3", 0));
+        assertEquals(RejectReason.MAX_ORDER_NOTIONAL, submit(OrderAction.MARKET, OrderType.BUY, 90, 0, "1", 0, 0));
+        assertNull(submit(OrderAction.MARKET, OrderType.BUY, 60, 0, "1", 0, 0));
+    }
+
+    /**
+     * Test that the worst-case position counts open orders, fills against resting orders and cancels.
+     */
+    @Test
+    public void testPositionLimit() {
+        AppProperties.Risk limits = new AppProperties.Risk();
+        limits.setMaxPosition(10);
+        start(limits);
+
+        assertNull(limit(OrderType.SELL, 6, 100, "1", 0));
+        long resting = lastOrderId;
+        assertEquals(RejectReason.POSITION_LIMIT, limit(OrderType.SELL, 5, 101, "1", 0));
+
+        //a passive fill turns open quantity into position, which still counts
+        assertNull(submit(OrderAction.MARKET, OrderType.BUY, 4, 0, "acc2", 0, 0));
+        assertEquals(-4, risk.position("1", "AAPL"));
+        assertEquals(4, risk.position("acc2", "AAPL"));
+        assertEquals(RejectReason.POSITION_LIMIT, limit(OrderType.SELL, 5, 101, "1", 0));
+        assertNull(limit(OrderType.SELL, 4, 101, "1", 0));
+
+        //cancelling the remaining 2 frees their room
+        assertEquals(RejectReason.POSITION_LIMIT, limit(OrderType.SELL, 1, 102, "1", 0));
+        assertNull(submit(OrderAction.CANCEL, null, 0, 0, "1", resting, 0));
+        assertNull(limit(OrderType.SELL, 2, 102, "1", 0));
+
+        //buying back reduces the short position
+        assertNull(limit(OrderType.BUY, 14, 100, "1", 0));
+    }
+
+    /**
+     * Test that new orders beyond the per-second rate are refused until the window passes, while cancels always go through.
+     */
+    @Test
+    public void testOrderRate() {
+        AppProperties.Risk limits = new AppProperties.Risk();
+        limits.setMaxOrdersPerSecond(3);
+        start(limits);
+        long now = System.nanoTime();
+
+        assertNull(limit(OrderType.BUY, 1, 100, "1", now));
+        assertNull(limit(OrderType.BUY, 1, 99, "1", now));
+        assertNull(limit(OrderType.BUY, 1, 98, "1", now));
+        assertEquals(RejectReason.ORDER_RATE, limit(OrderType.BUY, 1, 97, "1", now));
+        assertNull(limit(OrderType.BUY, 1, 97, "2", now));
+        assertNull(submit(OrderAction.CANCEL, null, 0, 0, "1", lastOrderId - 1, now));
+
+        assertNull(limit(OrderType.BUY, 1, 97, "1", now + TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Test that refused orders neither use up the rate nor take an account slot, and that accounts beyond the cap are refused.
+     */
+    @Test
+    public void testAccountSlots() {
+        AppProperties.Risk limits = new AppProperties.Risk();
+        limits.setMaxOrderQuantity(10);
+        limits.setMaxOrdersPerSecond(1);
+        limits.setMaxAccounts(2);
+        start(limits);
+        long now = System.nanoTime();
+
+        assertEquals(RejectReason.MAX_ORDER_QUANTITY, limit(OrderType.BUY, 11, 100, "1", now));
+        assertEquals(0, risk.accountCount());
+        assertNull(limit(OrderType.BUY, 1, 100, "1", now));
+        assertEquals(RejectReason.ORDER_RATE, limit(OrderType.BUY, 1, 100, "1", now));
+
+        assertNull(limit(OrderType.BUY, 1, 100, "2", now));
+        assertEquals(RejectReason.INVALID_ACCOUNT, limit(OrderType.BUY, 1, 100, "3", now));
+        assertEquals(2, risk.accountCount());
+    }
+
+    private void start(AppProperties.Risk limits) {
+        risk = new PreTradeRisk(limits, List.of(engine));
+        risk.track(List.of(engine));
+    }
+
+    private RejectReason limit(OrderType side, int quantity, double price, String accountId, long nowNanos) {
+        return submit(OrderAction.NEW_LIMIT, side, quantity, price, accountId, 0, nowNanos);
+    }
+
+    /**
+     * Does what the matching thread does with an event: check it, then match it and apply the result.
+     */
+    private RejectReason submit(OrderAction action, OrderType side, int quantity, double price, String accountId,
+                                long orderId, long nowNanos) {
+        long ticks = Prices.toTicks(price);
+        RejectReason reason = risk.check(engine, action, side, quantity, ticks, accountId, orderId, nowNanos);
+        if (reason != null) {
+            return reason;
+        }
+        MatchResult result = switch (action) {
+            case MARKET -> engine.executeMarketOrder(side, quantity, accountId, 0);
+            case NEW_LIMIT -> engine.executeLimitOrder(side, quantity, ticks, accountId, 0);
+            case CANCEL -> engine.executeCancel(orderId, accountId, 0);
+            case CANCEL_REPLACE -> engine.executeReplace(orderId, quantity, ticks, accountId, 0);
+        };
+        assertNotEquals("REJECTED", result.getStatus());
+        lastOrderId = result.getOrderId();
+        risk.onResult(action, side, quantity, ticks, result);
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.config.AppProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstrumentRouterTest {
+
+    /**
+     * Test that pinned instruments keep their shard and the rest are spread over the least loaded shards.
+     */
+    @Test
+    public void testAssignShards() {
+        Map<String, Integer> assignment = InstrumentRouter.assignShards(
+                List.of(instrument("AAPL", 1), instrument("MSFT", null), instrument("EURUSD", null), instrument("TSLA", 5)),
+                "DEFAULT", 2);
+
+        assertEquals(1, assignment.get("AAPL"));
+        assertEquals(1, assignment.get("TSLA"), "Explicit shards wrap around the shard count");
+        assertEquals(0, assignment.get("MSFT"));
+        assertEquals(0, assignment.get("EURUSD"));
+        assertEquals(0, assignment.get("DEFAULT"), "The default instrument is always assigned");
+    }
+
+    /**
+     * Test that orders reach the book of their own symbol and that unknown symbols are refused.
+     */
+    @Test
+    public void testRoutesBySymbol() throws Exception {
+        AppProperties.Engine properties = new AppProperties.Engine();
+        properties.setRingBufferSize(16);
+        properties.setShards(2);
+        properties.setInstruments(List.of(instrument("AAPL", null), instrument("MSFT", null)));
+        properties.setDemoBook(true);
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+
+        try (InstrumentRouter router = new InstrumentRouter(properties, new AppProperties.Journal()).start()) {
+            assertTrue(router.publish(new MarketOrder(OrderType.BUY, 10, "1", "AAPL"), reports::add));
+            assertTrue(router.publish(new MarketOrder(OrderType.BUY, 10, "2", "MSFT"), reports::add));
+            assertTrue(router.publish(new MarketOrder(OrderType.BUY, 10, "3"), reports::add));
+            assertFalse(router.publish(new MarketOrder(OrderType.BUY, 10, "4", "NOPE"), reports::add));
+
+            for (int i = 0; i < 3; i++) {
+                ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+                assertNotNull(report);
+                assertEquals("FILLED", report.getStatus(), "Each symbol has its own untouched book");
+                assertEquals(switch (report.getAccountId()) {
+                    case "1" -> "AAPL";
+                    case "2" -> "MSFT";
+                    default -> "DEFAULT";
+                }, report.getSymbol());
+            }
+            long processed = router.shards().stream().mapToLong(MatchingCore::processedCount).sum();
+            assertEquals(3, processed);
+        }
+    }
+
+    private static AppProperties.Instrument instrument(String symbol, Integer shard) {
+        AppProperties.Instrument instrument = new AppProperties.Instrument();
+        instrument.setSymbol(symbol);
+        instrument.setShard(shard);
+        return instrument;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pocnetty.infrastructure.sequencer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferTest {
+
+    /**
+     * Test that producers are refused once the consumer is a full lap behind and can continue after a release.
+     */
+    @Test
+    public void testTryNextFailsWhenFull() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(4, AtomicLong::new);
+        for (int i = 0; i < 4; i++) {
+            long sequence = ringBuffer.tryNext();
+            assertEquals(i, sequence);
+            ringBuffer.publish(sequence);
+        }
+        assertEquals(-1, ringBuffer.tryNext(), "Buffer should be full");
+        assertEquals(4, ringBuffer.depth());
+
+        ringBuffer.release(1);
+        assertEquals(4, ringBuffer.tryNext());
+        assertEquals(5, ringBuffer.tryNext());
+        assertEquals(-1, ringBuffer.tryNext());
+    }
+
+    /**
+     * Test that a slot only becomes visible to the consumer once it has been published, and that slots are reused on wrap.
+     */
+    @Test
+    public void testPublishVisibilityAndReuse() {
+        RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(2, AtomicLong::new);
+        long first = ringBuffer.tryNext();
+        assertFalse(ringBuffer.isPublished(first));
+        ringBuffer.get(first).set(42);
+        ringBuffer.publish(first);
+        assertTrue(ringBuffer.isPublished(first));
+
+        ringBuffer.release(first);
+        ringBuffer.publish(ringBuffer.tryNext());
+        long third = ringBuffer.tryNext();
+        assertSame(ringBuffer.get(first), ringBuffer.get(third));
+        assertFalse(ringBuffer.isPublished(third), "A reused slot should not look published before its own publish");
+    }
+
+    /**
+     * Test that a non power of two size is refused.
+     */
+    @Test
+    public void testSizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(3, Object::new));
+    }
+}
@@ -0,0 +1,91 @@
+package com.pocnetty.infrastructure.snapshot;
+
+import com.pocnetty.domain.ExecutionReport;
+import com.pocnetty.domain.MatchingEngine;
+import com.pocnetty.domain.Prices;
+import com.pocnetty.domain.book.BookSnapshot;
+import com.pocnetty.domain.dto.MarketOrder;
+import com.pocnetty.domain.enums.OrderType;
+import com.pocnetty.infrastructure.journal.FsyncPolicy;
+import com.pocnetty.infrastructure.journal.Journal;
+import com.pocnetty.infrastructure.sequencer.MatchingCore;
+import com.pocnetty.infrastructure.sequencer.WaitStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that a written snapshot is read back with the same books and that only the newest ones are retained.
+     */
+    @Test
+    public void testWriteAndLoadLatest() throws Exception {
+        SnapshotStore store = new SnapshotStore(directory.resolve("shard-0"), 2);
+        assertTrue(store.loadLatest().isEmpty());
+
+        BookSnapshot book = MatchingEngine.withDemoBook("AAPL").snapshot();
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            store.write(new ShardSnapshot(sequence, sequence, List.of(book)));
+        }
+
+        ShardSnapshot latest = store.loadLatest().orElseThrow();
+        assertEquals(3, latest.getLastSequence());
+        BookSnapshot restored = latest.getBooks().get(0);
+        assertEquals("AAPL", restored.getSymbol());
+        assertArrayEquals(new long[]{Prices.toTicks(105.0), Prices.toTicks(104.0)}, restored.getBids().getPrices());
+        assertArrayEquals(new int[]{10, 5}, restored.getAsks().getQuantities());
+        assertArrayEquals(new String[]{"S1001", "S1002"}, restored.getAsks().getAccountIds());
+        assertArrayEquals(new long[]{3, 4}, restored.getAsks().getOrderIds());
+        assertEquals(5, restored.getNextOrderId());
+        try (Stream<Path> files = Files.list(store.getDirectory())) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    /**
+     * Test that a matching core restores its book from the latest snapshot and replays only the journal tail after it.
+     * Expected: the snapshot taken after the first order and the journaled second order leave only S1002 with 5 units,
+     * and the fully covered journal segments are pruned.
+     */
+    @Test
+    public void testMatchingCoreRecoversFromSnapshotAndJournalTail() throws Exception {
+        BlockingQueue<ExecutionReport> reports = new LinkedBlockingQueue<>();
+        try (MatchingCore core = newCore()) {
+            core.publish(new MarketOrder(OrderType.BUY, 10, "1"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            core.publish(new MarketOrder(OrderType.BUY, 3, "1"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            assertEquals("FILLED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+            assertEquals("FILLED", reports.poll(5, TimeUnit.SECONDS).getStatus());
+        }
+
+        try (MatchingCore core = newCore()) {
+            assertEquals(2, core.lastSequence());
+            core.publish(new MarketOrder(OrderType.BUY, 5, "1"), MatchingEngine.DEFAULT_SYMBOL, reports::add);
+            ExecutionReport report = reports.poll(5, TimeUnit.SECONDS);
+            assertEquals("PARTIALLY_FILLED", report.getStatus());
+            assertEquals(2, report.getExecutedQuantity());
+            assertEquals(107.0, report.getExecutedPrice());
+        }
+    }
+
+    private MatchingCore newCore() {
+        Journal journal = new Journal(directory.resolve("journal"), 4096, FsyncPolicy.EVERY_EVENT, 1, 0);
+        //snapshot on every event so the restart has both a snapshot and a journal to reconcile
+        return new MatchingCore("snapshot-test", List.of(MatchingEngine.withDemoBook(MatchingEngine.DEFAULT_SYMBOL)), 16,
+                WaitStrategy.YIELDING, journal)
+                .withSnapshots(new SnapshotStore(directory.resolve("snapshot"), 2), 1, true)
+                .start();
+    }
+}
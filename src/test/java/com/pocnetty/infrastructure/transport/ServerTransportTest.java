@@ -0,0 +1,56 @@
+package com.pocnetty.infrastructure.transport;
+
+import com.pocnetty.infrastructure.MatchingEngineServer;
+import com.pocnetty.infrastructure.config.AppProperties;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerTransportTest {
+
+    /**
+     * Test that NIO is always available and that native transports fall back instead of failing.
+     */
+    @Test
+    public void testSelectFallsBack() {
+        assertEquals(TransportType.NIO, ServerTransport.select(TransportType.NIO).getType());
+        assertNull(ServerTransport.select(TransportType.NIO).getReusePortOption());
+        assertEquals(NioSocketChannel.class, ServerTransport.select(TransportType.NIO).getSocketChannelClass());
+
+        TransportType expectedEpoll = Epoll.isAvailable() ? TransportType.EPOLL : TransportType.NIO;
+        assertEquals(expectedEpoll, ServerTransport.select(TransportType.EPOLL).getType());
+        assertNotNull(ServerTransport.select(TransportType.IO_URING).getType());
+    }
+
+    /**
+     * Test that SO_REUSEPORT binds several acceptors to the same port on a native transport, and a single one on NIO.
+     */
+    @Test
+    public void testReusePortAcceptors() throws Exception {
+        AppProperties.Listener listener = new AppProperties.Listener();
+        listener.setPort(0);
+        AppProperties.Server properties = new AppProperties.Server();
+        properties.setListeners(List.of(listener));
+        properties.setTransport(TransportType.EPOLL);
+        properties.setReusePort(true);
+        properties.setAcceptors(2);
+
+        MatchingEngineServer server = new MatchingEngineServer(properties, new AppProperties.Engine(),
+                new AppProperties.Journal(), new AppProperties.Snapshot()).start();
+        try {
+            List<Integer> ports = server.boundPorts();
+            if (Epoll.isAvailable()) {
+                assertEquals(2, ports.size());
+                assertEquals(ports.get(0), ports.get(1));
+            } else {
+                assertEquals(1, ports.size());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}